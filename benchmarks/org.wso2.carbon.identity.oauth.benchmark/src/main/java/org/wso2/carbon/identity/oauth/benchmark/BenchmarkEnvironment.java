@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.benchmark;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
+import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+import org.wso2.carbon.identity.oauth2.keyidprovider.DefaultKeyIDProviderImpl;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.user.api.RealmConfiguration;
+import org.wso2.carbon.user.core.UserRealm;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.tenant.TenantManager;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+import javax.naming.Context;
+import javax.sql.DataSource;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * One-time fixture shared by the benchmarks of a fork. It points Carbon to the benchmark carbon home, backs the
+ * identity data source with an in-memory H2 database, stubs the user realm and loads the super tenant's signing key
+ * from the benchmark key store, so that the token issuance code runs unchanged without an OSGi runtime.
+ */
+public final class BenchmarkEnvironment {
+
+    public static final String DEFAULT_CLIENT_ID = "benchmark-default-client";
+    public static final String JWT_CLIENT_ID = "benchmark-jwt-client";
+    public static final String CALLBACK_URL = "https://localhost/callback";
+
+    private static final String CARBON_HOME = "carbon.home";
+    private static final String DB_URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+    private static final String DB_SCRIPT = "classpath:/dbScripts/benchmark.sql";
+    private static final String KEY_STORE = "wso2carbon.jks";
+    private static final String KEY_STORE_PASSWORD = "wso2carbon";
+    private static final String KEY_ALIAS = "wso2carbon";
+
+    private static DataSource dataSource;
+    private static boolean initialized;
+
+    private BenchmarkEnvironment() {
+
+    }
+
+    /**
+     * Initialize the fixture, once per JVM.
+     *
+     * @throws Exception If the fixture could not be initialized.
+     */
+    public static synchronized void init() throws Exception {
+
+        if (initialized) {
+            return;
+        }
+        if (System.getProperty(CARBON_HOME) == null) {
+            System.setProperty(CARBON_HOME,
+                    Paths.get(System.getProperty("user.dir"), "src", "main", "carbon-home").toString());
+        }
+        System.setProperty("carbon.config.dir.path",
+                Paths.get(System.getProperty(CARBON_HOME), "repository", "conf").toString());
+        System.setProperty(Context.INITIAL_CONTEXT_FACTORY, BenchmarkInitialContextFactory.class.getName());
+
+        initDataSource();
+        initRealm();
+        initSigningKey();
+        initialized = true;
+    }
+
+    static DataSource getDataSource() {
+
+        return dataSource;
+    }
+
+    /**
+     * Start a super tenant flow on the calling thread. JMH runs the benchmark methods on its own worker threads,
+     * hence this needs to be called from a setup method of a thread scoped state.
+     */
+    public static void startTenantFlow() {
+
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+        carbonContext.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        carbonContext.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
+    }
+
+    public static void endTenantFlow() {
+
+        PrivilegedCarbonContext.endTenantFlow();
+    }
+
+    /**
+     * Build a local super tenant user. The user id is set upfront so that it is not resolved from the user store.
+     *
+     * @param userName User name.
+     * @return Authenticated user.
+     */
+    public static AuthenticatedUser createUser(String userName) {
+
+        AuthenticatedUser user = new AuthenticatedUser();
+        user.setUserName(userName);
+        user.setUserStoreDomain("PRIMARY");
+        user.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        user.setUserId(getUserId(userName));
+        user.setAuthenticatedSubjectIdentifier(userName);
+        return user;
+    }
+
+    private static String getUserId(String userName) {
+
+        return UUID.nameUUIDFromBytes(userName.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static void initDataSource() throws Exception {
+
+        dataSource = JdbcConnectionPool.create(DB_URL, "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("RUNSCRIPT FROM '" + DB_SCRIPT + "'");
+        }
+    }
+
+    private static void initRealm() throws Exception {
+
+        RealmService realmService = mock(RealmService.class);
+        TenantManager tenantManager = mock(TenantManager.class);
+        UserRealm userRealm = mock(UserRealm.class);
+        UserStoreManager userStoreManager = mock(UserStoreManager.class);
+
+        when(tenantManager.getTenantId(anyString())).thenReturn(MultitenantConstants.SUPER_TENANT_ID);
+        when(tenantManager.getDomain(MultitenantConstants.SUPER_TENANT_ID))
+                .thenReturn(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        when(realmService.getTenantManager()).thenReturn(tenantManager);
+        when(realmService.getBootstrapRealmConfiguration()).thenReturn(new RealmConfiguration());
+        when(realmService.getTenantUserRealm(MultitenantConstants.SUPER_TENANT_ID)).thenReturn(userRealm);
+        when(userRealm.getUserStoreManager()).thenReturn(userStoreManager);
+        when(userRealm.getRealmConfiguration()).thenReturn(new RealmConfiguration());
+
+        OAuthComponentServiceHolder.getInstance().setRealmService(realmService);
+        IdentityTenantUtil.setRealmService(realmService);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void initSigningKey() throws Exception {
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream inputStream = Files.newInputStream(Paths.get(System.getProperty(CARBON_HOME),
+                "repository", "resources", "security", KEY_STORE))) {
+            keyStore.load(inputStream, KEY_STORE_PASSWORD.toCharArray());
+        }
+        Key privateKey = keyStore.getKey(KEY_ALIAS, KEY_STORE_PASSWORD.toCharArray());
+        Certificate certificate = keyStore.getCertificate(KEY_ALIAS);
+
+        // Pre-populate the key maps of OAuth2Util so that the key store manager and the registry are not needed.
+        Field privateKeysField = OAuth2Util.class.getDeclaredField("privateKeys");
+        privateKeysField.setAccessible(true);
+        ((Map<Integer, Key>) privateKeysField.get(null)).put(MultitenantConstants.SUPER_TENANT_ID, privateKey);
+        Field publicCertsField = OAuth2Util.class.getDeclaredField("publicCerts");
+        publicCertsField.setAccessible(true);
+        ((Map<Integer, Certificate>) publicCertsField.get(null)).put(MultitenantConstants.SUPER_TENANT_ID,
+                certificate);
+
+        OAuth2ServiceComponentHolder.setKeyIDProvider(new DefaultKeyIDProviderImpl());
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.spi.InitialContextFactory;
+
+/**
+ * Initial context factory which resolves every JNDI lookup to the in-memory benchmark data source, so that
+ * IdentityDatabaseUtil hands out connections to the H2 database without a Carbon data source service.
+ */
+public class BenchmarkInitialContextFactory implements InitialContextFactory {
+
+    @Override
+    public Context getInitialContext(Hashtable<?, ?> environment) throws NamingException {
+
+        return (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class[]{Context.class},
+                (proxy, method, args) -> {
+                    if ("lookup".equals(method.getName())) {
+                        return BenchmarkEnvironment.getDataSource();
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Entry point of the benchmark jar. When arguments are given they are handed over to the JMH command line as is,
+ * otherwise the benchmarks are run with one of the predefined modes selected through the "benchmark.mode" system
+ * property:
+ * <ul>
+ * <li>full - enough forks and iterations to compare releases.</li>
+ * <li>smoke - a short run to compare a pull request against its base branch.</li>
+ * </ul>
+ * The GC profiler is always enabled so that the allocation rate per operation (gc.alloc.rate.norm) is reported along
+ * with the throughput.
+ */
+public class BenchmarkRunner {
+
+    private static final String MODE_SMOKE = "smoke";
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        String mode = System.getProperty("benchmark.mode", "full");
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("benchmark.include", ".*"))
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true);
+
+        if (MODE_SMOKE.equals(mode)) {
+            options.forks(1)
+                    .warmupIterations(2)
+                    .warmupTime(TimeValue.seconds(1))
+                    .measurementIterations(3)
+                    .measurementTime(TimeValue.seconds(1));
+        } else {
+            options.forks(2)
+                    .warmupIterations(5)
+                    .warmupTime(TimeValue.seconds(10))
+                    .measurementIterations(10)
+                    .measurementTime(TimeValue.seconds(10));
+        }
+
+        String carbonHome = System.getProperty("carbon.home");
+        if (carbonHome != null) {
+            options.jvmArgsAppend("-Dcarbon.home=" + carbonHome);
+        }
+        String result = System.getProperty("benchmark.result");
+        if (result != null) {
+            options.resultFormat(ResultFormatType.JSON).result(result);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.benchmark;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+
+import java.security.interfaces.RSAPrivateKey;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares signing a JWT through the cached signing context with building the signer and the JWS header for every
+ * token, which is what the token issuers did before the signing context was cached. Both RSA algorithms supported by
+ * the token issuers are measured, since they go through the same cached signing context.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JWTSigningBenchmark {
+
+    private static final String TENANT_DOMAIN = MultitenantConstants.SUPER_TENANT_DOMAIN_NAME;
+    private static final int TENANT_ID = MultitenantConstants.SUPER_TENANT_ID;
+
+    @Param({"RS256", "PS256"})
+    public String algorithm;
+
+    private JWSAlgorithm jwsAlgorithm;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        jwsAlgorithm = JWSAlgorithm.parse(algorithm);
+        BenchmarkEnvironment.init();
+        BenchmarkEnvironment.startTenantFlow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        BenchmarkEnvironment.endTenantFlow();
+    }
+
+    @Benchmark
+    public String signWithCachedContext() throws Exception {
+
+        return OAuth2Util.signJWTWithRSA(buildClaimsSet(), jwsAlgorithm, TENANT_DOMAIN).serialize();
+    }
+
+    @Benchmark
+    public String signWithoutCachedContext() throws Exception {
+
+        JWSSigner signer = OAuth2Util.createJWSSigner((RSAPrivateKey) OAuth2Util.getPrivateKey(TENANT_DOMAIN,
+                TENANT_ID));
+        JWSHeader.Builder headerBuilder = new JWSHeader.Builder(jwsAlgorithm);
+        headerBuilder.keyID(OAuth2Util.getKID(OAuth2Util.getCertificate(TENANT_DOMAIN, TENANT_ID),
+                jwsAlgorithm, TENANT_DOMAIN));
+        headerBuilder.x509CertThumbprint(new Base64URL(OAuth2Util.getThumbPrint(TENANT_DOMAIN, TENANT_ID)));
+        SignedJWT signedJWT = new SignedJWT(headerBuilder.build(), buildClaimsSet());
+        signedJWT.sign(signer);
+        return signedJWT.serialize();
+    }
+
+    private JWTClaimsSet buildClaimsSet() {
+
+        long now = System.currentTimeMillis();
+        return new JWTClaimsSet.Builder()
+                .issuer("https://localhost:9443/oauth2/token")
+                .subject("admin")
+                .audience(BenchmarkEnvironment.JWT_CLIENT_ID)
+                .jwtID(UUID.randomUUID().toString())
+                .issueTime(new Date(now))
+                .expirationTime(new Date(now + TimeUnit.HOURS.toMillis(1)))
+                .build();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.wso2.carbon.identity.oauth2.bean.Scope;
+import org.wso2.carbon.identity.oauth2.bean.ScopeBinding;
+import org.wso2.carbon.identity.oauth2.validators.PermissionScopeIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding the internal scopes allowed for a user through the permission scope index with matching each
+ * permission binding of each scope against each permission of the user, which is what
+ * JDBCPermissionBasedInternalScopeValidator did before the index was introduced.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PermissionScopeIndexBenchmark {
+
+    private static final String PERMISSION_BINDING_TYPE = "PERMISSION";
+    private static final String PERMISSION_PREFIX = "/permission/admin/manage/identity/";
+    private static final String[] ACTIONS = {"view", "create", "update", "delete"};
+    private static final int RESOURCES_PER_AREA = 10;
+
+    @Param({"2000"})
+    private int scopeCount;
+
+    @Param({"50"})
+    private int userPermissionCount;
+
+    private List<Scope> scopes;
+    private PermissionScopeIndex scopeIndex;
+    private String[] userPermissions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        Random random = new Random(42);
+        int areaCount = Math.max(1, scopeCount / (RESOURCES_PER_AREA * ACTIONS.length));
+        scopes = new ArrayList<>(scopeCount);
+        for (int i = 0; i < scopeCount; i++) {
+            int area = i % areaCount;
+            int resource = (i / areaCount) % RESOURCES_PER_AREA;
+            List<String> bindings = new ArrayList<>();
+            bindings.add(permission(area, resource, ACTIONS[random.nextInt(ACTIONS.length)]));
+            if (random.nextBoolean()) {
+                bindings.add(permission(random.nextInt(areaCount), random.nextInt(RESOURCES_PER_AREA),
+                        ACTIONS[random.nextInt(ACTIONS.length)]));
+            }
+            List<ScopeBinding> scopeBindings = new ArrayList<>();
+            scopeBindings.add(new ScopeBinding(PERMISSION_BINDING_TYPE, bindings));
+            scopes.add(new Scope("internal_scope_" + i, "Scope " + i, scopeBindings, null));
+        }
+        scopeIndex = PermissionScopeIndex.build(scopes);
+
+        // A user holding a mix of whole areas, whole resources and single actions, along with everyone permission.
+        List<String> permissions = new ArrayList<>();
+        permissions.add("everyone_permission");
+        while (permissions.size() < userPermissionCount) {
+            int area = random.nextInt(areaCount);
+            switch (random.nextInt(3)) {
+                case 0:
+                    permissions.add(PERMISSION_PREFIX + "area" + area);
+                    break;
+                case 1:
+                    permissions.add(PERMISSION_PREFIX + "area" + area + "/resource" +
+                            random.nextInt(RESOURCES_PER_AREA));
+                    break;
+                default:
+                    permissions.add(permission(area, random.nextInt(RESOURCES_PER_AREA),
+                            ACTIONS[random.nextInt(ACTIONS.length)]));
+            }
+        }
+        userPermissions = permissions.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public Set<Scope> allowedScopesWithIndex() {
+
+        return scopeIndex.getAllowedScopes(userPermissions);
+    }
+
+    @Benchmark
+    public List<Scope> allowedScopesWithNestedLoops() {
+
+        List<Scope> allowedScopes = new ArrayList<>();
+        for (Scope scope : scopes) {
+            boolean isScopeAllowed = true;
+            for (ScopeBinding scopeBinding : scope.getScopeBindings()) {
+                if (PERMISSION_BINDING_TYPE.equalsIgnoreCase(scopeBinding.getBindingType())) {
+                    for (String binding : scopeBinding.getBindings()) {
+                        boolean isAllowed = false;
+                        for (String allowedPermission : userPermissions) {
+                            if ((binding + "/").startsWith(allowedPermission + "/")) {
+                                isAllowed = true;
+                                break;
+                            }
+                        }
+                        if (!isAllowed) {
+                            isScopeAllowed = false;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (isScopeAllowed) {
+                allowedScopes.add(scope);
+            }
+        }
+        return allowedScopes;
+    }
+
+    @Benchmark
+    public PermissionScopeIndex buildIndex() {
+
+        return PermissionScopeIndex.build(scopes);
+    }
+
+    private static String permission(int area, int resource, String action) {
+
+        return PERMISSION_PREFIX + String.join("/", Arrays.asList("area" + area, "resource" + resource, action));
+    }
+}
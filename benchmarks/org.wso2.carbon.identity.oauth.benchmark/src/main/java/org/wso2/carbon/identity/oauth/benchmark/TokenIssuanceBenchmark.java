@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenReqDTO;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenRespDTO;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.identity.oauth2.token.AccessTokenIssuer;
+import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
+import org.wso2.carbon.identity.oauth2.token.handlers.grant.AuthorizationGrantHandler;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the token endpoint hot path of each grant type, for opaque and JWT access tokens. Each invocation runs the
+ * grant handler the same way {@link AccessTokenIssuer} does once the client is authenticated: the grant is validated,
+ * the scopes are validated and the token is issued and persisted.
+ * <p>
+ * The password grant is measured from the point the resource owner credentials are verified, as that check belongs to
+ * the user store and not to this component. Every invocation issues a new token, for a distinct user, scope or grant,
+ * so that the existing active token of a previous invocation is not simply returned.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TokenIssuanceBenchmark {
+
+    private static final String[] SCOPE = {"openid", "profile"};
+    private static final long AUTHZ_CODE_VALIDITY = TimeUnit.MINUTES.toMillis(5);
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+    @Param({OAuthConstants.GrantTypes.CLIENT_CREDENTIALS, OAuthConstants.GrantTypes.PASSWORD,
+            OAuthConstants.GrantTypes.REFRESH_TOKEN, OAuthConstants.GrantTypes.AUTHORIZATION_CODE})
+    public String grantType;
+
+    @Param({"Default", "JWT"})
+    public String tokenType;
+
+    private String clientId;
+    private String threadId;
+    private OAuthAppDO appDO;
+    private AuthorizationGrantHandler grantHandler;
+    private long counter;
+    private String refreshToken;
+    private String authorizationCode;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+
+        BenchmarkEnvironment.init();
+        BenchmarkEnvironment.startTenantFlow();
+
+        clientId = "JWT".equals(tokenType) ? BenchmarkEnvironment.JWT_CLIENT_ID :
+                BenchmarkEnvironment.DEFAULT_CLIENT_ID;
+        threadId = tokenType + "-" + grantType + "-" + THREAD_INDEX.incrementAndGet();
+        appDO = OAuth2Util.getAppInformationByClientId(clientId);
+        grantHandler = OAuthServerConfiguration.getInstance().getSupportedGrantTypes().get(grantType);
+        if (grantHandler == null) {
+            throw new IllegalStateException("Grant type: " + grantType + " is not enabled in identity.xml");
+        }
+        if (OAuthConstants.GrantTypes.REFRESH_TOKEN.equals(grantType)) {
+            refreshToken = issueWithPassword(BenchmarkEnvironment.createUser("refresh-" + threadId))
+                    .getRefreshToken();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws Exception {
+
+        if (OAuthConstants.GrantTypes.AUTHORIZATION_CODE.equals(grantType)) {
+            // Codes are single use, hence a fresh code is stored for every invocation outside the measurement.
+            authorizationCode = UUID.randomUUID().toString();
+            AuthzCodeDO authzCodeDO = new AuthzCodeDO(BenchmarkEnvironment.createUser(nextUserName()), SCOPE,
+                    new Timestamp(System.currentTimeMillis()), AUTHZ_CODE_VALIDITY,
+                    BenchmarkEnvironment.CALLBACK_URL, clientId, authorizationCode, UUID.randomUUID().toString());
+            OAuthTokenPersistenceFactory.getInstance().getAuthorizationCodeDAO()
+                    .insertAuthorizationCode(authorizationCode, clientId, BenchmarkEnvironment.CALLBACK_URL,
+                            authzCodeDO);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+
+        BenchmarkEnvironment.endTenantFlow();
+    }
+
+    @Benchmark
+    public OAuth2AccessTokenRespDTO issueToken() throws Exception {
+
+        switch (grantType) {
+            case OAuthConstants.GrantTypes.CLIENT_CREDENTIALS:
+                return issueWithClientCredentials();
+            case OAuthConstants.GrantTypes.PASSWORD:
+                return issueWithPassword(BenchmarkEnvironment.createUser(nextUserName()));
+            case OAuthConstants.GrantTypes.REFRESH_TOKEN:
+                return issueWithRefreshToken();
+            default:
+                return issueWithAuthorizationCode();
+        }
+    }
+
+    private OAuth2AccessTokenRespDTO issueWithClientCredentials() throws IdentityOAuth2Exception {
+
+        // A distinct scope per invocation, as the token of an application is otherwise reused until it expires.
+        OAuthTokenReqMessageContext tokReqMsgCtx = createContext(new String[]{"scope-" + threadId + "-" + counter++});
+        AuthenticatedUser appOwner = new AuthenticatedUser(appDO.getAppOwner());
+        appOwner.setUserId(BenchmarkEnvironment.createUser(appOwner.getUserName()).getUserId());
+        tokReqMsgCtx.setAuthorizedUser(appOwner);
+        tokReqMsgCtx.addProperty(OAuthConstants.UserType.USER_TYPE, OAuthConstants.UserType.APPLICATION);
+        return validateAndIssue(tokReqMsgCtx);
+    }
+
+    private OAuth2AccessTokenRespDTO issueWithPassword(AuthenticatedUser user) throws IdentityOAuth2Exception {
+
+        OAuthTokenReqMessageContext tokReqMsgCtx = createContext(SCOPE);
+        tokReqMsgCtx.getOauth2AccessTokenReqDTO().setResourceOwnerUsername(user.getUserName());
+        tokReqMsgCtx.addProperty(OAuthConstants.UserType.USER_TYPE, OAuthConstants.UserType.APPLICATION_USER);
+        // State the password grant handler leaves behind once the user store has verified the credentials.
+        tokReqMsgCtx.setAuthorizedUser(user);
+        tokReqMsgCtx.setScope(SCOPE);
+        AuthorizationGrantHandler handler = OAuthServerConfiguration.getInstance().getSupportedGrantTypes()
+                .get(OAuthConstants.GrantTypes.PASSWORD);
+        if (!handler.validateScope(tokReqMsgCtx)) {
+            throw new IllegalStateException("Scope validation failed for the password grant");
+        }
+        return handler.issue(tokReqMsgCtx);
+    }
+
+    private OAuth2AccessTokenRespDTO issueWithRefreshToken() throws IdentityOAuth2Exception {
+
+        OAuthTokenReqMessageContext tokReqMsgCtx = createContext(SCOPE);
+        tokReqMsgCtx.getOauth2AccessTokenReqDTO().setRefreshToken(refreshToken);
+        tokReqMsgCtx.addProperty(OAuthConstants.UserType.USER_TYPE, OAuthConstants.UserType.APPLICATION_USER);
+        OAuth2AccessTokenRespDTO response = validateAndIssue(tokReqMsgCtx);
+        // Refresh tokens are rotated by default, hence the chain continues with the newly issued refresh token.
+        if (response.getRefreshToken() != null) {
+            refreshToken = response.getRefreshToken();
+        }
+        return response;
+    }
+
+    private OAuth2AccessTokenRespDTO issueWithAuthorizationCode() throws IdentityOAuth2Exception {
+
+        OAuthTokenReqMessageContext tokReqMsgCtx = createContext(SCOPE);
+        tokReqMsgCtx.getOauth2AccessTokenReqDTO().setAuthorizationCode(authorizationCode);
+        tokReqMsgCtx.getOauth2AccessTokenReqDTO().setCallbackURI(BenchmarkEnvironment.CALLBACK_URL);
+        tokReqMsgCtx.addProperty(OAuthConstants.UserType.USER_TYPE, OAuthConstants.UserType.APPLICATION_USER);
+        return validateAndIssue(tokReqMsgCtx);
+    }
+
+    private OAuth2AccessTokenRespDTO validateAndIssue(OAuthTokenReqMessageContext tokReqMsgCtx)
+            throws IdentityOAuth2Exception {
+
+        if (!grantHandler.validateGrant(tokReqMsgCtx)) {
+            throw new IllegalStateException("Grant validation failed for grant type: " + grantType);
+        }
+        if (!grantHandler.validateScope(tokReqMsgCtx)) {
+            throw new IllegalStateException("Scope validation failed for grant type: " + grantType);
+        }
+        return grantHandler.issue(tokReqMsgCtx);
+    }
+
+    private OAuthTokenReqMessageContext createContext(String[] scope) {
+
+        OAuth2AccessTokenReqDTO tokenReqDTO = new OAuth2AccessTokenReqDTO();
+        tokenReqDTO.setClientId(clientId);
+        tokenReqDTO.setClientSecret(appDO.getOauthConsumerSecret());
+        tokenReqDTO.setGrantType(grantType);
+        tokenReqDTO.setScope(scope);
+        tokenReqDTO.setTenantDomain(appDO.getAppOwner().getTenantDomain());
+
+        OAuthTokenReqMessageContext tokReqMsgCtx = new OAuthTokenReqMessageContext(tokenReqDTO);
+        tokReqMsgCtx.addProperty(AccessTokenIssuer.OAUTH_APP_DO, appDO);
+        return tokReqMsgCtx;
+    }
+
+    private String nextUserName() {
+
+        return "user-" + threadId + "-" + counter++;
+    }
+}
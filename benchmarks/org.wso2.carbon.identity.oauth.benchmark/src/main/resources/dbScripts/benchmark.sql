@@ -0,0 +1,170 @@
+CREATE TABLE IF NOT EXISTS IDN_OAUTH_CONSUMER_APPS (
+            ID INTEGER NOT NULL AUTO_INCREMENT,
+            CONSUMER_KEY VARCHAR (255),
+            CONSUMER_SECRET VARCHAR (512),
+            USERNAME VARCHAR (255),
+            TENANT_ID INTEGER DEFAULT 0,
+            USER_DOMAIN VARCHAR(50),
+            APP_NAME VARCHAR (255),
+            OAUTH_VERSION VARCHAR (128),
+            CALLBACK_URL VARCHAR (1024),
+            GRANT_TYPES VARCHAR (1024),
+            PKCE_MANDATORY CHAR(1) DEFAULT '0',
+            PKCE_SUPPORT_PLAIN CHAR(1) DEFAULT '0',
+            APP_STATE VARCHAR (25) DEFAULT 'ACTIVE',
+            USER_ACCESS_TOKEN_EXPIRE_TIME BIGINT DEFAULT 3600000,
+            APP_ACCESS_TOKEN_EXPIRE_TIME BIGINT DEFAULT 3600000,
+            REFRESH_TOKEN_EXPIRE_TIME BIGINT DEFAULT 84600000,
+            ID_TOKEN_EXPIRE_TIME BIGINT DEFAULT 3600000,
+            BACKCHANNELLOGOUT_URL VARCHAR (1024),
+            CONSTRAINT CONSUMER_KEY_CONSTRAINT UNIQUE (CONSUMER_KEY),
+            PRIMARY KEY (ID)
+);
+
+CREATE TABLE IF NOT EXISTS IDN_OAUTH2_SCOPE_VALIDATORS (
+	APP_ID INTEGER NOT NULL,
+	SCOPE_VALIDATOR VARCHAR (128) NOT NULL,
+	PRIMARY KEY (APP_ID,SCOPE_VALIDATOR),
+	FOREIGN KEY (APP_ID) REFERENCES IDN_OAUTH_CONSUMER_APPS(ID) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS IDN_OAUTH2_ACCESS_TOKEN (
+            TOKEN_ID VARCHAR (255),
+            ACCESS_TOKEN VARCHAR (512),
+            REFRESH_TOKEN VARCHAR (512),
+            CONSUMER_KEY_ID INTEGER,
+            AUTHZ_USER VARCHAR (100),
+            TENANT_ID INTEGER,
+            USER_DOMAIN VARCHAR(50),
+            USER_TYPE VARCHAR (25),
+            GRANT_TYPE VARCHAR (50),
+            TIME_CREATED TIMESTAMP DEFAULT 0,
+            REFRESH_TOKEN_TIME_CREATED TIMESTAMP DEFAULT 0,
+            VALIDITY_PERIOD BIGINT,
+            REFRESH_TOKEN_VALIDITY_PERIOD BIGINT,
+            TOKEN_SCOPE_HASH VARCHAR (32),
+            TOKEN_STATE VARCHAR (25) DEFAULT 'ACTIVE',
+            TOKEN_STATE_ID VARCHAR (128) DEFAULT 'NONE',
+            SUBJECT_IDENTIFIER VARCHAR(255),
+            ACCESS_TOKEN_HASH VARCHAR (255),
+            REFRESH_TOKEN_HASH VARCHAR (255),
+            IDP_ID INTEGER,
+            TOKEN_BINDING_REF VARCHAR (32) DEFAULT 'NONE',
+            PRIMARY KEY (TOKEN_ID),
+            FOREIGN KEY (CONSUMER_KEY_ID) REFERENCES IDN_OAUTH_CONSUMER_APPS(ID) ON DELETE CASCADE,
+            CONSTRAINT CON_APP_KEY UNIQUE (CONSUMER_KEY_ID,AUTHZ_USER,TENANT_ID,USER_DOMAIN,USER_TYPE,TOKEN_SCOPE_HASH,
+                                           TOKEN_STATE,TOKEN_STATE_ID,IDP_ID,TOKEN_BINDING_REF)
+);
+
+CREATE TABLE IF NOT EXISTS IDN_OAUTH2_TOKEN_BINDING (
+            TOKEN_ID VARCHAR (255),
+            TOKEN_BINDING_TYPE VARCHAR (32),
+            TOKEN_BINDING_REF VARCHAR (32),
+            TOKEN_BINDING_VALUE VARCHAR (1024),
+            TENANT_ID INTEGER DEFAULT -1,
+            PRIMARY KEY (TOKEN_ID),
+            FOREIGN KEY (TOKEN_ID) REFERENCES IDN_OAUTH2_ACCESS_TOKEN(TOKEN_ID) ON DELETE CASCADE
+);
+
+CREATE INDEX IDX_AT_CK_AU ON IDN_OAUTH2_ACCESS_TOKEN(CONSUMER_KEY_ID, AUTHZ_USER, TOKEN_STATE, USER_TYPE);
+
+CREATE INDEX IDX_TC ON IDN_OAUTH2_ACCESS_TOKEN(TIME_CREATED);
+
+CREATE INDEX IDX_AT ON IDN_OAUTH2_ACCESS_TOKEN(ACCESS_TOKEN);
+
+CREATE INDEX IDX_IDN_AUTH_BIND ON IDN_OAUTH2_TOKEN_BINDING (TOKEN_BINDING_REF);
+
+
+CREATE TABLE IF NOT EXISTS IDN_OAUTH2_AUTHORIZATION_CODE (
+            CODE_ID VARCHAR (255),
+            AUTHORIZATION_CODE VARCHAR (512),
+            CONSUMER_KEY_ID INTEGER,
+            CALLBACK_URL VARCHAR (1024),
+            SCOPE VARCHAR(2048),
+            AUTHZ_USER VARCHAR (100),
+            TENANT_ID INTEGER,
+            USER_DOMAIN VARCHAR(50),
+            TIME_CREATED TIMESTAMP,
+            VALIDITY_PERIOD BIGINT,
+            STATE VARCHAR (25) DEFAULT 'ACTIVE',
+            TOKEN_ID VARCHAR(255),
+            SUBJECT_IDENTIFIER VARCHAR(255),
+            PKCE_CODE_CHALLENGE VARCHAR (255),
+            PKCE_CODE_CHALLENGE_METHOD VARCHAR(128),
+            AUTHORIZATION_CODE_HASH VARCHAR (512),
+            IDP_ID INTEGER,
+            PRIMARY KEY (CODE_ID),
+            FOREIGN KEY (CONSUMER_KEY_ID) REFERENCES IDN_OAUTH_CONSUMER_APPS(ID) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS IDN_OAUTH2_AUTHZ_CODE_SCOPE(
+           CODE_ID   VARCHAR(255),
+           SCOPE     VARCHAR(60),
+           TENANT_ID INTEGER DEFAULT -1,
+           PRIMARY KEY (CODE_ID, SCOPE)
+);
+
+CREATE INDEX IDX_AUTHORIZATION_CODE ON IDN_OAUTH2_AUTHORIZATION_CODE (AUTHORIZATION_CODE,CONSUMER_KEY_ID);
+
+CREATE TABLE IF NOT EXISTS IDN_OAUTH2_ACCESS_TOKEN_SCOPE (
+            TOKEN_ID VARCHAR (255),
+            TOKEN_SCOPE VARCHAR (60),
+            TENANT_ID INTEGER DEFAULT -1,
+            PRIMARY KEY (TOKEN_ID, TOKEN_SCOPE),
+            FOREIGN KEY (TOKEN_ID) REFERENCES IDN_OAUTH2_ACCESS_TOKEN(TOKEN_ID) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS IDN_OAUTH2_SCOPE (
+            SCOPE_ID INTEGER NOT NULL AUTO_INCREMENT,
+            NAME VARCHAR(255) NOT NULL,
+            DISPLAY_NAME VARCHAR(255) NOT NULL,
+            DESCRIPTION VARCHAR(512),
+            TENANT_ID INTEGER NOT NULL DEFAULT -1,
+            SCOPE_TYPE VARCHAR(255),
+            PRIMARY KEY (SCOPE_ID)
+);
+
+CREATE UNIQUE INDEX SCOPE_INDEX ON IDN_OAUTH2_SCOPE (NAME, TENANT_ID);
+
+CREATE TABLE IF NOT EXISTS IDN_OAUTH2_SCOPE_BINDING (
+            SCOPE_ID INTEGER NOT NULL,
+            SCOPE_BINDING VARCHAR(255),
+            BINDING_TYPE VARCHAR(255),
+            FOREIGN KEY (SCOPE_ID) REFERENCES IDN_OAUTH2_SCOPE(SCOPE_ID) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS IDN_OAUTH2_RESOURCE_SCOPE (
+            RESOURCE_PATH VARCHAR(255) NOT NULL,
+            SCOPE_ID INTEGER NOT NULL,
+            TENANT_ID INTEGER DEFAULT -1,
+            PRIMARY KEY (RESOURCE_PATH),
+            FOREIGN KEY (SCOPE_ID) REFERENCES IDN_OAUTH2_SCOPE (SCOPE_ID) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS  IDN_OIDC_PROPERTY (
+            ID INTEGER NOT NULL AUTO_INCREMENT,
+            TENANT_ID  INTEGER,
+            CONSUMER_KEY  VARCHAR(255) ,
+            PROPERTY_KEY  VARCHAR(255) NOT NULL,
+            PROPERTY_VALUE  VARCHAR(2047) ,
+            PRIMARY KEY (ID),
+            FOREIGN KEY (CONSUMER_KEY) REFERENCES IDN_OAUTH_CONSUMER_APPS(CONSUMER_KEY) ON DELETE CASCADE
+);
+
+INSERT INTO IDN_OAUTH_CONSUMER_APPS (CONSUMER_KEY, CONSUMER_SECRET, USERNAME, TENANT_ID, USER_DOMAIN, APP_NAME,
+            OAUTH_VERSION, CALLBACK_URL, GRANT_TYPES, APP_STATE) VALUES
+            ('benchmark-default-client', 'benchmark-default-secret', 'admin', -1234, 'PRIMARY', 'benchmark-default',
+            'OAuth-2.0', 'https://localhost/callback', 'authorization_code password refresh_token client_credentials',
+            'ACTIVE');
+
+INSERT INTO IDN_OAUTH_CONSUMER_APPS (CONSUMER_KEY, CONSUMER_SECRET, USERNAME, TENANT_ID, USER_DOMAIN, APP_NAME,
+            OAUTH_VERSION, CALLBACK_URL, GRANT_TYPES, APP_STATE) VALUES
+            ('benchmark-jwt-client', 'benchmark-jwt-secret', 'admin', -1234, 'PRIMARY', 'benchmark-jwt',
+            'OAuth-2.0', 'https://localhost/callback', 'authorization_code password refresh_token client_credentials',
+            'ACTIVE');
+
+INSERT INTO IDN_OIDC_PROPERTY (TENANT_ID, CONSUMER_KEY, PROPERTY_KEY, PROPERTY_VALUE) VALUES
+            (-1234, 'benchmark-default-client', 'tokenType', 'Default');
+
+INSERT INTO IDN_OIDC_PROPERTY (TENANT_ID, CONSUMER_KEY, PROPERTY_KEY, PROPERTY_VALUE) VALUES
+            (-1234, 'benchmark-jwt-client', 'tokenType', 'JWT');
@@ -33,6 +33,7 @@ import org.wso2.carbon.identity.oauth2.model.RequestParameter;
 import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
 import org.wso2.carbon.identity.oauth2.token.handlers.grant.AbstractAuthorizationGrantHandler;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.oauth2.util.PollingStateStore;
 
 import java.sql.Timestamp;
 import java.util.Calendar;
@@ -60,6 +61,27 @@ public class CibaGrantHandler extends AbstractAuthorizationGrantHandler {
 
     private static Log log = LogFactory.getLog(CibaGrantHandler.class);
 
+    // Poll times and polling intervals are written behind, only the status transitions of a request are persisted
+    // synchronously.
+    private static final PollingStateStore pollingStateStore = new PollingStateStore("CIBA",
+            new PollingStateStore.PollingStateWriter() {
+
+                @Override
+                public void writeLastPollTime(String cibaAuthCodeKey, Timestamp lastPollTime)
+                        throws CibaCoreException {
+
+                    CibaDAOFactory.getInstance().getCibaAuthMgtDAO().updateLastPollingTime(cibaAuthCodeKey,
+                            lastPollTime);
+                }
+
+                @Override
+                public void writeInterval(String cibaAuthCodeKey, long interval) throws CibaCoreException {
+
+                    CibaDAOFactory.getInstance().getCibaAuthMgtDAO().updatePollingInterval(cibaAuthCodeKey,
+                            interval);
+                }
+            });
+
     @Override
     public OAuth2AccessTokenRespDTO issue(OAuthTokenReqMessageContext tokReqMsgCtx) throws IdentityOAuth2Exception {
 
@@ -70,6 +92,7 @@ public class CibaGrantHandler extends AbstractAuthorizationGrantHandler {
         try {
             CibaDAOFactory.getInstance().getCibaAuthMgtDAO()
                     .updateStatus(cibaAuthCodeDO.getCibaAuthCodeKey(), AuthReqStatus.TOKEN_ISSUED);
+            pollingStateStore.remove(cibaAuthCodeDO.getCibaAuthCodeKey());
             if (log.isDebugEnabled()) {
                 log.debug("Successfully updated the status of authentication request made by client:" +
                         tokReqMsgCtx.getOauth2AccessTokenReqDTO().getClientId());
@@ -184,15 +207,15 @@ public class CibaGrantHandler extends AbstractAuthorizationGrantHandler {
     private void validateAuthReqId(CibaAuthCodeDO cibaAuthCodeDO) throws IdentityOAuth2Exception, CibaCoreException {
 
         // Check whether auth_req_id has expired or not.
-        long expiresIn = cibaAuthCodeDO.getExpiresIn() * SEC_TO_MILLISEC_FACTOR;
         long currentTimeInMillis = Calendar.getInstance(TimeZone.getTimeZone(CibaConstants.UTC)).getTimeInMillis();
-        long scheduledExpiryTime = cibaAuthCodeDO.getIssuedTime().getTime() + expiresIn;
+        long scheduledExpiryTime = getExpiryTime(cibaAuthCodeDO);
         if (currentTimeInMillis > scheduledExpiryTime) {
             if (log.isDebugEnabled()) {
                 log.debug("CIBA auth_req_id is in expired state.Token Request Denied.");
             }
             CibaDAOFactory.getInstance().getCibaAuthMgtDAO().updateStatus(cibaAuthCodeDO.getCibaAuthCodeKey(),
                     AuthReqStatus.EXPIRED);
+            pollingStateStore.remove(cibaAuthCodeDO.getCibaAuthCodeKey());
             throw new IdentityOAuth2Exception(EXPIRED_AUTH_REQ_ID, "Token expired");
         }
     }
@@ -207,19 +230,21 @@ public class CibaGrantHandler extends AbstractAuthorizationGrantHandler {
     }
 
     /**
-     * Validates the polling frequency of token request.
+     * Validates the polling frequency of token request. The poll time and the interval which are not yet written
+     * to the database are taken into account.
      *
      * @param cibaAuthCodeDO JSON auth_req_id from the tokenRequest.
-     * @throws IdentityOAuth2Exception,CibaCoreException Identity Exception related to OAuth2.
+     * @throws IdentityOAuth2Exception Identity Exception related to OAuth2.
      */
     private void validatePollingFrequency(CibaAuthCodeDO cibaAuthCodeDO)
-            throws IdentityOAuth2Exception, CibaCoreException {
+            throws IdentityOAuth2Exception {
 
         // Check the frequency of polling and do the needful.
         long currentTimeInMillis = Calendar.getInstance(TimeZone.getTimeZone(CibaConstants.UTC)).getTimeInMillis();
-        long lastPollTimeInMillis = cibaAuthCodeDO.getLastPolledTime().getTime();
-        long intervalInSec = cibaAuthCodeDO.getInterval();
         String cibaAuthCodeID = cibaAuthCodeDO.getCibaAuthCodeKey();
+        long lastPollTimeInMillis = pollingStateStore.getLastPollTime(cibaAuthCodeID,
+                cibaAuthCodeDO.getLastPolledTime()).getTime();
+        long intervalInSec = pollingStateStore.getInterval(cibaAuthCodeID, cibaAuthCodeDO.getInterval());
         if (currentTimeInMillis < lastPollTimeInMillis + intervalInSec * SEC_TO_MILLISEC_FACTOR) {
             long newInterval = intervalInSec + CibaConstants.INTERVAL_INCREMENT_VALUE_IN_SEC;
             if (log.isDebugEnabled()) {
@@ -227,7 +252,7 @@ public class CibaGrantHandler extends AbstractAuthorizationGrantHandler {
                         "cibaAuthCodeDOKey : " + cibaAuthCodeDO.getCibaAuthCodeKey() + ". Updated the Polling " +
                         "frequency on the table.");
             }
-            CibaDAOFactory.getInstance().getCibaAuthMgtDAO().updatePollingInterval(cibaAuthCodeID, newInterval);
+            pollingStateStore.updateInterval(cibaAuthCodeID, newInterval, getExpiryTime(cibaAuthCodeDO));
             throw new IdentityOAuth2Exception(SLOW_DOWN, "Slow down");
         }
     }
@@ -236,14 +261,25 @@ public class CibaGrantHandler extends AbstractAuthorizationGrantHandler {
      * Updates the last polled time..
      *
      * @param cibaAuthCodeDO JSON auth_req_id from the tokenRequest.
-     * @throws CibaCoreException CIBA core component exception.
+     * @throws IdentityOAuth2Exception If the poll time could not be persisted.
      */
-    private void updateLastPolledTime(CibaAuthCodeDO cibaAuthCodeDO) throws CibaCoreException {
+    private void updateLastPolledTime(CibaAuthCodeDO cibaAuthCodeDO) throws IdentityOAuth2Exception {
 
         long currentTimeInMillis = Calendar.getInstance(TimeZone.getTimeZone(CibaConstants.UTC)).getTimeInMillis();
         Timestamp latestPollingTime = new Timestamp(currentTimeInMillis);
-        CibaDAOFactory.getInstance().getCibaAuthMgtDAO().updateLastPollingTime(cibaAuthCodeDO.getCibaAuthCodeKey(),
-                latestPollingTime);
+        pollingStateStore.updateLastPollTime(cibaAuthCodeDO.getCibaAuthCodeKey(), latestPollingTime,
+                getExpiryTime(cibaAuthCodeDO));
+    }
+
+    /**
+     * Get the time at which the auth_req_id expires.
+     *
+     * @param cibaAuthCodeDO DO that accumulates information regarding authentication and token requests.
+     * @return Expiry time in milliseconds.
+     */
+    private long getExpiryTime(CibaAuthCodeDO cibaAuthCodeDO) {
+
+        return cibaAuthCodeDO.getIssuedTime().getTime() + cibaAuthCodeDO.getExpiresIn() * SEC_TO_MILLISEC_FACTOR;
     }
 
     /**
@@ -23,6 +23,7 @@ import org.apache.commons.logging.LogFactory;
 import org.json.JSONException;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.identity.core.handler.AbstractIdentityHandler;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.IntrospectionDataProvider;
 import org.wso2.carbon.identity.oauth2.OAuth2TokenValidationService;
@@ -30,6 +31,7 @@ import org.wso2.carbon.identity.oauth2.dto.OAuth2IntrospectionResponseDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationRequestDTO;
 
 import java.util.List;
+import java.util.StringJoiner;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.FormParam;
@@ -84,15 +86,113 @@ public class OAuth2IntrospectionEndpoint {
                     entity("{\"error\": \"" + INVALID_INPUT + "\"}").build();
         }
 
+        String[] claimsUris = buildClaimUris(requiredClaims);
+
+        // validate the access token against the OAuth2TokenValidationService OSGi service.
+        introspectionRequest = buildIntrospectionRequest(token, tokenTypeHint, claimsUris);
+
+        OAuth2TokenValidationService tokenService = (OAuth2TokenValidationService) PrivilegedCarbonContext
+                .getThreadLocalCarbonContext().getOSGiService(OAuth2TokenValidationService.class);
+
+        introspectionResponse = tokenService.buildIntrospectionResponse(introspectionRequest);
+
+        try {
+            return Response.ok(buildIntrospectionResponseBody(introspectionRequest, introspectionResponse,
+                    requiredClaims), MediaType.APPLICATION_JSON).status(Response.Status.OK).build();
+        } catch (IdentityOAuth2Exception e) {
+            log.error("Error occurred while processing additional token introspection data.", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Error occurred while building the introspection response.\"}")
+                    .build();
+        } catch (JSONException e) {
+            log.error("Error occurred while building the json response.", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Error occurred while building the json response.\"}").build();
+        }
+    }
+
+    /**
+     * Batch token introspection endpoint. The tokens are introspected as by the single token introspection endpoint
+     * and a JSON array of the introspection responses is returned, in the order of the tokens in the request.
+     *
+     * @param tokens         access tokens or refresh tokens, each sent as a "token" parameter
+     * @param tokenTypeHint  hint for the type of the tokens submitted for introspection
+     * @param requiredClaims comma separated list of claims to be returned in JWT
+     * @return
+     */
+    @POST
+    @Path("/batch")
+    public Response introspectBatch(@FormParam("token") List<String> tokens,
+                                    @FormParam("token_type_hint") String tokenTypeHint,
+                                    @FormParam("required_claims") String requiredClaims) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Token type hint: " + tokenTypeHint + ", number of tokens: " +
+                    (tokens == null ? 0 : tokens.size()));
+        }
+
+        if (tokens == null || tokens.isEmpty() || tokens.stream().anyMatch(StringUtils::isBlank)) {
+            OAuth2IntrospectionResponseDTO introspectionResponse = new OAuth2IntrospectionResponseDTO();
+            introspectionResponse.setError(INVALID_INPUT);
+            triggerOnIntrospectionExceptionListeners(null, introspectionResponse);
+            return Response.status(Response.Status.BAD_REQUEST).
+                    entity("{\"error\": \"" + INVALID_INPUT + "\"}").build();
+        }
+
+        String[] claimsUris = buildClaimUris(requiredClaims);
+        OAuth2TokenValidationRequestDTO[] introspectionRequests = new OAuth2TokenValidationRequestDTO[tokens.size()];
+        for (int i = 0; i < introspectionRequests.length; i++) {
+            introspectionRequests[i] = buildIntrospectionRequest(tokens.get(i), tokenTypeHint, claimsUris);
+        }
+
+        OAuth2TokenValidationService tokenService = (OAuth2TokenValidationService) PrivilegedCarbonContext
+                .getThreadLocalCarbonContext().getOSGiService(OAuth2TokenValidationService.class);
+
+        OAuth2IntrospectionResponseDTO[] introspectionResponses;
+        try {
+            introspectionResponses = tokenService.buildIntrospectionResponses(introspectionRequests);
+        } catch (IdentityOAuth2ClientException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Invalid batch introspection request: " + e.getMessage());
+            }
+            return Response.status(Response.Status.BAD_REQUEST).
+                    entity("{\"error\": \"" + INVALID_INPUT + "\"}").build();
+        }
+
+        StringJoiner responseBody = new StringJoiner(",", "[", "]");
+        try {
+            for (int i = 0; i < introspectionResponses.length; i++) {
+                responseBody.add(buildIntrospectionResponseBody(introspectionRequests[i], introspectionResponses[i],
+                        requiredClaims));
+            }
+        } catch (IdentityOAuth2Exception e) {
+            log.error("Error occurred while processing additional token introspection data.", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Error occurred while building the introspection response.\"}")
+                    .build();
+        } catch (JSONException e) {
+            log.error("Error occurred while building the json response.", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Error occurred while building the json response.\"}").build();
+        }
+        return Response.ok(responseBody.toString(), MediaType.APPLICATION_JSON).status(Response.Status.OK).build();
+    }
+
+    private String[] buildClaimUris(String requiredClaims) {
+
         String[] claimsUris = null;
         if (StringUtils.isNotEmpty(requiredClaims)) {
             claimsUris = requiredClaims.split(",");
         } else if (requiredClaims != null && requiredClaims.length() == 0) {
             claimsUris = new String[0];
         }
+        return claimsUris;
+    }
 
-        // validate the access token against the OAuth2TokenValidationService OSGi service.
-        introspectionRequest = new OAuth2TokenValidationRequestDTO();
+    private OAuth2TokenValidationRequestDTO buildIntrospectionRequest(String token, String tokenTypeHint,
+                                                                      String[] claimsUris) {
+
+        OAuth2TokenValidationRequestDTO introspectionRequest = new OAuth2TokenValidationRequestDTO();
         OAuth2TokenValidationRequestDTO.OAuth2AccessToken oAuth2Token = introspectionRequest.new OAuth2AccessToken();
 
         if (tokenTypeHint == null || StringUtils.equals(tokenTypeHint, ACCESS_TOKEN_HINT)) {
@@ -104,17 +204,29 @@ public class OAuth2IntrospectionEndpoint {
         oAuth2Token.setIdentifier(token);
         introspectionRequest.setAccessToken(oAuth2Token);
         introspectionRequest.setRequiredClaimURIs(claimsUris);
+        return introspectionRequest;
+    }
 
-        OAuth2TokenValidationService tokenService = (OAuth2TokenValidationService) PrivilegedCarbonContext
-                .getThreadLocalCarbonContext().getOSGiService(OAuth2TokenValidationService.class);
-
-        introspectionResponse = tokenService.buildIntrospectionResponse(introspectionRequest);
+    /**
+     * Build the JSON introspection response of a token.
+     *
+     * @param introspectionRequest  introspection request of the token
+     * @param introspectionResponse introspection response returned by the token validation service
+     * @param requiredClaims        comma separated list of claims to be returned in JWT
+     * @return JSON introspection response
+     * @throws IdentityOAuth2Exception if an introspection data provider fails
+     * @throws JSONException           if the JSON response could not be built
+     */
+    private String buildIntrospectionResponseBody(OAuth2TokenValidationRequestDTO introspectionRequest,
+                                                  OAuth2IntrospectionResponseDTO introspectionResponse,
+                                                  String requiredClaims)
+            throws IdentityOAuth2Exception, JSONException {
 
         if (introspectionResponse.getError() != null) {
             if (log.isDebugEnabled()) {
                 log.debug("The error why token is made inactive: " + introspectionResponse.getError());
             }
-            return Response.status(Response.Status.OK).entity("{\"active\":false}").build();
+            return "{\"active\":false}";
         }
 
         IntrospectionResponseBuilder respBuilder = new IntrospectionResponseBuilder()
@@ -166,27 +278,12 @@ public class OAuth2IntrospectionEndpoint {
                 if (log.isDebugEnabled()) {
                     log.debug("Executing introspection data provider: " + dataProvider.getClass().getName());
                 }
-                try {
-                    respBuilder.setAdditionalData(
-                            (((IntrospectionDataProvider) dataProvider).getIntrospectionData(
-                                    introspectionRequest, introspectionResponse)));
-                } catch (IdentityOAuth2Exception e) {
-                    log.error("Error occurred while processing additional token introspection data.", e);
-
-                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity("{\"error\": \"Error occurred while building the introspection " +
-                                    "response.\"}")
-                            .build();
-                }
+                respBuilder.setAdditionalData(
+                        (((IntrospectionDataProvider) dataProvider).getIntrospectionData(
+                                introspectionRequest, introspectionResponse)));
             }
         }
 
-        try {
-            return Response.ok(respBuilder.build(), MediaType.APPLICATION_JSON).status(Response.Status.OK).build();
-        } catch (JSONException e) {
-            log.error("Error occurred while building the json response.", e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("{\"error\": \"Error occurred while building the json response.\"}").build();
-        }
+        return respBuilder.build();
     }
 }
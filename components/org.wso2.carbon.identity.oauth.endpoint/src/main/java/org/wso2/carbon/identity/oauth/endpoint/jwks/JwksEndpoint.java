@@ -33,6 +33,8 @@ import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.util.ETagResponseCache;
+import org.wso2.carbon.identity.oauth2.util.ETagResponseCache.ETagResponse;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.utils.CarbonUtils;
 
@@ -49,9 +51,16 @@ import java.util.Map;
 
 import javax.jws.WebService;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.HTTP_RESP_HEADER_CACHE_CONTROL;
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.HTTP_RESP_HEADER_VAL_CACHE_CONTROL_NO_STORE;
 
 /**
  * Rest implementation for JWKS endpoint.
@@ -64,46 +73,69 @@ public class JwksEndpoint {
     private static final String SECURITY_KEY_STORE_LOCATION = "Security.KeyStore.Location";
     private static final String SECURITY_KEY_STORE_PW = "Security.KeyStore.Password";
     private static final String KEYS = "keys";
+    private static final String CACHE_CONTROL_MAX_AGE = "max-age=";
 
     @GET
     @Path(value = "/jwks")
     @Produces(MediaType.APPLICATION_JSON)
-    public String jwks() {
+    public Response jwks(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
 
         String tenantDomain = getTenantDomain();
-        String keystorePath = CarbonUtils.getServerConfiguration().getFirstProperty(SECURITY_KEY_STORE_LOCATION);
+        try {
+            int tenantId = MultitenantConstants.SUPER_TENANT_DOMAIN_NAME.equalsIgnoreCase(tenantDomain) ?
+                    MultitenantConstants.SUPER_TENANT_ID : IdentityTenantUtil.getTenantId(tenantDomain);
+            ETagResponseCache<Integer> responseCache = ETagResponseCache.getJWKSResponseCache();
+            ETagResponse jwksResponse = responseCache.get(tenantId);
+            if (jwksResponse == null) {
+                jwksResponse = responseCache.put(tenantId, buildResponse(getCertificates(tenantDomain, tenantId)));
+            } else if (log.isDebugEnabled()) {
+                log.debug("Serving the cached JWKS response of tenant domain: " + tenantDomain);
+            }
+
+            String cacheControl = CACHE_CONTROL_MAX_AGE + responseCache.getMaxAgeSeconds();
+            EntityTag entityTag = new EntityTag(jwksResponse.getETag());
+            if (jwksResponse.matches(ifNoneMatch)) {
+                return Response.notModified(entityTag).header(HTTP_RESP_HEADER_CACHE_CONTROL, cacheControl).build();
+            }
+            return Response.ok(jwksResponse.getBody(), MediaType.APPLICATION_JSON).tag(entityTag)
+                    .header(HTTP_RESP_HEADER_CACHE_CONTROL, cacheControl).build();
+        } catch (Exception e) {
+            String errorMessage = "Error while generating the keyset for tenant domain: " + tenantDomain;
+            return Response.ok(logAndReturnError(errorMessage, e))
+                    .header(HTTP_RESP_HEADER_CACHE_CONTROL, HTTP_RESP_HEADER_VAL_CACHE_CONTROL_NO_STORE).build();
+        }
+    }
+
+    private Map<String, Certificate> getCertificates(String tenantDomain, int tenantId) throws Exception {
 
-        try (FileInputStream file = new FileInputStream(keystorePath)) {
-            final KeyStore keystore;
-            Map<String, Certificate> certificatesWithAliases = new HashMap<>();
-            if (MultitenantConstants.SUPER_TENANT_DOMAIN_NAME.equalsIgnoreCase(tenantDomain)) {
+        final KeyStore keystore;
+        Map<String, Certificate> certificatesWithAliases = new HashMap<>();
+        if (MultitenantConstants.SUPER_TENANT_DOMAIN_NAME.equalsIgnoreCase(tenantDomain)) {
+            String keystorePath = CarbonUtils.getServerConfiguration().getFirstProperty(SECURITY_KEY_STORE_LOCATION);
+            try (FileInputStream file = new FileInputStream(keystorePath)) {
                 keystore = KeyStore.getInstance(KeyStore.getDefaultType());
                 String password = CarbonUtils.getServerConfiguration().getFirstProperty(SECURITY_KEY_STORE_PW);
                 keystore.load(file, password.toCharArray());
-            } else {
-                try {
-                    int tenantId = IdentityTenantUtil.getTenantId(tenantDomain);
-                    IdentityTenantUtil.initializeRegistry(tenantId);
-                    FrameworkUtils.startTenantFlow(tenantDomain);
-                    KeyStoreManager keyStoreManager = KeyStoreManager.getInstance(tenantId);
-                    keystore = keyStoreManager.getKeyStore(generateKSNameFromDomainName(tenantDomain));
-                } finally {
-                    FrameworkUtils.endTenantFlow();
-                }
             }
-            Enumeration enumeration = keystore.aliases();
-            while (enumeration.hasMoreElements()) {
-                String alias = (String) enumeration.nextElement();
-                if (keystore.isKeyEntry(alias)) {
-                    Certificate cert = keystore.getCertificate(alias);
-                    certificatesWithAliases.put(alias, cert);
-                }
+        } else {
+            try {
+                IdentityTenantUtil.initializeRegistry(tenantId);
+                FrameworkUtils.startTenantFlow(tenantDomain);
+                KeyStoreManager keyStoreManager = KeyStoreManager.getInstance(tenantId);
+                keystore = keyStoreManager.getKeyStore(generateKSNameFromDomainName(tenantDomain));
+            } finally {
+                FrameworkUtils.endTenantFlow();
+            }
+        }
+        Enumeration enumeration = keystore.aliases();
+        while (enumeration.hasMoreElements()) {
+            String alias = (String) enumeration.nextElement();
+            if (keystore.isKeyEntry(alias)) {
+                Certificate cert = keystore.getCertificate(alias);
+                certificatesWithAliases.put(alias, cert);
             }
-            return buildResponse(certificatesWithAliases);
-        } catch (Exception e) {
-            String errorMessage = "Error while generating the keyset for tenant domain: " + tenantDomain;
-            return logAndReturnError(errorMessage, e);
         }
+        return certificatesWithAliases;
     }
 
     private String buildResponse(Map<String, Certificate> certificates)
@@ -30,6 +30,8 @@ import org.wso2.carbon.identity.discovery.OIDCProcessor;
 import org.wso2.carbon.identity.discovery.builders.OIDProviderResponseBuilder;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.endpoint.util.EndpointUtil;
+import org.wso2.carbon.identity.oauth2.util.ETagResponseCache;
+import org.wso2.carbon.identity.oauth2.util.ETagResponseCache.ETagResponse;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -38,8 +40,12 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.HTTP_RESP_HEADER_CACHE_CONTROL;
+
 /**
  * Rest implementation of OIDC discovery endpoint.
  */
@@ -49,6 +55,7 @@ public class OIDCDiscoveryEndpoint {
     private static final Log log = LogFactory.getLog(OIDCDiscoveryEndpoint.class);
     private static final String DISCOVERY_ENDPOINT_PATH_COMPONENT_VALUE_TOKEN = "token";
     private static final String DISCOVERY_ENDPOINT_PATH_COMPONENT_VALUE_OIDCDISCOVERY = "oidcdiscovery";
+    private static final String CACHE_CONTROL_MAX_AGE = "max-age=";
     private OIDProviderResponseBuilder oidProviderResponseBuilder;
 
     @GET
@@ -96,21 +103,39 @@ public class OIDCDiscoveryEndpoint {
 
     private Response getResponse(HttpServletRequest request, String tenant) {
 
-        String response;
-        OIDCProcessor processor = EndpointUtil.getOIDCService();
-        try {
-            OIDProviderResponseBuilder responseBuilder = getOidProviderResponseBuilder();
-            response = responseBuilder.getOIDProviderConfigString(processor.getResponse(request, tenant));
-        } catch (OIDCDiscoveryEndPointException e) {
-            Response.ResponseBuilder errorResponse = Response.status(processor.handleError(e));
-            return errorResponse.entity(e.getMessage()).build();
-        } catch (ServerConfigurationException e) {
-            log.error("Server Configuration error occurred.", e);
-            Response.ResponseBuilder errorResponse = Response.status(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            return errorResponse.entity("Error in reading configuration.").build();
+        ETagResponseCache<String> responseCache = ETagResponseCache.getDiscoveryResponseCache();
+        ETagResponse discoveryResponse = responseCache.get(tenant);
+        if (discoveryResponse == null) {
+            String response;
+            OIDCProcessor processor = EndpointUtil.getOIDCService();
+            try {
+                OIDProviderResponseBuilder responseBuilder = getOidProviderResponseBuilder();
+                response = responseBuilder.getOIDProviderConfigString(processor.getResponse(request, tenant));
+            } catch (OIDCDiscoveryEndPointException e) {
+                Response.ResponseBuilder errorResponse = Response.status(processor.handleError(e));
+                return errorResponse.entity(e.getMessage()).build();
+            } catch (ServerConfigurationException e) {
+                log.error("Server Configuration error occurred.", e);
+                Response.ResponseBuilder errorResponse = Response.status(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return errorResponse.entity("Error in reading configuration.").build();
+            }
+            if (!responseCache.isEnabled()) {
+                Response.ResponseBuilder responseBuilder = Response.status(HttpServletResponse.SC_OK);
+                return responseBuilder.entity(response).build();
+            }
+            discoveryResponse = responseCache.put(tenant, response);
+        } else if (log.isDebugEnabled()) {
+            log.debug("Serving the cached discovery response of tenant domain: " + tenant);
+        }
+
+        String cacheControl = CACHE_CONTROL_MAX_AGE + responseCache.getMaxAgeSeconds();
+        EntityTag entityTag = new EntityTag(discoveryResponse.getETag());
+        if (discoveryResponse.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            return Response.notModified(entityTag).header(HTTP_RESP_HEADER_CACHE_CONTROL, cacheControl).build();
         }
         Response.ResponseBuilder responseBuilder = Response.status(HttpServletResponse.SC_OK);
-        return responseBuilder.entity(response).build();
+        return responseBuilder.entity(discoveryResponse.getDocument()).tag(entityTag)
+                .header(HTTP_RESP_HEADER_CACHE_CONTROL, cacheControl).build();
     }
 
     @Autowired
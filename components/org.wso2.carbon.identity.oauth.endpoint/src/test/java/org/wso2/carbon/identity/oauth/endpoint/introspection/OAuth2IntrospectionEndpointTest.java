@@ -11,12 +11,17 @@ import org.testng.annotations.ObjectFactory;
 import org.testng.annotations.Test;
 import org.wso2.carbon.base.CarbonBaseConstants;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
 import org.wso2.carbon.identity.oauth2.OAuth2TokenValidationService;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2IntrospectionResponseDTO;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationRequestDTO;
 import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
 
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 import javax.ws.rs.core.Response;
 
@@ -86,6 +91,55 @@ public class OAuth2IntrospectionEndpointTest extends PowerMockIdentityBaseTest {
 
     }
 
+    @Test
+    public void testBatchIntrospectionKeepsRequestOrder() throws Exception {
+
+        OAuth2TokenValidationService mockedTokenService = mock(OAuth2TokenValidationService.class);
+        mockStatic(PrivilegedCarbonContext.class);
+        when(PrivilegedCarbonContext.getThreadLocalCarbonContext()).thenReturn(mockedPrivilegedCarbonContext);
+        when(mockedPrivilegedCarbonContext.getOSGiService(any())).thenReturn(mockedTokenService);
+
+        OAuth2IntrospectionResponseDTO activeResponse = new OAuth2IntrospectionResponseDTO();
+        activeResponse.setActive(true);
+        activeResponse.setClientId("client1");
+        activeResponse.setTokenType("Bearer");
+        OAuth2IntrospectionResponseDTO inactiveResponse = new OAuth2IntrospectionResponseDTO();
+        inactiveResponse.setActive(false);
+        inactiveResponse.setError("Invalid token");
+        when(mockedTokenService.buildIntrospectionResponses(any(OAuth2TokenValidationRequestDTO[].class)))
+                .thenReturn(new OAuth2IntrospectionResponseDTO[]{inactiveResponse, activeResponse});
+
+        Response response = oAuth2IntrospectionEndpoint.introspectBatch(Arrays.asList("TOKEN1", "TOKEN2"), null,
+                null);
+
+        List<HashMap<String, Object>> responses = new Gson().fromJson((String) response.getEntity(),
+                new TypeToken<List<HashMap<String, Object>>>() {
+                }.getType());
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(responses.size(), 2);
+        assertEquals(responses.get(0).get("active"), false);
+        assertEquals(responses.get(1).get("active"), true);
+        assertEquals(responses.get(1).get("client_id"), "client1");
+    }
+
+    @Test
+    public void testBatchIntrospectionRejectsInvalidInput() throws Exception {
+
+        OAuth2TokenValidationService mockedTokenService = mock(OAuth2TokenValidationService.class);
+        mockStatic(PrivilegedCarbonContext.class);
+        when(PrivilegedCarbonContext.getThreadLocalCarbonContext()).thenReturn(mockedPrivilegedCarbonContext);
+        when(mockedPrivilegedCarbonContext.getOSGiService(any())).thenReturn(mockedTokenService);
+        when(mockedTokenService.buildIntrospectionResponses(any(OAuth2TokenValidationRequestDTO[].class)))
+                .thenThrow(new IdentityOAuth2ClientException("Too many tokens"));
+
+        assertEquals(oAuth2IntrospectionEndpoint.introspectBatch(Collections.emptyList(), null, null).getStatus(),
+                Response.Status.BAD_REQUEST.getStatusCode());
+        assertEquals(oAuth2IntrospectionEndpoint.introspectBatch(Arrays.asList("TOKEN1", " "), null, null)
+                .getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+        assertEquals(oAuth2IntrospectionEndpoint.introspectBatch(Arrays.asList("TOKEN1", "TOKEN2"), null, null)
+                .getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
     @DataProvider(name = "provideTokenInfo")
     public Object[][] provideTokenInfo() {
 
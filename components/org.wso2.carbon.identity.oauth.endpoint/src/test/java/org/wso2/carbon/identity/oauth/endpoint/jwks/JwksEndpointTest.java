@@ -39,6 +39,7 @@ import org.wso2.carbon.identity.oauth.tokenprocessor.TokenPersistenceProcessor;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.keyidprovider.DefaultKeyIDProviderImpl;
+import org.wso2.carbon.identity.oauth2.util.ETagResponseCache;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
 import org.wso2.carbon.utils.CarbonUtils;
@@ -46,12 +47,15 @@ import org.wso2.carbon.utils.CarbonUtils;
 import java.io.FileInputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyStore;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.ws.rs.core.Response;
+
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
@@ -59,6 +63,7 @@ import static org.powermock.api.mockito.PowerMockito.doNothing;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -162,7 +167,9 @@ public class JwksEndpointTest extends PowerMockIdentityBaseTest {
         when(KeyStoreManager.getInstance(anyInt())).thenReturn(keyStoreManager);
         when(keyStoreManager.getKeyStore("foo-com.jks")).thenReturn(getKeyStoreFromFile("foo-com.jks", "foo.com"));
 
-        String result = jwksEndpoint.jwks();
+        ETagResponseCache.getJWKSResponseCache().clearAll();
+        Response response = jwksEndpoint.jwks(null);
+        String result = getEntityAsString(response);
 
         try {
             JSONObject jwksJson = new JSONObject(result);
@@ -172,6 +179,7 @@ public class JwksEndpointTest extends PowerMockIdentityBaseTest {
             assertEquals(keyObject.get("alg"), ALG, "Incorrect alg value");
             assertEquals(keyObject.get("use"), USE, "Incorrect use value");
             assertEquals(keyObject.get("kty"), "RSA", "Incorrect kty value");
+            assertNotNull(response.getEntityTag(), "Entity tag is not set for the JWKS response");
             if ("foo.com".equals(tenantDomain)) {
                 assertEquals(objectArray.length(), 2, "Incorrect no of keysets");
             } else {
@@ -192,6 +200,54 @@ public class JwksEndpointTest extends PowerMockIdentityBaseTest {
         threadLocalProperties.get().remove(OAuthConstants.TENANT_NAME_FROM_CONTEXT);
     }
 
+    @Test
+    public void testConditionalJwksRequest() throws Exception {
+
+        mockOAuthServerConfiguration();
+        mockStatic(CarbonUtils.class);
+        when(CarbonUtils.getServerConfiguration()).thenReturn(serverConfiguration);
+        when(serverConfiguration.getFirstProperty("Security.KeyStore.Location")).thenReturn(
+                Paths.get(System.getProperty(CarbonBaseConstants.CARBON_HOME), "repository", "resources", "security",
+                        "wso2carbon.jks").toString());
+        when(serverConfiguration.getFirstProperty("Security.KeyStore.Password")).thenReturn("wso2carbon");
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.getKID(any(), any(), anyString())).thenReturn(CERT_THUMB_PRINT);
+        when(OAuth2Util.mapSignatureAlgorithmForJWSAlgorithm(anyString())).thenReturn(JWSAlgorithm.RS256);
+        IdentityUtil.threadLocalProperties.get().remove(OAuthConstants.TENANT_NAME_FROM_CONTEXT);
+
+        ETagResponseCache.getJWKSResponseCache().clearAll();
+        Response response = jwksEndpoint.jwks(null);
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        String eTag = response.getEntityTag().getValue();
+        String jwks = getEntityAsString(response);
+
+        // The cached response should be served without loading the key store again.
+        when(serverConfiguration.getFirstProperty("Security.KeyStore.Location")).thenReturn("invalid.jks");
+        Response cachedResponse = jwksEndpoint.jwks(null);
+        assertEquals(getEntityAsString(cachedResponse), jwks);
+        assertEquals(cachedResponse.getEntityTag().getValue(), eTag);
+
+        assertEquals(jwksEndpoint.jwks("\"" + eTag + "\"").getStatus(),
+                Response.Status.NOT_MODIFIED.getStatusCode());
+        assertEquals(jwksEndpoint.jwks("\"other\", W/\"" + eTag + "\"").getStatus(),
+                Response.Status.NOT_MODIFIED.getStatusCode());
+        assertEquals(jwksEndpoint.jwks("\"other\"").getStatus(), Response.Status.OK.getStatusCode());
+
+        // Once the cache entry is cleared, the key store should be loaded again.
+        ETagResponseCache.getJWKSResponseCache().clear(MultitenantConstants.SUPER_TENANT_ID);
+        assertTrue(getEntityAsString(jwksEndpoint.jwks("\"" + eTag + "\""))
+                .contains("Error while generating the keyset for"), "Key store is not reloaded");
+    }
+
+    private String getEntityAsString(Response response) {
+
+        Object entity = response.getEntity();
+        if (entity instanceof byte[]) {
+            return new String((byte[]) entity, StandardCharsets.UTF_8);
+        }
+        return (String) entity;
+    }
+
     private void mockOAuthServerConfiguration() throws Exception {
 
         mockStatic(OAuthServerConfiguration.class);
@@ -30,6 +30,7 @@ import org.wso2.carbon.identity.discovery.OIDProviderConfigResponse;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.endpoint.oidcdiscovery.impl.OIDProviderJSONResponseBuilder;
 import org.wso2.carbon.identity.oauth.endpoint.util.EndpointUtil;
+import org.wso2.carbon.identity.oauth2.util.ETagResponseCache;
 import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
 
 import java.lang.reflect.Field;
@@ -39,6 +40,7 @@ import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import static org.mockito.Matchers.any;
@@ -114,11 +116,50 @@ public class OIDCDiscoveryEndpointTest extends PowerMockIdentityBaseTest {
         when(defaultOIDCProcessor.handleError(any(OIDCDiscoveryEndPointException.class)))
                 .thenReturn(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         oidcDiscoveryEndpoint.setOidProviderResponseBuilder(new OIDProviderJSONResponseBuilder());
+        ETagResponseCache.getDiscoveryResponseCache().clearAll();
         Response response = oidcDiscoveryEndpoint.getOIDProviderConfiguration(tokenEp, httpServletRequest);
         Assert.assertEquals(expectedResponse, response.getStatus());
         threadLocalProperties.get().remove(OAuthConstants.TENANT_NAME_FROM_CONTEXT);
     }
 
+    @Test
+    public void testConditionalDiscoveryRequest() throws Exception {
+
+        mockStatic(EndpointUtil.class);
+        when(EndpointUtil.getOIDCService()).thenReturn(defaultOIDCProcessor);
+        when(defaultOIDCProcessor.getResponse(any(HttpServletRequest.class), any(String.class)))
+                .thenReturn(oidProviderConfigResponse);
+        when(oidProviderConfigResponse.getConfigMap()).thenReturn(getSampleConfigMap());
+        oidcDiscoveryEndpoint.setOidProviderResponseBuilder(new OIDProviderJSONResponseBuilder());
+
+        ETagResponseCache.getDiscoveryResponseCache().clearAll();
+        when(httpServletRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn(null);
+        Response response = oidcDiscoveryEndpoint.getOIDProviderConfiguration("token", httpServletRequest);
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        Assert.assertNotNull(response.getEntityTag());
+        String eTag = response.getEntityTag().getValue();
+        Object document = response.getEntity();
+
+        // The cached response should be served without building the provider configuration again.
+        when(oidProviderConfigResponse.getConfigMap()).thenReturn(new HashMap<>());
+        Response cachedResponse = oidcDiscoveryEndpoint.getOIDProviderConfiguration("token", httpServletRequest);
+        Assert.assertEquals(document, cachedResponse.getEntity());
+        Assert.assertEquals(eTag, cachedResponse.getEntityTag().getValue());
+
+        when(httpServletRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn("\"" + eTag + "\"");
+        Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED,
+                oidcDiscoveryEndpoint.getOIDProviderConfiguration("token", httpServletRequest).getStatus());
+        when(httpServletRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn("\"other\"");
+        Assert.assertEquals(HttpServletResponse.SC_OK,
+                oidcDiscoveryEndpoint.getOIDProviderConfiguration("token", httpServletRequest).getStatus());
+
+        // Once the cache is cleared, the provider configuration should be built again.
+        ETagResponseCache.getDiscoveryResponseCache().clearAll();
+        Response rebuiltResponse = oidcDiscoveryEndpoint.getOIDProviderConfiguration("token", httpServletRequest);
+        Assert.assertFalse(eTag.equals(rebuiltResponse.getEntityTag().getValue()));
+        when(httpServletRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn(null);
+    }
+
     private Map<String, Object> getSampleConfigMap() {
 
         Map<String, Object> configMap = new HashMap<>();
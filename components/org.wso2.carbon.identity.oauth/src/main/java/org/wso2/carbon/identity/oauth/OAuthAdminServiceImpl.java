@@ -58,6 +58,7 @@ import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.token.bindings.TokenBinding;
+import org.wso2.carbon.identity.oauth2.util.ClientSecretVerificationCache;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.oauth2.validators.OAuth2ScopeValidator;
 import org.wso2.carbon.user.api.UserStoreException;
@@ -790,6 +791,7 @@ public class OAuthAdminServiceImpl {
             properties.setProperty(OAuthConstants.ACTION_PROPERTY_KEY, OAuthConstants.ACTION_REVOKE);
 
             AppInfoCache.getInstance().clearCacheEntry(consumerKey);
+            ClientSecretVerificationCache.getInstance().clear(consumerKey);
             updateAppAndRevokeTokensAndAuthzCodes(consumerKey, properties);
 
             if (LOG.isDebugEnabled()) {
@@ -832,6 +834,7 @@ public class OAuthAdminServiceImpl {
         properties.setProperty(OAuthConstants.OAUTH_APP_NEW_STATE, APP_STATE_ACTIVE);
 
         AppInfoCache.getInstance().clearCacheEntry(consumerKey);
+        ClientSecretVerificationCache.getInstance().clear(consumerKey);
         updateAppAndRevokeTokensAndAuthzCodes(consumerKey, properties);
         if (LOG.isDebugEnabled()) {
             LOG.debug("Client Secret for OAuth app with consumerKey: " + consumerKey + " updated in OAuthCache.");
@@ -953,6 +956,7 @@ public class OAuthAdminServiceImpl {
         // Remove client credentials from cache.
         OAuthCache.getInstance().clearCacheEntry(new OAuthCacheKey(consumerKey));
         AppInfoCache.getInstance().clearCacheEntry(consumerKey);
+        ClientSecretVerificationCache.getInstance().clear(consumerKey);
         if (LOG.isDebugEnabled()) {
             LOG.debug("Client credentials are removed from the cache for OAuth App with consumerKey: " + consumerKey);
         }
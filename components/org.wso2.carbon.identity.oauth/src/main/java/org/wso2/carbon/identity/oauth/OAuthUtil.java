@@ -40,9 +40,12 @@ import org.wso2.carbon.identity.oauth.util.ClaimCacheKey;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2ServerException;
+import org.wso2.carbon.identity.oauth2.OAuth2BulkTokenRevocationService;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.TokenRevocationCriteria;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.openidconnect.UserClaimValuesCache;
 import org.wso2.carbon.registry.core.utils.UUIDGenerator;
 import org.wso2.carbon.user.core.UserStoreException;
 import org.wso2.carbon.user.core.UserStoreManager;
@@ -502,6 +505,8 @@ public final class OAuthUtil {
         if (cacheKey != null) {
             claimCache.clearCacheEntry(cacheKey, userStoreManager.getTenantId());
         }
+        UserClaimValuesCache.getInstance().clear(authenticatedUser.getTenantDomain(),
+                authenticatedUser.getUserStoreDomain(), userName);
         return true;
     }
 
@@ -521,6 +526,10 @@ public final class OAuthUtil {
         authenticatedUser.setTenantDomain(tenantDomain);
         authenticatedUser.setUserName(username);
 
+        if (OAuth2BulkTokenRevocationService.getInstance().isSupported()) {
+            return revokeTokensInBulk(authenticatedUser, userStoreManager.getTenantId());
+        }
+
         /* This userStoreDomain variable is used for access token table partitioning. So it is set to null when access
         token table partitioning is not enabled.*/
         userStoreDomain = null;
@@ -617,6 +626,55 @@ public final class OAuthUtil {
         return true;
     }
 
+    /**
+     * Revoke the active and expired access tokens of a user with set based statements. The revocation listeners are
+     * invoked for each token, while the cache entries of the tokens are cleared chunk by chunk. The token bound to the
+     * current session is kept if the session is preserved at password update.
+     */
+    private static boolean revokeTokensInBulk(AuthenticatedUser authenticatedUser, int tenantId)
+            throws UserStoreException {
+
+        String preservedBindingReference = getPreservedTokenBindingReference();
+        TokenRevocationCriteria criteria = new TokenRevocationCriteria();
+        criteria.setTenantId(tenantId);
+        criteria.setUserStoreDomain(authenticatedUser.getUserStoreDomain());
+        criteria.setUserName(authenticatedUser.getUserName());
+        try {
+            int revokedCount = OAuth2BulkTokenRevocationService.getInstance().revokeTokens(criteria,
+                    accessTokenDO -> {
+                        if (preservedBindingReference != null && accessTokenDO.getTokenBinding() != null &&
+                                preservedBindingReference.equals(accessTokenDO.getTokenBinding()
+                                        .getBindingReference())) {
+                            return false;
+                        }
+                        invokePreRevocationBySystemListeners(accessTokenDO, Collections.emptyMap());
+                        return true;
+                    },
+                    revokedTokens -> revokedTokens.forEach(accessTokenDO ->
+                            invokePostRevocationBySystemListeners(accessTokenDO, Collections.emptyMap())));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Revoked " + revokedCount + " access tokens of the user: " + authenticatedUser);
+            }
+        } catch (IdentityOAuth2Exception e) {
+            LOG.error("Error occurred while revoking the access tokens of the user: " + authenticatedUser, e);
+            throw new UserStoreException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Get the binding reference of the current session, if its token has to be kept at password update.
+     */
+    private static String getPreservedTokenBindingReference() {
+
+        Object currentSessionIdentifier = IdentityUtil.threadLocalProperties.get().get(CURRENT_SESSION_IDENTIFIER);
+        if (currentSessionIdentifier == null ||
+                !Boolean.parseBoolean(IdentityUtil.getProperty(PRESERVE_LOGGED_IN_SESSION_AT_PASSWORD_UPDATE))) {
+            return null;
+        }
+        return OAuth2Util.getTokenBindingReference((String) currentSessionIdentifier);
+    }
+
     private static boolean revokeTokens(List<AccessTokenDO> accessTokens) throws IdentityOAuth2Exception {
 
         if (!accessTokens.isEmpty()) {
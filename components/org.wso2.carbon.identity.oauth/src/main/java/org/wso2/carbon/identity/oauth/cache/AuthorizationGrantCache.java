@@ -27,6 +27,7 @@ import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.AuthorizationCodeStore;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.utils.CarbonUtils;
 
@@ -218,6 +219,11 @@ public class AuthorizationGrantCache extends
      * @return CODE_ID from the database
      */
     private String replaceFromCodeId(String authzCode) {
+        // A code kept by the write-behind store may not be in the database yet.
+        String codeId = AuthorizationCodeStore.getInstance().getCodeId(authzCode);
+        if (codeId != null) {
+            return codeId;
+        }
         try {
             return OAuthTokenPersistenceFactory.getInstance().getAuthorizationCodeDAO()
                     .getCodeIdByAuthorizationCode(authzCode);
@@ -23,7 +23,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.application.authentication.framework.cache.AuthenticationBaseCache;
 import org.wso2.carbon.identity.core.cache.AbstractCacheListener;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.oauth.listener.OAuthCacheRemoveListener;
+import org.wso2.carbon.identity.oauth.listener.OAuthCacheUpdateListener;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.utils.CarbonUtils;
 
@@ -39,9 +41,11 @@ public class OAuthCache extends AuthenticationBaseCache<OAuthCacheKey, CacheEntr
     private static final List<AbstractCacheListener<OAuthCacheKey, CacheEntry>> cacheListeners = new ArrayList<>();
     private static volatile OAuthCache instance;
     private static final Log LOG = LogFactory.getLog(OAuthCache.class);
+    private final OAuthNearCache nearCache = new OAuthNearCache();
 
     static {
         cacheListeners.add(new OAuthCacheRemoveListener());
+        cacheListeners.add(new OAuthCacheUpdateListener());
     }
 
     private OAuthCache() {
@@ -63,6 +67,10 @@ public class OAuthCache extends AuthenticationBaseCache<OAuthCacheKey, CacheEntr
     @Override
     public void addToCache(OAuthCacheKey key, CacheEntry entry) {
 
+        // The previous local copy is dropped before the entry is replaced, so that it is not served meanwhile. The
+        // other nodes drop their copies through the update and removal listeners of the cache.
+        nearCache.invalidate(key);
+        long invalidationGeneration = nearCache.getInvalidationGeneration();
         if (entry instanceof AccessTokenDO) {
             AccessTokenDO tokenDO = (AccessTokenDO) entry;
             String tenantDomain = tokenDO.getAuthzUser().getTenantDomain();
@@ -71,11 +79,21 @@ public class OAuthCache extends AuthenticationBaseCache<OAuthCacheKey, CacheEntr
                         ((AccessTokenDO) entry).getTokenId(), tenantDomain));
             }
             super.addToCache(key, entry, tenantDomain);
+            if (isEnabled()) {
+                nearCache.put(key, entry, invalidationGeneration);
+            }
         } else {
             super.addToCache(key, entry);
         }
     }
 
+    @Override
+    public void clearCacheEntry(OAuthCacheKey key) {
+
+        super.clearCacheEntry(key);
+        nearCache.invalidate(key);
+    }
+
     @Override
     public void clearCacheEntry(OAuthCacheKey key, String tenantDomain) {
 
@@ -90,6 +108,7 @@ public class OAuthCache extends AuthenticationBaseCache<OAuthCacheKey, CacheEntr
         } else {
             super.clearCacheEntry(key);
         }
+        nearCache.invalidate(key);
         // Added below logs to make sure the cache is cleared properly.
         if (LOG.isDebugEnabled() && super.getValueFromCache(key, tenantDomain) == null) {
             LOG.debug("Successfully cleared OAuthCache for the provided key in tenant domain: " + tenantDomain);
@@ -97,21 +116,61 @@ public class OAuthCache extends AuthenticationBaseCache<OAuthCacheKey, CacheEntr
     }
 
 
+    @Override
+    public void clear(int tenantId) {
+
+        super.clear(tenantId);
+        nearCache.invalidateTenant(IdentityTenantUtil.getTenantDomain(tenantId));
+    }
+
+    @Override
+    public CacheEntry getValueFromCache(OAuthCacheKey key) {
+
+        CacheEntry cacheEntry = nearCache.get(key);
+        if (cacheEntry != null) {
+            return cacheEntry;
+        }
+        // The generation is read before the load, so that an entry cleared meanwhile is not added back locally.
+        long invalidationGeneration = nearCache.getInvalidationGeneration();
+        cacheEntry = super.getValueFromCache(key);
+        nearCache.put(key, cacheEntry, invalidationGeneration);
+        return cacheEntry;
+    }
+
     @Override
     public CacheEntry getValueFromCache(OAuthCacheKey key, String tenantDomain) {
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("Hit OAuthCache for getting the cache entry in tenant domain: " + tenantDomain);
         }
-        CacheEntry cacheEntry;
+        CacheEntry cacheEntry = nearCache.get(key);
+        if (cacheEntry != null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Retrieved cache entry from the OAuthCache near cache for tenant domain: " + tenantDomain);
+            }
+            return cacheEntry;
+        }
+        long invalidationGeneration = nearCache.getInvalidationGeneration();
         if (StringUtils.isNotBlank(tenantDomain)) {
             cacheEntry = super.getValueFromCache(key, tenantDomain);
         } else {
             cacheEntry = super.getValueFromCache(key);
         }
+        nearCache.put(key, cacheEntry, invalidationGeneration);
         if (LOG.isDebugEnabled() && cacheEntry != null) {
             LOG.debug("Successfully retrieved cache entry from OauthCache for tenant domain: " + tenantDomain);
         }
         return cacheEntry;
     }
+
+    /**
+     * Get the local near cache kept in front of this cache. The near cache exposes the local hit ratio and the
+     * invalidation statistics.
+     *
+     * @return near cache.
+     */
+    public OAuthNearCache getNearCache() {
+
+        return nearCache;
+    }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.util.BoundedTTLCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Bounded on-heap near cache kept in front of the {@link OAuthCache} for {@link AccessTokenDO} entries. Entries are
+ * evicted in LRU order once the configured size is reached and expire after the configured time to live or the
+ * remaining lifetime of the token, whichever comes first. The entries are invalidated whenever the corresponding
+ * {@link OAuthCache} entry is added, updated or cleared, either locally or through a cluster invalidation.
+ * <p>
+ * A tenant wide clear of the {@link OAuthCache}, such as the one done by a bulk token revocation, removes the local
+ * copies of the tenant only on the node where it is done. The other nodes receive no per entry invalidation for it,
+ * hence they may serve a copy of a revoked token until the copy expires. The time to live is the upper bound of that
+ * window and is kept short by default for this reason.
+ * <p>
+ * Entries loaded from the {@link OAuthCache} are added with the invalidation generation read before the load, through
+ * {@link #put(OAuthCacheKey, CacheEntry, long)}, so that an entry cleared while it was being loaded is not added back.
+ */
+public class OAuthNearCache {
+
+    private static final Log log = LogFactory.getLog(OAuthNearCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String NEAR_CACHE_ENABLE = "OAuth.OAuthCache.NearCache.Enable";
+    private static final String NEAR_CACHE_MAX_SIZE = "OAuth.OAuthCache.NearCache.MaxSize";
+    private static final String NEAR_CACHE_TIME_TO_LIVE = "OAuth.OAuthCache.NearCache.TimeToLiveSeconds";
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    private static final long DEFAULT_TIME_TO_LIVE_SECONDS = 5;
+
+    private final boolean enabled;
+    private final long timeToLiveMillis;
+    private final BoundedTTLCache<OAuthCacheKey, NearCacheEntry> entries;
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong totalInvalidatedEntryAgeMillis = new AtomicLong();
+
+    OAuthNearCache() {
+
+        this(getBooleanProperty(NEAR_CACHE_ENABLE, false),
+                getLongProperty(NEAR_CACHE_MAX_SIZE, DEFAULT_MAX_SIZE),
+                TimeUnit.SECONDS.toMillis(getLongProperty(NEAR_CACHE_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE_SECONDS)));
+    }
+
+    OAuthNearCache(boolean enabled, long maxSize, long timeToLiveMillis) {
+
+        this.enabled = enabled;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.entries = new BoundedTTLCache<>(maxSize, timeToLiveMillis);
+        if (enabled) {
+            log.warn("OAuthCache near cache is enabled. Access tokens revoked through a tenant wide cache clear on " +
+                    "another node may be served from this node for up to " + timeToLiveMillis + "ms.");
+        }
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Get an unexpired access token from the near cache.
+     *
+     * @param key OAuth cache key.
+     * @return cached access token or null if there is no valid local copy.
+     */
+    public CacheEntry get(OAuthCacheKey key) {
+
+        if (!enabled) {
+            return null;
+        }
+        NearCacheEntry nearCacheEntry = entries.get(key);
+        return nearCacheEntry == null ? null : nearCacheEntry.entry;
+    }
+
+    /**
+     * Get the invalidation generation of the near cache. The value needs to be read before an entry is loaded from the
+     * {@link OAuthCache} and passed to {@link #put(OAuthCacheKey, CacheEntry, long)}.
+     *
+     * @return invalidation generation.
+     */
+    public long getInvalidationGeneration() {
+
+        return entries.getInvalidationCount();
+    }
+
+    /**
+     * Keep a local copy of an access token. Entries other than access tokens are ignored.
+     *
+     * @param key   OAuth cache key.
+     * @param entry cache entry.
+     */
+    public void put(OAuthCacheKey key, CacheEntry entry) {
+
+        put(key, entry, entries.getInvalidationCount());
+    }
+
+    /**
+     * Keep a local copy of an access token, unless an entry was invalidated since the given invalidation generation
+     * was read. Entries other than access tokens are ignored.
+     *
+     * @param key                    OAuth cache key.
+     * @param entry                  cache entry.
+     * @param invalidationGeneration invalidation generation read before the entry was loaded.
+     */
+    public void put(OAuthCacheKey key, CacheEntry entry, long invalidationGeneration) {
+
+        if (!enabled || !(entry instanceof AccessTokenDO)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiryTime = now + timeToLiveMillis;
+        AccessTokenDO accessTokenDO = (AccessTokenDO) entry;
+        if (accessTokenDO.getIssuedTime() != null && accessTokenDO.getValidityPeriodInMillis() > 0) {
+            expiryTime = Math.min(expiryTime,
+                    accessTokenDO.getIssuedTime().getTime() + accessTokenDO.getValidityPeriodInMillis());
+        }
+        if (expiryTime <= now) {
+            return;
+        }
+        String tenantDomain = accessTokenDO.getAuthzUser() == null ? null :
+                accessTokenDO.getAuthzUser().getTenantDomain();
+        entries.putIfNotInvalidated(key, new NearCacheEntry(entry, tenantDomain, now), expiryTime,
+                invalidationGeneration);
+    }
+
+    /**
+     * Remove the local copy of an entry.
+     *
+     * @param key OAuth cache key.
+     */
+    public void invalidate(OAuthCacheKey key) {
+
+        if (!enabled) {
+            return;
+        }
+        NearCacheEntry removed = entries.remove(key);
+        if (removed != null) {
+            invalidationCount.incrementAndGet();
+            totalInvalidatedEntryAgeMillis.addAndGet(System.currentTimeMillis() - removed.cachedTime);
+            if (log.isDebugEnabled()) {
+                log.debug("Near cache entry invalidated for cache key: " + key.getCacheKeyString());
+            }
+        }
+    }
+
+    /**
+     * Remove the local copies of the access tokens of a tenant.
+     *
+     * @param tenantDomain Tenant domain.
+     */
+    public void invalidateTenant(String tenantDomain) {
+
+        if (!enabled) {
+            return;
+        }
+        // Entries without a tenant domain can not be attributed to a tenant, hence they are removed as well.
+        entries.removeEntriesIf((key, nearCacheEntry) -> nearCacheEntry.tenantDomain == null ||
+                nearCacheEntry.tenantDomain.equalsIgnoreCase(tenantDomain));
+        if (log.isDebugEnabled()) {
+            log.debug("Near cache entries invalidated for tenant domain: " + tenantDomain);
+        }
+    }
+
+    /**
+     * Remove all local copies.
+     */
+    public void invalidateAll() {
+
+        entries.clear();
+    }
+
+    public int size() {
+
+        return entries.size();
+    }
+
+    public long getHitCount() {
+
+        return entries.getHitCount();
+    }
+
+    public long getMissCount() {
+
+        return entries.getMissCount();
+    }
+
+    public double getHitRatio() {
+
+        long hits = entries.getHitCount();
+        long lookups = hits + entries.getMissCount();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public long getInvalidationCount() {
+
+        return invalidationCount.get();
+    }
+
+    /**
+     * Average time the invalidated entries were held locally before the invalidation reached this node. This is the
+     * upper bound of the time a local copy could have been served after the entry changed in the cluster cache.
+     *
+     * @return average invalidation lag in milliseconds.
+     */
+    public double getAverageInvalidationLagMillis() {
+
+        long invalidations = invalidationCount.get();
+        return invalidations == 0 ? 0 : (double) totalInvalidatedEntryAgeMillis.get() / invalidations;
+    }
+
+    private static class NearCacheEntry {
+
+        private final CacheEntry entry;
+        private final String tenantDomain;
+        private final long cachedTime;
+
+        private NearCacheEntry(CacheEntry entry, String tenantDomain, long cachedTime) {
+
+            this.entry = entry;
+            this.tenantDomain = tenantDomain;
+            this.cachedTime = cachedTime;
+        }
+    }
+}
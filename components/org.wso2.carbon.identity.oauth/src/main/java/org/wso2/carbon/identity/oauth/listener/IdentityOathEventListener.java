@@ -38,6 +38,8 @@ import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.identity.oauth2.validators.UserRolesCache;
+import org.wso2.carbon.identity.openidconnect.UserClaimValuesCache;
 import org.wso2.carbon.user.core.UserCoreConstants;
 import org.wso2.carbon.user.core.UserStoreException;
 import org.wso2.carbon.user.core.UserStoreManager;
@@ -84,6 +86,8 @@ public class IdentityOathEventListener extends AbstractIdentityUserOperationEven
         }
 
         removeClaimCacheEntry(username, userStoreManager);
+        removeUserRolesFromCache(username, userStoreManager);
+        removeUserClaimValuesFromCache(username, userStoreManager);
 
         return OAuthUtil.revokeTokens(username, userStoreManager);
 
@@ -118,6 +122,7 @@ public class IdentityOathEventListener extends AbstractIdentityUserOperationEven
         if (!isEnable()) {
             return true;
         }
+        removeUserClaimValuesFromCache(userName, userStoreManager);
         return true;
     }
 
@@ -128,6 +133,7 @@ public class IdentityOathEventListener extends AbstractIdentityUserOperationEven
         if (!isEnable()) {
             return true;
         }
+        removeUserClaimValuesFromCache(userName, userStoreManager);
         return true;
     }
 
@@ -180,6 +186,7 @@ public class IdentityOathEventListener extends AbstractIdentityUserOperationEven
         if (!isEnable()) {
             return true;
         }
+        removeUserRolesFromCache(userName, userStoreManager);
         if (ArrayUtils.isNotEmpty(deletedRoles)) {
             OAuthUtil.revokeTokens(userName, userStoreManager);
         }
@@ -227,6 +234,7 @@ public class IdentityOathEventListener extends AbstractIdentityUserOperationEven
         userList.addAll(Arrays.asList(deletedUsers));
         userList.addAll(Arrays.asList(newUsers));
         for (String username : userList) {
+            removeUserRolesFromCache(username, userStoreManager);
             OAuthUtil.removeUserClaimsFromCache(username, userStoreManager);
         }
         for (String deletedUser : deletedUsers) {
@@ -235,6 +243,41 @@ public class IdentityOathEventListener extends AbstractIdentityUserOperationEven
         return true;
     }
 
+    @Override
+    public boolean doPostDeleteRole(String roleName, UserStoreManager userStoreManager) throws UserStoreException {
+
+        if (!isEnable()) {
+            return true;
+        }
+        UserRolesCache.getInstance().clear(userStoreManager.getTenantId());
+        return true;
+    }
+
+    @Override
+    public boolean doPostUpdateRoleName(String roleName, String newRoleName, UserStoreManager userStoreManager)
+            throws UserStoreException {
+
+        if (!isEnable()) {
+            return true;
+        }
+        UserRolesCache.getInstance().clear(userStoreManager.getTenantId());
+        return true;
+    }
+
+    private void removeUserRolesFromCache(String userName, UserStoreManager userStoreManager)
+            throws UserStoreException {
+
+        UserRolesCache.getInstance().clear(userStoreManager.getTenantId(),
+                UserCoreUtil.getDomainName(userStoreManager.getRealmConfiguration()), userName);
+    }
+
+    private void removeUserClaimValuesFromCache(String userName, UserStoreManager userStoreManager)
+            throws UserStoreException {
+
+        UserClaimValuesCache.getInstance().clear(IdentityTenantUtil.getTenantDomain(userStoreManager.getTenantId()),
+                UserCoreUtil.getDomainName(userStoreManager.getRealmConfiguration()), userName);
+    }
+
     private boolean revokeTokensOfLockedUser(String userName, UserStoreManager userStoreManager)
             throws UserStoreException {
 
@@ -27,6 +27,7 @@ import org.wso2.carbon.identity.oauth.cache.OAuthCache;
 import org.wso2.carbon.identity.oauth.cache.OAuthCacheKey;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.oauth2.validators.RevokedJWTRegistry;
 
 import javax.cache.event.CacheEntryEvent;
 import javax.cache.event.CacheEntryListenerException;
@@ -44,6 +45,16 @@ public class OAuthCacheRemoveListener extends AbstractCacheListener<OAuthCacheKe
     public void entryRemoved(CacheEntryEvent<? extends OAuthCacheKey, ? extends CacheEntry> cacheEntryEvent)
             throws CacheEntryListenerException {
 
+        // Keep the local near cache coherent with removals which happen in the cluster cache.
+        OAuthCache.getInstance().getNearCache().invalidate(cacheEntryEvent.getKey());
+
+        // The OAuth cache entry of a JWT access token is removed across the cluster when the token is revoked, which
+        // is the only signal other nodes receive to reject the token when it is validated locally.
+        if (RevokedJWTRegistry.getInstance().isEnabled()
+                && OAuth2Util.isParsableJWT(cacheEntryEvent.getKey().getCacheKeyString())) {
+            RevokedJWTRegistry.getInstance().revokeTokens(cacheEntryEvent.getKey().getCacheKeyString());
+        }
+
         CacheEntry cacheEntry = cacheEntryEvent.getValue();
         if (!(cacheEntry instanceof AccessTokenDO)) {
             return;
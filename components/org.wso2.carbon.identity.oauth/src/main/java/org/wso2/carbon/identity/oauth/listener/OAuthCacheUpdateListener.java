@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth.listener;
+
+import org.wso2.carbon.identity.core.cache.AbstractCacheListener;
+import org.wso2.carbon.identity.oauth.cache.CacheEntry;
+import org.wso2.carbon.identity.oauth.cache.OAuthCache;
+import org.wso2.carbon.identity.oauth.cache.OAuthCacheKey;
+
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryUpdatedListener;
+
+/**
+ * Cache listener to drop the local near cache copy of an OAuth cache entry when the entry is overwritten, so that a
+ * node does not keep serving the previous value of an entry updated on another node.
+ */
+public class OAuthCacheUpdateListener extends AbstractCacheListener<OAuthCacheKey, CacheEntry>
+        implements CacheEntryUpdatedListener<OAuthCacheKey, CacheEntry> {
+
+    @Override
+    public void entryUpdated(CacheEntryEvent<? extends OAuthCacheKey, ? extends CacheEntry> cacheEntryEvent)
+            throws CacheEntryListenerException {
+
+        OAuthCache.getInstance().getNearCache().invalidate(cacheEntryEvent.getKey());
+    }
+}
@@ -29,6 +29,10 @@ import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getIntProperty;
 
 /**
  * An implementation of <Code>TokenPersistenceProcessor</Code>
@@ -40,6 +44,46 @@ public class HashingPersistenceProcessor implements TokenPersistenceProcessor {
     public static final String ALGORITHM = "algorithm";
     public static final String HASH = "hash";
 
+    // These config properties are defined in identity.xml
+    private static final String HASH_MEMO_SIZE = "OAuth.TokenPersistence.HashMemoSize";
+
+    private static final int DEFAULT_HASH_MEMO_SIZE = 8;
+    private static final int MEMO_SIZE = getIntProperty(HASH_MEMO_SIZE, DEFAULT_HASH_MEMO_SIZE);
+    private static final String HASH_PLACEHOLDER = "hashPlaceholder";
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<HashContext> HASH_CONTEXT = ThreadLocal.withInitial(HashContext::new);
+    private static final ThreadLocal<HashMemo> HASH_MEMO = new ThreadLocal<>();
+
+    /**
+     * Start memoizing the hashes computed by the calling thread, as the same token is hashed several times while
+     * serving a single request. Each call has to be paired with a call to {@link #endHashMemo()} in a finally block.
+     * Calls can be nested, in which case the memo is kept until the outermost flow ends.
+     */
+    public static void startHashMemo() {
+
+        if (MEMO_SIZE <= 0) {
+            return;
+        }
+        HashMemo hashMemo = HASH_MEMO.get();
+        if (hashMemo == null) {
+            hashMemo = new HashMemo();
+            HASH_MEMO.set(hashMemo);
+        }
+        hashMemo.depth++;
+    }
+
+    /**
+     * End a flow started with {@link #startHashMemo()}. Once the outermost flow ends, the memoized tokens and hashes
+     * are dropped, so that no plain text value outlives the request on a pooled thread.
+     */
+    public static void endHashMemo() {
+
+        HashMemo hashMemo = HASH_MEMO.get();
+        if (hashMemo != null && --hashMemo.depth <= 0) {
+            HASH_MEMO.remove();
+        }
+    }
+
     @Override
     public String getProcessedClientId(String clientId) throws IdentityOAuth2Exception {
 
@@ -55,7 +99,8 @@ public class HashingPersistenceProcessor implements TokenPersistenceProcessor {
     @Override
     public String getProcessedClientSecret(String clientSecret) throws IdentityOAuth2Exception {
 
-        return hash(clientSecret);
+        // Client secrets are not memoized to avoid retaining them in memory.
+        return hash(clientSecret, false);
     }
 
     @Override
@@ -109,34 +154,111 @@ public class HashingPersistenceProcessor implements TokenPersistenceProcessor {
      */
     private String hash(String plainText) throws IdentityOAuth2Exception {
 
+        return hash(plainText, true);
+    }
+
+    /**
+     * Method to generate hash value. The message digest of the configured algorithm is reused within the calling
+     * thread. Unless the value is a secret that should not be retained in memory, the hash is reused within the
+     * flow started with {@link #startHashMemo()}, while outside such a flow no plain text value or hash is retained
+     * after the call.
+     *
+     * @param plainText Plain text value.
+     * @param memoize   Whether the hash of the value can be reused.
+     * @return hashed value
+     */
+    private String hash(String plainText, boolean memoize) throws IdentityOAuth2Exception {
+
         if (StringUtils.isEmpty(plainText)) {
             throw new IdentityOAuth2Exception("plainText value is null or empty to be hash.");
         }
 
-        MessageDigest messageDigest = null;
-        byte[] hash = null;
         String hashAlgorithm = OAuthServerConfiguration.getInstance().getHashAlgorithm();
-        try {
-            messageDigest = MessageDigest.getInstance(hashAlgorithm);
-            messageDigest.update(plainText.getBytes(StandardCharsets.UTF_8));
-            hash = messageDigest.digest();
-
-        } catch (NoSuchAlgorithmException e) {
-            throw new IdentityOAuth2Exception(
-                    "Error while retrieving MessageDigest for the provided hash algorithm: " + hashAlgorithm, e);
+        HashContext hashContext = HASH_CONTEXT.get();
+        if (!hashContext.isInitializedFor(hashAlgorithm)) {
+            hashContext.initialize(hashAlgorithm);
+        }
+        HashMemo hashMemo = memoize ? HASH_MEMO.get() : null;
+        if (hashMemo == null) {
+            return hashContext.hash(plainText);
         }
-        JSONObject object = new JSONObject();
-        object.put(ALGORITHM, hashAlgorithm);
-        object.put(HASH, bytesToHex(hash));
-        return object.toString();
+        if (!StringUtils.equals(hashMemo.hashAlgorithm, hashAlgorithm)) {
+            hashMemo.hashAlgorithm = hashAlgorithm;
+            hashMemo.hashes.clear();
+        }
+        String hash = hashMemo.hashes.get(plainText);
+        if (hash == null) {
+            hash = hashContext.hash(plainText);
+            hashMemo.hashes.put(plainText, hash);
+        }
+        return hash;
     }
 
     private static String bytesToHex(byte[] bytes) {
 
-        StringBuilder result = new StringBuilder();
-        for (byte byt : bytes) {
-            result.append(Integer.toString((byt & 0xff) + 0x100, 16).substring(1));
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i * 2] = HEX_CHARS[(bytes[i] >> 4) & 0xf];
+            result[i * 2 + 1] = HEX_CHARS[bytes[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    /**
+     * Message digest of a hash algorithm and the JSON template of its hashes, used by a single thread.
+     */
+    private static class HashContext {
+
+        private String hashAlgorithm;
+        private MessageDigest messageDigest;
+        private String hashPrefix;
+        private String hashSuffix;
+
+        private boolean isInitializedFor(String hashAlgorithm) {
+
+            return messageDigest != null && StringUtils.equals(this.hashAlgorithm, hashAlgorithm);
         }
-        return result.toString();
+
+        private void initialize(String hashAlgorithm) throws IdentityOAuth2Exception {
+
+            try {
+                messageDigest = MessageDigest.getInstance(hashAlgorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IdentityOAuth2Exception(
+                        "Error while retrieving MessageDigest for the provided hash algorithm: " + hashAlgorithm, e);
+            }
+            this.hashAlgorithm = hashAlgorithm;
+
+            // Build the JSON representation once, so that hashing a value only has to place the hash in it.
+            JSONObject object = new JSONObject();
+            object.put(ALGORITHM, hashAlgorithm);
+            object.put(HASH, HASH_PLACEHOLDER);
+            String template = object.toString();
+            int placeholderIndex = template.indexOf(HASH_PLACEHOLDER);
+            hashPrefix = template.substring(0, placeholderIndex);
+            hashSuffix = template.substring(placeholderIndex + HASH_PLACEHOLDER.length());
+        }
+
+        private String hash(String plainText) {
+
+            byte[] hash = messageDigest.digest(plainText.getBytes(StandardCharsets.UTF_8));
+            return hashPrefix + bytesToHex(hash) + hashSuffix;
+        }
+    }
+
+    /**
+     * Hashes of the values most recently hashed by a thread within a request flow.
+     */
+    private static class HashMemo {
+
+        private int depth;
+        private String hashAlgorithm;
+        private final Map<String, String> hashes = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+
+                return size() > MEMO_SIZE;
+            }
+        };
     }
 }
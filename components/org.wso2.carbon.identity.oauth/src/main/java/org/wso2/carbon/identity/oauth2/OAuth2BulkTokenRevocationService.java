@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth.OAuthUtil;
+import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCache;
+import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheKey;
+import org.wso2.carbon.identity.oauth.cache.OAuthCache;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.TokenRevocationCriteria;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.TokenBindings.NONE;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getIntProperty;
+
+/**
+ * Revokes the access tokens of a client, user, user store, tenant or token binding in bulk. The tokens are revoked
+ * with set based statements in chunks and the cache entries of each chunk are cleared once the chunk is committed.
+ * When more tokens than the configured threshold are revoked, the OAuth cache of the affected tenants is cleared as a
+ * whole instead of clearing the user specific entries one by one.
+ * <p>
+ * The entry of each revoked token is always cleared by key, as the removal of that entry is what invalidates the near
+ * caches and the revoked JWT registries of the other nodes. A tenant-wide clear is not propagated that way, hence the
+ * user specific entries held by the near caches of the other nodes expire after the near cache time to live.
+ */
+public class OAuth2BulkTokenRevocationService {
+
+    private static final Log log = LogFactory.getLog(OAuth2BulkTokenRevocationService.class);
+    private static final OAuth2BulkTokenRevocationService instance = new OAuth2BulkTokenRevocationService();
+
+    // These config properties are defined in identity.xml
+    private static final String CHUNK_SIZE = "OAuth.BulkTokenRevocation.ChunkSize";
+    private static final String TENANT_CACHE_CLEAR_THRESHOLD = "OAuth.BulkTokenRevocation.TenantCacheClearThreshold";
+
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int DEFAULT_TENANT_CACHE_CLEAR_THRESHOLD = 1000;
+
+    private final int chunkSize;
+    private final int tenantCacheClearThreshold;
+
+    private OAuth2BulkTokenRevocationService() {
+
+        this(getIntProperty(CHUNK_SIZE, DEFAULT_CHUNK_SIZE),
+                getIntProperty(TENANT_CACHE_CLEAR_THRESHOLD, DEFAULT_TENANT_CACHE_CLEAR_THRESHOLD));
+    }
+
+    OAuth2BulkTokenRevocationService(int chunkSize, int tenantCacheClearThreshold) {
+
+        this.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+        this.tenantCacheClearThreshold = tenantCacheClearThreshold;
+    }
+
+    public static OAuth2BulkTokenRevocationService getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Bulk revocation updates the access token table directly, hence it is not available when the access tokens are
+     * partitioned by the user store domain.
+     *
+     * @return true if the tokens can be revoked in bulk.
+     */
+    public boolean isSupported() {
+
+        return !(OAuth2Util.checkAccessTokenPartitioningEnabled() && OAuth2Util.checkUserNameAssertionEnabled());
+    }
+
+    /**
+     * Revoke the active and expired access tokens, along with their refresh tokens, matching the given criteria.
+     *
+     * @param criteria Criteria of the tokens to revoke.
+     * @return Number of revoked tokens.
+     * @throws IdentityOAuth2Exception If the revocation fails.
+     */
+    public int revokeTokens(TokenRevocationCriteria criteria) throws IdentityOAuth2Exception {
+
+        return revokeTokens(criteria, null, null);
+    }
+
+    /**
+     * Revoke the active and expired access tokens, along with their refresh tokens, matching the given criteria and
+     * accepted by the given filter. The revoked tokens of each chunk are handed over to the given consumer once their
+     * cache entries are cleared.
+     *
+     * @param criteria              Criteria of the tokens to revoke.
+     * @param filter                Filter of the matching tokens to revoke, or null to revoke all the matching tokens.
+     * @param revokedTokensConsumer Consumer of the revoked tokens of each chunk, or null.
+     * @return Number of revoked tokens.
+     * @throws IdentityOAuth2Exception If the revocation fails.
+     */
+    public int revokeTokens(TokenRevocationCriteria criteria, Predicate<AccessTokenDO> filter,
+                            Consumer<List<AccessTokenDO>> revokedTokensConsumer) throws IdentityOAuth2Exception {
+
+        if (!isSupported()) {
+            throw new IdentityOAuth2Exception("Bulk token revocation is not supported when access token " +
+                    "partitioning is enabled.");
+        }
+        RevokedTokenCacheInvalidator cacheInvalidator = new RevokedTokenCacheInvalidator(tenantCacheClearThreshold);
+        int revokedCount;
+        try {
+            revokedCount = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
+                    .revokeAccessTokens(criteria, chunkSize, filter, revokedTokens -> {
+                        cacheInvalidator.invalidate(revokedTokens);
+                        if (revokedTokensConsumer != null) {
+                            revokedTokensConsumer.accept(revokedTokens);
+                        }
+                    });
+        } finally {
+            // Clear the caches of the tokens revoked so far even if a later chunk failed.
+            cacheInvalidator.complete();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(revokedCount + " access tokens revoked in bulk matching: " + criteria);
+        }
+        return revokedCount;
+    }
+
+    /**
+     * Clears the cache entries of the revoked tokens of a single bulk revocation.
+     */
+    static class RevokedTokenCacheInvalidator {
+
+        private final int tenantCacheClearThreshold;
+        private final Set<Integer> tenantIds = new HashSet<>();
+        private int invalidatedCount;
+
+        RevokedTokenCacheInvalidator(int tenantCacheClearThreshold) {
+
+            this.tenantCacheClearThreshold = tenantCacheClearThreshold;
+        }
+
+        void invalidate(List<AccessTokenDO> accessTokenDOs) {
+
+            invalidatedCount += accessTokenDOs.size();
+            boolean clearByKey = !isTenantCacheClearRequired();
+            for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+                tenantIds.add(accessTokenDO.getTenantID());
+                // Grant cache entries are also persisted in the session data store, hence always cleared by key.
+                AuthorizationGrantCache.getInstance().clearCacheEntryByTokenId(
+                        new AuthorizationGrantCacheKey(accessTokenDO.getAccessToken()), accessTokenDO.getTokenId());
+                // The token entry is always cleared by key, so that the other nodes are notified of the revocation.
+                OAuthUtil.clearOAuthCache(accessTokenDO);
+                if (clearByKey) {
+                    clearUserOAuthCache(accessTokenDO);
+                }
+            }
+        }
+
+        void complete() {
+
+            if (isTenantCacheClearRequired()) {
+                for (int tenantId : tenantIds) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Clearing the OAuth cache of tenant id: " + tenantId + " after revoking " +
+                                invalidatedCount + " access tokens in bulk.");
+                    }
+                    OAuthCache.getInstance().clear(tenantId);
+                }
+            }
+        }
+
+        boolean isTenantCacheClearRequired() {
+
+            return invalidatedCount > tenantCacheClearThreshold;
+        }
+
+        private void clearUserOAuthCache(AccessTokenDO accessTokenDO) {
+
+            String scope = OAuth2Util.buildScopeString(accessTokenDO.getScope());
+            OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser(), scope);
+            OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser());
+            if (accessTokenDO.getTokenBinding() != null && StringUtils.isNotBlank(accessTokenDO.getTokenBinding()
+                    .getBindingReference()) && !NONE.equals(accessTokenDO.getTokenBinding().getBindingReference())) {
+                OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser(), scope,
+                        accessTokenDO.getTokenBinding().getBindingReference());
+            }
+        }
+    }
+}
@@ -35,6 +35,7 @@ import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.dto.OAuthErrorDTO;
 import org.wso2.carbon.identity.oauth.event.OAuthEventInterceptor;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
+import org.wso2.carbon.identity.oauth.tokenprocessor.HashingPersistenceProcessor;
 import org.wso2.carbon.identity.oauth2.authz.AuthorizationHandlerManager;
 import org.wso2.carbon.identity.oauth2.bean.OAuthClientAuthnContext;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
@@ -52,6 +53,7 @@ import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.model.OAuth2Parameters;
 import org.wso2.carbon.identity.oauth2.model.RefreshTokenValidationDataDO;
 import org.wso2.carbon.identity.oauth2.token.AccessTokenIssuer;
+import org.wso2.carbon.identity.oauth2.token.TokenIssuanceLockManager;
 import org.wso2.carbon.identity.oauth2.token.bindings.TokenBinder;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.user.api.Claim;
@@ -65,6 +67,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 import static org.wso2.carbon.identity.oauth.common.OAuthConstants.TokenBindings.NONE;
 import static org.wso2.carbon.identity.oauth2.util.OAuth2Util.isValidTokenBinding;
@@ -260,6 +263,8 @@ public class OAuth2Service extends AbstractAdmin {
                     tokenReqDTO.getGrantType());
         }
 
+        // The same token is hashed several times while it is issued.
+        HashingPersistenceProcessor.startHashMemo();
         try {
             AccessTokenIssuer tokenIssuer = AccessTokenIssuer.getInstance();
             return tokenIssuer.issue(tokenReqDTO);
@@ -303,6 +308,8 @@ public class OAuth2Service extends AbstractAdmin {
             }
             tokenRespDTO.setErrorMsg("Server Error");
             return tokenRespDTO;
+        } finally {
+            HashingPersistenceProcessor.endHashMemo();
         }
     }
 
@@ -460,10 +467,14 @@ public class OAuth2Service extends AbstractAdmin {
                         OAuthUtil.clearOAuthCache(accessTokenDO);
                         String scope = OAuth2Util.buildScopeString(accessTokenDO.getScope());
                         String userId = accessTokenDO.getAuthzUser().getUserId();
-                        synchronized ((revokeRequestDTO.getConsumerKey() + ":" + userId + ":" + scope + ":"
-                                + tokenBindingReference).intern()) {
+                        Lock issuanceLock = TokenIssuanceLockManager.getInstance().lock(
+                                revokeRequestDTO.getConsumerKey() + ":" + userId + ":" + scope + ":"
+                                        + tokenBindingReference);
+                        try {
                             OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
                                     .revokeAccessTokens(new String[]{accessTokenDO.getAccessToken()});
+                        } finally {
+                            issuanceLock.unlock();
                         }
                         addRevokeResponseHeaders(revokeResponseDTO,
                                 revokeRequestDTO.getToken(),
@@ -28,6 +28,7 @@ import org.wso2.carbon.identity.oauth2.dto.OAuth2IntrospectionResponseDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationRequestDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationResponseDTO;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.oauth2.validators.BatchIntrospectionHandler;
 import org.wso2.carbon.identity.oauth2.validators.TokenValidationHandler;
 
 import java.util.HashMap;
@@ -128,6 +129,21 @@ public class OAuth2TokenValidationService extends AbstractAdmin {
         return oAuth2IntrospectionResponseDTO;
     }
 
+    /**
+     * returns back the introspection responses of a batch of tokens, in the order of the requests. Each response is
+     * the same as the one returned by {@link #buildIntrospectionResponse(OAuth2TokenValidationRequestDTO)}.
+     *
+     * @param validationReqs introspection requests of the batch.
+     * @return introspection responses.
+     * @throws IdentityOAuth2ClientException if the batch contains more tokens than allowed.
+     */
+    public OAuth2IntrospectionResponseDTO[] buildIntrospectionResponses(
+            OAuth2TokenValidationRequestDTO[] validationReqs) throws IdentityOAuth2ClientException {
+
+        return BatchIntrospectionHandler.getInstance().buildIntrospectionResponses(validationReqs,
+                this::buildIntrospectionResponse);
+    }
+
     private void triggerPreValidationListeners(OAuth2TokenValidationRequestDTO requestDTO)
             throws IdentityOAuth2Exception {
         OAuthEventInterceptor oAuthEventInterceptorProxy = OAuthComponentServiceHolder.getInstance()
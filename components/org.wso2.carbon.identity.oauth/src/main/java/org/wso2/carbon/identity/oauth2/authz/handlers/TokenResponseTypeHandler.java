@@ -48,6 +48,7 @@ import org.wso2.carbon.identity.oauth2.dto.OAuth2AuthorizeRespDTO;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
 import org.wso2.carbon.identity.oauth2.token.OauthTokenIssuer;
+import org.wso2.carbon.identity.oauth2.token.TokenIssuanceLockManager;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.openidconnect.IDTokenBuilder;
 
@@ -57,6 +58,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 /**
  * @deprecated use {@link AccessTokenResponseTypeHandler} instead.
@@ -137,8 +139,9 @@ public class TokenResponseTypeHandler extends AbstractResponseTypeHandler {
 
         AccessTokenDO tokenDO = null;
 
-        synchronized ((consumerKey + ":" + authorizedUserId + ":" + scope).intern()) {
-
+        Lock issuanceLock = TokenIssuanceLockManager.getInstance().lock(
+                consumerKey + ":" + authorizedUserId + ":" + scope);
+        try {
             AccessTokenDO existingAccessTokenDO = null;
             // check if valid access token exists in cache
             if (isHashDisabled && cacheEnabled) {
@@ -450,6 +453,8 @@ public class TokenResponseTypeHandler extends AbstractResponseTypeHandler {
                 respDTO.setScope(newAccessTokenDO.getScope());
                 respDTO.setTokenType(newAccessTokenDO.getTokenType());
             }
+        } finally {
+            issuanceLock.unlock();
         }
 
         // we only need to deal with id_token and user attributes if the request is OIDC
@@ -46,6 +46,7 @@ import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.OAuth2Service;
 import org.wso2.carbon.identity.oauth2.authz.OAuthAuthzReqMessageContext;
 import org.wso2.carbon.identity.oauth2.bean.OAuthClientAuthnContext;
+import org.wso2.carbon.identity.oauth2.dao.AuthorizationCodeStore;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AuthorizeReqDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AuthorizeRespDTO;
@@ -54,6 +55,7 @@ import org.wso2.carbon.identity.oauth2.dto.OAuthRevocationResponseDTO;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
 import org.wso2.carbon.identity.oauth2.token.OauthTokenIssuer;
+import org.wso2.carbon.identity.oauth2.token.TokenIssuanceLockManager;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.openidconnect.IDTokenBuilder;
 
@@ -63,6 +65,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 import static org.wso2.carbon.identity.oauth.common.OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE;
 
@@ -159,8 +162,9 @@ public class ResponseTypeHandlerUtil {
                     + authorizationReqDTO.getUser().getLoggableUserId());
         }
 
-        synchronized ((consumerKey + ":" + authorizedUserId + ":" + scope).intern()) {
-
+        Lock issuanceLock = TokenIssuanceLockManager.getInstance().lock(
+                consumerKey + ":" + authorizedUserId + ":" + scope);
+        try {
             AccessTokenDO existingTokenBean = getExistingToken(oauthAuthzMsgCtx, authorizedUserId, cacheEnabled);
 
             // Return a new access token in each request when JWTTokenIssuer is used.
@@ -201,6 +205,8 @@ public class ResponseTypeHandlerUtil {
             // Issue a new access token.
             return generateNewAccessToken(oauthAuthzMsgCtx, existingTokenBean, oauthIssuerImpl, authorizedUserId,
                     cacheEnabled);
+        } finally {
+            issuanceLock.unlock();
         }
     }
 
@@ -263,9 +269,13 @@ public class ResponseTypeHandlerUtil {
                 authorizationReqDTO.getConsumerKey(), authorizationCode, codeId,
                 authorizationReqDTO.getPkceCodeChallenge(), authorizationReqDTO.getPkceCodeChallengeMethod());
 
-        OAuthTokenPersistenceFactory.getInstance().getAuthorizationCodeDAO()
-                .insertAuthorizationCode(authorizationCode, authorizationReqDTO.getConsumerKey(),
-                        authorizationReqDTO.getCallbackUrl(), authzCodeDO);
+        // With the write-behind store enabled, the code is only written if it is not redeemed within the flush delay.
+        if (!AuthorizationCodeStore.getInstance().store(authorizationCode, authorizationReqDTO.getConsumerKey(),
+                authorizationReqDTO.getCallbackUrl(), authzCodeDO)) {
+            OAuthTokenPersistenceFactory.getInstance().getAuthorizationCodeDAO()
+                    .insertAuthorizationCode(authorizationCode, authorizationReqDTO.getConsumerKey(),
+                            authorizationReqDTO.getCallbackUrl(), authzCodeDO);
+        }
 
         if (cacheEnabled) {
             // Cache the authz Code, here we prepend the client_key to avoid collisions with
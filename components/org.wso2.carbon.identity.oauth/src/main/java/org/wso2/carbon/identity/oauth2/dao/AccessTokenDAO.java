@@ -23,10 +23,16 @@ package org.wso2.carbon.identity.oauth2.dao;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.TokenRevocationCriteria;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Access token related data access interface.
@@ -40,6 +46,22 @@ public interface AccessTokenDAO {
                               AccessTokenDO newAccessTokenDO, AccessTokenDO existingAccessTokenDO,
                               String rawUserStoreDomain) throws IdentityOAuth2Exception;
 
+    /**
+     * Persist a batch of access tokens in a single transaction. Existing tokens attached to the entries are marked as
+     * expired within the same transaction. If any entry fails, the whole batch is rolled back.
+     *
+     * @param accessContextTokenDOs access tokens to be persisted.
+     * @throws IdentityOAuth2Exception in case of failure.
+     */
+    default void insertAccessTokens(List<AccessContextTokenDO> accessContextTokenDOs) throws IdentityOAuth2Exception {
+
+        for (AccessContextTokenDO accessContextTokenDO : accessContextTokenDOs) {
+            insertAccessToken(accessContextTokenDO.getAccessToken(), accessContextTokenDO.getConsumerKey(),
+                    accessContextTokenDO.getNewAccessTokenDO(), accessContextTokenDO.getExistingAccessTokenDO(),
+                    accessContextTokenDO.getUserStoreDomain());
+        }
+    }
+
     AccessTokenDO getLatestAccessToken(String consumerKey, AuthenticatedUser authzUser, String userStoreDomain,
                                        String scope, boolean includeExpiredTokens) throws IdentityOAuth2Exception;
 
@@ -89,6 +111,27 @@ public interface AccessTokenDAO {
 
     AccessTokenDO getAccessToken(String accessTokenIdentifier, boolean includeExpired) throws IdentityOAuth2Exception;
 
+    /**
+     * Retrieve the active access tokens for a batch of token identifiers. Identifiers that do not match an active
+     * token are left out of the returned map.
+     *
+     * @param accessTokenIdentifiers access token identifiers.
+     * @return active access tokens mapped against their identifiers.
+     * @throws IdentityOAuth2Exception in case of failure.
+     */
+    default Map<String, AccessTokenDO> getAccessTokens(Collection<String> accessTokenIdentifiers)
+            throws IdentityOAuth2Exception {
+
+        Map<String, AccessTokenDO> accessTokens = new HashMap<>();
+        for (String accessTokenIdentifier : accessTokenIdentifiers) {
+            AccessTokenDO accessTokenDO = getAccessToken(accessTokenIdentifier, false);
+            if (accessTokenDO != null) {
+                accessTokens.put(accessTokenIdentifier, accessTokenDO);
+            }
+        }
+        return accessTokens;
+    }
+
     Set<String> getAccessTokensByUser(AuthenticatedUser authenticatedUser) throws IdentityOAuth2Exception;
 
     default Set<AccessTokenDO> getAccessTokensByUserForOpenidScope(AuthenticatedUser authenticatedUser)
@@ -153,6 +196,43 @@ public interface AccessTokenDAO {
     default void revokeAccessTokensIndividually(String[] tokens, boolean isHashedToken) throws IdentityOAuth2Exception {
     }
 
+    /**
+     * Revoke the active and expired access tokens matching the given criteria. The tokens are revoked in chunks and
+     * the tokens of each chunk are handed over to the given consumer once the chunk is committed, so that the caches
+     * can be cleared while the revocation progresses.
+     *
+     * @param criteria              Criteria of the tokens to revoke.
+     * @param chunkSize             Maximum number of tokens revoked in a single transaction.
+     * @param revokedTokensConsumer Consumer of the revoked tokens of each chunk.
+     * @return Number of revoked tokens.
+     * @throws IdentityOAuth2Exception If the revocation fails.
+     */
+    default int revokeAccessTokens(TokenRevocationCriteria criteria, int chunkSize,
+                                   Consumer<List<AccessTokenDO>> revokedTokensConsumer)
+            throws IdentityOAuth2Exception {
+
+        return revokeAccessTokens(criteria, chunkSize, null, revokedTokensConsumer);
+    }
+
+    /**
+     * Revoke the active and expired access tokens matching the given criteria and accepted by the given filter. The
+     * filter is evaluated once per matching token before the token is revoked.
+     *
+     * @param criteria              Criteria of the tokens to revoke.
+     * @param chunkSize             Maximum number of tokens revoked in a single transaction.
+     * @param filter                Filter of the matching tokens to revoke, or null to revoke all the matching tokens.
+     * @param revokedTokensConsumer Consumer of the revoked tokens of each chunk.
+     * @return Number of revoked tokens.
+     * @throws IdentityOAuth2Exception If the revocation fails.
+     */
+    default int revokeAccessTokens(TokenRevocationCriteria criteria, int chunkSize, Predicate<AccessTokenDO> filter,
+                                   Consumer<List<AccessTokenDO>> revokedTokensConsumer)
+            throws IdentityOAuth2Exception {
+
+        throw new IdentityOAuth2Exception("Bulk access token revocation is not supported by: " +
+                getClass().getName());
+    }
+
     void revokeAccessToken(String tokenId, String userId) throws IdentityOAuth2Exception;
 
     void invalidateAndCreateNewAccessToken(String oldAccessTokenId, String tokenState, String consumerKey,
@@ -41,11 +41,13 @@ import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.TokenRevocationCriteria;
 import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
 import org.wso2.carbon.identity.oauth2.token.OauthTokenIssuer;
 import org.wso2.carbon.identity.oauth2.token.bindings.TokenBinding;
 import org.wso2.carbon.identity.oauth2.util.OAuth2TokenUtil;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.oauth2.validators.RevokedJWTRegistry;
 
 import java.sql.Connection;
 import java.sql.DataTruncation;
@@ -57,6 +59,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -66,6 +69,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.wso2.carbon.identity.core.util.IdentityUtil.getProperty;
@@ -83,8 +88,12 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
     private static final String OAUTH_TOKEN_PERSISTENCE_RETRY_COUNT = "OAuth.TokenPersistence.RetryCount";
     private static final int DEFAULT_TOKEN_PERSIST_RETRY_COUNT = 5;
     private static final String IDN_OAUTH2_ACCESS_TOKEN = "IDN_OAUTH2_ACCESS_TOKEN";
-    private boolean isTokenCleanupFeatureEnabled = OAuthServerConfiguration.getInstance().isTokenCleanupEnabled();
+    // Old tokens are left to the purge engine when it is configured to take over the inline cleanup.
+    private boolean isTokenCleanupFeatureEnabled = OAuthServerConfiguration.getInstance().isTokenCleanupEnabled() &&
+            !TokenPurgeEngine.getInstance().isInlineCleanupDisabled();
     private static final String DEFAULT_TOKEN_TO_SESSION_MAPPING = "DEFAULT";
+    // Expected number of scope rows per token, used to size the pages of a bulk revocation.
+    private static final int BULK_REVOCATION_ROWS_PER_TOKEN = 4;
 
     private static final Log log = LogFactory.getLog(AccessTokenDAOImpl.class);
     OldTokensCleanDAO oldTokenCleanupObject = new OldTokensCleanDAO();
@@ -124,23 +133,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     "Authorized user should be available for further execution.");
         }
 
-        String accessTokenHash = accessToken;
-        try {
-            OauthTokenIssuer oauthTokenIssuer = OAuth2Util.getOAuthTokenIssuerForOAuthApp(consumerKey);
-            //check for persist alias for the token type
-            if (oauthTokenIssuer.usePersistedAccessTokenAlias()) {
-                accessTokenHash = oauthTokenIssuer.getAccessTokenHash(accessToken);
-            }
-        } catch (OAuthSystemException e) {
-            if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.ACCESS_TOKEN)) {
-                log.debug("Error while getting access token hash for token(hashed): " + DigestUtils
-                        .sha256Hex(accessTokenHash));
-            }
-            throw new IdentityOAuth2Exception("Error while getting access token hash.", e);
-        } catch (InvalidOAuthClientException e) {
-            throw new IdentityOAuth2Exception(
-                    "Error while retrieving oauth issuer for the app with clientId: " + consumerKey, e);
-        }
+        String accessTokenHash = getPersistedAccessTokenAlias(accessToken, consumerKey);
 
         if (log.isDebugEnabled()) {
             if (IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.ACCESS_TOKEN)) {
@@ -181,51 +174,10 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
 
         try {
             insertTokenPrepStmt = connection.prepareStatement(sql);
-            insertTokenPrepStmt.setString(1, getPersistenceProcessor().getProcessedAccessTokenIdentifier(
-                    accessTokenHash));
-
-            if (accessTokenDO.getRefreshToken() != null) {
-                insertTokenPrepStmt.setString(2,
-                        getPersistenceProcessor().getProcessedRefreshToken(accessTokenDO.getRefreshToken()));
-            } else {
-                insertTokenPrepStmt.setString(2, accessTokenDO.getRefreshToken());
-            }
-
-            insertTokenPrepStmt.setString(3, accessTokenDO.getAuthzUser().getUserName());
             int tenantId = OAuth2Util.getTenantId(accessTokenDO.getAuthzUser().getTenantDomain());
-            insertTokenPrepStmt.setInt(4, tenantId);
-            insertTokenPrepStmt.setString(5, OAuth2Util.getSanitizedUserStoreDomain(userDomain));
-            insertTokenPrepStmt
-                    .setTimestamp(6, accessTokenDO.getIssuedTime(), Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-            insertTokenPrepStmt.setTimestamp(7, accessTokenDO.getRefreshTokenIssuedTime(), Calendar.getInstance(TimeZone
-                    .getTimeZone(UTC)));
-            insertTokenPrepStmt.setLong(8, accessTokenDO.getValidityPeriodInMillis());
-            insertTokenPrepStmt.setLong(9, accessTokenDO.getRefreshTokenValidityPeriodInMillis());
-            insertTokenPrepStmt.setString(10, OAuth2Util.hashScopes(accessTokenDO.getScope()));
-            insertTokenPrepStmt.setString(11, accessTokenDO.getTokenState());
-            insertTokenPrepStmt.setString(12, accessTokenDO.getTokenType());
-            insertTokenPrepStmt.setString(13, accessTokenDO.getTokenId());
-            insertTokenPrepStmt.setString(14, accessTokenDO.getGrantType());
-            insertTokenPrepStmt.setString(15, accessTokenDO.getAuthzUser().getAuthenticatedSubjectIdentifier());
-            insertTokenPrepStmt
-                    .setString(16, getHashingPersistenceProcessor().getProcessedAccessTokenIdentifier(accessTokenHash));
-            if (accessTokenDO.getRefreshToken() != null) {
-                insertTokenPrepStmt.setString(17,
-                        getHashingPersistenceProcessor().getProcessedRefreshToken(accessTokenDO.getRefreshToken()));
-            } else {
-                insertTokenPrepStmt.setString(17, accessTokenDO.getRefreshToken());
-            }
             boolean tokenBindingAvailable = isTokenBindingAvailable(accessTokenDO.getTokenBinding());
-            if (tokenBindingAvailable) {
-                insertTokenPrepStmt.setString(18, accessTokenDO.getTokenBinding().getBindingReference());
-            } else {
-                insertTokenPrepStmt.setString(18, NONE);
-            }
-            insertTokenPrepStmt.setString(19, getPersistenceProcessor().getProcessedClientId(consumerKey));
-            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                insertTokenPrepStmt.setString(20, authenticatedIDP);
-                insertTokenPrepStmt.setInt(21, tenantId);
-            }
+            setAccessTokenInsertParameters(insertTokenPrepStmt, accessTokenHash, consumerKey, accessTokenDO,
+                    userDomain, authenticatedIDP, tenantId);
             insertTokenPrepStmt.execute();
 
             String accessTokenId = accessTokenDO.getTokenId();
@@ -351,6 +303,155 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         }
     }
 
+    @Override
+    public void insertAccessTokens(List<AccessContextTokenDO> accessContextTokenDOs) throws IdentityOAuth2Exception {
+
+        if (!isPersistenceEnabled() || accessContextTokenDOs == null || accessContextTokenDOs.isEmpty()) {
+            return;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Persisting a batch of " + accessContextTokenDOs.size() + " access tokens.");
+        }
+
+        // Statements are keyed by the partitioned SQL, so tokens of different user stores end up in different batches.
+        Map<String, PreparedStatement> tokenStatements = new HashMap<>();
+        Map<String, PreparedStatement> scopeStatements = new HashMap<>();
+        Map<String, PreparedStatement> expireStatements = new HashMap<>();
+        PreparedStatement bindingStatement = null;
+        List<AccessTokenDO> expiredTokens = new ArrayList<>();
+
+        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        try {
+            for (AccessContextTokenDO accessContextTokenDO : accessContextTokenDOs) {
+                AccessTokenDO accessTokenDO = accessContextTokenDO.getNewAccessTokenDO();
+                if (accessTokenDO == null || accessTokenDO.getAuthzUser() == null) {
+                    throw new IdentityOAuth2Exception("Access token data object and the authorized user should be " +
+                            "available for further execution.");
+                }
+                String consumerKey = accessContextTokenDO.getConsumerKey();
+                String userStoreDomain =
+                        OAuth2Util.getSanitizedUserStoreDomain(accessContextTokenDO.getUserStoreDomain());
+                String userDomain = OAuth2Util.getUserStoreDomain(accessTokenDO.getAuthzUser());
+                String authenticatedIDP = OAuth2Util.getAuthenticatedIDP(accessTokenDO.getAuthzUser());
+                int tenantId = OAuth2Util.getTenantId(accessTokenDO.getAuthzUser().getTenantDomain());
+
+                AccessTokenDO existingAccessTokenDO = accessContextTokenDO.getExistingAccessTokenDO();
+                if (existingAccessTokenDO != null) {
+                    String expireSql = OAuth2Util.getTokenPartitionedSqlByUserStore(SQLQueries.UPDATE_TOKEN_STATE,
+                            userStoreDomain);
+                    PreparedStatement expireStatement = getBatchStatement(connection, expireStatements, expireSql);
+                    expireStatement.setString(1, OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED);
+                    expireStatement.setString(2, UUID.randomUUID().toString());
+                    expireStatement.setString(3, existingAccessTokenDO.getTokenId());
+                    expireStatement.addBatch();
+                    expiredTokens.add(existingAccessTokenDO);
+                }
+
+                String sql;
+                if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                    sql = SQLQueries.INSERT_OAUTH2_ACCESS_TOKEN_WITH_IDP_NAME;
+                } else {
+                    sql = SQLQueries.INSERT_OAUTH2_ACCESS_TOKEN;
+                }
+                sql = OAuth2Util.getTokenPartitionedSqlByUserStore(sql, userDomain);
+                PreparedStatement tokenStatement = getBatchStatement(connection, tokenStatements, sql);
+                String accessTokenHash = getPersistedAccessTokenAlias(accessContextTokenDO.getAccessToken(),
+                        consumerKey);
+                setAccessTokenInsertParameters(tokenStatement, accessTokenHash, consumerKey, accessTokenDO,
+                        userDomain, authenticatedIDP, tenantId);
+                tokenStatement.addBatch();
+
+                if (accessTokenDO.getScope() != null && accessTokenDO.getScope().length > 0) {
+                    String scopeSql = OAuth2Util.getTokenPartitionedSqlByUserStore(
+                            SQLQueries.INSERT_OAUTH2_TOKEN_SCOPE, userDomain);
+                    PreparedStatement scopeStatement = getBatchStatement(connection, scopeStatements, scopeSql);
+                    for (String scope : accessTokenDO.getScope()) {
+                        scopeStatement.setString(1, accessTokenDO.getTokenId());
+                        scopeStatement.setString(2, scope);
+                        scopeStatement.setInt(3, tenantId);
+                        scopeStatement.addBatch();
+                    }
+                }
+
+                if (isTokenBindingAvailable(accessTokenDO.getTokenBinding())) {
+                    if (bindingStatement == null) {
+                        bindingStatement = connection.prepareStatement(STORE_TOKEN_BINDING);
+                    }
+                    bindingStatement.setString(1, accessTokenDO.getTokenId());
+                    bindingStatement.setString(2, accessTokenDO.getTokenBinding().getBindingType());
+                    bindingStatement.setString(3, accessTokenDO.getTokenBinding().getBindingReference());
+                    bindingStatement.setString(4, accessTokenDO.getTokenBinding().getBindingValue());
+                    bindingStatement.setInt(5, tenantId);
+                    bindingStatement.addBatch();
+                }
+            }
+
+            // Existing tokens have to be expired before the new tokens are added to satisfy CON_APP_KEY.
+            executeBatches(expireStatements);
+            executeBatches(tokenStatements);
+            executeBatches(scopeStatements);
+            if (bindingStatement != null) {
+                bindingStatement.executeBatch();
+            }
+            if (isTokenCleanupFeatureEnabled) {
+                for (AccessTokenDO expiredToken : expiredTokens) {
+                    oldTokenCleanupObject.cleanupTokenByTokenId(expiredToken.getTokenId(), connection);
+                }
+            }
+            IdentityDatabaseUtil.commitTransaction(connection);
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2Exception("Error occurred while persisting a batch of " +
+                    accessContextTokenDOs.size() + " access tokens.", e);
+        } catch (IdentityOAuth2Exception e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw e;
+        } finally {
+            closeBatchStatements(tokenStatements);
+            closeBatchStatements(scopeStatements);
+            closeBatchStatements(expireStatements);
+            IdentityDatabaseUtil.closeStatement(bindingStatement);
+            IdentityDatabaseUtil.closeConnection(connection);
+        }
+
+        for (AccessTokenDO expiredToken : expiredTokens) {
+            if (StringUtils.equals(expiredToken.getGrantType(), OAuthConstants.GrantTypes.CLIENT_CREDENTIALS) ||
+                    StringUtils.equals(expiredToken.getGrantType(), OAuthConstants.GrantTypes.PASSWORD)) {
+                OAuth2TokenUtil.postUpdateAccessToken(expiredToken.getTokenId(),
+                        OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED, false);
+            } else {
+                OAuth2TokenUtil.postUpdateAccessToken(expiredToken.getTokenId(),
+                        OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED, true);
+            }
+        }
+    }
+
+    private PreparedStatement getBatchStatement(Connection connection, Map<String, PreparedStatement> statements,
+                                                String sql) throws SQLException {
+
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    private void executeBatches(Map<String, PreparedStatement> statements) throws SQLException {
+
+        for (PreparedStatement statement : statements.values()) {
+            statement.executeBatch();
+        }
+    }
+
+    private void closeBatchStatements(Map<String, PreparedStatement> statements) {
+
+        for (PreparedStatement statement : statements.values()) {
+            IdentityDatabaseUtil.closeStatement(statement);
+        }
+    }
+
     @Override
     public AccessTokenDO getLatestAccessToken(String consumerKey, AuthenticatedUser authzUser, String userStoreDomain,
                                               String scope, boolean includeExpiredTokens)
@@ -383,50 +484,60 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
 
             String sql;
             String driverName = connection.getMetaData().getDriverName();
-            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                if (driverName.contains("MySQL")
-                        || driverName.contains("MariaDB")
-                        || driverName.contains("H2")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_MYSQL;
-                } else if (connection.getMetaData().getDatabaseProductName().contains("DB2")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_DB2SQL;
-                } else if (driverName.contains("MS SQL")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_MSSQL;
-                } else if (driverName.contains("Microsoft")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_MSSQL;
-                } else if (driverName.contains("PostgreSQL")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_POSTGRESQL;
-                } else if (driverName.contains("Informix")) {
-                    // Driver name = "IBM Informix JDBC Driver for IBM Informix Dynamic Server"
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_INFORMIX;
-
+            if (!includeExpiredTokens) {
+                // There is at most one active token per user type, hence the active tokens are fetched through the
+                // unique key without sorting and the latest of them is picked below.
+                if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                    sql = SQLQueries.RETRIEVE_ACTIVE_ACCESS_TOKENS_BY_CLIENT_ID_USER_SCOPE_IDP_NAME;
                 } else {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_ORACLE;
+                    sql = SQLQueries.RETRIEVE_ACTIVE_ACCESS_TOKENS_BY_CLIENT_ID_USER_SCOPE;
+                }
+                if (driverName.contains("MS SQL") || driverName.contains("Microsoft")) {
+                    sql = sql.replace("FROM IDN_OAUTH2_ACCESS_TOKEN WHERE",
+                            "FROM IDN_OAUTH2_ACCESS_TOKEN WITH (NOLOCK) WHERE");
                 }
             } else {
-                if (driverName.contains("MySQL")
-                        || driverName.contains("MariaDB")
-                        || driverName.contains("H2")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_MYSQL;
-                } else if (connection.getMetaData().getDatabaseProductName().contains("DB2")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_DB2SQL;
-                } else if (driverName.contains("MS SQL")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_MSSQL;
-                } else if (driverName.contains("Microsoft")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_MSSQL;
-                } else if (driverName.contains("PostgreSQL")) {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_POSTGRESQL;
-                } else if (driverName.contains("Informix")) {
-                    // Driver name = "IBM Informix JDBC Driver for IBM Informix Dynamic Server"
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_INFORMIX;
+                if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                    if (driverName.contains("MySQL")
+                            || driverName.contains("MariaDB")
+                            || driverName.contains("H2")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_MYSQL;
+                    } else if (connection.getMetaData().getDatabaseProductName().contains("DB2")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_DB2SQL;
+                    } else if (driverName.contains("MS SQL")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_MSSQL;
+                    } else if (driverName.contains("Microsoft")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_MSSQL;
+                    } else if (driverName.contains("PostgreSQL")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_POSTGRESQL;
+                    } else if (driverName.contains("Informix")) {
+                        // Driver name = "IBM Informix JDBC Driver for IBM Informix Dynamic Server"
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_INFORMIX;
 
+                    } else {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_IDP_NAME_ORACLE;
+                    }
                 } else {
-                    sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_ORACLE;
-                }
-            }
+                    if (driverName.contains("MySQL")
+                            || driverName.contains("MariaDB")
+                            || driverName.contains("H2")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_MYSQL;
+                    } else if (connection.getMetaData().getDatabaseProductName().contains("DB2")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_DB2SQL;
+                    } else if (driverName.contains("MS SQL")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_MSSQL;
+                    } else if (driverName.contains("Microsoft")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_MSSQL;
+                    } else if (driverName.contains("PostgreSQL")) {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_POSTGRESQL;
+                    } else if (driverName.contains("Informix")) {
+                        // Driver name = "IBM Informix JDBC Driver for IBM Informix Dynamic Server"
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_INFORMIX;
 
-            if (!includeExpiredTokens) {
-                sql = sql.replace("TOKEN_SCOPE_HASH=?", "TOKEN_SCOPE_HASH=? AND TOKEN_STATE='ACTIVE'");
+                    } else {
+                        sql = SQLQueries.RETRIEVE_LATEST_ACCESS_TOKEN_BY_CLIENT_ID_USER_SCOPE_ORACLE;
+                    }
+                }
             }
 
             sql = OAuth2Util.getTokenPartitionedSqlByUserStore(sql, userDomain);
@@ -462,63 +573,39 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
 
             resultSet = prepStmt.executeQuery();
 
-            if (resultSet.next()) {
-                boolean returnToken = false;
-                String tokenState = resultSet.getString(7);
-                if (includeExpiredTokens) {
+            AccessTokenDO accessTokenDO = null;
+            if (includeExpiredTokens) {
+                if (resultSet.next()) {
+                    String tokenState = resultSet.getString(7);
                     if (OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(tokenState) ||
                             OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED.equals(tokenState)) {
-                        returnToken = true;
-                    }
-                } else {
-                    if (OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(tokenState)) {
-                        returnToken = true;
+                        accessTokenDO = buildLatestAccessTokenDO(resultSet, consumerKey, scope,
+                                tenantAwareUsernameWithNoUserDomain, userDomain, tenantDomain, authenticatedIDP);
                     }
                 }
-                if (returnToken) {
-                    String accessToken = getPersistenceProcessor()
-                            .getPreprocessedAccessTokenIdentifier(resultSet.getString(1));
-                    String refreshToken = null;
-                    if (resultSet.getString(2) != null) {
-                        refreshToken = getPersistenceProcessor().getPreprocessedRefreshToken(resultSet.getString(2));
-                    }
-                    long issuedTime = resultSet.getTimestamp(3, Calendar.getInstance(TimeZone.getTimeZone(UTC)))
-                            .getTime();
-                    long refreshTokenIssuedTime = resultSet.getTimestamp(4, Calendar.getInstance(TimeZone.getTimeZone
-                            (UTC))).getTime();
-                    long validityPeriodInMillis = resultSet.getLong(5);
-                    long refreshTokenValidityPeriodInMillis = resultSet.getLong(6);
-
-                    String userType = resultSet.getString(8);
-                    String tokenId = resultSet.getString(9);
-                    String subjectIdentifier = resultSet.getString(10);
-                    String grantType = resultSet.getString(11);
-                    // data loss at dividing the validity period but can be neglected
-                    AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(tenantAwareUsernameWithNoUserDomain,
-                            userDomain, tenantDomain, authenticatedIDP);
-
-                    user.setAuthenticatedSubjectIdentifier(subjectIdentifier);
-                    AccessTokenDO accessTokenDO = new AccessTokenDO(consumerKey, user, OAuth2Util.buildScopeArray
-                            (scope), new Timestamp(issuedTime), new Timestamp(refreshTokenIssuedTime)
-                            , validityPeriodInMillis, refreshTokenValidityPeriodInMillis, userType);
-                    accessTokenDO.setAccessToken(accessToken);
-                    accessTokenDO.setRefreshToken(refreshToken);
-                    accessTokenDO.setTokenState(tokenState);
-                    accessTokenDO.setTokenId(tokenId);
-                    accessTokenDO.setGrantType(grantType);
-                    if (StringUtils.isNotBlank(tokenBindingReference) && !NONE.equals(tokenBindingReference)) {
-                        setTokenBindingToAccessTokenDO(accessTokenDO, connection, tokenId);
-                    }
-                    if (log.isDebugEnabled() && IdentityUtil
-                            .isTokenLoggable(IdentityConstants.IdentityTokens.ACCESS_TOKEN)) {
-                        log.debug("Retrieved latest access token(hashed): " + DigestUtils.sha256Hex(accessToken)
-                                + " for client: " + consumerKey + " user: " + authzUser.getLoggableUserId()
-                                + " scope: " + scope + " token binding reference: " + tokenBindingReference);
+            } else {
+                while (resultSet.next()) {
+                    AccessTokenDO activeTokenDO = buildLatestAccessTokenDO(resultSet, consumerKey, scope,
+                            tenantAwareUsernameWithNoUserDomain, userDomain, tenantDomain, authenticatedIDP);
+                    if (accessTokenDO == null || activeTokenDO.getIssuedTime().after(accessTokenDO.getIssuedTime())) {
+                        accessTokenDO = activeTokenDO;
                     }
-                    return accessTokenDO;
                 }
             }
-            return null;
+            if (accessTokenDO == null) {
+                return null;
+            }
+            if (StringUtils.isNotBlank(tokenBindingReference) && !NONE.equals(tokenBindingReference)) {
+                setTokenBindingToAccessTokenDO(accessTokenDO, connection, accessTokenDO.getTokenId());
+            }
+            if (log.isDebugEnabled() && IdentityUtil
+                    .isTokenLoggable(IdentityConstants.IdentityTokens.ACCESS_TOKEN)) {
+                log.debug("Retrieved latest access token(hashed): " +
+                        DigestUtils.sha256Hex(accessTokenDO.getAccessToken()) + " for client: " + consumerKey +
+                        " user: " + authzUser.getLoggableUserId() + " scope: " + scope +
+                        " token binding reference: " + tokenBindingReference);
+            }
+            return accessTokenDO;
         } catch (SQLException e) {
             String errorMsg = "Error occurred while trying to retrieve latest 'ACTIVE' " +
                     "access token for Client ID : " + consumerKey + ", User ID : " + authzUser +
@@ -532,6 +619,45 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         }
     }
 
+    private AccessTokenDO buildLatestAccessTokenDO(ResultSet resultSet, String consumerKey, String scope,
+                                                   String tenantAwareUsernameWithNoUserDomain, String userDomain,
+                                                   String tenantDomain, String authenticatedIDP)
+            throws SQLException, IdentityOAuth2Exception {
+
+        String accessToken = getPersistenceProcessor()
+                .getPreprocessedAccessTokenIdentifier(resultSet.getString(1));
+        String refreshToken = null;
+        if (resultSet.getString(2) != null) {
+            refreshToken = getPersistenceProcessor().getPreprocessedRefreshToken(resultSet.getString(2));
+        }
+        long issuedTime = resultSet.getTimestamp(3, Calendar.getInstance(TimeZone.getTimeZone(UTC)))
+                .getTime();
+        long refreshTokenIssuedTime = resultSet.getTimestamp(4, Calendar.getInstance(TimeZone.getTimeZone
+                (UTC))).getTime();
+        long validityPeriodInMillis = resultSet.getLong(5);
+        long refreshTokenValidityPeriodInMillis = resultSet.getLong(6);
+
+        String tokenState = resultSet.getString(7);
+        String userType = resultSet.getString(8);
+        String tokenId = resultSet.getString(9);
+        String subjectIdentifier = resultSet.getString(10);
+        String grantType = resultSet.getString(11);
+        // data loss at dividing the validity period but can be neglected
+        AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(tenantAwareUsernameWithNoUserDomain,
+                userDomain, tenantDomain, authenticatedIDP);
+
+        user.setAuthenticatedSubjectIdentifier(subjectIdentifier);
+        AccessTokenDO accessTokenDO = new AccessTokenDO(consumerKey, user, OAuth2Util.buildScopeArray
+                (scope), new Timestamp(issuedTime), new Timestamp(refreshTokenIssuedTime)
+                , validityPeriodInMillis, refreshTokenValidityPeriodInMillis, userType);
+        accessTokenDO.setAccessToken(accessToken);
+        accessTokenDO.setRefreshToken(refreshToken);
+        accessTokenDO.setTokenState(tokenState);
+        accessTokenDO.setTokenId(tokenId);
+        accessTokenDO.setGrantType(grantType);
+        return accessTokenDO;
+    }
+
     private AccessTokenDO getLatestAccessTokenByState(Connection connection, String consumerKey,
                                                       AuthenticatedUser authzUser, String userStoreDomain, String scope,
                                                       boolean active)
@@ -887,53 +1013,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             while (resultSet.next()) {
 
                 if (iterateId == 0) {
-
-                    String consumerKey = getPersistenceProcessor().getPreprocessedClientId(resultSet.getString(1));
-                    String authorizedUser = resultSet.getString(2);
-                    int tenantId = resultSet.getInt(3);
-                    String tenantDomain = OAuth2Util.getTenantDomain(tenantId);
-                    String userDomain = resultSet.getString(4);
-                    String[] scope = OAuth2Util.buildScopeArray(resultSet.getString(5));
-                    Timestamp issuedTime = resultSet.getTimestamp(6, Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-                    Timestamp refreshTokenIssuedTime = resultSet.getTimestamp(7,
-                            Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-                    long validityPeriodInMillis = resultSet.getLong(8);
-                    long refreshTokenValidityPeriodMillis = resultSet.getLong(9);
-                    String tokenType = resultSet.getString(10);
-                    String refreshToken = resultSet.getString(11);
-                    String tokenId = resultSet.getString(12);
-                    String grantType = resultSet.getString(13);
-                    String subjectIdentifier = resultSet.getString(14);
-                    String authenticatedIDP = null;
-                    String tokenBindingReference = resultSet.getString(15);
-                    if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                        authenticatedIDP = resultSet.getString(16);
-                    }
-
-                    AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authorizedUser,
-                            userDomain, tenantDomain, authenticatedIDP);
-                    ServiceProvider serviceProvider;
-                    try {
-                        serviceProvider = OAuth2ServiceComponentHolder.getApplicationMgtService().
-                                getServiceProviderByClientId(consumerKey, OAuthConstants.Scope.OAUTH2, tenantDomain);
-                    } catch (IdentityApplicationManagementException e) {
-                        throw new IdentityOAuth2Exception("Error occurred while retrieving OAuth2 application data " +
-                                "for client id " + consumerKey, e);
-                    }
-
-                    user.setAuthenticatedSubjectIdentifier(subjectIdentifier, serviceProvider);
-
-                    dataDO = new AccessTokenDO(consumerKey, user, scope, issuedTime, refreshTokenIssuedTime,
-                            validityPeriodInMillis, refreshTokenValidityPeriodMillis, tokenType);
-                    dataDO.setAccessToken(accessTokenIdentifier);
-                    dataDO.setRefreshToken(refreshToken);
-                    dataDO.setTokenId(tokenId);
-                    dataDO.setGrantType(grantType);
-                    dataDO.setTenantID(tenantId);
-
-                    if (StringUtils.isNotBlank(tokenBindingReference) && !NONE.equals(tokenBindingReference)) {
-                        setTokenBindingToAccessTokenDO(dataDO, connection, tokenId);
-                    }
+                    dataDO = buildActiveAccessTokenDO(resultSet, accessTokenIdentifier, connection);
                 } else {
                     scopes.add(resultSet.getString(5));
                 }
@@ -955,6 +1035,127 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         return dataDO;
     }
 
+    @Override
+    public Map<String, AccessTokenDO> getAccessTokens(Collection<String> accessTokenIdentifiers)
+            throws IdentityOAuth2Exception {
+
+        if (OAuth2Util.checkAccessTokenPartitioningEnabled() && OAuth2Util.checkUserNameAssertionEnabled()) {
+            // Tokens of a batch may be stored in different partitions, hence they are retrieved one by one.
+            return AccessTokenDAO.super.getAccessTokens(accessTokenIdentifiers);
+        }
+
+        Map<String, AccessTokenDO> accessTokens = new HashMap<>();
+        Map<String, String> accessTokenIdentifiersByHash = new HashMap<>();
+        for (String accessTokenIdentifier : accessTokenIdentifiers) {
+            accessTokenIdentifiersByHash.put(getHashingPersistenceProcessor()
+                    .getProcessedAccessTokenIdentifier(accessTokenIdentifier), accessTokenIdentifier);
+        }
+        if (accessTokenIdentifiersByHash.isEmpty()) {
+            return accessTokens;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Retrieving information of " + accessTokenIdentifiersByHash.size() + " access tokens in bulk.");
+        }
+
+        String sql;
+        int accessTokenHashColumn;
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            sql = SQLQueries.RETRIEVE_ACTIVE_ACCESS_TOKENS_IDP_NAME;
+            accessTokenHashColumn = 17;
+        } else {
+            sql = SQLQueries.RETRIEVE_ACTIVE_ACCESS_TOKENS;
+            accessTokenHashColumn = 16;
+        }
+        sql = sql.replace(SQLQueries.ACCESS_TOKEN_HASH_LIST_PLACEHOLDER,
+                String.join(", ", Collections.nCopies(accessTokenIdentifiersByHash.size(), "?")));
+
+        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        PreparedStatement prepStmt = null;
+        ResultSet resultSet = null;
+        try {
+            prepStmt = connection.prepareStatement(sql);
+            int parameterIndex = 1;
+            for (String accessTokenHash : accessTokenIdentifiersByHash.keySet()) {
+                prepStmt.setString(parameterIndex++, accessTokenHash);
+            }
+            resultSet = prepStmt.executeQuery();
+
+            // A token with several scopes is returned as one row per scope.
+            while (resultSet.next()) {
+                String accessTokenIdentifier =
+                        accessTokenIdentifiersByHash.get(resultSet.getString(accessTokenHashColumn));
+                if (accessTokenIdentifier == null) {
+                    continue;
+                }
+                AccessTokenDO dataDO = accessTokens.get(accessTokenIdentifier);
+                if (dataDO == null) {
+                    accessTokens.put(accessTokenIdentifier,
+                            buildActiveAccessTokenDO(resultSet, accessTokenIdentifier, connection));
+                } else {
+                    dataDO.setScope((String[]) ArrayUtils.add(dataDO.getScope(), resultSet.getString(5)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IdentityOAuth2Exception("Error when retrieving access tokens in bulk", e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
+        }
+        return accessTokens;
+    }
+
+    private AccessTokenDO buildActiveAccessTokenDO(ResultSet resultSet, String accessTokenIdentifier,
+                                                   Connection connection)
+            throws SQLException, IdentityOAuth2Exception {
+
+        String consumerKey = getPersistenceProcessor().getPreprocessedClientId(resultSet.getString(1));
+        String authorizedUser = resultSet.getString(2);
+        int tenantId = resultSet.getInt(3);
+        String tenantDomain = OAuth2Util.getTenantDomain(tenantId);
+        String userDomain = resultSet.getString(4);
+        String[] scope = OAuth2Util.buildScopeArray(resultSet.getString(5));
+        Timestamp issuedTime = resultSet.getTimestamp(6, Calendar.getInstance(TimeZone.getTimeZone(UTC)));
+        Timestamp refreshTokenIssuedTime = resultSet.getTimestamp(7,
+                Calendar.getInstance(TimeZone.getTimeZone(UTC)));
+        long validityPeriodInMillis = resultSet.getLong(8);
+        long refreshTokenValidityPeriodMillis = resultSet.getLong(9);
+        String tokenType = resultSet.getString(10);
+        String refreshToken = resultSet.getString(11);
+        String tokenId = resultSet.getString(12);
+        String grantType = resultSet.getString(13);
+        String subjectIdentifier = resultSet.getString(14);
+        String authenticatedIDP = null;
+        String tokenBindingReference = resultSet.getString(15);
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            authenticatedIDP = resultSet.getString(16);
+        }
+
+        AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authorizedUser,
+                userDomain, tenantDomain, authenticatedIDP);
+        ServiceProvider serviceProvider;
+        try {
+            serviceProvider = OAuth2ServiceComponentHolder.getApplicationMgtService().
+                    getServiceProviderByClientId(consumerKey, OAuthConstants.Scope.OAUTH2, tenantDomain);
+        } catch (IdentityApplicationManagementException e) {
+            throw new IdentityOAuth2Exception("Error occurred while retrieving OAuth2 application data " +
+                    "for client id " + consumerKey, e);
+        }
+
+        user.setAuthenticatedSubjectIdentifier(subjectIdentifier, serviceProvider);
+
+        AccessTokenDO dataDO = new AccessTokenDO(consumerKey, user, scope, issuedTime, refreshTokenIssuedTime,
+                validityPeriodInMillis, refreshTokenValidityPeriodMillis, tokenType);
+        dataDO.setAccessToken(accessTokenIdentifier);
+        dataDO.setRefreshToken(refreshToken);
+        dataDO.setTokenId(tokenId);
+        dataDO.setGrantType(grantType);
+        dataDO.setTenantID(tenantId);
+
+        if (StringUtils.isNotBlank(tokenBindingReference) && !NONE.equals(tokenBindingReference)) {
+            setTokenBindingToAccessTokenDO(dataDO, connection, tokenId);
+        }
+        return dataDO;
+    }
+
     private void setTokenBindingToAccessTokenDO(AccessTokenDO dataDO, Connection connection, String tokenId)
             throws SQLException {
 
@@ -1244,6 +1445,8 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                 }
                 ps.executeBatch();
                 IdentityDatabaseUtil.commitTransaction(connection);
+                // Self-contained tokens validated locally are rejected once their revocation is committed.
+                RevokedJWTRegistry.getInstance().revokeTokens(tokens);
                 // To revoke request objects which have persisted against the access token.
                 OAuth2TokenUtil.postUpdateAccessTokens(Arrays.asList(tokens), OAuthConstants.TokenStates.
                         TOKEN_STATE_REVOKED);
@@ -1272,6 +1475,8 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     ps.setString(3, getHashingPersistenceProcessor().getProcessedAccessTokenIdentifier(tokens[0]));
                 }
                 ps.executeUpdate();
+                // Self-contained tokens validated locally are rejected once their revocation is committed.
+                RevokedJWTRegistry.getInstance().revokeTokens(tokens);
 
                 // To revoke request objects which have persisted against the access token.
                 OAuth2TokenUtil.postUpdateAccessTokens(Arrays.asList(tokens), OAuthConstants.TokenStates.
@@ -1357,6 +1562,8 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                 }
             }
             IdentityDatabaseUtil.commitTransaction(connection);
+            // Self-contained tokens validated locally are rejected once their revocation is committed.
+            RevokedJWTRegistry.getInstance().revokeTokens(tokens);
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
             throw new IdentityOAuth2Exception("Error occurred while revoking Access Token : " +
@@ -1366,6 +1573,297 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         }
     }
 
+    /**
+     * Revoke the active and expired access tokens matching the given criteria. The matching tokens are read in pages
+     * of at most chunk size tokens, ordered by the token id, each page continuing after the last token of the
+     * previous one. The cursor of a page is closed before its tokens are filtered and revoked with a single UPDATE
+     * statement in their own transaction, so that a large revocation neither holds a cursor or the row locks of every
+     * token until the end nor issues a statement per token.
+     *
+     * @param criteria              Criteria of the tokens to revoke.
+     * @param chunkSize             Maximum number of tokens revoked in a single transaction.
+     * @param filter                Filter of the matching tokens to revoke, or null to revoke all the matching tokens.
+     * @param revokedTokensConsumer Consumer of the revoked tokens of each chunk.
+     * @return Number of revoked tokens.
+     * @throws IdentityOAuth2Exception If the revocation fails.
+     */
+    @Override
+    public int revokeAccessTokens(TokenRevocationCriteria criteria, int chunkSize, Predicate<AccessTokenDO> filter,
+                                  Consumer<List<AccessTokenDO>> revokedTokensConsumer)
+            throws IdentityOAuth2Exception {
+
+        if (criteria == null || criteria.isEmpty()) {
+            throw new IdentityOAuth2Exception("At least one criterion is required to revoke access tokens in bulk.");
+        }
+        if (StringUtils.isNotBlank(criteria.getUserName()) && !criteria.isTenantSet()) {
+            throw new IdentityOAuth2Exception("Tenant is required to revoke the access tokens of a user in bulk.");
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Revoking access tokens in bulk matching: " + criteria);
+        }
+
+        int revokedCount = 0;
+        String lastTokenId = null;
+        // A row is read for each scope of a token, hence a page is read with some headroom for the scope rows.
+        int maxRows = chunkSize * BULK_REVOCATION_ROWS_PER_TOKEN;
+        while (true) {
+            BulkRevocationPage page = readBulkRevocationPage(criteria, lastTokenId, chunkSize, maxRows);
+            if (page.accessTokenDOs.isEmpty()) {
+                if (!page.hasMore) {
+                    break;
+                }
+                // The scope rows of a single token do not fit in a page.
+                maxRows *= 2;
+                continue;
+            }
+            lastTokenId = page.accessTokenDOs.get(page.accessTokenDOs.size() - 1).getTokenId();
+
+            List<AccessTokenDO> chunk = new ArrayList<>(page.accessTokenDOs.size());
+            for (AccessTokenDO accessTokenDO : page.accessTokenDOs) {
+                if (filter == null || filter.test(accessTokenDO)) {
+                    chunk.add(accessTokenDO);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                revokedCount += revokeAccessTokenChunk(chunk, criteria.isAuditRevokedTokens(), revokedTokensConsumer);
+            }
+            if (!page.hasMore) {
+                break;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Revoked " + revokedCount + " access tokens in bulk matching: " + criteria);
+        }
+        return revokedCount;
+    }
+
+    /**
+     * Read the next page of the tokens matching the given criteria, after the given token id.
+     */
+    private BulkRevocationPage readBulkRevocationPage(TokenRevocationCriteria criteria, String lastTokenId,
+                                                      int chunkSize, int maxRows) throws IdentityOAuth2Exception {
+
+        BulkRevocationPage page = new BulkRevocationPage(chunkSize);
+        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        PreparedStatement prepStmt = null;
+        ResultSet resultSet = null;
+        try {
+            prepStmt = prepareBulkRevocationQuery(connection, criteria, lastTokenId);
+            prepStmt.setMaxRows(maxRows);
+            prepStmt.setFetchSize(maxRows);
+            resultSet = prepStmt.executeQuery();
+
+            int rowCount = 0;
+            String currentTokenId = null;
+            AccessTokenDO accessTokenDO = null;
+            while (resultSet.next()) {
+                rowCount++;
+                String tokenId = resultSet.getString(1);
+                String scope = resultSet.getString(9);
+                // Rows are ordered by the token id, hence the scopes of a token are in consecutive rows.
+                if (tokenId.equals(currentTokenId)) {
+                    if (StringUtils.isNotBlank(scope)) {
+                        accessTokenDO.setScope((String[]) ArrayUtils.add(accessTokenDO.getScope(), scope.trim()));
+                    }
+                    continue;
+                }
+                if (page.accessTokenDOs.size() == chunkSize) {
+                    page.hasMore = true;
+                    break;
+                }
+                currentTokenId = tokenId;
+                accessTokenDO = buildAccessTokenForRevocation(resultSet, tokenId, scope);
+                page.accessTokenDOs.add(accessTokenDO);
+            }
+            if (!page.hasMore && rowCount == maxRows) {
+                // The last token may be missing some of its scope rows, hence it is read with the next page.
+                page.hasMore = true;
+                page.accessTokenDOs.remove(page.accessTokenDOs.size() - 1);
+            }
+        } catch (SQLException e) {
+            throw new IdentityOAuth2Exception("Error occurred while reading access tokens to revoke in bulk " +
+                    "matching: " + criteria, e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
+        }
+        return page;
+    }
+
+    private PreparedStatement prepareBulkRevocationQuery(Connection connection, TokenRevocationCriteria criteria,
+                                                         String lastTokenId)
+            throws SQLException, IdentityOAuth2Exception {
+
+        String sql;
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            sql = SQLQueries.LIST_TOKENS_FOR_BULK_REVOCATION_IDP_NAME;
+        } else {
+            sql = SQLQueries.LIST_TOKENS_FOR_BULK_REVOCATION;
+        }
+
+        String userStoreDomain = null;
+        if (StringUtils.isNotBlank(criteria.getUserStoreDomain()) || StringUtils.isNotBlank(criteria.getUserName())) {
+            userStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(criteria.getUserStoreDomain());
+        }
+        boolean isUsernameCaseSensitive = true;
+        StringBuilder conditions = new StringBuilder();
+        if (StringUtils.isNotBlank(criteria.getConsumerKey())) {
+            conditions.append(SQLQueries.BULK_REVOCATION_BY_CONSUMER_KEY);
+        }
+        if (criteria.isTenantSet()) {
+            conditions.append(SQLQueries.BULK_REVOCATION_BY_TENANT);
+        }
+        if (StringUtils.isNotBlank(criteria.getUserName())) {
+            isUsernameCaseSensitive = IdentityUtil.isUserStoreCaseSensitive(userStoreDomain, criteria.getTenantId());
+            if (isUsernameCaseSensitive) {
+                conditions.append(SQLQueries.BULK_REVOCATION_BY_USER);
+            } else {
+                conditions.append(SQLQueries.BULK_REVOCATION_BY_USER_CASE_INSENSITIVE);
+            }
+        }
+        if (userStoreDomain != null) {
+            conditions.append(SQLQueries.BULK_REVOCATION_BY_USER_STORE);
+        }
+        if (StringUtils.isNotBlank(criteria.getTokenBindingReference())) {
+            conditions.append(SQLQueries.BULK_REVOCATION_BY_BINDING_REF);
+        }
+        if (lastTokenId != null) {
+            conditions.append(SQLQueries.BULK_REVOCATION_AFTER_TOKEN_ID);
+        }
+        sql = sql.replace(SQLQueries.TOKEN_REVOCATION_CRITERIA_PLACEHOLDER, conditions.toString());
+
+        PreparedStatement prepStmt = connection.prepareStatement(sql);
+        int parameterIndex = 1;
+        if (StringUtils.isNotBlank(criteria.getConsumerKey())) {
+            prepStmt.setString(parameterIndex++, getPersistenceProcessor().getProcessedClientId(
+                    criteria.getConsumerKey()));
+        }
+        if (criteria.isTenantSet()) {
+            prepStmt.setInt(parameterIndex++, criteria.getTenantId());
+        }
+        if (StringUtils.isNotBlank(criteria.getUserName())) {
+            prepStmt.setString(parameterIndex++, isUsernameCaseSensitive ? criteria.getUserName() :
+                    criteria.getUserName().toLowerCase());
+        }
+        if (userStoreDomain != null) {
+            prepStmt.setString(parameterIndex++, userStoreDomain);
+        }
+        if (StringUtils.isNotBlank(criteria.getTokenBindingReference())) {
+            prepStmt.setString(parameterIndex++, criteria.getTokenBindingReference());
+            prepStmt.setString(parameterIndex++, criteria.getTokenBindingReference());
+        }
+        if (lastTokenId != null) {
+            prepStmt.setString(parameterIndex, lastTokenId);
+        }
+        return prepStmt;
+    }
+
+    private AccessTokenDO buildAccessTokenForRevocation(ResultSet resultSet, String tokenId, String scope)
+            throws SQLException, IdentityOAuth2Exception {
+
+        int tenantId = resultSet.getInt(5);
+        String authenticatedIDP = null;
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            authenticatedIDP = resultSet.getString(10);
+        }
+        AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(resultSet.getString(4), resultSet.getString(6),
+                OAuth2Util.getTenantDomain(tenantId), authenticatedIDP);
+
+        AccessTokenDO accessTokenDO = new AccessTokenDO();
+        accessTokenDO.setTokenId(tokenId);
+        accessTokenDO.setAccessToken(getPersistenceProcessor().getPreprocessedAccessTokenIdentifier(
+                resultSet.getString(2)));
+        accessTokenDO.setConsumerKey(getPersistenceProcessor().getPreprocessedClientId(resultSet.getString(3)));
+        accessTokenDO.setAuthzUser(user);
+        accessTokenDO.setTenantID(tenantId);
+        accessTokenDO.setTokenType(resultSet.getString(7));
+        accessTokenDO.setScope(OAuth2Util.buildScopeArray(scope));
+        String tokenBindingReference = resultSet.getString(8);
+        if (StringUtils.isNotBlank(tokenBindingReference) && !NONE.equals(tokenBindingReference)) {
+            TokenBinding tokenBinding = new TokenBinding();
+            tokenBinding.setBindingReference(tokenBindingReference);
+            accessTokenDO.setTokenBinding(tokenBinding);
+        }
+        return accessTokenDO;
+    }
+
+    private int revokeAccessTokenChunk(List<AccessTokenDO> accessTokenDOs, boolean auditRevokedTokens,
+                                       Consumer<List<AccessTokenDO>> revokedTokensConsumer)
+            throws IdentityOAuth2Exception {
+
+        List<String> tokenIds = new ArrayList<>(accessTokenDOs.size());
+        List<String> accessTokens = new ArrayList<>(accessTokenDOs.size());
+        for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+            tokenIds.add(accessTokenDO.getTokenId());
+            accessTokens.add(accessTokenDO.getAccessToken());
+        }
+        String tokenIdList = String.join(", ", Collections.nCopies(tokenIds.size(), "?"));
+        int revokedCount;
+        Connection connection = IdentityDatabaseUtil.getDBConnection(true);
+        try {
+            try (PreparedStatement revokeStmt = connection.prepareStatement(SQLQueries
+                    .REVOKE_ACCESS_TOKENS_BY_TOKEN_ID.replace(SQLQueries.TOKEN_ID_LIST_PLACEHOLDER, tokenIdList))) {
+                revokeStmt.setString(1, OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+                setTokenIds(revokeStmt, 2, tokenIds);
+                revokedCount = revokeStmt.executeUpdate();
+            }
+            if (isTokenCleanupFeatureEnabled && auditRevokedTokens) {
+                moveRevokedTokensToAuditTable(connection, tokenIds, tokenIdList);
+            }
+            IdentityDatabaseUtil.commitTransaction(connection);
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2Exception("Error occurred while revoking a chunk of " + tokenIds.size() +
+                    " access tokens.", e);
+        } finally {
+            IdentityDatabaseUtil.closeConnection(connection);
+        }
+        // Self-contained tokens validated locally are rejected once their revocation is committed.
+        RevokedJWTRegistry.getInstance().revokeTokens(accessTokens.toArray(new String[0]));
+        if (log.isDebugEnabled()) {
+            log.debug("Revoked a chunk of " + revokedCount + " access tokens.");
+        }
+
+        // To revoke request objects which have persisted against the access tokens.
+        OAuth2TokenUtil.postUpdateAccessTokens(tokenIds, OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+        if (revokedTokensConsumer != null) {
+            revokedTokensConsumer.accept(accessTokenDOs);
+        }
+        return revokedCount;
+    }
+
+    private void moveRevokedTokensToAuditTable(Connection connection, List<String> tokenIds, String tokenIdList)
+            throws SQLException {
+
+        if (OAuthServerConfiguration.getInstance().useRetainOldAccessTokens()) {
+            String sql;
+            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                sql = SQLQueries.STORE_REVOKED_TOKENS_IN_AUDIT_WITH_IDP_NAME;
+            } else {
+                sql = SQLQueries.STORE_REVOKED_TOKENS_IN_AUDIT;
+            }
+            try (PreparedStatement auditStmt = connection.prepareStatement(
+                    sql.replace(SQLQueries.TOKEN_ID_LIST_PLACEHOLDER, tokenIdList))) {
+                auditStmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+                setTokenIds(auditStmt, 2, tokenIds);
+                auditStmt.executeUpdate();
+            }
+        }
+        try (PreparedStatement deleteStmt = connection.prepareStatement(SQLQueries.DELETE_TOKENS_BY_TOKEN_ID
+                .replace(SQLQueries.TOKEN_ID_LIST_PLACEHOLDER, tokenIdList))) {
+            setTokenIds(deleteStmt, 1, tokenIds);
+            deleteStmt.executeUpdate();
+        }
+    }
+
+    private static void setTokenIds(PreparedStatement prepStmt, int startIndex, List<String> tokenIds)
+            throws SQLException {
+
+        int parameterIndex = startIndex;
+        for (String tokenId : tokenIds) {
+            prepStmt.setString(parameterIndex++, tokenId);
+        }
+    }
+
     /**
      * Ths method is to revoke specific tokens
      *
@@ -2301,6 +2799,79 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         }
     }
 
+    private String getPersistedAccessTokenAlias(String accessToken, String consumerKey)
+            throws IdentityOAuth2Exception {
+
+        String accessTokenHash = accessToken;
+        try {
+            OauthTokenIssuer oauthTokenIssuer = OAuth2Util.getOAuthTokenIssuerForOAuthApp(consumerKey);
+            //check for persist alias for the token type
+            if (oauthTokenIssuer.usePersistedAccessTokenAlias()) {
+                accessTokenHash = oauthTokenIssuer.getAccessTokenHash(accessToken);
+            }
+        } catch (OAuthSystemException e) {
+            if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.ACCESS_TOKEN)) {
+                log.debug("Error while getting access token hash for token(hashed): " + DigestUtils
+                        .sha256Hex(accessTokenHash));
+            }
+            throw new IdentityOAuth2Exception("Error while getting access token hash.", e);
+        } catch (InvalidOAuthClientException e) {
+            throw new IdentityOAuth2Exception(
+                    "Error while retrieving oauth issuer for the app with clientId: " + consumerKey, e);
+        }
+        return accessTokenHash;
+    }
+
+    private void setAccessTokenInsertParameters(PreparedStatement insertTokenPrepStmt, String accessTokenHash,
+                                                String consumerKey, AccessTokenDO accessTokenDO, String userDomain,
+                                                String authenticatedIDP, int tenantId)
+            throws SQLException, IdentityOAuth2Exception {
+
+        insertTokenPrepStmt.setString(1, getPersistenceProcessor().getProcessedAccessTokenIdentifier(
+                accessTokenHash));
+
+        if (accessTokenDO.getRefreshToken() != null) {
+            insertTokenPrepStmt.setString(2,
+                    getPersistenceProcessor().getProcessedRefreshToken(accessTokenDO.getRefreshToken()));
+        } else {
+            insertTokenPrepStmt.setString(2, accessTokenDO.getRefreshToken());
+        }
+
+        insertTokenPrepStmt.setString(3, accessTokenDO.getAuthzUser().getUserName());
+        insertTokenPrepStmt.setInt(4, tenantId);
+        insertTokenPrepStmt.setString(5, OAuth2Util.getSanitizedUserStoreDomain(userDomain));
+        insertTokenPrepStmt
+                .setTimestamp(6, accessTokenDO.getIssuedTime(), Calendar.getInstance(TimeZone.getTimeZone(UTC)));
+        insertTokenPrepStmt.setTimestamp(7, accessTokenDO.getRefreshTokenIssuedTime(), Calendar.getInstance(TimeZone
+                .getTimeZone(UTC)));
+        insertTokenPrepStmt.setLong(8, accessTokenDO.getValidityPeriodInMillis());
+        insertTokenPrepStmt.setLong(9, accessTokenDO.getRefreshTokenValidityPeriodInMillis());
+        insertTokenPrepStmt.setString(10, OAuth2Util.hashScopes(accessTokenDO.getScope()));
+        insertTokenPrepStmt.setString(11, accessTokenDO.getTokenState());
+        insertTokenPrepStmt.setString(12, accessTokenDO.getTokenType());
+        insertTokenPrepStmt.setString(13, accessTokenDO.getTokenId());
+        insertTokenPrepStmt.setString(14, accessTokenDO.getGrantType());
+        insertTokenPrepStmt.setString(15, accessTokenDO.getAuthzUser().getAuthenticatedSubjectIdentifier());
+        insertTokenPrepStmt
+                .setString(16, getHashingPersistenceProcessor().getProcessedAccessTokenIdentifier(accessTokenHash));
+        if (accessTokenDO.getRefreshToken() != null) {
+            insertTokenPrepStmt.setString(17,
+                    getHashingPersistenceProcessor().getProcessedRefreshToken(accessTokenDO.getRefreshToken()));
+        } else {
+            insertTokenPrepStmt.setString(17, accessTokenDO.getRefreshToken());
+        }
+        if (isTokenBindingAvailable(accessTokenDO.getTokenBinding())) {
+            insertTokenPrepStmt.setString(18, accessTokenDO.getTokenBinding().getBindingReference());
+        } else {
+            insertTokenPrepStmt.setString(18, NONE);
+        }
+        insertTokenPrepStmt.setString(19, getPersistenceProcessor().getProcessedClientId(consumerKey));
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            insertTokenPrepStmt.setString(20, authenticatedIDP);
+            insertTokenPrepStmt.setInt(21, tenantId);
+        }
+    }
+
     private int getTokenPersistRetryCount() {
 
         int tokenPersistRetryCount = DEFAULT_TOKEN_PERSIST_RETRY_COUNT;
@@ -2764,10 +3335,25 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     }),
                     (PreparedStatement preparedStatement) -> {
                         preparedStatement.setString(1, bindingRef);
+                        preparedStatement.setString(2, bindingRef);
                     });
             return new HashSet<>(tokenMap.values());
         } catch (DataAccessException e) {
             throw new IdentityOAuth2Exception("Error occurred while retrieving access tokens.", e);
         }
     }
+
+    /**
+     * Page of the access tokens read for a bulk revocation.
+     */
+    private static class BulkRevocationPage {
+
+        private final List<AccessTokenDO> accessTokenDOs;
+        private boolean hasMore;
+
+        BulkRevocationPage(int chunkSize) {
+
+            this.accessTokenDOs = new ArrayList<>(chunkSize);
+        }
+    }
 }
@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Node local write-behind store of the authorization codes issued by this node. When enabled, a newly issued code is
+ * kept in memory instead of being inserted into the database. A code redeemed on this node within the flush delay
+ * is consumed from memory and never written to the database, so that the authorization code grant only writes the
+ * access token. Codes which are not redeemed within the flush delay are inserted by a background flush and are then
+ * redeemed through the database as before, which is also how other nodes of a cluster find them.
+ * <p>
+ * A code is consumed at most once: consuming it and flushing it are mutually exclusive, and a redeem that races with
+ * the flush of the code waits for the insert to complete, so that it finds the code in the database. Consumed codes
+ * are remembered until they expire, so that a reused code can be detected and the access token issued for it can be
+ * revoked. A code is only consumed from memory if it can be remembered, otherwise it is written to the database and
+ * redeemed from there. When the store is full or disabled, codes are written synchronously.
+ * <p>
+ * Codes are only visible to the other nodes of a cluster once they are flushed. A code redeemed on another node
+ * before its flush is rejected as invalid, hence the store must only be enabled when token requests are routed to
+ * the node which issued the code. Likewise, a code consumed from memory is never written to the database, hence a
+ * reuse of the code on another node is rejected without revoking the access token issued for it, as recommended by
+ * RFC 6749 section 4.1.2. The access token is only revoked when the code is reused on the node which consumed it.
+ */
+public class AuthorizationCodeStore {
+
+    private static final Log log = LogFactory.getLog(AuthorizationCodeStore.class);
+
+    // These config properties are defined in identity.xml
+    private static final String WRITE_BEHIND_ENABLE = "OAuth.AuthorizationCode.WriteBehind.Enable";
+    private static final String WRITE_BEHIND_FLUSH_DELAY = "OAuth.AuthorizationCode.WriteBehind.FlushDelaySeconds";
+    private static final String WRITE_BEHIND_MAX_SIZE = "OAuth.AuthorizationCode.WriteBehind.MaxSize";
+
+    private static final long DEFAULT_FLUSH_DELAY_SECONDS = 2;
+    private static final long DEFAULT_MAX_SIZE = 10000;
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+
+    private static final AuthorizationCodeStore instance = new AuthorizationCodeStore();
+
+    private final boolean enabled;
+    private final long flushDelayMillis;
+    private final long maxSize;
+    private final AuthorizationCodeDAO authorizationCodeDAO;
+    private final Map<String, PendingCode> pendingCodes = new ConcurrentHashMap<>();
+    private final Map<String, ConsumedCode> consumedCodes = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService scheduler;
+
+    private final AtomicLong deferredCount = new AtomicLong();
+    private final AtomicLong synchronousCount = new AtomicLong();
+    private final AtomicLong consumedCount = new AtomicLong();
+    private final AtomicLong flushedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private AuthorizationCodeStore() {
+
+        this(getBooleanProperty(WRITE_BEHIND_ENABLE, false),
+                TimeUnit.SECONDS.toMillis(getLongProperty(WRITE_BEHIND_FLUSH_DELAY, DEFAULT_FLUSH_DELAY_SECONDS)),
+                getLongProperty(WRITE_BEHIND_MAX_SIZE, DEFAULT_MAX_SIZE), null);
+    }
+
+    /**
+     * Create an authorization code store. If no DAO is given, the DAO of the {@link OAuthTokenPersistenceFactory}
+     * is used.
+     */
+    AuthorizationCodeStore(boolean enabled, long flushDelayMillis, long maxSize,
+                           AuthorizationCodeDAO authorizationCodeDAO) {
+
+        this.enabled = enabled;
+        this.flushDelayMillis = flushDelayMillis;
+        this.maxSize = maxSize;
+        this.authorizationCodeDAO = authorizationCodeDAO;
+        if (enabled) {
+            log.warn("The write-behind authorization code store is enabled. Authorization codes are only visible to " +
+                    "the other nodes of a cluster once flushed, hence token requests must be routed to the node " +
+                    "which issued the code.");
+        }
+    }
+
+    public static AuthorizationCodeStore getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Keep a newly issued authorization code in memory. The code is inserted into the database once the flush delay
+     * passes, unless it is consumed before that.
+     *
+     * @param authzCode   Authorization code.
+     * @param consumerKey Client id of the application.
+     * @param callbackUrl Callback url of the authorization request.
+     * @param authzCodeDO Authorization code data.
+     * @return false if the code was not stored and has to be written synchronously.
+     */
+    public boolean store(String authzCode, String consumerKey, String callbackUrl, AuthzCodeDO authzCodeDO) {
+
+        if (!enabled || authzCode == null || pendingCodes.size() >= maxSize || consumedCodes.size() >= maxSize) {
+            synchronousCount.incrementAndGet();
+            return false;
+        }
+        pendingCodes.put(authzCode, new PendingCode(authzCode, consumerKey, callbackUrl, authzCodeDO,
+                System.currentTimeMillis() + flushDelayMillis));
+        deferredCount.incrementAndGet();
+        startScheduler();
+        return true;
+    }
+
+    /**
+     * Consume an authorization code held by this node. A consumed code is never written to the database. If the
+     * consumed codes can not be remembered any more, the code is written to the database instead, so that its reuse
+     * is detected there.
+     *
+     * @param consumerKey Client id of the token request.
+     * @param authzCode   Authorization code.
+     * @return Authorization code data, or null if the code is not held by this node for the client, in which case
+     * it has to be looked up in the database.
+     */
+    public AuthzCodeDO consume(String consumerKey, String authzCode) {
+
+        PendingCode pendingCode = authzCode == null ? null : pendingCodes.get(authzCode);
+        if (pendingCode == null || !StringUtils.equals(consumerKey, pendingCode.consumerKey)) {
+            return null;
+        }
+        if (consumedCodes.size() >= maxSize) {
+            // Fail closed, as a reuse of a code consumed from memory could not be detected.
+            insert(pendingCode);
+            return null;
+        }
+        AuthzCodeDO authzCodeDO = pendingCode.authzCodeDO;
+        synchronized (pendingCode) {
+            // Only one redeem claims the code. A code consumed by a concurrent redeem is found among the consumed
+            // codes, and a code which has been flushed in the meantime is redeemed through the database.
+            if (pendingCode.consumed || pendingCode.flushed) {
+                return null;
+            }
+            consumedCodes.put(authzCode, new ConsumedCode(consumerKey, new AuthzCodeDO(
+                    authzCodeDO.getAuthorizedUser(), authzCodeDO.getScope(), authzCodeDO.getIssuedTime(),
+                    authzCodeDO.getValidityPeriod(), authzCodeDO.getCallbackUrl(), consumerKey, authzCode,
+                    authzCodeDO.getAuthzCodeId(), OAuthConstants.AuthorizationCodeState.INACTIVE,
+                    authzCodeDO.getPkceCodeChallenge(), authzCodeDO.getPkceCodeChallengeMethod(),
+                    authzCodeDO.getTokenBindingReference()),
+                    authzCodeDO.getIssuedTime().getTime() + authzCodeDO.getValidityPeriod()));
+            pendingCode.consumed = true;
+        }
+        pendingCodes.remove(authzCode, pendingCode);
+        consumedCount.incrementAndGet();
+        return authzCodeDO;
+    }
+
+    /**
+     * Record the id of the access token issued for a consumed authorization code, which is revoked if the code is
+     * used again.
+     *
+     * @param authzCode Authorization code.
+     * @param tokenId   Id of the access token issued for the code.
+     */
+    public void setTokenId(String authzCode, String tokenId) {
+
+        ConsumedCode consumedCode = authzCode == null ? null : consumedCodes.get(authzCode);
+        if (consumedCode != null) {
+            consumedCode.authzCodeDO.setOauthTokenId(tokenId);
+        }
+    }
+
+    /**
+     * Get an authorization code which has already been consumed on this node.
+     *
+     * @param consumerKey Client id of the token request.
+     * @param authzCode   Authorization code.
+     * @return Inactive authorization code carrying the id of the access token issued for it, or null if the code has
+     * not been consumed on this node.
+     */
+    public AuthzCodeDO getConsumedCode(String consumerKey, String authzCode) {
+
+        ConsumedCode consumedCode = authzCode == null ? null : consumedCodes.get(authzCode);
+        if (consumedCode == null || !StringUtils.equals(consumerKey, consumedCode.consumerKey)) {
+            return null;
+        }
+        return consumedCode.authzCodeDO;
+    }
+
+    /**
+     * Get the id of an authorization code held by this node.
+     *
+     * @param authzCode Authorization code.
+     * @return Code id, or null if the code is not held by this node.
+     */
+    public String getCodeId(String authzCode) {
+
+        if (authzCode == null) {
+            return null;
+        }
+        PendingCode pendingCode = pendingCodes.get(authzCode);
+        if (pendingCode != null) {
+            return pendingCode.authzCodeDO.getAuthzCodeId();
+        }
+        ConsumedCode consumedCode = consumedCodes.get(authzCode);
+        return consumedCode == null ? null : consumedCode.authzCodeDO.getAuthzCodeId();
+    }
+
+    /**
+     * Insert the codes whose flush delay has passed into the database and drop the expired consumed codes.
+     */
+    public void flush() {
+
+        flush(System.currentTimeMillis());
+    }
+
+    /**
+     * Stop the background flush and insert all the pending codes into the database.
+     */
+    public synchronized void stop() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        flush(Long.MAX_VALUE);
+    }
+
+    public int size() {
+
+        return pendingCodes.size();
+    }
+
+    public long getDeferredCount() {
+
+        return deferredCount.get();
+    }
+
+    public long getSynchronousCount() {
+
+        return synchronousCount.get();
+    }
+
+    public long getConsumedCount() {
+
+        return consumedCount.get();
+    }
+
+    public long getFlushedCount() {
+
+        return flushedCount.get();
+    }
+
+    public long getFailedCount() {
+
+        return failedCount.get();
+    }
+
+    void flush(long now) {
+
+        int flushed = 0;
+        for (PendingCode pendingCode : pendingCodes.values()) {
+            if (pendingCode.flushTime <= now && insert(pendingCode)) {
+                flushed++;
+            }
+        }
+        long currentTime = System.currentTimeMillis();
+        consumedCodes.values().removeIf(consumedCode -> consumedCode.expiryTime <= currentTime);
+        if (log.isDebugEnabled() && flushed > 0) {
+            log.debug("Flushed " + flushed + " authorization codes.");
+        }
+    }
+
+    /**
+     * Insert a pending code into the database, unless it has been consumed or inserted already.
+     *
+     * @return true if the code was inserted.
+     */
+    private boolean insert(PendingCode pendingCode) {
+
+        synchronized (pendingCode) {
+            if (pendingCode.consumed || pendingCode.flushed) {
+                return false;
+            }
+            try {
+                getAuthorizationCodeDAO().insertAuthorizationCode(pendingCode.authzCode, pendingCode.consumerKey,
+                        pendingCode.callbackUrl, pendingCode.authzCodeDO);
+            } catch (IdentityOAuth2Exception | RuntimeException e) {
+                failedCount.incrementAndGet();
+                log.error("Error while persisting an authorization code of client: " + pendingCode.consumerKey +
+                        ". The insert will be retried on the next flush.", e);
+                return false;
+            }
+            pendingCode.flushed = true;
+        }
+        pendingCodes.remove(pendingCode.authzCode, pendingCode);
+        flushedCount.incrementAndGet();
+        return true;
+    }
+
+    private AuthorizationCodeDAO getAuthorizationCodeDAO() {
+
+        if (authorizationCodeDAO != null) {
+            return authorizationCodeDAO;
+        }
+        return OAuthTokenPersistenceFactory.getInstance().getAuthorizationCodeDAO();
+    }
+
+    private void startScheduler() {
+
+        if (scheduler != null) {
+            return;
+        }
+        synchronized (this) {
+            if (scheduler == null) {
+                ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "AuthorizationCodeStore");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flushScheduler.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MILLIS,
+                        FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                scheduler = flushScheduler;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled flush.
+            log.error("Error while flushing the authorization codes.", e);
+        }
+    }
+
+    /**
+     * Authorization code which is not yet in the database. The flags are only modified while holding the lock of
+     * the code.
+     */
+    private static class PendingCode {
+
+        private final String authzCode;
+        private final String consumerKey;
+        private final String callbackUrl;
+        private final AuthzCodeDO authzCodeDO;
+        private final long flushTime;
+        private boolean consumed;
+        private boolean flushed;
+
+        PendingCode(String authzCode, String consumerKey, String callbackUrl, AuthzCodeDO authzCodeDO,
+                    long flushTime) {
+
+            this.authzCode = authzCode;
+            this.consumerKey = consumerKey;
+            this.callbackUrl = callbackUrl;
+            this.authzCodeDO = authzCodeDO;
+            this.flushTime = flushTime;
+        }
+    }
+
+    /**
+     * Authorization code consumed on this node, kept until it expires to detect reuse.
+     */
+    private static class ConsumedCode {
+
+        private final String consumerKey;
+        private final AuthzCodeDO authzCodeDO;
+        private final long expiryTime;
+
+        ConsumedCode(String consumerKey, AuthzCodeDO authzCodeDO, long expiryTime) {
+
+            this.consumerKey = consumerKey;
+            this.authzCodeDO = authzCodeDO;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
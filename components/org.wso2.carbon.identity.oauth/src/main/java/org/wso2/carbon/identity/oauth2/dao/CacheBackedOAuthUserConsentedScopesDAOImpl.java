@@ -18,47 +18,104 @@
 
 package org.wso2.carbon.identity.oauth2.dao;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2ScopeConsentException;
 import org.wso2.carbon.identity.oauth2.internal.cache.OAuthUserConsentedScopeCache;
 import org.wso2.carbon.identity.oauth2.internal.cache.OAuthUserConsentedScopeCacheEntry;
 import org.wso2.carbon.identity.oauth2.model.UserApplicationScopeConsentDO;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getIntProperty;
 
 /**
- * Cache backed OAuth user consented scopes management data access object implementation.
+ * Cache backed OAuth user consented scopes management data access object implementation. The consents of a user are
+ * cached for all applications at once, so that the consent checks of a user for different applications, including
+ * applications the user has not consented to, are served from a single cache entry.
  */
 public class CacheBackedOAuthUserConsentedScopesDAOImpl implements OAuthUserConsentedScopesDAO {
 
+    private static final Log log = LogFactory.getLog(CacheBackedOAuthUserConsentedScopesDAOImpl.class);
+
+    // These config properties are defined in identity.xml
+    private static final String CACHE_WARM_UP_ENABLE = "OAuth.UserConsentedScopes.CacheWarmUp.Enable";
+    private static final String CACHE_WARM_UP_MAX_USERS = "OAuth.UserConsentedScopes.CacheWarmUp.MaxUsers";
+
+    private static final int DEFAULT_CACHE_WARM_UP_MAX_USERS = 1000;
+
     private final OAuthUserConsentedScopeCache cache = OAuthUserConsentedScopeCache.getInstance();
-    private final OAuthUserConsentedScopesDAO dao = new OAuthUserConsentedScopesDAOImpl();
+    private final OAuthUserConsentedScopesDAO dao;
+
+    public CacheBackedOAuthUserConsentedScopesDAOImpl() {
+
+        this(new OAuthUserConsentedScopesDAOImpl());
+    }
+
+    CacheBackedOAuthUserConsentedScopesDAOImpl(OAuthUserConsentedScopesDAO dao) {
+
+        this.dao = dao;
+    }
 
     @Override
     public UserApplicationScopeConsentDO getUserConsentForApplication(String userId, String appId, int tenantId)
             throws IdentityOAuth2ScopeConsentException {
 
-        OAuthUserConsentedScopeCacheEntry entry = cache.getValueFromCache(userId, tenantId);
-        if (entry != null && entry.getAppID().equals(appId)) {
-            return entry.getUserApplicationScopeConsentDO();
-        }
-        UserApplicationScopeConsentDO userConsent = dao.getUserConsentForApplication(userId, appId, tenantId);
-        cache.addToCache(userId, new OAuthUserConsentedScopeCacheEntry(appId, userConsent), tenantId);
-        return userConsent;
+        return getCacheEntry(userId, tenantId).getUserConsent(appId);
     }
 
     @Override
     public List<UserApplicationScopeConsentDO> getUserConsents(String userId, int tenantId)
             throws IdentityOAuth2ScopeConsentException {
 
-        return dao.getUserConsents(userId, tenantId);
+        return getCacheEntry(userId, tenantId).getUserConsents();
+    }
+
+    @Override
+    public Map<String, List<UserApplicationScopeConsentDO>> getUserConsents(Collection<String> userIds,
+                                                                             int tenantId)
+            throws IdentityOAuth2ScopeConsentException {
+
+        Map<String, List<UserApplicationScopeConsentDO>> userConsents = new HashMap<>();
+        List<String> missedUserIds = new ArrayList<>();
+        for (String userId : userIds) {
+            OAuthUserConsentedScopeCacheEntry entry = cache.getValueFromCache(userId, tenantId);
+            if (entry != null) {
+                userConsents.put(userId, entry.getUserConsents());
+            } else {
+                missedUserIds.add(userId);
+            }
+        }
+        if (!missedUserIds.isEmpty()) {
+            Map<String, List<UserApplicationScopeConsentDO>> loadedUserConsents =
+                    dao.getUserConsents(missedUserIds, tenantId);
+            for (Map.Entry<String, List<UserApplicationScopeConsentDO>> entry : loadedUserConsents.entrySet()) {
+                cache.addToCache(entry.getKey(), new OAuthUserConsentedScopeCacheEntry(entry.getValue()), tenantId);
+            }
+            userConsents.putAll(loadedUserConsents);
+        }
+        return userConsents;
     }
 
+    @Override
+    public Map<Integer, List<String>> getRecentlyConsentedUsers(int limit)
+            throws IdentityOAuth2ScopeConsentException {
+
+        return dao.getRecentlyConsentedUsers(limit);
+    }
     @Override
     public void addUserConsentForApplication(String userId, int tenantId, UserApplicationScopeConsentDO userConsent)
             throws IdentityOAuth2ScopeConsentException {
 
         cache.clearCacheEntry(userId, tenantId);
         dao.addUserConsentForApplication(userId, tenantId, userConsent);
+        // Clear again to drop the consents which were read and cached while the consent was being written.
+        cache.clearCacheEntry(userId, tenantId);
     }
 
     @Override
@@ -69,6 +126,7 @@ public class CacheBackedOAuthUserConsentedScopesDAOImpl implements OAuthUserCons
 
         cache.clearCacheEntry(userId, tenantId);
         dao.updateExistingConsentForApplication(userId, appId, tenantId, consentsToBeAdded, consentsToBeUpdated);
+        cache.clearCacheEntry(userId, tenantId);
     }
 
     @Override
@@ -77,6 +135,7 @@ public class CacheBackedOAuthUserConsentedScopesDAOImpl implements OAuthUserCons
 
         cache.clearCacheEntry(userId, tenantId);
         dao.deleteUserConsentOfApplication(userId, appId, tenantId);
+        cache.clearCacheEntry(userId, tenantId);
     }
 
     @Override
@@ -84,5 +143,58 @@ public class CacheBackedOAuthUserConsentedScopesDAOImpl implements OAuthUserCons
 
         cache.clearCacheEntry(userId, tenantId);
         dao.deleteUserConsents(userId, tenantId);
+        cache.clearCacheEntry(userId, tenantId);
+    }
+
+    /**
+     * Load the consents of the users who consented most recently into the cache, if enabled in the configuration.
+     * The cache is loaded in the background so that the startup is not delayed.
+     */
+    public void startCacheWarmUp() {
+
+        if (!getBooleanProperty(CACHE_WARM_UP_ENABLE, false)) {
+            return;
+        }
+        int maxUsers = getIntProperty(CACHE_WARM_UP_MAX_USERS, DEFAULT_CACHE_WARM_UP_MAX_USERS);
+        Thread warmUpThread = new Thread(() -> {
+            try {
+                warmUpCache(maxUsers);
+            } catch (IdentityOAuth2ScopeConsentException | RuntimeException e) {
+                log.warn("Error while warming up the user consented scope cache.", e);
+            }
+        }, "OAuthUserConsentedScopeCacheWarmUp");
+        warmUpThread.setDaemon(true);
+        warmUpThread.start();
+    }
+
+    /**
+     * Load the consents of the users who consented most recently into the cache.
+     *
+     * @param maxUsers Maximum number of users to load.
+     * @return Number of users loaded into the cache.
+     * @throws IdentityOAuth2ScopeConsentException
+     */
+    public int warmUpCache(int maxUsers) throws IdentityOAuth2ScopeConsentException {
+
+        int loadedUsers = 0;
+        for (Map.Entry<Integer, List<String>> tenantUsers : dao.getRecentlyConsentedUsers(maxUsers).entrySet()) {
+            loadedUsers += getUserConsents(tenantUsers.getValue(), tenantUsers.getKey()).size();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded the scope consents of " + loadedUsers + " users into the cache.");
+        }
+        return loadedUsers;
+    }
+
+    private OAuthUserConsentedScopeCacheEntry getCacheEntry(String userId, int tenantId)
+            throws IdentityOAuth2ScopeConsentException {
+
+        OAuthUserConsentedScopeCacheEntry entry = cache.getValueFromCache(userId, tenantId);
+        if (entry == null) {
+            // All consents of the user are loaded, so that a missing application is cached as not consented.
+            entry = new OAuthUserConsentedScopeCacheEntry(dao.getUserConsents(userId, tenantId));
+            cache.addToCache(userId, entry, tenantId);
+        }
+        return entry;
     }
 }
@@ -21,7 +21,11 @@ package org.wso2.carbon.identity.oauth2.dao;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2ScopeConsentException;
 import org.wso2.carbon.identity.oauth2.model.UserApplicationScopeConsentDO;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This interface defines the API for user consent management for OAuth scopes.
@@ -51,6 +55,39 @@ public interface OAuthUserConsentedScopesDAO {
     List<UserApplicationScopeConsentDO> getUserConsents(String userId, int tenantId)
             throws IdentityOAuth2ScopeConsentException;
 
+    /**
+     * Retrieve consents given for OAuth scopes by a set of users of a tenant for their all applications.
+     *
+     * @param userIds   User identifiers.
+     * @param tenantId  Tenant Id.
+     * @return  Map of user identifier to the list of {@link UserApplicationScopeConsentDO} of the user. Users
+     * without any consent are mapped to an empty list.
+     * @throws IdentityOAuth2ScopeConsentException
+     */
+    default Map<String, List<UserApplicationScopeConsentDO>> getUserConsents(Collection<String> userIds,
+                                                                              int tenantId)
+            throws IdentityOAuth2ScopeConsentException {
+
+        Map<String, List<UserApplicationScopeConsentDO>> userConsents = new HashMap<>();
+        for (String userId : userIds) {
+            userConsents.put(userId, getUserConsents(userId, tenantId));
+        }
+        return userConsents;
+    }
+
+    /**
+     * Retrieve the users who gave or changed their consents most recently.
+     *
+     * @param limit Maximum number of users to retrieve.
+     * @return  Map of tenant Id to the identifiers of the users of the tenant, latest first.
+     * @throws IdentityOAuth2ScopeConsentException
+     */
+    default Map<Integer, List<String>> getRecentlyConsentedUsers(int limit)
+            throws IdentityOAuth2ScopeConsentException {
+
+        return Collections.emptyMap();
+    }
+
     /**
      * Store users consent given for OAuth scopes for a given application.
      *
@@ -31,9 +31,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -43,6 +47,8 @@ import java.util.stream.Collectors;
 public class OAuthUserConsentedScopesDAOImpl implements OAuthUserConsentedScopesDAO {
 
     private static final Log log = LogFactory.getLog(OAuthUserConsentedScopesDAOImpl.class);
+    // Keeps the IN clause of the bulk consent query within the limits of all supported databases.
+    private static final int MAX_USERS_PER_QUERY = 100;
 
     @Override
     public UserApplicationScopeConsentDO getUserConsentForApplication(String userId, String appId, int tenantId)
@@ -116,6 +122,94 @@ public class OAuthUserConsentedScopesDAOImpl implements OAuthUserConsentedScopes
         }
     }
 
+    @Override
+    public Map<String, List<UserApplicationScopeConsentDO>> getUserConsents(Collection<String> userIds,
+                                                                             int tenantId)
+            throws IdentityOAuth2ScopeConsentException {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Get user consented scopes for " + userIds.size() + " users in tenantId : " + tenantId);
+        }
+        Map<String, Map<String, UserApplicationScopeConsentDO>> userScopeConsentsMap = new HashMap<>();
+        for (String userId : userIds) {
+            userScopeConsentsMap.put(userId, new HashMap<>());
+        }
+        List<String> userIdList = new ArrayList<>(userScopeConsentsMap.keySet());
+        try (Connection conn = IdentityDatabaseUtil.getDBConnection(false)) {
+            for (int from = 0; from < userIdList.size(); from += MAX_USERS_PER_QUERY) {
+                List<String> batch = userIdList.subList(from, Math.min(from + MAX_USERS_PER_QUERY,
+                        userIdList.size()));
+                String sql = SQLQueries.GET_OAUTH2_USER_CONSENTS_OF_USERS.replace(
+                        SQLQueries.USER_ID_LIST_PLACEHOLDER, String.join(", ", Collections.nCopies(batch.size(),
+                                "?")));
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int parameterIndex = 1;
+                    for (String userId : batch) {
+                        ps.setString(parameterIndex++, userId);
+                    }
+                    ps.setInt(parameterIndex, tenantId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            String userId = rs.getString(1);
+                            String appId = rs.getString(2);
+                            String scope = rs.getString(3);
+                            boolean consent = rs.getBoolean(4);
+                            UserApplicationScopeConsentDO userScopeConsent = userScopeConsentsMap
+                                    .computeIfAbsent(userId, id -> new HashMap<>())
+                                    .computeIfAbsent(appId, UserApplicationScopeConsentDO::new);
+                            if (consent) {
+                                userScopeConsent.getApprovedScopes().add(scope);
+                            } else {
+                                userScopeConsent.getDeniedScopes().add(scope);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            String msg = "Error occurred while retrieving scope consents for " + userIds.size() + " users in " +
+                    "tenantId : " + tenantId;
+            throw new IdentityOAuth2ScopeConsentException(msg, e);
+        }
+        Map<String, List<UserApplicationScopeConsentDO>> userConsents = new HashMap<>();
+        for (Map.Entry<String, Map<String, UserApplicationScopeConsentDO>> entry : userScopeConsentsMap.entrySet()) {
+            userConsents.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+        }
+        return userConsents;
+    }
+
+    @Override
+    public Map<Integer, List<String>> getRecentlyConsentedUsers(int limit)
+            throws IdentityOAuth2ScopeConsentException {
+
+        Map<Integer, Set<String>> tenantUsers = new HashMap<>();
+        try (Connection conn = IdentityDatabaseUtil.getDBConnection(false)) {
+            try (PreparedStatement ps = conn.prepareStatement(SQLQueries.GET_LATEST_OAUTH2_USER_CONSENTS)) {
+                // A user has a consent row per application, hence the rows are read until the limit of distinct
+                // users is reached instead of limiting the number of rows.
+                ps.setFetchSize(limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    int userCount = 0;
+                    while (userCount < limit && rs.next()) {
+                        String userId = rs.getString(1);
+                        int tenantId = rs.getInt(2);
+                        if (tenantUsers.computeIfAbsent(tenantId, id -> new LinkedHashSet<>()).add(userId)) {
+                            userCount++;
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IdentityOAuth2ScopeConsentException("Error occurred while retrieving the latest scope " +
+                    "consents.", e);
+        }
+        Map<Integer, List<String>> recentlyConsentedUsers = new HashMap<>();
+        for (Map.Entry<Integer, Set<String>> entry : tenantUsers.entrySet()) {
+            recentlyConsentedUsers.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return recentlyConsentedUsers;
+    }
+
     @Override
     public void addUserConsentForApplication(String userId, int tenantId,
                                              UserApplicationScopeConsentDO userConsent)
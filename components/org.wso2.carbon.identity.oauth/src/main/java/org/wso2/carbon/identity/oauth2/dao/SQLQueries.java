@@ -184,6 +184,25 @@ public class SQLQueries {
             "AND TOKEN_BINDING_REF = ? AND IDP_ID=(SELECT ID FROM IDP WHERE NAME =? AND " +
             "TENANT_ID=IDN_OAUTH2_ACCESS_TOKEN.TENANT_ID) ORDER BY TIME_CREATED DESC) TOKEN ";
 
+    /**
+     * Active tokens are unique per user type for a client, user, scope, binding reference and IDP (CON_APP_KEY),
+     * hence these are fetched through that key without sorting or limiting the result, on every database.
+     */
+    public static final String RETRIEVE_ACTIVE_ACCESS_TOKENS_BY_CLIENT_ID_USER_SCOPE = "SELECT ACCESS_TOKEN, " +
+            "REFRESH_TOKEN, TIME_CREATED, REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD," +
+            " TOKEN_STATE, USER_TYPE, TOKEN_ID, SUBJECT_IDENTIFIER, GRANT_TYPE FROM IDN_OAUTH2_ACCESS_TOKEN WHERE " +
+            "CONSUMER_KEY_ID = (SELECT ID FROM IDN_OAUTH_CONSUMER_APPS WHERE CONSUMER_KEY = ?) AND AUTHZ_USER=? " +
+            "AND TENANT_ID=? AND USER_DOMAIN=? AND TOKEN_SCOPE_HASH=? AND TOKEN_STATE='ACTIVE' " +
+            "AND TOKEN_BINDING_REF = ?";
+
+    public static final String RETRIEVE_ACTIVE_ACCESS_TOKENS_BY_CLIENT_ID_USER_SCOPE_IDP_NAME = "SELECT " +
+            "ACCESS_TOKEN, REFRESH_TOKEN, TIME_CREATED, REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, " +
+            "REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_STATE, USER_TYPE, TOKEN_ID, SUBJECT_IDENTIFIER, GRANT_TYPE FROM " +
+            "IDN_OAUTH2_ACCESS_TOKEN WHERE CONSUMER_KEY_ID = (SELECT ID FROM IDN_OAUTH_CONSUMER_APPS WHERE " +
+            "CONSUMER_KEY = ?) AND AUTHZ_USER=? AND TENANT_ID=? AND USER_DOMAIN=? AND TOKEN_SCOPE_HASH=? AND " +
+            "TOKEN_STATE='ACTIVE' AND TOKEN_BINDING_REF = ? AND IDP_ID=(SELECT ID FROM IDP WHERE NAME =? AND " +
+            "TENANT_ID=IDN_OAUTH2_ACCESS_TOKEN.TENANT_ID)";
+
     public static final String RETRIEVE_ACTIVE_ACCESS_TOKEN_BY_CLIENT_ID_USER = "SELECT ACCESS_TOKEN, REFRESH_TOKEN, " +
             "TIME_CREATED, REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, USER_TYPE, " +
             "TOKEN_SCOPE, ACCESS_TOKEN_TABLE.TOKEN_ID, SUBJECT_IDENTIFIER, TOKEN_BINDING_REF FROM (SELECT TOKEN_ID, "
@@ -257,6 +276,17 @@ public class SQLQueries {
                     " LEFT JOIN IDN_OAUTH2_ACCESS_TOKEN_SCOPE ON ACCESS_TOKEN_TABLE.TOKEN_ID = " +
                     "IDN_OAUTH2_ACCESS_TOKEN_SCOPE.TOKEN_ID JOIN IDP ON IDP_ID = IDP.ID";
 
+    public static final String ACCESS_TOKEN_HASH_LIST_PLACEHOLDER = "_ACCESS_TOKEN_HASH_LIST_";
+
+    public static final String RETRIEVE_ACTIVE_ACCESS_TOKENS = RETRIEVE_ACTIVE_ACCESS_TOKEN
+            .replace("TOKEN_BINDING_REF FROM", "TOKEN_BINDING_REF, ACCESS_TOKEN_HASH FROM")
+            .replace("ACCESS_TOKEN_HASH=?", "ACCESS_TOKEN_HASH IN (" + ACCESS_TOKEN_HASH_LIST_PLACEHOLDER + ")");
+
+    public static final String RETRIEVE_ACTIVE_ACCESS_TOKENS_IDP_NAME = RETRIEVE_ACTIVE_ACCESS_TOKEN_IDP_NAME
+            .replace("TOKEN_BINDING_REF, IDP.NAME FROM", "TOKEN_BINDING_REF, IDP.NAME, ACCESS_TOKEN_HASH FROM")
+            .replace("TOKEN_BINDING_REF FROM", "TOKEN_BINDING_REF, ACCESS_TOKEN_HASH FROM")
+            .replace("ACCESS_TOKEN_HASH=?", "ACCESS_TOKEN_HASH IN (" + ACCESS_TOKEN_HASH_LIST_PLACEHOLDER + ")");
+
     public static final String RETRIEVE_ACTIVE_EXPIRED_ACCESS_TOKEN = "SELECT CONSUMER_KEY, AUTHZ_USER, " +
             "ACCESS_TOKEN_TABLE.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TIME_CREATED, REFRESH_TOKEN_TIME_CREATED, " +
             "VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, USER_TYPE, REFRESH_TOKEN, ACCESS_TOKEN_TABLE.TOKEN_ID, " +
@@ -318,7 +348,8 @@ public class SQLQueries {
             "ACCESS_TOKEN_TABLE.USER_DOMAIN, IDP_ID, IDP_TABLE.NAME FROM (SELECT ACCESS_TOKEN, CONSUMER_KEY_ID, " +
             "TOKEN_ID, REFRESH_TOKEN, TIME_CREATED, REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, USER_TYPE, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, TENANT_ID, AUTHZ_USER , USER_DOMAIN, IDP_ID FROM IDN_OAUTH2_ACCESS_TOKEN " +
-            "WHERE TOKEN_BINDING_REF = ? AND (TOKEN_STATE = 'ACTIVE' OR TOKEN_STATE = 'EXPIRED')) ACCESS_TOKEN_TABLE " +
+            "WHERE TOKEN_ID IN (SELECT TOKEN_ID FROM IDN_OAUTH2_TOKEN_BINDING WHERE TOKEN_BINDING_REF = ?) AND " +
+            "TOKEN_BINDING_REF = ? AND (TOKEN_STATE = 'ACTIVE' OR TOKEN_STATE = 'EXPIRED')) ACCESS_TOKEN_TABLE " +
             "JOIN IDN_OAUTH_CONSUMER_APPS ON ID = CONSUMER_KEY_ID LEFT " +
             "JOIN IDN_OAUTH2_ACCESS_TOKEN_SCOPE ON ACCESS_TOKEN_TABLE.TOKEN_ID = " +
             "IDN_OAUTH2_ACCESS_TOKEN_SCOPE.TOKEN_ID JOIN IDP IDP_TABLE ON IDP_TABLE.ID = IDP_ID";
@@ -389,10 +420,41 @@ public class SQLQueries {
             "ID WHERE AUTHZ_USER=? AND IDN_OAUTH2_ACCESS_TOKEN.TENANT_ID=? AND IDN_OAUTH2_ACCESS_TOKEN.USER_DOMAIN=? " +
             "AND (TOKEN_STATE='ACTIVE' OR TOKEN_STATE='EXPIRED')";
 
+    /**
+     * Last column of the RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA queries, counting the active or expired tokens issued
+     * after the selected token for the same client, user, scope and binding. This lets the refresh grant decide
+     * whether the refresh token is among the latest tokens without loading them in a separate query.
+     */
+    public static final String NEWER_ACCESS_TOKEN_COUNT_COLUMN = "(SELECT COUNT(*) FROM IDN_OAUTH2_ACCESS_TOKEN " +
+            "SELECTED_TOKEN JOIN IDN_OAUTH2_ACCESS_TOKEN NEWER_TOKEN ON " +
+            "NEWER_TOKEN.CONSUMER_KEY_ID = SELECTED_TOKEN.CONSUMER_KEY_ID AND " +
+            "NEWER_TOKEN.AUTHZ_USER = SELECTED_TOKEN.AUTHZ_USER AND NEWER_TOKEN.TENANT_ID = SELECTED_TOKEN.TENANT_ID " +
+            "AND NEWER_TOKEN.USER_DOMAIN = SELECTED_TOKEN.USER_DOMAIN AND " +
+            "(NEWER_TOKEN.TOKEN_SCOPE_HASH = SELECTED_TOKEN.TOKEN_SCOPE_HASH OR " +
+            "(NEWER_TOKEN.TOKEN_SCOPE_HASH IS NULL AND SELECTED_TOKEN.TOKEN_SCOPE_HASH IS NULL)) AND " +
+            "NEWER_TOKEN.TOKEN_BINDING_REF = SELECTED_TOKEN.TOKEN_BINDING_REF " +
+            "WHERE SELECTED_TOKEN.TOKEN_ID = ACCESS_TOKEN_SELECTED.TOKEN_ID AND " +
+            "(NEWER_TOKEN.TOKEN_STATE = 'ACTIVE' OR NEWER_TOKEN.TOKEN_STATE = 'EXPIRED') AND " +
+            "NEWER_TOKEN.TIME_CREATED > SELECTED_TOKEN.TIME_CREATED) NEWER_TOKEN_COUNT";
+
+    public static final String NEWER_ACCESS_TOKEN_COUNT_COLUMN_IDP_ID = "(SELECT COUNT(*) FROM " +
+            "IDN_OAUTH2_ACCESS_TOKEN SELECTED_TOKEN JOIN IDN_OAUTH2_ACCESS_TOKEN NEWER_TOKEN ON " +
+            "NEWER_TOKEN.CONSUMER_KEY_ID = SELECTED_TOKEN.CONSUMER_KEY_ID AND " +
+            "NEWER_TOKEN.AUTHZ_USER = SELECTED_TOKEN.AUTHZ_USER AND NEWER_TOKEN.TENANT_ID = SELECTED_TOKEN.TENANT_ID " +
+            "AND NEWER_TOKEN.USER_DOMAIN = SELECTED_TOKEN.USER_DOMAIN AND " +
+            "(NEWER_TOKEN.TOKEN_SCOPE_HASH = SELECTED_TOKEN.TOKEN_SCOPE_HASH OR " +
+            "(NEWER_TOKEN.TOKEN_SCOPE_HASH IS NULL AND SELECTED_TOKEN.TOKEN_SCOPE_HASH IS NULL)) AND " +
+            "NEWER_TOKEN.TOKEN_BINDING_REF = SELECTED_TOKEN.TOKEN_BINDING_REF AND " +
+            "NEWER_TOKEN.IDP_ID = SELECTED_TOKEN.IDP_ID " +
+            "WHERE SELECTED_TOKEN.TOKEN_ID = ACCESS_TOKEN_SELECTED.TOKEN_ID AND " +
+            "(NEWER_TOKEN.TOKEN_STATE = 'ACTIVE' OR NEWER_TOKEN.TOKEN_STATE = 'EXPIRED') AND " +
+            "NEWER_TOKEN.TIME_CREATED > SELECTED_TOKEN.TIME_CREATED) NEWER_TOKEN_COUNT";
+
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_MYSQL = "SELECT ACCESS_TOKEN, AUTHZ_USER, " +
             "ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
-            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM ( " +
+            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN + " FROM ( " +
             "SELECT ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, " +
             "TIME_CREATED, VALIDITY_PERIOD FROM " +
@@ -404,7 +466,8 @@ public class SQLQueries {
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_IDP_NAME_MYSQL = "SELECT ACCESS_TOKEN, " +
             "AUTHZ_USER, ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, " +
-            "SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME " +
+            "SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN_IDP_ID + " " +
             "FROM ( SELECT ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED," +
             " REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, IDP_ID, TOKEN_BINDING_REF," +
             " TIME_CREATED, VALIDITY_PERIOD FROM" +
@@ -418,7 +481,8 @@ public class SQLQueries {
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_DB2SQL = "SELECT ACCESS_TOKEN, AUTHZ_USER, " +
             "ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
-            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM ( " +
+            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN + " FROM ( " +
             "SELECT ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD," +
             " TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD " +
@@ -433,7 +497,8 @@ public class SQLQueries {
             "SELECT ACCESS_TOKEN, AUTHZ_USER, " +
             "ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
-            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME " +
+            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN_IDP_ID + " " +
             "FROM ( SELECT ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED," +
             " REFRESH_TOKEN_VALIDITY_PERIOD," +
             " TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, IDP_ID, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD " +
@@ -448,7 +513,8 @@ public class SQLQueries {
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_ORACLE = "SELECT ACCESS_TOKEN, AUTHZ_USER, " +
             "ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
-            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM ( " +
+            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN + " FROM ( " +
             "SELECT * FROM (SELECT ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
             "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM" +
@@ -461,7 +527,8 @@ public class SQLQueries {
             "SELECT ACCESS_TOKEN, AUTHZ_USER, " +
             "ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
-            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME " +
+            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN_IDP_ID + " " +
             "FROM (SELECT * FROM (SELECT ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
             "IDP_ID, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD " +
@@ -473,7 +540,8 @@ public class SQLQueries {
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_MSSQL = "SELECT ACCESS_TOKEN, AUTHZ_USER, " +
             "ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
-            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM " +
+            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN + " FROM " +
             "(SELECT TOP 1 ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
             "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM IDN_OAUTH2_ACCESS_TOKEN " +
@@ -485,7 +553,8 @@ public class SQLQueries {
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_IDP_NAME_MSSQL = "SELECT ACCESS_TOKEN, " +
             "AUTHZ_USER, ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, " +
-            "SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME " +
+            "SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN_IDP_ID + " " +
             "FROM (SELECT TOP 1 ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
             "IDP_ID, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM IDN_OAUTH2_ACCESS_TOKEN " +
@@ -497,7 +566,8 @@ public class SQLQueries {
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_POSTGRESQL = "SELECT ACCESS_TOKEN, AUTHZ_USER, " +
             "ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED," +
             " REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
-            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM " +
+            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN + " FROM " +
             "(SELECT ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, " +
             "TIME_CREATED, VALIDITY_PERIOD " +
@@ -509,7 +579,8 @@ public class SQLQueries {
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_IDP_NAME_POSTGRESQL = "SELECT ACCESS_TOKEN, " +
             "AUTHZ_USER, ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, " +
-            "SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME " +
+            "SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN_IDP_ID + " " +
             "FROM (SELECT ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, IDP_ID, TOKEN_BINDING_REF, " +
             "TIME_CREATED, VALIDITY_PERIOD " +
@@ -523,7 +594,8 @@ public class SQLQueries {
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_INFORMIX = "SELECT ACCESS_TOKEN, AUTHZ_USER, " +
             "ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
-            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM ( " +
+            "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN + " FROM ( " +
             "SELECT FIRST 1 ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
             "TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD " +
@@ -536,7 +608,8 @@ public class SQLQueries {
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_IDP_NAME_INFORMIX = "SELECT ACCESS_TOKEN, " +
             "AUTHZ_USER, ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, " +
-            "SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME " +
+            "SUBJECT_IDENTIFIER, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD, IDP.NAME, " +
+            NEWER_ACCESS_TOKEN_COUNT_COLUMN_IDP_ID + " " +
             "FROM (SELECT FIRST 1 ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TOKEN_STATE, " +
             "REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
             "IDP_ID, TOKEN_BINDING_REF, TIME_CREATED, VALIDITY_PERIOD FROM IDN_OAUTH2_ACCESS_TOKEN " +
@@ -681,6 +754,89 @@ public class SQLQueries {
             "IDN_OAUTH2_ACCESS_TOKEN_SCOPE ON ACCESS_TOKEN_TABLE.TOKEN_ID = IDN_OAUTH2_ACCESS_TOKEN_SCOPE.TOKEN_ID " +
             "JOIN IDP ON IDP.ID=IDP_ID";
 
+    public static final String TOKEN_REVOCATION_CRITERIA_PLACEHOLDER = "_TOKEN_REVOCATION_CRITERIA_";
+
+    public static final String TOKEN_ID_LIST_PLACEHOLDER = "_TOKEN_ID_LIST_";
+
+    public static final String LIST_TOKENS_FOR_BULK_REVOCATION = "SELECT ACCESS_TOKEN_TABLE.TOKEN_ID, " +
+            "ACCESS_TOKEN, CONSUMER_KEY, AUTHZ_USER, ACCESS_TOKEN_TABLE.TENANT_ID, ACCESS_TOKEN_TABLE.USER_DOMAIN, " +
+            "USER_TYPE, TOKEN_BINDING_REF, TOKEN_SCOPE FROM IDN_OAUTH2_ACCESS_TOKEN ACCESS_TOKEN_TABLE JOIN " +
+            "IDN_OAUTH_CONSUMER_APPS CONSUMER_APPS ON CONSUMER_APPS.ID = ACCESS_TOKEN_TABLE.CONSUMER_KEY_ID " +
+            "LEFT JOIN IDN_OAUTH2_ACCESS_TOKEN_SCOPE TOKEN_SCOPE_TABLE ON ACCESS_TOKEN_TABLE.TOKEN_ID = " +
+            "TOKEN_SCOPE_TABLE.TOKEN_ID WHERE (TOKEN_STATE='ACTIVE' OR TOKEN_STATE='EXPIRED')" +
+            TOKEN_REVOCATION_CRITERIA_PLACEHOLDER + " ORDER BY ACCESS_TOKEN_TABLE.TOKEN_ID";
+
+    public static final String LIST_TOKENS_FOR_BULK_REVOCATION_IDP_NAME = "SELECT ACCESS_TOKEN_TABLE.TOKEN_ID, " +
+            "ACCESS_TOKEN, CONSUMER_KEY, AUTHZ_USER, ACCESS_TOKEN_TABLE.TENANT_ID, ACCESS_TOKEN_TABLE.USER_DOMAIN, " +
+            "USER_TYPE, TOKEN_BINDING_REF, TOKEN_SCOPE, IDP.NAME FROM IDN_OAUTH2_ACCESS_TOKEN ACCESS_TOKEN_TABLE " +
+            "JOIN IDN_OAUTH_CONSUMER_APPS CONSUMER_APPS ON CONSUMER_APPS.ID = ACCESS_TOKEN_TABLE.CONSUMER_KEY_ID " +
+            "LEFT JOIN IDN_OAUTH2_ACCESS_TOKEN_SCOPE TOKEN_SCOPE_TABLE ON ACCESS_TOKEN_TABLE.TOKEN_ID = " +
+            "TOKEN_SCOPE_TABLE.TOKEN_ID JOIN IDP ON IDP.ID = ACCESS_TOKEN_TABLE.IDP_ID WHERE " +
+            "(TOKEN_STATE='ACTIVE' OR TOKEN_STATE='EXPIRED')" + TOKEN_REVOCATION_CRITERIA_PLACEHOLDER +
+            " ORDER BY ACCESS_TOKEN_TABLE.TOKEN_ID";
+
+    public static final String BULK_REVOCATION_BY_CONSUMER_KEY = " AND CONSUMER_APPS.CONSUMER_KEY=?";
+
+    public static final String BULK_REVOCATION_BY_TENANT = " AND ACCESS_TOKEN_TABLE.TENANT_ID=?";
+
+    public static final String BULK_REVOCATION_BY_USER = " AND ACCESS_TOKEN_TABLE.AUTHZ_USER=?";
+
+    public static final String BULK_REVOCATION_BY_USER_CASE_INSENSITIVE =
+            " AND LOWER(ACCESS_TOKEN_TABLE.AUTHZ_USER)=?";
+
+    public static final String BULK_REVOCATION_BY_USER_STORE = " AND ACCESS_TOKEN_TABLE.USER_DOMAIN=?";
+
+    // The token ids of a binding reference are looked up in the token binding table, which is written along with the
+    // access token, instead of scanning the access token table. This relies on the IDX_IDN_AUTH_BIND index on
+    // IDN_OAUTH2_TOKEN_BINDING (TOKEN_BINDING_REF), which the TokenIndexAdvisor reports when it is missing.
+    public static final String BULK_REVOCATION_BY_BINDING_REF = " AND ACCESS_TOKEN_TABLE.TOKEN_ID IN (SELECT " +
+            "TOKEN_ID FROM IDN_OAUTH2_TOKEN_BINDING WHERE TOKEN_BINDING_REF=?) AND " +
+            "ACCESS_TOKEN_TABLE.TOKEN_BINDING_REF=?";
+
+    public static final String BULK_REVOCATION_AFTER_TOKEN_ID = " AND ACCESS_TOKEN_TABLE.TOKEN_ID > ?";
+
+    // The token id is used as the state id, as the revoked rows must stay unique with respect to CON_APP_KEY.
+    public static final String REVOKE_ACCESS_TOKENS_BY_TOKEN_ID = "UPDATE IDN_OAUTH2_ACCESS_TOKEN SET " +
+            "TOKEN_STATE=?, TOKEN_STATE_ID=TOKEN_ID WHERE TOKEN_ID IN (" + TOKEN_ID_LIST_PLACEHOLDER + ") AND " +
+            "(TOKEN_STATE='ACTIVE' OR TOKEN_STATE='EXPIRED')";
+
+    public static final String STORE_REVOKED_TOKENS_IN_AUDIT = RETRIEVE_AND_STORE_IN_AUDIT.replace(
+            "WHERE TOKEN_ID = ?", "WHERE TOKEN_ID IN (" + TOKEN_ID_LIST_PLACEHOLDER + ")");
+
+    public static final String STORE_REVOKED_TOKENS_IN_AUDIT_WITH_IDP_NAME =
+            RETRIEVE_AND_STORE_IN_AUDIT_WITH_IDP_NAME.replace("WHERE TOKEN_ID = ?",
+                    "WHERE TOKEN_ID IN (" + TOKEN_ID_LIST_PLACEHOLDER + ")");
+
+    public static final String DELETE_TOKENS_BY_TOKEN_ID = "DELETE FROM IDN_OAUTH2_ACCESS_TOKEN WHERE TOKEN_ID IN (" +
+            TOKEN_ID_LIST_PLACEHOLDER + ")";
+
+    public static final String CODE_ID_LIST_PLACEHOLDER = "_CODE_ID_LIST_";
+
+    public static final String LIST_ACCESS_TOKENS_TO_PURGE = "SELECT TOKEN_ID, TIME_CREATED, TOKEN_STATE, " +
+            "VALIDITY_PERIOD, REFRESH_TOKEN_TIME_CREATED, REFRESH_TOKEN_VALIDITY_PERIOD FROM IDN_OAUTH2_ACCESS_TOKEN " +
+            "WHERE TIME_CREATED < ? AND (TIME_CREATED > ? OR (TIME_CREATED = ? AND TOKEN_ID > ?)) " +
+            "ORDER BY TIME_CREATED, TOKEN_ID";
+
+    // Takes the row locks of the tokens, so that a purge of the same tokens by another node waits until this one
+    // completes, after which the tokens are no longer found.
+    public static final String LOCK_TOKENS_TO_PURGE = "UPDATE IDN_OAUTH2_ACCESS_TOKEN SET TOKEN_STATE=TOKEN_STATE " +
+            "WHERE TOKEN_ID IN (" + TOKEN_ID_LIST_PLACEHOLDER + ")";
+
+    private static final String NOT_IN_AUDIT = " AND NOT EXISTS (SELECT 1 FROM IDN_OAUTH2_ACCESS_TOKEN_AUDIT WHERE " +
+            "IDN_OAUTH2_ACCESS_TOKEN_AUDIT.TOKEN_ID=IDN_OAUTH2_ACCESS_TOKEN.TOKEN_ID)";
+
+    public static final String ARCHIVE_PURGED_TOKENS_IN_AUDIT = STORE_REVOKED_TOKENS_IN_AUDIT + NOT_IN_AUDIT;
+
+    public static final String ARCHIVE_PURGED_TOKENS_IN_AUDIT_WITH_IDP_NAME =
+            STORE_REVOKED_TOKENS_IN_AUDIT_WITH_IDP_NAME + NOT_IN_AUDIT;
+
+    public static final String LIST_AUTHORIZATION_CODES_TO_PURGE = "SELECT CODE_ID, TIME_CREATED, STATE, " +
+            "VALIDITY_PERIOD FROM IDN_OAUTH2_AUTHORIZATION_CODE WHERE TIME_CREATED < ? AND (TIME_CREATED > ? OR " +
+            "(TIME_CREATED = ? AND CODE_ID > ?)) ORDER BY TIME_CREATED, CODE_ID";
+
+    public static final String DELETE_AUTHORIZATION_CODES_BY_CODE_ID = "DELETE FROM IDN_OAUTH2_AUTHORIZATION_CODE " +
+            "WHERE CODE_ID IN (" + CODE_ID_LIST_PLACEHOLDER + ")";
+
     public static final String LIST_LATEST_AUTHZ_CODES_IN_USER_DOMAIN = "SELECT CODE_ID, AUTHORIZATION_CODE, " +
             "CONSUMER_KEY, IDN_OAUTH2_AUTHORIZATION_CODE.AUTHZ_USER, IDN_OAUTH2_AUTHORIZATION_CODE.SCOPE, " +
             "TIME_CREATED, VALIDITY_PERIOD, IDN_OAUTH2_AUTHORIZATION_CODE.CALLBACK_URL FROM (SELECT " +
@@ -1290,6 +1446,18 @@ public class SQLQueries {
             "USER_CONSENT.TENANT_ID = ? AND " +
             "USER_CONSENT.CONSENT_ID = CONSENTED_SCOPES.CONSENT_ID";
 
+    public static final String USER_ID_LIST_PLACEHOLDER = "_USER_ID_LIST_";
+
+    public static final String GET_OAUTH2_USER_CONSENTS_OF_USERS = "SELECT USER_CONSENT.USER_ID, " +
+            "USER_CONSENT.APP_ID, CONSENTED_SCOPES.SCOPE, CONSENTED_SCOPES.CONSENT FROM " +
+            "IDN_OAUTH2_USER_CONSENT USER_CONSENT, IDN_OAUTH2_USER_CONSENTED_SCOPES CONSENTED_SCOPES " +
+            "WHERE USER_CONSENT.USER_ID IN (" + USER_ID_LIST_PLACEHOLDER + ") AND " +
+            "USER_CONSENT.TENANT_ID = ? AND " +
+            "USER_CONSENT.CONSENT_ID = CONSENTED_SCOPES.CONSENT_ID";
+
+    public static final String GET_LATEST_OAUTH2_USER_CONSENTS = "SELECT USER_ID, TENANT_ID FROM " +
+            "IDN_OAUTH2_USER_CONSENT ORDER BY ID DESC";
+
     public static final String INSERT_OAUTH2_USER_CONSENT = "INSERT INTO IDN_OAUTH2_USER_CONSENT " +
             "(USER_ID, APP_ID, TENANT_ID, CONSENT_ID) VALUES (?, ?, ?, ?)";
 
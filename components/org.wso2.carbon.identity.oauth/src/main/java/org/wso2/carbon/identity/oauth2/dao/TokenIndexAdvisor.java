@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+
+/**
+ * Startup check which reports the indexes missing for the queries run on every token request. The indexes of the
+ * token tables are read through the JDBC metadata of the identity database, hence the check works on every supported
+ * database without vendor specific queries. An index is considered present if its leading columns are the columns
+ * the query filters on, in any order.
+ * <p>
+ * The check only logs a warning with the statement to create a missing index and never changes the schema.
+ */
+public class TokenIndexAdvisor {
+
+    private static final Log log = LogFactory.getLog(TokenIndexAdvisor.class);
+
+    // These config properties are defined in identity.xml
+    private static final String INDEX_ADVISOR_ENABLE = "OAuth.TokenPersistence.IndexAdvisor.Enable";
+
+    static final List<IndexRecommendation> RECOMMENDED_INDEXES = Collections.unmodifiableList(Arrays.asList(
+            new IndexRecommendation("latest active access token lookup", "IDN_OAUTH2_ACCESS_TOKEN",
+                    "IDX_AT_CKID_AU_TID_UD_TSH_TS", 4, "CONSUMER_KEY_ID", "AUTHZ_USER", "TENANT_ID",
+                    "USER_DOMAIN", "TOKEN_SCOPE_HASH", "TOKEN_STATE"),
+            new IndexRecommendation("access token validation", "IDN_OAUTH2_ACCESS_TOKEN", "IDX_ATH", 1,
+                    "ACCESS_TOKEN_HASH"),
+            new IndexRecommendation("refresh token grant", "IDN_OAUTH2_ACCESS_TOKEN", "IDX_AT_RTH", 1,
+                    "REFRESH_TOKEN_HASH"),
+            new IndexRecommendation("authorization code grant", "IDN_OAUTH2_AUTHORIZATION_CODE",
+                    "IDX_AUTHORIZATION_CODE_HASH", 1, "AUTHORIZATION_CODE_HASH", "CONSUMER_KEY_ID"),
+            new IndexRecommendation("session bound token revocation", "IDN_OAUTH2_TOKEN_BINDING",
+                    "IDX_IDN_AUTH_BIND", 1, "TOKEN_BINDING_REF"),
+            new IndexRecommendation("requested claims lookup", "IDN_OIDC_REQ_OBJECT_REFERENCE", "IDX_OROR_TID", 1,
+                    "TOKEN_ID"),
+            new IndexRecommendation("archive of purged access tokens", "IDN_OAUTH2_ACCESS_TOKEN_AUDIT",
+                    "IDX_AT_AUDIT_TID", 1, "TOKEN_ID")));
+
+    private TokenIndexAdvisor() {
+
+    }
+
+    /**
+     * Log a warning for each recommended index missing in the identity database, unless the check is disabled.
+     */
+    public static void reportMissingIndexes() {
+
+        if (!getBooleanProperty(INDEX_ADVISOR_ENABLE, true)) {
+            return;
+        }
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
+            String databaseProductName = connection.getMetaData().getDatabaseProductName();
+            for (IndexRecommendation recommendation : getMissingIndexes(connection)) {
+                log.warn("No index found on " + recommendation.getTableName() + " for the " +
+                        recommendation.getPurpose() + " in the " + databaseProductName + " identity database. " +
+                        "Create it with: " + recommendation.getCreateStatement());
+            }
+        } catch (SQLException e) {
+            // The check is advisory, hence it must not fail the startup.
+            log.warn("Error while checking the indexes of the OAuth token tables.", e);
+        }
+    }
+
+    /**
+     * Get the recommended indexes which are missing in the database of the given connection. Recommendations of
+     * tables which do not exist are ignored.
+     *
+     * @param connection Database connection.
+     * @return Missing indexes.
+     * @throws SQLException If the index metadata could not be read.
+     */
+    static List<IndexRecommendation> getMissingIndexes(Connection connection) throws SQLException {
+
+        DatabaseMetaData metaData = connection.getMetaData();
+        Map<String, List<List<String>>> indexesOfTables = new LinkedHashMap<>();
+        List<IndexRecommendation> missingIndexes = new ArrayList<>();
+        for (IndexRecommendation recommendation : RECOMMENDED_INDEXES) {
+            List<List<String>> indexes = indexesOfTables.get(recommendation.getTableName());
+            if (indexes == null) {
+                indexes = getIndexes(connection, metaData, recommendation.getTableName());
+                indexesOfTables.put(recommendation.getTableName(), indexes);
+            }
+            if (indexes.isEmpty()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("No indexes found on " + recommendation.getTableName() + ". Hence the table is " +
+                            "assumed to be unavailable and is not checked.");
+                }
+                continue;
+            }
+            if (!recommendation.isCoveredByAny(indexes)) {
+                missingIndexes.add(recommendation);
+            }
+        }
+        return missingIndexes;
+    }
+
+    /**
+     * Get the columns of each index of a table, in the order of the index.
+     */
+    private static List<List<String>> getIndexes(Connection connection, DatabaseMetaData metaData, String tableName)
+            throws SQLException {
+
+        // Unquoted identifiers are stored in upper case on most databases and in lower case on some, e.g. PostgreSQL.
+        String storedTableName = tableName;
+        if (metaData.storesLowerCaseIdentifiers()) {
+            storedTableName = tableName.toLowerCase(Locale.ENGLISH);
+        } else if (metaData.storesUpperCaseIdentifiers()) {
+            storedTableName = tableName.toUpperCase(Locale.ENGLISH);
+        }
+        Map<String, Map<Short, String>> indexColumns = new LinkedHashMap<>();
+        try (ResultSet resultSet = metaData.getIndexInfo(connection.getCatalog(), null, storedTableName, false,
+                true)) {
+            while (resultSet.next()) {
+                String indexName = resultSet.getString("INDEX_NAME");
+                String columnName = resultSet.getString("COLUMN_NAME");
+                if (indexName == null || columnName == null) {
+                    // Table statistics rows do not describe an index.
+                    continue;
+                }
+                indexColumns.computeIfAbsent(indexName, name -> new TreeMap<>())
+                        .put(resultSet.getShort("ORDINAL_POSITION"), columnName.toUpperCase(Locale.ENGLISH));
+            }
+        }
+        List<List<String>> indexes = new ArrayList<>();
+        for (Map<Short, String> columns : indexColumns.values()) {
+            indexes.add(new ArrayList<>(columns.values()));
+        }
+        return indexes;
+    }
+
+    /**
+     * Index recommended for a query run on every token request.
+     */
+    static class IndexRecommendation {
+
+        private final String purpose;
+        private final String tableName;
+        private final String indexName;
+        private final List<String> columns;
+        private final Set<String> leadingColumns;
+
+        /**
+         * @param purpose             Query the index is needed for.
+         * @param tableName           Table of the index.
+         * @param indexName           Name of the index to create.
+         * @param leadingColumnsCount Number of columns an existing index has to lead with to serve the query.
+         * @param columns             Columns of the index to create.
+         */
+        IndexRecommendation(String purpose, String tableName, String indexName, int leadingColumnsCount,
+                            String... columns) {
+
+            this.purpose = purpose;
+            this.tableName = tableName;
+            this.indexName = indexName;
+            this.columns = Arrays.asList(columns);
+            this.leadingColumns = new HashSet<>(this.columns.subList(0, leadingColumnsCount));
+        }
+
+        String getPurpose() {
+
+            return purpose;
+        }
+
+        String getTableName() {
+
+            return tableName;
+        }
+
+        String getCreateStatement() {
+
+            return "CREATE INDEX " + indexName + " ON " + tableName + " (" + String.join(", ", columns) + ")";
+        }
+
+        boolean isCoveredByAny(List<List<String>> indexes) {
+
+            for (List<String> indexColumns : indexes) {
+                if (indexColumns.size() >= leadingColumns.size() &&
+                        leadingColumns.equals(new HashSet<>(indexColumns.subList(0, leadingColumns.size())))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -179,6 +179,9 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
                     String authenticatedIDP = null;
                     if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
                         authenticatedIDP = resultSet.getString(15);
+                        validationDataDO.setNewerAccessTokenCount(resultSet.getInt(16));
+                    } else {
+                        validationDataDO.setNewerAccessTokenCount(resultSet.getInt(15));
                     }
                     AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(userName, userDomain, tenantDomain,
                             authenticatedIDP);
@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getIntProperty;
+
+/**
+ * Asynchronous access token persistence pipeline. Tokens are queued by the issuers and persisted by a set of
+ * {@link TokenPersistenceTask} consumers, each of which drains up to a configured number of tokens or waits up to a
+ * configured flush interval and writes the drained tokens using JDBC batches in a single transaction. When a batch
+ * fails, its tokens are retried one at a time so that a single bad row does not drop the whole batch.
+ * <p>
+ * The pipeline is stopped gracefully: the consumers persist the batch they hold before they exit and the tokens left
+ * in the queue are persisted by the stopping thread, hence no token accepted by {@link #enqueue(AccessContextTokenDO)}
+ * is lost on a clean shutdown.
+ */
+public class TokenPersistencePipeline {
+
+    private static final Log log = LogFactory.getLog(TokenPersistencePipeline.class);
+
+    // These config properties are defined in identity.xml
+    private static final String ASYNC_PERSISTENCE_ENABLE = "OAuth.TokenPersistence.Async.Enable";
+    private static final String ASYNC_PERSISTENCE_CONSUMER_COUNT = "OAuth.TokenPersistence.Async.ConsumerCount";
+    private static final String ASYNC_PERSISTENCE_QUEUE_SIZE = "OAuth.TokenPersistence.Async.QueueSize";
+    private static final String ASYNC_PERSISTENCE_BATCH_SIZE = "OAuth.TokenPersistence.Async.BatchSize";
+    private static final String ASYNC_PERSISTENCE_FLUSH_INTERVAL = "OAuth.TokenPersistence.Async.FlushIntervalMillis";
+
+    private static final int DEFAULT_CONSUMER_COUNT = 4;
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 50;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final long IDLE_POLL_INTERVAL_MILLIS = 500;
+
+    private static final TokenPersistencePipeline instance = new TokenPersistencePipeline();
+
+    private final boolean enabled;
+    private final int consumerCount;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final BlockingDeque<AccessContextTokenDO> accessContextTokenQueue;
+    private volatile ExecutorService consumers;
+    private volatile boolean stopping;
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong persistedCount = new AtomicLong();
+    private final AtomicLong retriedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalFlushLatencyMillis = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile long lastFlushLatencyMillis;
+
+    private TokenPersistencePipeline() {
+
+        this(getBooleanProperty(ASYNC_PERSISTENCE_ENABLE, false),
+                getIntProperty(ASYNC_PERSISTENCE_CONSUMER_COUNT, DEFAULT_CONSUMER_COUNT),
+                getIntProperty(ASYNC_PERSISTENCE_QUEUE_SIZE, DEFAULT_QUEUE_SIZE),
+                getIntProperty(ASYNC_PERSISTENCE_BATCH_SIZE, DEFAULT_BATCH_SIZE),
+                getIntProperty(ASYNC_PERSISTENCE_FLUSH_INTERVAL, (int) DEFAULT_FLUSH_INTERVAL_MILLIS));
+    }
+
+    TokenPersistencePipeline(boolean enabled, int consumerCount, int queueSize, int batchSize,
+                             long flushIntervalMillis) {
+
+        this.enabled = enabled;
+        // Invalid sizes would fail the creation of the queue or the consumers, and with them the OAuth component.
+        this.consumerCount = (int) getPositiveValue(ASYNC_PERSISTENCE_CONSUMER_COUNT, consumerCount,
+                DEFAULT_CONSUMER_COUNT);
+        this.batchSize = (int) getPositiveValue(ASYNC_PERSISTENCE_BATCH_SIZE, batchSize, DEFAULT_BATCH_SIZE);
+        this.flushIntervalMillis = getPositiveValue(ASYNC_PERSISTENCE_FLUSH_INTERVAL, flushIntervalMillis,
+                DEFAULT_FLUSH_INTERVAL_MILLIS);
+        this.accessContextTokenQueue = new LinkedBlockingDeque<>((int) getPositiveValue(ASYNC_PERSISTENCE_QUEUE_SIZE,
+                queueSize, DEFAULT_QUEUE_SIZE));
+    }
+
+    private static long getPositiveValue(String property, long value, long defaultValue) {
+
+        if (value > 0) {
+            return value;
+        }
+        log.warn("Invalid value: " + value + " configured for " + property + ". The value must be greater than " +
+                "zero. Using the default value: " + defaultValue);
+        return defaultValue;
+    }
+
+    public static TokenPersistencePipeline getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Whether asynchronous token persistence is enabled through identity.xml.
+     *
+     * @return true if tokens should be handed over to the pipeline.
+     */
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Start the persistence consumers. This is a no-op if the pipeline is disabled or already started.
+     */
+    public synchronized void start() {
+
+        if (!enabled || consumers != null) {
+            return;
+        }
+        stopping = false;
+        consumers = Executors.newFixedThreadPool(consumerCount);
+        for (int i = 0; i < consumerCount; i++) {
+            consumers.execute(new TokenPersistenceTask(this));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Started access token persistence pipeline with " + consumerCount + " consumers, batch size: "
+                    + batchSize + " and flush interval: " + flushIntervalMillis + "ms.");
+        }
+    }
+
+    /**
+     * Stop the persistence consumers and synchronously persist the tokens which are still in the queue. The consumers
+     * are not interrupted unless they fail to finish their current batch within the shutdown timeout.
+     */
+    public synchronized void stop() {
+
+        if (consumers == null) {
+            return;
+        }
+        // New tokens are rejected from here on, so that the callers persist them by themselves.
+        stopping = true;
+        consumers.shutdown();
+        try {
+            if (!consumers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Access token persistence consumers did not terminate within " + SHUTDOWN_TIMEOUT_SECONDS
+                        + " seconds. Interrupting the consumers.");
+                // Interrupted consumers still persist the tokens they have taken from the queue before exiting.
+                consumers.shutdownNow();
+                consumers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        consumers = null;
+
+        List<AccessContextTokenDO> remaining = new ArrayList<>();
+        while (accessContextTokenQueue.drainTo(remaining, batchSize) > 0) {
+            flush(remaining);
+            remaining = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Whether the pipeline is being stopped, in which case the consumers exit after persisting their current batch.
+     *
+     * @return true if the pipeline is stopping.
+     */
+    boolean isStopping() {
+
+        return stopping;
+    }
+
+    /**
+     * Hand over an access token to the pipeline.
+     *
+     * @param accessContextTokenDO access token to be persisted.
+     * @return false if the queue is full, in which case the caller has to persist the token by itself.
+     */
+    public boolean enqueue(AccessContextTokenDO accessContextTokenDO) {
+
+        if (consumers == null || stopping || !accessContextTokenQueue.offer(accessContextTokenDO)) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        // If the pipeline started stopping meanwhile, the queue may already have been drained for the last time. The
+        // token is taken back unless it was drained, in which case it is persisted by the stopping thread.
+        if ((consumers == null || stopping) && accessContextTokenQueue.remove(accessContextTokenDO)) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        enqueuedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Wait for at least one token and return up to the configured batch size of tokens, waiting at most the configured
+     * flush interval for the batch to fill up. An empty batch is returned if no token arrives within the idle poll
+     * interval, so that the consumers notice when the pipeline is stopped.
+     * <p>
+     * If the calling thread is interrupted, the tokens already taken from the queue are returned with the interrupt
+     * status set, so that the caller persists them before it exits.
+     *
+     * @return batch of tokens to be persisted, which may be empty.
+     */
+    List<AccessContextTokenDO> takeBatch() {
+
+        List<AccessContextTokenDO> batch = new ArrayList<>(batchSize);
+        try {
+            AccessContextTokenDO first = accessContextTokenQueue.poll(IDLE_POLL_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return batch;
+            }
+            batch.add(first);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+            while (batch.size() < batchSize) {
+                if (accessContextTokenQueue.drainTo(batch, batchSize - batch.size()) > 0) {
+                    continue;
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    break;
+                }
+                AccessContextTokenDO next = accessContextTokenQueue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return batch;
+    }
+
+    /**
+     * Persist a batch of tokens. If the batch insert fails the tokens are retried individually.
+     *
+     * @param batch tokens to be persisted.
+     */
+    void flush(List<AccessContextTokenDO> batch) {
+
+        if (batch.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        AccessTokenDAO accessTokenDAO = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO();
+        try {
+            accessTokenDAO.insertAccessTokens(batch);
+            persistedCount.addAndGet(batch.size());
+        } catch (IdentityOAuth2Exception e) {
+            log.warn("Error while persisting a batch of " + batch.size() + " access tokens. Retrying the tokens " +
+                    "individually.", e);
+            for (AccessContextTokenDO accessContextTokenDO : batch) {
+                retry(accessTokenDAO, accessContextTokenDO);
+            }
+        }
+        long latency = System.currentTimeMillis() - startTime;
+        lastBatchSize = batch.size();
+        lastFlushLatencyMillis = latency;
+        flushCount.incrementAndGet();
+        totalFlushLatencyMillis.addAndGet(latency);
+        if (log.isDebugEnabled()) {
+            log.debug("Flushed " + batch.size() + " access tokens in " + latency + "ms. Queue depth: " +
+                    getQueueDepth());
+        }
+    }
+
+    private void retry(AccessTokenDAO accessTokenDAO, AccessContextTokenDO accessContextTokenDO) {
+
+        retriedCount.incrementAndGet();
+        try {
+            accessTokenDAO.insertAccessToken(accessContextTokenDO.getAccessToken(),
+                    accessContextTokenDO.getConsumerKey(), accessContextTokenDO.getNewAccessTokenDO(),
+                    accessContextTokenDO.getExistingAccessTokenDO(), accessContextTokenDO.getUserStoreDomain());
+            persistedCount.incrementAndGet();
+        } catch (IdentityOAuth2Exception e) {
+            droppedCount.incrementAndGet();
+            log.error("Error occurred while persisting access token with id: " +
+                    accessContextTokenDO.getNewAccessTokenDO().getTokenId() + " of client: " +
+                    accessContextTokenDO.getConsumerKey(), e);
+        }
+    }
+
+    public int getQueueDepth() {
+
+        return accessContextTokenQueue.size();
+    }
+
+    public long getEnqueuedCount() {
+
+        return enqueuedCount.get();
+    }
+
+    public long getRejectedCount() {
+
+        return rejectedCount.get();
+    }
+
+    public long getPersistedCount() {
+
+        return persistedCount.get();
+    }
+
+    public long getRetriedCount() {
+
+        return retriedCount.get();
+    }
+
+    public long getDroppedCount() {
+
+        return droppedCount.get();
+    }
+
+    public long getFlushCount() {
+
+        return flushCount.get();
+    }
+
+    public int getLastBatchSize() {
+
+        return lastBatchSize;
+    }
+
+    public long getLastFlushLatencyMillis() {
+
+        return lastFlushLatencyMillis;
+    }
+
+    public double getAverageFlushLatencyMillis() {
+
+        long flushes = flushCount.get();
+        return flushes == 0 ? 0 : (double) totalFlushLatencyMillis.get() / flushes;
+    }
+
+    public double getAverageBatchSize() {
+
+        long flushes = flushCount.get();
+        return flushes == 0 ? 0 : (double) (persistedCount.get() + droppedCount.get()) / flushes;
+    }
+}
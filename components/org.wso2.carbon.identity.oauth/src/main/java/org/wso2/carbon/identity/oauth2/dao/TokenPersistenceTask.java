@@ -19,20 +19,17 @@ package org.wso2.carbon.identity.oauth2.dao;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.wso2.carbon.identity.base.IdentityException;
-
-import java.util.concurrent.BlockingDeque;
 
 /**
- * OAuth token persistence task.
+ * OAuth token persistence task. Drains batches of tokens from the {@link TokenPersistencePipeline} and persists them.
  */
 public class TokenPersistenceTask implements Runnable {
 
     private static final Log log = LogFactory.getLog(TokenPersistenceTask.class);
-    private BlockingDeque<AccessContextTokenDO> accessContextTokenQueue;
+    private TokenPersistencePipeline pipeline;
 
-    public TokenPersistenceTask(BlockingDeque<AccessContextTokenDO> accessContextTokenQueue) {
-        this.accessContextTokenQueue = accessContextTokenQueue;
+    public TokenPersistenceTask(TokenPersistencePipeline pipeline) {
+        this.pipeline = pipeline;
     }
 
     @Override
@@ -40,25 +37,10 @@ public class TokenPersistenceTask implements Runnable {
 
         log.debug("Access Token context persist consumer is started");
 
-        while (true) {
-            AccessContextTokenDO accessContextTokenDO = null;
-            String accessToken = null;
-            try {
-                accessContextTokenDO =  accessContextTokenQueue.take();
-                if (accessContextTokenDO != null) {
-                    accessToken = accessContextTokenDO.getAccessToken();
-                    log.debug("Access Token Data persisting Task is started to run");
-                    OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
-                            .insertAccessToken(accessToken, accessContextTokenDO.getConsumerKey(),
-                                    accessContextTokenDO.getNewAccessTokenDO(),
-                                    accessContextTokenDO.getExistingAccessTokenDO(),
-                                    accessContextTokenDO.getUserStoreDomain());
-                }
-            } catch (InterruptedException e) {
-                log.error("Error occurred while getting AccessContextTokenDO instance from accessContextTokenQueue", e);
-            } catch (IdentityException e) {
-                log.error("Error occurred while persisting access token :" + accessToken, e);
-            }
+        while (!pipeline.isStopping() && !Thread.currentThread().isInterrupted()) {
+            // When interrupted, the tokens already taken from the queue are returned and persisted before exiting.
+            pipeline.flush(pipeline.takeBatch());
         }
+        log.debug("Access Token context persist consumer is stopped");
     }
 }
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * DAO used by the {@link TokenPurgeEngine} to find and remove access token and authorization code rows which are no
+ * longer usable. The rows are walked in the order of their creation time and id, one chunk at a time, so that a
+ * purge can be resumed from the last row seen. Only rows created before a given time are considered, hence the rows
+ * written by the flows which are in progress are never read.
+ */
+public class TokenPurgeDAO {
+
+    private static final Log log = LogFactory.getLog(TokenPurgeDAO.class);
+    private static final String UTC = "UTC";
+
+    /**
+     * Tables walked by the purge.
+     */
+    public enum PurgeTable {
+        ACCESS_TOKEN,
+        AUTHORIZATION_CODE
+    }
+
+    /**
+     * Read the next chunk of rows of a table and pick the rows which can be purged.
+     *
+     * @param table         Table to read.
+     * @param after         Position after which the chunk starts.
+     * @param createdBefore Only the rows created before this time are read.
+     * @param chunkSize     Maximum number of rows to read.
+     * @return chunk of rows.
+     * @throws IdentityOAuth2Exception If the rows could not be read.
+     */
+    public PurgeChunk getPurgeCandidates(PurgeTable table, PurgeCursor after, Timestamp createdBefore, int chunkSize)
+            throws IdentityOAuth2Exception {
+
+        String sql = table == PurgeTable.ACCESS_TOKEN ? SQLQueries.LIST_ACCESS_TOKENS_TO_PURGE :
+                SQLQueries.LIST_AUTHORIZATION_CODES_TO_PURGE;
+        Calendar utcCalendar = Calendar.getInstance(TimeZone.getTimeZone(UTC));
+        List<String> purgeableIds = new ArrayList<>();
+        int scannedCount = 0;
+        PurgeCursor lastCursor = after;
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+             PreparedStatement prepStmt = connection.prepareStatement(sql)) {
+            prepStmt.setTimestamp(1, createdBefore, utcCalendar);
+            prepStmt.setTimestamp(2, after.getTimeCreated(), utcCalendar);
+            prepStmt.setTimestamp(3, after.getTimeCreated(), utcCalendar);
+            prepStmt.setString(4, after.getId());
+            prepStmt.setMaxRows(chunkSize);
+            prepStmt.setFetchSize(chunkSize);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                while (resultSet.next()) {
+                    String id = resultSet.getString(1);
+                    Timestamp timeCreated = resultSet.getTimestamp(2, utcCalendar);
+                    boolean purgeable;
+                    if (table == PurgeTable.ACCESS_TOKEN) {
+                        purgeable = isPurgeableAccessToken(resultSet.getString(3), timeCreated,
+                                resultSet.getLong(4), resultSet.getTimestamp(5, utcCalendar), resultSet.getLong(6),
+                                createdBefore.getTime());
+                    } else {
+                        purgeable = isPurgeableAuthorizationCode(resultSet.getString(3), timeCreated,
+                                resultSet.getLong(4), createdBefore.getTime());
+                    }
+                    if (purgeable) {
+                        purgeableIds.add(id);
+                    }
+                    scannedCount++;
+                    lastCursor = new PurgeCursor(timeCreated, id);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IdentityOAuth2Exception("Error occurred while reading the rows to purge from the " + table +
+                    " table.", e);
+        }
+        return new PurgeChunk(purgeableIds, scannedCount, lastCursor);
+    }
+
+    /**
+     * Remove the given rows of a table in a single transaction. Access tokens are copied to the audit table before
+     * they are removed if required.
+     *
+     * @param table   Table to purge.
+     * @param ids     Token ids or authorization code ids of the rows.
+     * @param archive Whether to copy the access tokens to the audit table.
+     * @return number of removed rows.
+     * @throws IdentityOAuth2Exception If the rows could not be removed.
+     */
+    public int purge(PurgeTable table, List<String> ids, boolean archive) throws IdentityOAuth2Exception {
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String idList = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        int purgedCount;
+        Connection connection = IdentityDatabaseUtil.getDBConnection(true);
+        try {
+            if (table == PurgeTable.ACCESS_TOKEN) {
+                if (archive) {
+                    // Nodes purge independently, hence the tokens are locked and only the tokens which are not
+                    // archived yet are copied, so that a token purged by several nodes is archived once.
+                    executeUpdate(connection, SQLQueries.LOCK_TOKENS_TO_PURGE
+                            .replace(SQLQueries.TOKEN_ID_LIST_PLACEHOLDER, idList), ids);
+                    String sql = OAuth2ServiceComponentHolder.isIDPIdColumnEnabled() ?
+                            SQLQueries.ARCHIVE_PURGED_TOKENS_IN_AUDIT_WITH_IDP_NAME :
+                            SQLQueries.ARCHIVE_PURGED_TOKENS_IN_AUDIT;
+                    try (PreparedStatement auditStmt = connection.prepareStatement(
+                            sql.replace(SQLQueries.TOKEN_ID_LIST_PLACEHOLDER, idList))) {
+                        auditStmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+                        setIds(auditStmt, 2, ids);
+                        auditStmt.executeUpdate();
+                    }
+                }
+                purgedCount = executeUpdate(connection, SQLQueries.DELETE_TOKENS_BY_TOKEN_ID
+                        .replace(SQLQueries.TOKEN_ID_LIST_PLACEHOLDER, idList), ids);
+            } else {
+                purgedCount = executeUpdate(connection, SQLQueries.DELETE_AUTHORIZATION_CODES_BY_CODE_ID
+                        .replace(SQLQueries.CODE_ID_LIST_PLACEHOLDER, idList), ids);
+            }
+            IdentityDatabaseUtil.commitTransaction(connection);
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2Exception("Error occurred while purging a chunk of " + ids.size() + " rows from " +
+                    "the " + table + " table.", e);
+        } finally {
+            IdentityDatabaseUtil.closeConnection(connection);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Purged " + purgedCount + " rows from the " + table + " table.");
+        }
+        return purgedCount;
+    }
+
+    /**
+     * Whether an access token can be purged. Tokens which are not active are purged right away, while active tokens
+     * are purged once both the access token and the refresh token expired before the given time. Negative validity
+     * periods denote tokens which never expire.
+     */
+    static boolean isPurgeableAccessToken(String tokenState, Timestamp timeCreated, long validityPeriod,
+                                          Timestamp refreshTokenTimeCreated, long refreshTokenValidityPeriod,
+                                          long expiredBefore) {
+
+        if (!OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(tokenState)) {
+            return true;
+        }
+        return isExpired(timeCreated, validityPeriod, expiredBefore) &&
+                isExpired(refreshTokenTimeCreated, refreshTokenValidityPeriod, expiredBefore);
+    }
+
+    /**
+     * Whether an authorization code can be purged. Codes which are not active are purged right away, while active
+     * codes are purged once they expired before the given time.
+     */
+    static boolean isPurgeableAuthorizationCode(String state, Timestamp timeCreated, long validityPeriod,
+                                                long expiredBefore) {
+
+        if (!OAuthConstants.AuthorizationCodeState.ACTIVE.equals(state)) {
+            return true;
+        }
+        return isExpired(timeCreated, validityPeriod, expiredBefore);
+    }
+
+    private static boolean isExpired(Timestamp issuedTime, long validityPeriod, long expiredBefore) {
+
+        if (validityPeriod < 0) {
+            return false;
+        }
+        if (issuedTime == null) {
+            return true;
+        }
+        // Compared this way to avoid overflowing when the validity period is close to Long.MAX_VALUE.
+        return validityPeriod < expiredBefore - issuedTime.getTime();
+    }
+
+    private static int executeUpdate(Connection connection, String sql, List<String> ids) throws SQLException {
+
+        try (PreparedStatement prepStmt = connection.prepareStatement(sql)) {
+            setIds(prepStmt, 1, ids);
+            return prepStmt.executeUpdate();
+        }
+    }
+
+    private static void setIds(PreparedStatement prepStmt, int startIndex, List<String> ids) throws SQLException {
+
+        int index = startIndex;
+        for (String id : ids) {
+            prepStmt.setString(index++, id);
+        }
+    }
+
+    /**
+     * Position of the purge in a table, given by the creation time and the id of the last row read.
+     */
+    public static class PurgeCursor {
+
+        public static final PurgeCursor START = new PurgeCursor(new Timestamp(0), "");
+
+        private final Timestamp timeCreated;
+        private final String id;
+
+        public PurgeCursor(Timestamp timeCreated, String id) {
+
+            this.timeCreated = timeCreated;
+            this.id = id;
+        }
+
+        public Timestamp getTimeCreated() {
+
+            return timeCreated;
+        }
+
+        public String getId() {
+
+            return id;
+        }
+    }
+
+    /**
+     * Rows read in a single chunk.
+     */
+    public static class PurgeChunk {
+
+        private final List<String> purgeableIds;
+        private final int scannedCount;
+        private final PurgeCursor lastCursor;
+
+        public PurgeChunk(List<String> purgeableIds, int scannedCount, PurgeCursor lastCursor) {
+
+            this.purgeableIds = purgeableIds;
+            this.scannedCount = scannedCount;
+            this.lastCursor = lastCursor;
+        }
+
+        public List<String> getPurgeableIds() {
+
+            return purgeableIds;
+        }
+
+        public int getScannedCount() {
+
+            return scannedCount;
+        }
+
+        public PurgeCursor getLastCursor() {
+
+            return lastCursor;
+        }
+    }
+}
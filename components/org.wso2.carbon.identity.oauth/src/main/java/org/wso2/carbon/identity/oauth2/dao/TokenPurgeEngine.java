@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeDAO.PurgeChunk;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeDAO.PurgeCursor;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeDAO.PurgeTable;
+
+import java.sql.Timestamp;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Background purge of the access tokens and authorization codes which are no longer usable. Tokens and codes which
+ * are not active, and active ones which expired, are removed a configured retention period after they were created
+ * and expired, instead of being cleaned up inline while tokens are issued or revoked.
+ * <p>
+ * Each run walks the tables in chunks ordered by the creation time, removing the purgeable rows of a chunk in a
+ * single short transaction. The position reached in each table is kept between the runs, so that a run which hits
+ * the configured number of chunks, a quiet window or an error resumes from where it stopped. The number of rows read
+ * per second is limited so that the purge does not compete with the token flows.
+ * <p>
+ * The nodes of a cluster purge independently. A chunk purged by several nodes at once is removed by one of them,
+ * and the tokens of the chunk are archived only if they are not in the audit table yet.
+ * <p>
+ * Once the engine is enabled, the inline cleanup done by {@link AccessTokenDAOImpl} can be disabled so that issuing
+ * and revoking tokens does not pay for the cleanup of the old rows.
+ */
+public class TokenPurgeEngine {
+
+    private static final Log log = LogFactory.getLog(TokenPurgeEngine.class);
+
+    // These config properties are defined in identity.xml
+    private static final String PURGE_ENABLE = "OAuth.TokenPurge.Enable";
+    private static final String PURGE_INTERVAL = "OAuth.TokenPurge.IntervalSeconds";
+    private static final String PURGE_CHUNK_SIZE = "OAuth.TokenPurge.ChunkSize";
+    private static final String PURGE_MAX_CHUNKS_PER_RUN = "OAuth.TokenPurge.MaxChunksPerRun";
+    private static final String PURGE_MAX_ROWS_PER_SECOND = "OAuth.TokenPurge.MaxRowsPerSecond";
+    private static final String PURGE_RETENTION = "OAuth.TokenPurge.RetentionHours";
+    private static final String PURGE_QUIET_WINDOWS = "OAuth.TokenPurge.QuietWindows";
+    private static final String PURGE_DISABLE_INLINE_CLEANUP = "OAuth.TokenPurge.DisableInlineCleanup";
+
+    private static final long DEFAULT_INTERVAL_SECONDS = 600;
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    // The ids of a chunk are bound to an IN clause, which is limited to 1000 elements by some databases.
+    private static final int MAX_CHUNK_SIZE = 1000;
+    private static final int DEFAULT_MAX_CHUNKS_PER_RUN = 200;
+    private static final int DEFAULT_MAX_ROWS_PER_SECOND = 2000;
+    private static final long DEFAULT_RETENTION_HOURS = 24;
+    private static final String QUIET_WINDOW_SEPARATOR = "-";
+
+    private static final TokenPurgeEngine instance = new TokenPurgeEngine();
+
+    private final boolean enabled;
+    private final long intervalSeconds;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+    private final int maxRowsPerSecond;
+    private final long retentionMillis;
+    private final List<QuietWindow> quietWindows;
+    private final boolean inlineCleanupDisabled;
+    private final TokenPurgeDAO tokenPurgeDAO;
+    private final Map<PurgeTable, PurgeProgress> progress = new EnumMap<>(PurgeTable.class);
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean stopped;
+
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong skippedRunCount = new AtomicLong();
+    private volatile long lastRunTime;
+    private volatile long lastRunDurationMillis;
+
+    private TokenPurgeEngine() {
+
+        this(getBooleanProperty(PURGE_ENABLE, false),
+                getLongProperty(PURGE_INTERVAL, DEFAULT_INTERVAL_SECONDS),
+                (int) Math.min(getLongProperty(PURGE_CHUNK_SIZE, DEFAULT_CHUNK_SIZE), MAX_CHUNK_SIZE),
+                (int) getLongProperty(PURGE_MAX_CHUNKS_PER_RUN, DEFAULT_MAX_CHUNKS_PER_RUN),
+                (int) getLongProperty(PURGE_MAX_ROWS_PER_SECOND, DEFAULT_MAX_ROWS_PER_SECOND),
+                TimeUnit.HOURS.toMillis(getLongProperty(PURGE_RETENTION, DEFAULT_RETENTION_HOURS)),
+                parseQuietWindows(IdentityUtil.getProperty(PURGE_QUIET_WINDOWS)),
+                getBooleanProperty(PURGE_DISABLE_INLINE_CLEANUP, false), new TokenPurgeDAO());
+    }
+
+    TokenPurgeEngine(boolean enabled, long intervalSeconds, int chunkSize, int maxChunksPerRun,
+                     int maxRowsPerSecond, long retentionMillis, List<QuietWindow> quietWindows,
+                     boolean inlineCleanupDisabled, TokenPurgeDAO tokenPurgeDAO) {
+
+        this.enabled = enabled;
+        this.intervalSeconds = intervalSeconds;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.retentionMillis = retentionMillis;
+        this.quietWindows = quietWindows;
+        this.inlineCleanupDisabled = inlineCleanupDisabled;
+        this.tokenPurgeDAO = tokenPurgeDAO;
+        for (PurgeTable table : PurgeTable.values()) {
+            progress.put(table, new PurgeProgress());
+        }
+    }
+
+    public static TokenPurgeEngine getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Whether the inline cleanup of old tokens should be skipped, which is only the case when the purge engine is
+     * enabled to remove them instead.
+     *
+     * @return true if the inline cleanup is disabled.
+     */
+    public boolean isInlineCleanupDisabled() {
+
+        return enabled && inlineCleanupDisabled;
+    }
+
+    /**
+     * Schedule the purge runs. This is a no-op if the engine is disabled or already started.
+     */
+    public synchronized void start() {
+
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        stopped = false;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TokenPurgeEngine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runOnce, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        if (log.isDebugEnabled()) {
+            log.debug("Started token purge engine with interval: " + intervalSeconds + "s, chunk size: " +
+                    chunkSize + " and rate limit: " + maxRowsPerSecond + " rows per second.");
+        }
+    }
+
+    /**
+     * Stop the purge runs. A run in progress stops after its current chunk.
+     */
+    public synchronized void stop() {
+
+        stopped = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Purge each table, starting from the position reached by the previous run.
+     */
+    void runOnce() {
+
+        if (isInQuietWindow(LocalTime.now())) {
+            skippedRunCount.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("Skipping the token purge run as it falls in a quiet window.");
+            }
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        runCount.incrementAndGet();
+        Timestamp createdBefore = new Timestamp(startTime - retentionMillis);
+        try {
+            for (PurgeTable table : PurgeTable.values()) {
+                purgeTable(table, createdBefore);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Keep the scheduled runs going, a failed run is resumed by the next one.
+            log.error("Error occurred while purging tokens.", e);
+        }
+        lastRunTime = startTime;
+        lastRunDurationMillis = System.currentTimeMillis() - startTime;
+    }
+
+    private void purgeTable(PurgeTable table, Timestamp createdBefore) throws InterruptedException {
+
+        PurgeProgress tableProgress = progress.get(table);
+        boolean archive = table == PurgeTable.ACCESS_TOKEN &&
+                OAuthServerConfiguration.getInstance().useRetainOldAccessTokens();
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            if (stopped || (chunk > 0 && isInQuietWindow(LocalTime.now()))) {
+                return;
+            }
+            long chunkStartTime = System.nanoTime();
+            PurgeChunk purgeChunk;
+            int purgedCount;
+            try {
+                purgeChunk = tokenPurgeDAO.getPurgeCandidates(table, tableProgress.cursor, createdBefore, chunkSize);
+                purgedCount = tokenPurgeDAO.purge(table, purgeChunk.getPurgeableIds(), archive);
+            } catch (IdentityOAuth2Exception e) {
+                // The cursor is not moved, hence the same chunk is retried by the next run.
+                tableProgress.failedChunkCount.incrementAndGet();
+                log.error("Error occurred while purging the " + table + " table.", e);
+                return;
+            }
+            tableProgress.chunkCount.incrementAndGet();
+            tableProgress.scannedCount.addAndGet(purgeChunk.getScannedCount());
+            tableProgress.purgedCount.addAndGet(purgedCount);
+            if (archive) {
+                tableProgress.archivedCount.addAndGet(purgedCount);
+            }
+            if (purgeChunk.getScannedCount() < chunkSize) {
+                // Reached the end of the table, the next run starts over from the oldest row.
+                tableProgress.cursor = PurgeCursor.START;
+                tableProgress.passCount.incrementAndGet();
+                if (log.isDebugEnabled()) {
+                    log.debug("Completed a pass over the " + table + " table. Purged rows so far: " +
+                            tableProgress.purgedCount.get());
+                }
+                return;
+            }
+            tableProgress.cursor = purgeChunk.getLastCursor();
+            throttle(purgeChunk.getScannedCount(), chunkStartTime);
+        }
+    }
+
+    private void throttle(int rowCount, long chunkStartTime) throws InterruptedException {
+
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+        long minimumNanos = TimeUnit.SECONDS.toNanos(rowCount) / maxRowsPerSecond;
+        long remainingNanos = minimumNanos - (System.nanoTime() - chunkStartTime);
+        if (remainingNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(remainingNanos);
+        }
+    }
+
+    boolean isInQuietWindow(LocalTime time) {
+
+        for (QuietWindow quietWindow : quietWindows) {
+            if (quietWindow.contains(time)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getRunCount() {
+
+        return runCount.get();
+    }
+
+    public long getSkippedRunCount() {
+
+        return skippedRunCount.get();
+    }
+
+    public long getLastRunTime() {
+
+        return lastRunTime;
+    }
+
+    public long getLastRunDurationMillis() {
+
+        return lastRunDurationMillis;
+    }
+
+    /**
+     * Get the progress of the purge in a table.
+     *
+     * @param table Table.
+     * @return progress of the purge.
+     */
+    public PurgeProgress getProgress(PurgeTable table) {
+
+        return progress.get(table);
+    }
+
+    /**
+     * Parse comma separated quiet windows given in the HH:mm-HH:mm form. A window ending before it starts spans
+     * midnight.
+     *
+     * @param value Configured quiet windows.
+     * @return quiet windows.
+     */
+    static List<QuietWindow> parseQuietWindows(String value) {
+
+        if (StringUtils.isBlank(value)) {
+            return Collections.emptyList();
+        }
+        List<QuietWindow> quietWindows = new ArrayList<>();
+        for (String configuredWindow : value.split(",")) {
+            String window = configuredWindow.trim();
+            String[] bounds = window.split(QUIET_WINDOW_SEPARATOR);
+            try {
+                if (bounds.length != 2) {
+                    throw new DateTimeParseException("Expected a start and an end time.", window, 0);
+                }
+                quietWindows.add(new QuietWindow(LocalTime.parse(bounds[0].trim()),
+                        LocalTime.parse(bounds[1].trim())));
+            } catch (DateTimeParseException e) {
+                log.warn("Invalid quiet window: " + window + " configured for " + PURGE_QUIET_WINDOWS +
+                        ". The window is ignored.");
+            }
+        }
+        return quietWindows;
+    }
+
+    /**
+     * Time of the day during which the purge does not run.
+     */
+    static class QuietWindow {
+
+        private final LocalTime start;
+        private final LocalTime end;
+
+        QuietWindow(LocalTime start, LocalTime end) {
+
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean contains(LocalTime time) {
+
+            if (start.isAfter(end)) {
+                return !time.isBefore(start) || time.isBefore(end);
+            }
+            return !time.isBefore(start) && time.isBefore(end);
+        }
+    }
+
+    /**
+     * Progress of the purge in a table.
+     */
+    public static class PurgeProgress {
+
+        private volatile PurgeCursor cursor = PurgeCursor.START;
+        private final AtomicLong scannedCount = new AtomicLong();
+        private final AtomicLong purgedCount = new AtomicLong();
+        private final AtomicLong archivedCount = new AtomicLong();
+        private final AtomicLong chunkCount = new AtomicLong();
+        private final AtomicLong failedChunkCount = new AtomicLong();
+        private final AtomicLong passCount = new AtomicLong();
+
+        /**
+         * Creation time of the last row read, which is the position the purge resumes from.
+         *
+         * @return creation time of the last row read.
+         */
+        public Timestamp getCursorTime() {
+
+            return cursor.getTimeCreated();
+        }
+
+        public long getScannedCount() {
+
+            return scannedCount.get();
+        }
+
+        public long getPurgedCount() {
+
+            return purgedCount.get();
+        }
+
+        public long getArchivedCount() {
+
+            return archivedCount.get();
+        }
+
+        public long getChunkCount() {
+
+            return chunkCount.get();
+        }
+
+        public long getFailedChunkCount() {
+
+            return failedChunkCount.get();
+        }
+
+        /**
+         * Number of times the purge walked through the whole table.
+         *
+         * @return number of completed passes.
+         */
+        public long getPassCount() {
+
+            return passCount.get();
+        }
+    }
+}
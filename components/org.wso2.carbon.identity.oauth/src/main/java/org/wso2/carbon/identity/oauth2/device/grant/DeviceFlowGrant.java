@@ -32,6 +32,7 @@ import org.wso2.carbon.identity.oauth2.model.RequestParameter;
 import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
 import org.wso2.carbon.identity.oauth2.token.handlers.grant.AbstractAuthorizationGrantHandler;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.oauth2.util.PollingStateStore;
 
 import java.sql.Timestamp;
 import java.util.Date;
@@ -43,6 +44,25 @@ public class DeviceFlowGrant extends AbstractAuthorizationGrantHandler {
 
     private static Log log = LogFactory.getLog(DeviceFlowGrant.class);
 
+    // Poll times are written behind, only the status transitions of a device code are persisted synchronously.
+    private static final PollingStateStore pollingStateStore = new PollingStateStore("DeviceFlow",
+            new PollingStateStore.PollingStateWriter() {
+
+                @Override
+                public void writeLastPollTime(String deviceCode, Timestamp lastPollTime)
+                        throws IdentityOAuth2Exception {
+
+                    DeviceFlowPersistenceFactory.getInstance().getDeviceFlowDAO().setLastPollTime(deviceCode,
+                            lastPollTime);
+                }
+
+                @Override
+                public void writeInterval(String deviceCode, long interval) {
+
+                    // The polling interval of a device code is not raised on slow_down.
+                }
+            });
+
     @Override
     public boolean validateGrant(OAuthTokenReqMessageContext oAuthTokenReqMessageContext) throws
             IdentityOAuth2Exception {
@@ -74,21 +94,25 @@ public class DeviceFlowGrant extends AbstractAuthorizationGrantHandler {
         if (Constants.NOT_EXIST.equals(deviceStatus)) {
             throw new IdentityOAuth2Exception(DeviceErrorCodes.INVALID_REQUEST, DeviceErrorCodes.INVALID_REQUEST);
         } else if (Constants.EXPIRED.equals(deviceStatus) || isExpiredDeviceCode(deviceFlowDO, date)) {
+            pollingStateStore.remove(deviceCode);
             throw new IdentityOAuth2Exception(DeviceErrorCodes.SubDeviceErrorCodes.EXPIRED_TOKEN,
                     DeviceErrorCodes.SubDeviceErrorCodes.EXPIRED_TOKEN);
         } else if (Constants.AUTHORIZED.equals(deviceStatus)) {
             authStatus = true;
             DeviceFlowPersistenceFactory.getInstance().getDeviceFlowDAO().setDeviceCodeExpired(deviceCode,
                     Constants.EXPIRED);
+            pollingStateStore.remove(deviceCode);
             setPropertiesForTokenGeneration(oAuthTokenReqMessageContext, deviceFlowDO);
         } else if (Constants.USED.equals(deviceStatus) || Constants.PENDING.equals(deviceStatus)) {
             Timestamp newPollTime = new Timestamp(date.getTime());
             if (isValidPollTime(newPollTime, deviceFlowDO)) {
-                DeviceFlowPersistenceFactory.getInstance().getDeviceFlowDAO().setLastPollTime(deviceCode, newPollTime);
+                pollingStateStore.updateLastPollTime(deviceCode, newPollTime,
+                        deviceFlowDO.getExpiryTime().getTime());
                 throw new IdentityOAuth2Exception(DeviceErrorCodes.SubDeviceErrorCodes.AUTHORIZATION_PENDING,
                         DeviceErrorCodes.SubDeviceErrorCodes.AUTHORIZATION_PENDING);
             } else {
-                DeviceFlowPersistenceFactory.getInstance().getDeviceFlowDAO().setLastPollTime(deviceCode, newPollTime);
+                pollingStateStore.updateLastPollTime(deviceCode, newPollTime,
+                        deviceFlowDO.getExpiryTime().getTime());
                 throw new IdentityOAuth2Exception(DeviceErrorCodes.SubDeviceErrorCodes.SLOW_DOWN,
                         DeviceErrorCodes.SubDeviceErrorCodes.SLOW_DOWN);
             }
@@ -139,7 +163,8 @@ public class DeviceFlowGrant extends AbstractAuthorizationGrantHandler {
     }
 
     /**
-     * This checks whether polling frequency is correct or not.
+     * This checks whether polling frequency is correct or not. The last poll time which is not yet written to the
+     * database is taken into account.
      *
      * @param newPollTime  Time of the new poll request.
      * @param deviceFlowDO DO class that contains values from database.
@@ -147,7 +172,9 @@ public class DeviceFlowGrant extends AbstractAuthorizationGrantHandler {
      */
     private static boolean isValidPollTime(Timestamp newPollTime, DeviceFlowDO deviceFlowDO) {
 
-        return newPollTime.getTime() - deviceFlowDO.getLastPollTime().getTime() > deviceFlowDO.getPollTime();
+        Timestamp lastPollTime = pollingStateStore.getLastPollTime(deviceFlowDO.getDeviceCode(),
+                deviceFlowDO.getLastPollTime());
+        return newPollTime.getTime() - lastPollTime.getTime() > deviceFlowDO.getPollTime();
     }
 
     /**
@@ -52,7 +52,13 @@ import org.wso2.carbon.identity.oauth2.client.authentication.BasicAuthClientAuth
 import org.wso2.carbon.identity.oauth2.client.authentication.OAuthClientAuthenticator;
 import org.wso2.carbon.identity.oauth2.client.authentication.OAuthClientAuthnService;
 import org.wso2.carbon.identity.oauth2.client.authentication.PublicClientAuthenticator;
+import org.wso2.carbon.identity.oauth2.dao.AuthorizationCodeStore;
+import org.wso2.carbon.identity.oauth2.dao.CacheBackedOAuthUserConsentedScopesDAOImpl;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.dao.OAuthUserConsentedScopesDAO;
+import org.wso2.carbon.identity.oauth2.dao.TokenIndexAdvisor;
+import org.wso2.carbon.identity.oauth2.dao.TokenPersistencePipeline;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeEngine;
 import org.wso2.carbon.identity.oauth2.device.api.DeviceAuthService;
 import org.wso2.carbon.identity.oauth2.device.api.DeviceAuthServiceImpl;
 import org.wso2.carbon.identity.oauth2.keyidprovider.DefaultKeyIDProviderImpl;
@@ -63,6 +69,8 @@ import org.wso2.carbon.identity.oauth2.token.bindings.handlers.TokenBindingExpir
 import org.wso2.carbon.identity.oauth2.token.bindings.impl.CookieBasedTokenBinder;
 import org.wso2.carbon.identity.oauth2.token.bindings.impl.SSOSessionBasedTokenBinder;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.oauth2.util.PollingStateStore;
+import org.wso2.carbon.identity.oauth2.validators.BatchIntrospectionHandler;
 import org.wso2.carbon.identity.oauth2.validators.scope.ScopeValidator;
 import org.wso2.carbon.identity.openidconnect.OpenIDConnectClaimFilter;
 import org.wso2.carbon.identity.openidconnect.OpenIDConnectClaimFilterImpl;
@@ -253,6 +261,17 @@ public class OAuth2ServiceComponent {
                 log.debug("TokenBindingExpiryEventHandler is successfully registered.");
             }
 
+            // Start the asynchronous token persistence consumers if enabled.
+            TokenPersistencePipeline.getInstance().start();
+            // Start the background purge of old tokens and authorization codes if enabled.
+            TokenPurgeEngine.getInstance().start();
+            // Load the consents of the recently consented users into the cache if enabled.
+            OAuthUserConsentedScopesDAO userConsentedScopesDAO = OAuthTokenPersistenceFactory.getInstance()
+                    .getOAuthUserConsentedScopesDAO();
+            if (userConsentedScopesDAO instanceof CacheBackedOAuthUserConsentedScopesDAOImpl) {
+                ((CacheBackedOAuthUserConsentedScopesDAOImpl) userConsentedScopesDAO).startCacheWarmUp();
+            }
+
             // Registering OAuth2Service as a OSGIService
             bundleContext.registerService(OAuth2Service.class.getName(), new OAuth2Service(), null);
             // Registering OAuth2ScopeService as a OSGIService
@@ -289,6 +308,23 @@ public class OAuth2ServiceComponent {
             }
             OAuth2ServiceComponentHolder.setIDPIdColumnEnabled(false);
         }
+        // Report the indexes missing for the token endpoint queries on the configured database.
+        TokenIndexAdvisor.reportMissingIndexes();
+    }
+
+    protected void deactivate(ComponentContext context) {
+
+        // Persist the tokens which are still queued before the bundle goes away.
+        TokenPersistencePipeline.getInstance().stop();
+        // Write the authorization codes which are neither redeemed nor flushed yet.
+        AuthorizationCodeStore.getInstance().stop();
+        TokenPurgeEngine.getInstance().stop();
+        BatchIntrospectionHandler.getInstance().stop();
+        // Write the poll times and polling intervals which are not yet flushed.
+        PollingStateStore.shutdownAll();
+        if (log.isDebugEnabled()) {
+            log.debug("Identity OAuth bundle is deactivated");
+        }
     }
 
     /**
@@ -56,9 +56,12 @@ import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.dto.OAuthConsumerAppDTO;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.OAuth2BulkTokenRevocationService;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.identity.oauth2.model.TokenRevocationCriteria;
+import org.wso2.carbon.identity.oauth2.util.ClientSecretVerificationCache;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
 import java.io.ByteArrayInputStream;
@@ -197,14 +200,24 @@ public class OAuthApplicationMgtListener extends AbstractApplicationMgtListener
             throws IdentityOAuthAdminException, IdentityOAuth2Exception {
 
         Set<String> associatedOAuthConsumerKeys = getOAuthAppsAssociatedWithApplication(serviceProvider);
+        OAuth2BulkTokenRevocationService bulkTokenRevocationService = OAuth2BulkTokenRevocationService.getInstance();
+        boolean revokeTokensInBulk = bulkTokenRevocationService.isSupported();
         for (String consumerKey : associatedOAuthConsumerKeys) {
             if (log.isDebugEnabled()) {
                 log.debug("Removing OAuth application data for clientId: " + consumerKey + " associated with " +
                         "application: " + serviceProvider.getApplicationName() + " tenantDomain: " + tenantDomain);
             }
+            if (revokeTokensInBulk) {
+                // The bulk revocation clears the cache entries of the revoked tokens chunk by chunk.
+                TokenRevocationCriteria criteria = new TokenRevocationCriteria();
+                criteria.setConsumerKey(consumerKey);
+                // The tokens are deleted along with the application data, hence they are not moved to the audit table.
+                criteria.setAuditRevokedTokens(false);
+                bulkTokenRevocationService.revokeTokens(criteria);
+            }
             OAuth2ServiceComponentHolder.getInstance().getOAuthAdminService().removeOAuthApplicationData(consumerKey);
         }
-        removeEntriesFromCache(associatedOAuthConsumerKeys);
+        removeEntriesFromCache(associatedOAuthConsumerKeys, !revokeTokensInBulk);
     }
 
     public void onPreCreateInbound(ServiceProvider serviceProvider, boolean isUpdate) throws
@@ -424,9 +437,8 @@ public class OAuthApplicationMgtListener extends AbstractApplicationMgtListener
                 authenticationRequestConfigConfig.getInboundAuthKey());
     }
 
-    private void removeEntriesFromCache(Set<String> consumerKeys) throws IdentityOAuth2Exception {
-
-
+    private void removeEntriesFromCache(Set<String> consumerKeys, boolean clearTokenEntries)
+            throws IdentityOAuth2Exception {
 
         if (isNotEmpty(consumerKeys)) {
             Set<AccessTokenDO> accessTokenDOSet = new HashSet<>();
@@ -434,12 +446,15 @@ public class OAuthApplicationMgtListener extends AbstractApplicationMgtListener
 
             AppInfoCache appInfoCache = AppInfoCache.getInstance();
             for (String oauthKey : consumerKeys) {
-                accessTokenDOSet.addAll(OAuthTokenPersistenceFactory.getInstance()
-                        .getAccessTokenDAO().getActiveTokenSetWithTokenIdByConsumerKeyForOpenidScope(oauthKey));
+                if (clearTokenEntries) {
+                    accessTokenDOSet.addAll(OAuthTokenPersistenceFactory.getInstance()
+                            .getAccessTokenDAO().getActiveTokenSetWithTokenIdByConsumerKeyForOpenidScope(oauthKey));
+                }
                 authzCodeDOSet.addAll(OAuthTokenPersistenceFactory.getInstance()
                         .getAuthorizationCodeDAO().getAuthorizationCodeDOSetByConsumerKeyForOpenidScope(oauthKey));
                 // Remove client credential from AppInfoCache
                 appInfoCache.clearCacheEntry(oauthKey);
+                ClientSecretVerificationCache.getInstance().clear(oauthKey);
                 OAuthCache.getInstance().clearCacheEntry(new OAuthCacheKey(oauthKey));
             }
 
@@ -458,7 +473,7 @@ public class OAuthApplicationMgtListener extends AbstractApplicationMgtListener
 
         Set<String> consumerKeys = getOAuthAppsAssociatedWithApplication(serviceProvider);
         try {
-            removeEntriesFromCache(consumerKeys);
+            removeEntriesFromCache(consumerKeys, true);
         } catch (IdentityOAuth2Exception e) {
             String applicationName = serviceProvider.getApplicationName();
             throw new IdentityApplicationManagementException("Error while clearing cache for oauth application data " +
@@ -24,7 +24,11 @@ import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.identity.oauth2.token.handlers.grant.saml.IdPCredentialCache;
+import org.wso2.carbon.identity.oauth2.util.ETagResponseCache;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.oauth2.validators.JDBCPermissionBasedInternalScopeValidator;
+import org.wso2.carbon.identity.oauth2.validators.OAuth2JWTTokenValidator;
 import org.wso2.carbon.stratos.common.exception.StratosException;
 
 import java.util.ArrayList;
@@ -42,12 +46,45 @@ public class OAuthTenantMgtListenerImpl extends AbstractIdentityTenantMgtListene
     public void onPreDelete(int tenantId) throws StratosException {
 
         clearTokenData(tenantId);
+        OAuth2Util.clearSigningKeyMaterial(tenantId);
+        OAuth2JWTTokenValidator.clearValidationKeys(getTenantDomain(tenantId));
+        ETagResponseCache.getDiscoveryResponseCache().clear(getTenantDomain(tenantId));
+        JDBCPermissionBasedInternalScopeValidator.clearPermissionScopeIndex(tenantId);
+        clearIdPCredentials(tenantId);
     }
 
     @Override
     public void onTenantDeactivation(int tenantId) throws StratosException {
 
         clearTokenData(tenantId);
+        OAuth2Util.clearSigningKeyMaterial(tenantId);
+        OAuth2JWTTokenValidator.clearValidationKeys(getTenantDomain(tenantId));
+        ETagResponseCache.getDiscoveryResponseCache().clear(getTenantDomain(tenantId));
+        JDBCPermissionBasedInternalScopeValidator.clearPermissionScopeIndex(tenantId);
+        clearIdPCredentials(tenantId);
+    }
+
+    private String getTenantDomain(int tenantId) throws StratosException {
+
+        try {
+            return OAuth2Util.getTenantDomain(tenantId);
+        } catch (IdentityOAuth2Exception e) {
+            throw new StratosException("Error occurred while resolving the tenant domain of tenant " + tenantId, e);
+        }
+    }
+
+    private void clearIdPCredentials(int tenantId) throws StratosException {
+
+        IdPCredentialCache credentialCache = IdPCredentialCache.getInstance();
+        if (!credentialCache.isEnabled()) {
+            return;
+        }
+        try {
+            credentialCache.clear(OAuth2Util.getTenantDomain(tenantId));
+        } catch (IdentityOAuth2Exception e) {
+            throw new StratosException("Error occurred while clearing the identity provider credentials of tenant " +
+                    tenantId, e);
+        }
     }
 
     private void clearTokenData(int tenantId) throws StratosException {
@@ -21,9 +21,11 @@ package org.wso2.carbon.identity.oauth2.internal;
 import org.wso2.carbon.identity.core.util.IdentityCoreConstants.UserStoreState;
 import org.wso2.carbon.identity.oauth.OAuthUtil;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.OAuth2BulkTokenRevocationService;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.identity.oauth2.model.TokenRevocationCriteria;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.user.store.configuration.listener.AbstractUserStoreConfigListener;
 import org.wso2.carbon.user.api.UserStoreException;
@@ -80,37 +82,15 @@ public class OAuthUserStoreConfigListenerImpl extends AbstractUserStoreConfigLis
     private void revokeTokens(int tenantId, String userStoreName) throws UserStoreException {
 
         try {
-            Set<AccessTokenDO> accessTokenDOs = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
-                    .getAccessTokensOfUserStore(tenantId, userStoreName);
-            Map<String, AccessTokenDO> latestAccessTokens = new HashMap<>();
-            for (AccessTokenDO accessTokenDO : accessTokenDOs) {
-                String keyString = accessTokenDO.getConsumerKey() + ":" + accessTokenDO.getAuthzUser() + ":" +
-                        OAuth2Util.buildScopeString(accessTokenDO.getScope()) + ":"
-                        + accessTokenDO.getAuthzUser().getFederatedIdPName();
-                AccessTokenDO accessTokenDOFromMap = latestAccessTokens.get(keyString);
-                if (accessTokenDOFromMap != null) {
-                    if (accessTokenDOFromMap.getIssuedTime().before(accessTokenDO.getIssuedTime())) {
-                        latestAccessTokens.put(keyString, accessTokenDO);
-                    }
-                } else {
-                    latestAccessTokens.put(keyString, accessTokenDO);
-                }
-
-                //Clear cache
-                OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser(),
-                        OAuth2Util.buildScopeString(accessTokenDO.getScope()));
-                OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser());
-                OAuthUtil.clearOAuthCache(accessTokenDO);
-            }
-            ArrayList<String> tokensToRevoke = new ArrayList<>();
-            for (Map.Entry entry : latestAccessTokens.entrySet()) {
-                tokensToRevoke.add(((AccessTokenDO) entry.getValue()).getAccessToken());
-            }
-
-            if (!tokensToRevoke.isEmpty()) {
-                OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
-                        .revokeAccessTokens(tokensToRevoke.toArray(new String[tokensToRevoke.size()]),
-                                OAuth2Util.isHashEnabled());
+            OAuth2BulkTokenRevocationService bulkTokenRevocationService =
+                    OAuth2BulkTokenRevocationService.getInstance();
+            if (bulkTokenRevocationService.isSupported()) {
+                TokenRevocationCriteria criteria = new TokenRevocationCriteria();
+                criteria.setTenantId(tenantId);
+                criteria.setUserStoreDomain(userStoreName);
+                bulkTokenRevocationService.revokeTokens(criteria);
+            } else {
+                revokeAccessTokensIndividually(tenantId, userStoreName);
             }
 
             List<AuthzCodeDO> latestAuthzCodes = OAuthTokenPersistenceFactory.getInstance()
@@ -129,4 +109,41 @@ public class OAuthUserStoreConfigListenerImpl extends AbstractUserStoreConfigLis
                     userStoreName + " in tenant :" + tenantId, e);
         }
     }
+
+    private void revokeAccessTokensIndividually(int tenantId, String userStoreName)
+            throws IdentityOAuth2Exception {
+
+        Set<AccessTokenDO> accessTokenDOs = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
+                .getAccessTokensOfUserStore(tenantId, userStoreName);
+        Map<String, AccessTokenDO> latestAccessTokens = new HashMap<>();
+        for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+            String keyString = accessTokenDO.getConsumerKey() + ":" + accessTokenDO.getAuthzUser() + ":" +
+                    OAuth2Util.buildScopeString(accessTokenDO.getScope()) + ":"
+                    + accessTokenDO.getAuthzUser().getFederatedIdPName();
+            AccessTokenDO accessTokenDOFromMap = latestAccessTokens.get(keyString);
+            if (accessTokenDOFromMap != null) {
+                if (accessTokenDOFromMap.getIssuedTime().before(accessTokenDO.getIssuedTime())) {
+                    latestAccessTokens.put(keyString, accessTokenDO);
+                }
+            } else {
+                latestAccessTokens.put(keyString, accessTokenDO);
+            }
+
+            //Clear cache
+            OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser(),
+                    OAuth2Util.buildScopeString(accessTokenDO.getScope()));
+            OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser());
+            OAuthUtil.clearOAuthCache(accessTokenDO);
+        }
+        ArrayList<String> tokensToRevoke = new ArrayList<>();
+        for (Map.Entry entry : latestAccessTokens.entrySet()) {
+            tokensToRevoke.add(((AccessTokenDO) entry.getValue()).getAccessToken());
+        }
+
+        if (!tokensToRevoke.isEmpty()) {
+            OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
+                    .revokeAccessTokens(tokensToRevoke.toArray(new String[tokensToRevoke.size()]),
+                            OAuth2Util.isHashEnabled());
+        }
+    }
 }
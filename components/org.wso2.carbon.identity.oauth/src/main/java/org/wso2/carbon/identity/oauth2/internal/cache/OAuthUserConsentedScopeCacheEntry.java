@@ -21,38 +21,40 @@ package org.wso2.carbon.identity.oauth2.internal.cache;
 import org.wso2.carbon.identity.core.cache.CacheEntry;
 import org.wso2.carbon.identity.oauth2.model.UserApplicationScopeConsentDO;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
- * Cache entry for User Consented Scope.
+ * Cache entry for User Consented Scope. The entry holds the consents of a user for all applications, so that a
+ * missing application means that the user has not given any consent for it.
  */
 public class OAuthUserConsentedScopeCacheEntry extends CacheEntry {
 
-    private String appID;
-    private UserApplicationScopeConsentDO userApplicationScopeConsentDO;
-
-    public OAuthUserConsentedScopeCacheEntry(String appId, UserApplicationScopeConsentDO userConsent) {
-
-        this.appID = appId;
-        this.userApplicationScopeConsentDO = userConsent;
-
-    }
-
-    public String getAppID() {
-
-        return appID;
-    }
+    private final Map<String, UserApplicationScopeConsentDO> userConsents = new HashMap<>();
 
-    public void setAppID(String appID) {
+    public OAuthUserConsentedScopeCacheEntry(List<UserApplicationScopeConsentDO> userConsents) {
 
-        this.appID = appID;
+        for (UserApplicationScopeConsentDO userConsent : userConsents) {
+            this.userConsents.put(userConsent.getAppId(), userConsent);
+        }
     }
 
-    public UserApplicationScopeConsentDO getUserApplicationScopeConsentDO() {
+    /**
+     * Get the consent of the user for an application.
+     *
+     * @param appId Application identifier.
+     * @return Consent of the user, which has no approved or denied scopes if the user has not consented.
+     */
+    public UserApplicationScopeConsentDO getUserConsent(String appId) {
 
-        return userApplicationScopeConsentDO;
+        UserApplicationScopeConsentDO userConsent = userConsents.get(appId);
+        return userConsent != null ? userConsent : new UserApplicationScopeConsentDO(appId);
     }
 
-    public void setUserApplicationScopeConsentDO(UserApplicationScopeConsentDO userApplicationScopeConsentDO) {
+    public List<UserApplicationScopeConsentDO> getUserConsents() {
 
-        this.userApplicationScopeConsentDO = userApplicationScopeConsentDO;
+        return new ArrayList<>(userConsents.values());
     }
 }
@@ -21,10 +21,12 @@ package org.wso2.carbon.identity.oauth2.listener;
 import org.wso2.carbon.identity.oauth.IdentityOAuthAdminException;
 import org.wso2.carbon.identity.oauth.OAuthUtil;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.OAuth2BulkTokenRevocationService;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.identity.oauth2.model.TokenRevocationCriteria;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.stratos.common.beans.TenantInfoBean;
 import org.wso2.carbon.stratos.common.exception.StratosException;
@@ -106,37 +108,16 @@ public class TenantCreationEventListener implements TenantMgtListener {
     private void revokeTokens(int tenantId) throws StratosException {
 
         try {
-            Set<AccessTokenDO> accessTokenDOs = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
-                    .getAccessTokensByTenant(tenantId);
-            Map<String, AccessTokenDO> latestAccessTokens = new HashMap<>();
-
-            for (AccessTokenDO accessTokenDO : accessTokenDOs) {
-                String keyString = accessTokenDO.getConsumerKey() + ":" + accessTokenDO.getAuthzUser() + ":" +
-                        OAuth2Util.buildScopeString(accessTokenDO.getScope()) + ":"
-                        + accessTokenDO.getAuthzUser().getFederatedIdPName();
-                AccessTokenDO accessTokenDOFromMap = latestAccessTokens.get(keyString);
-                if (accessTokenDOFromMap != null) {
-                    if (accessTokenDOFromMap.getIssuedTime().before(accessTokenDO.getIssuedTime())) {
-                        latestAccessTokens.put(keyString, accessTokenDO);
-                    }
-                } else {
-                    latestAccessTokens.put(keyString, accessTokenDO);
-                }
-
-                OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser(),
-                        OAuth2Util.buildScopeString(accessTokenDO.getScope()));
-                OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser());
-                OAuthUtil.clearOAuthCache(accessTokenDO);
+            OAuth2BulkTokenRevocationService bulkTokenRevocationService =
+                    OAuth2BulkTokenRevocationService.getInstance();
+            if (bulkTokenRevocationService.isSupported()) {
+                TokenRevocationCriteria criteria = new TokenRevocationCriteria();
+                criteria.setTenantId(tenantId);
+                bulkTokenRevocationService.revokeTokens(criteria);
+            } else {
+                revokeAccessTokensIndividually(tenantId);
             }
 
-            OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO().revokeAccessTokens(
-                    latestAccessTokens
-                            .values()
-                            .stream()
-                            .map(AccessTokenDO::getAccessToken)
-                            .toArray(String[]::new),
-                    OAuth2Util.isHashEnabled());
-
             List<AuthzCodeDO> latestAuthzCodes = OAuthTokenPersistenceFactory.getInstance()
                     .getAuthorizationCodeDAO().getLatestAuthorizationCodesByTenant(tenantId);
 
@@ -152,4 +133,37 @@ public class TenantCreationEventListener implements TenantMgtListener {
         }
     }
 
+    private void revokeAccessTokensIndividually(int tenantId) throws IdentityOAuth2Exception {
+
+        Set<AccessTokenDO> accessTokenDOs = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
+                .getAccessTokensByTenant(tenantId);
+        Map<String, AccessTokenDO> latestAccessTokens = new HashMap<>();
+
+        for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+            String keyString = accessTokenDO.getConsumerKey() + ":" + accessTokenDO.getAuthzUser() + ":" +
+                    OAuth2Util.buildScopeString(accessTokenDO.getScope()) + ":"
+                    + accessTokenDO.getAuthzUser().getFederatedIdPName();
+            AccessTokenDO accessTokenDOFromMap = latestAccessTokens.get(keyString);
+            if (accessTokenDOFromMap != null) {
+                if (accessTokenDOFromMap.getIssuedTime().before(accessTokenDO.getIssuedTime())) {
+                    latestAccessTokens.put(keyString, accessTokenDO);
+                }
+            } else {
+                latestAccessTokens.put(keyString, accessTokenDO);
+            }
+
+            OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser(),
+                    OAuth2Util.buildScopeString(accessTokenDO.getScope()));
+            OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser());
+            OAuthUtil.clearOAuthCache(accessTokenDO);
+        }
+
+        OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO().revokeAccessTokens(
+                latestAccessTokens
+                        .values()
+                        .stream()
+                        .map(AccessTokenDO::getAccessToken)
+                        .toArray(String[]::new),
+                OAuth2Util.isHashEnabled());
+    }
 }
@@ -49,6 +49,8 @@ public class RefreshTokenValidationDataDO {
 
     private long accessTokenValidityInMillis;
 
+    private Integer newerAccessTokenCount;
+
     public String getAccessToken() {
         return accessToken;
     }
@@ -138,4 +140,17 @@ public class RefreshTokenValidationDataDO {
     public void setAccessTokenValidityInMillis(long accessTokenValidityInMillis) {
         this.accessTokenValidityInMillis = accessTokenValidityInMillis;
     }
+
+    /**
+     * Number of active or expired tokens issued after this token for the same client, user, scope and binding.
+     *
+     * @return newer token count or null if it was not loaded with the validation data.
+     */
+    public Integer getNewerAccessTokenCount() {
+        return newerAccessTokenCount;
+    }
+
+    public void setNewerAccessTokenCount(Integer newerAccessTokenCount) {
+        this.newerAccessTokenCount = newerAccessTokenCount;
+    }
 }
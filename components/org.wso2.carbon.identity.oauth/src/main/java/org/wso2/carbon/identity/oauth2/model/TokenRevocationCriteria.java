@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.model;
+
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.base.MultitenantConstants;
+
+/**
+ * Criteria of a bulk access token revocation. The active and expired access tokens matching all the given criteria are
+ * revoked. At least one criterion needs to be set.
+ */
+public class TokenRevocationCriteria {
+
+    private String consumerKey;
+    private int tenantId = MultitenantConstants.INVALID_TENANT_ID;
+    private String userName;
+    private String userStoreDomain;
+    private String tokenBindingReference;
+    private boolean auditRevokedTokens = true;
+
+    public String getConsumerKey() {
+
+        return consumerKey;
+    }
+
+    /**
+     * Revoke the tokens issued to the given client.
+     *
+     * @param consumerKey Consumer key of the client.
+     */
+    public void setConsumerKey(String consumerKey) {
+
+        this.consumerKey = consumerKey;
+    }
+
+    public int getTenantId() {
+
+        return tenantId;
+    }
+
+    /**
+     * Revoke the tokens of the users of the given tenant.
+     *
+     * @param tenantId Tenant id of the token owners.
+     */
+    public void setTenantId(int tenantId) {
+
+        this.tenantId = tenantId;
+    }
+
+    public String getUserName() {
+
+        return userName;
+    }
+
+    /**
+     * Revoke the tokens of the given user. The tenant and the user store domain of the user need to be set as well.
+     *
+     * @param userName Tenant aware user name without the user store domain.
+     */
+    public void setUserName(String userName) {
+
+        this.userName = userName;
+    }
+
+    public String getUserStoreDomain() {
+
+        return userStoreDomain;
+    }
+
+    /**
+     * Revoke the tokens of the users of the given user store.
+     *
+     * @param userStoreDomain User store domain.
+     */
+    public void setUserStoreDomain(String userStoreDomain) {
+
+        this.userStoreDomain = userStoreDomain;
+    }
+
+    public String getTokenBindingReference() {
+
+        return tokenBindingReference;
+    }
+
+    /**
+     * Revoke the tokens bound with the given binding reference.
+     *
+     * @param tokenBindingReference Token binding reference.
+     */
+    public void setTokenBindingReference(String tokenBindingReference) {
+
+        this.tokenBindingReference = tokenBindingReference;
+    }
+
+    public boolean isAuditRevokedTokens() {
+
+        return auditRevokedTokens;
+    }
+
+    /**
+     * Whether the revoked tokens are moved to the audit table when the old token cleanup is enabled. This is not
+     * needed when the tokens are deleted right after the revocation, e.g. along with their application.
+     *
+     * @param auditRevokedTokens Whether the revoked tokens are moved to the audit table.
+     */
+    public void setAuditRevokedTokens(boolean auditRevokedTokens) {
+
+        this.auditRevokedTokens = auditRevokedTokens;
+    }
+
+    public boolean isTenantSet() {
+
+        return tenantId != MultitenantConstants.INVALID_TENANT_ID;
+    }
+
+    /**
+     * Whether no criterion is set, in which case every token would match.
+     *
+     * @return true if no criterion is set.
+     */
+    public boolean isEmpty() {
+
+        return StringUtils.isBlank(consumerKey) && !isTenantSet() && StringUtils.isBlank(userName) &&
+                StringUtils.isBlank(userStoreDomain) && StringUtils.isBlank(tokenBindingReference);
+    }
+
+    @Override
+    public String toString() {
+
+        return "TokenRevocationCriteria{consumerKey='" + consumerKey + "', tenantId=" + tenantId +
+                ", userStoreDomain='" + userStoreDomain + "', tokenBindingReference='" + tokenBindingReference + "'}";
+    }
+}
@@ -22,9 +22,6 @@ import com.nimbusds.jose.Algorithm;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JOSEObjectType;
 import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.JWSHeader;
-import com.nimbusds.jose.JWSSigner;
-import com.nimbusds.jose.util.Base64URL;
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.JWTParser;
@@ -46,11 +43,10 @@ import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.authz.OAuthAuthzReqMessageContext;
 import org.wso2.carbon.identity.oauth2.token.handlers.grant.AuthorizationGrantHandler;
+import org.wso2.carbon.identity.oauth2.util.JWTSigningContextCache;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.openidconnect.CustomClaimsCallbackHandler;
 
-import java.security.Key;
-import java.security.interfaces.RSAPrivateKey;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -58,8 +54,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
-import static org.wso2.carbon.identity.oauth2.util.OAuth2Util.getPrivateKey;
-
 /**
  * Self contained access token builder.
  */
@@ -85,6 +79,7 @@ public class JWTTokenIssuer extends OauthTokenIssuerImpl {
     private static final String TOKEN_BINDING_REF = "binding_ref";
     private static final String TOKEN_BINDING_TYPE = "binding_type";
     private static final String DEFAULT_TYP_HEADER_VALUE = "at+jwt";
+    private static final JOSEObjectType AT_JWT_TYPE = new JOSEObjectType(DEFAULT_TYP_HEADER_VALUE);
     private static final String CNF = "cnf";
 
     private static final Log log = LogFactory.getLog(JWTTokenIssuer.class);
@@ -325,17 +320,11 @@ public class JWTTokenIssuer extends OauthTokenIssuerImpl {
             String tenantDomain = resolveSigningTenantDomain(tokenContext, authorizationContext);
             int tenantId = IdentityTenantUtil.getTenantId(tenantDomain);
 
-            Key privateKey = getPrivateKey(tenantDomain, tenantId);
-            JWSSigner signer = OAuth2Util.createJWSSigner((RSAPrivateKey) privateKey);
-            JWSHeader.Builder headerBuilder = new JWSHeader.Builder((JWSAlgorithm) signatureAlgorithm);
-            String certThumbPrint = OAuth2Util.getThumbPrint(tenantDomain, tenantId);
-            headerBuilder.keyID(OAuth2Util.getKID(OAuth2Util.getCertificate(tenantDomain, tenantId),
-                    (JWSAlgorithm) signatureAlgorithm, tenantDomain));
             // Set the required "typ" header "at+jwt" for access tokens issued by the issuer
-            headerBuilder.type(new JOSEObjectType(DEFAULT_TYP_HEADER_VALUE));
-            headerBuilder.x509CertThumbprint(new Base64URL(certThumbPrint));
-            SignedJWT signedJWT = new SignedJWT(headerBuilder.build(), jwtClaimsSet);
-            signedJWT.sign(signer);
+            JWTSigningContextCache.JWTSigningContext signingContext = JWTSigningContextCache.getInstance()
+                    .getSigningContext(tenantDomain, tenantId, (JWSAlgorithm) signatureAlgorithm, AT_JWT_TYPE);
+            SignedJWT signedJWT = new SignedJWT(signingContext.getHeader(), jwtClaimsSet);
+            signedJWT.sign(signingContext.getSigner());
             return signedJWT.serialize();
         } catch (JOSEException e) {
             throw new IdentityOAuth2Exception("Error occurred while signing JWT", e);
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.token;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getIntProperty;
+
+/**
+ * Striped locks serializing the issuance and revocation of access tokens of the same client, user, scope and token
+ * binding within a node. Concurrent requests for the same token are serialized, so that the requests waiting on the
+ * lock find and reuse the token issued by the first request instead of racing to insert duplicate tokens. Requests for
+ * different tokens only contend when their keys map to the same stripe.
+ * <p>
+ * The number of acquisitions that had to wait and the time spent waiting are recorded, so that the number of stripes
+ * can be sized against the observed contention.
+ */
+public class TokenIssuanceLockManager {
+
+    private static final Log log = LogFactory.getLog(TokenIssuanceLockManager.class);
+
+    // These config properties are defined in identity.xml
+    private static final String LOCK_STRIPES = "OAuth.TokenIssuance.LockStripes";
+
+    private static final int DEFAULT_LOCK_STRIPES = 1024;
+    private static final int MAX_LOCK_STRIPES = 1 << 16;
+
+    private static final TokenIssuanceLockManager instance = new TokenIssuanceLockManager();
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    private final AtomicLong acquisitionCount = new AtomicLong();
+    private final AtomicLong contendedAcquisitionCount = new AtomicLong();
+    private final AtomicLong totalContendedWaitNanos = new AtomicLong();
+    private final AtomicLong maxContendedWaitNanos = new AtomicLong();
+
+    private TokenIssuanceLockManager() {
+
+        this(getIntProperty(LOCK_STRIPES, DEFAULT_LOCK_STRIPES));
+    }
+
+    TokenIssuanceLockManager(int stripes) {
+
+        int stripeCount = Integer.highestOneBit(Math.max(1, Math.min(stripes, MAX_LOCK_STRIPES)));
+        if (stripeCount < stripes && stripeCount < MAX_LOCK_STRIPES) {
+            // Round up to the next power of two so that the stripe can be picked with a mask.
+            stripeCount <<= 1;
+        }
+        this.locks = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = stripeCount - 1;
+    }
+
+    public static TokenIssuanceLockManager getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Acquire the lock of the given token key, waiting until it is available. The returned lock must be released
+     * by the caller once the token is issued or revoked.
+     *
+     * @param lockKey Key identifying the token, built from the client id, user id, scope and token binding reference.
+     * @return Acquired lock.
+     */
+    public Lock lock(String lockKey) {
+
+        ReentrantLock lock = locks[getStripe(lockKey)];
+        acquisitionCount.incrementAndGet();
+        if (lock.tryLock()) {
+            return lock;
+        }
+
+        long waitStartTime = System.nanoTime();
+        lock.lock();
+        long waitTime = System.nanoTime() - waitStartTime;
+        contendedAcquisitionCount.incrementAndGet();
+        totalContendedWaitNanos.addAndGet(waitTime);
+        maxContendedWaitNanos.accumulateAndGet(waitTime, Math::max);
+        if (log.isDebugEnabled()) {
+            log.debug("Waited " + TimeUnit.NANOSECONDS.toMillis(waitTime) + " ms for the token issuance lock.");
+        }
+        return lock;
+    }
+
+    public int getStripeCount() {
+
+        return locks.length;
+    }
+
+    public long getAcquisitionCount() {
+
+        return acquisitionCount.get();
+    }
+
+    public long getContendedAcquisitionCount() {
+
+        return contendedAcquisitionCount.get();
+    }
+
+    /**
+     * Ratio of the lock acquisitions that had to wait for another request. A high ratio with a low number of
+     * concurrent requests for the same token indicates that the number of stripes should be increased.
+     *
+     * @return contention ratio.
+     */
+    public double getContentionRatio() {
+
+        long acquisitions = acquisitionCount.get();
+        return acquisitions == 0 ? 0 : (double) contendedAcquisitionCount.get() / acquisitions;
+    }
+
+    /**
+     * Average time the contended lock acquisitions waited for the lock.
+     *
+     * @return average wait time in milliseconds.
+     */
+    public double getAverageContendedWaitMillis() {
+
+        long contendedAcquisitions = contendedAcquisitionCount.get();
+        return contendedAcquisitions == 0 ? 0 :
+                (double) TimeUnit.NANOSECONDS.toMicros(totalContendedWaitNanos.get()) / contendedAcquisitions / 1000;
+    }
+
+    public long getMaxContendedWaitMillis() {
+
+        return TimeUnit.NANOSECONDS.toMillis(maxContendedWaitNanos.get());
+    }
+
+    int getStripe(String lockKey) {
+
+        int hash = lockKey.hashCode();
+        // Spread the higher bits as only the lower bits are used to pick the stripe.
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -38,10 +38,12 @@ import org.wso2.carbon.identity.oauth.OAuthUtil;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.OAuth2BulkTokenRevocationService;
 import org.wso2.carbon.identity.oauth2.OAuth2Constants;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.TokenRevocationCriteria;
 import org.wso2.carbon.identity.oauth2.token.bindings.TokenBinder;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
@@ -269,6 +271,10 @@ public class TokenBindingExpiryEventHandler extends AbstractEventHandler {
                     + tokenBindingReference);
         }
 
+        if (OAuth2BulkTokenRevocationService.getInstance().isSupported()) {
+            revokeTokensOfBindingRefInBulk(userId, tokenBindingReference);
+            return;
+        }
         Set<AccessTokenDO> boundTokens = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
                 .getAccessTokensByBindingRef(tokenBindingReference);
         if (log.isDebugEnabled() && CollectionUtils.isEmpty(boundTokens)) {
@@ -292,6 +298,70 @@ public class TokenBindingExpiryEventHandler extends AbstractEventHandler {
         }
     }
 
+    /**
+     * Revoke the access tokens of the user bound with the given token binding reference with set based statements.
+     * The tokens are looked up through the token binding table, revoked in chunks and their cache entries are cleared
+     * per chunk, so that a burst of session terminations does not revoke and clear the caches token by token.
+     *
+     * @param userId                user id of the user whose session was terminated
+     * @param tokenBindingReference token binding reference
+     * @throws IdentityOAuth2Exception if an exception occurs while revoking tokens
+     */
+    private void revokeTokensOfBindingRefInBulk(String userId, String tokenBindingReference)
+            throws IdentityOAuth2Exception {
+
+        TokenRevocationCriteria criteria = new TokenRevocationCriteria();
+        criteria.setTokenBindingReference(tokenBindingReference);
+        int revokedCount = OAuth2BulkTokenRevocationService.getInstance().revokeTokens(criteria,
+                accessTokenDO -> isRevocableOnSessionTermination(accessTokenDO, userId, tokenBindingReference),
+                revokedTokens -> revokedTokens.forEach(accessTokenDO ->
+                        OAuthUtil.invokePostRevocationBySystemListeners(accessTokenDO, Collections.emptyMap())));
+        if (log.isDebugEnabled()) {
+            log.debug("Revoked " + revokedCount + " access tokens bound with the token binding reference: " +
+                    tokenBindingReference);
+        }
+    }
+
+    /**
+     * Check whether a token bound with the terminated session needs to be revoked, in which case the pre revocation
+     * listeners are invoked for the token.
+     *
+     * @param accessTokenDO         bound access token
+     * @param userId                user id of the user whose session was terminated
+     * @param tokenBindingReference token binding reference
+     * @return true if the token needs to be revoked
+     */
+    private boolean isRevocableOnSessionTermination(AccessTokenDO accessTokenDO, String userId,
+                                                    String tokenBindingReference) {
+
+        String consumerKey = accessTokenDO.getConsumerKey();
+        if (accessTokenDO.getAuthzUser() == null) {
+            return false;
+        }
+        AuthenticatedUser authenticatedUser = new AuthenticatedUser(accessTokenDO.getAuthzUser());
+        try {
+            if (!OAuth2Util.getAppInformationByClientId(consumerKey)
+                    .isTokenRevocationWithIDPSessionTerminationEnabled() ||
+                    !StringUtils.equalsIgnoreCase(userId, authenticatedUser.getUserId())) {
+                return false;
+            }
+        } catch (IdentityOAuth2Exception | InvalidOAuthClientException e) {
+            log.error("Error while retrieving the application of the client: " + consumerKey + ". Hence skip " +
+                    "revoking its tokens for the token binding reference: " + tokenBindingReference, e);
+            return false;
+        } catch (UserIdNotFoundException e) {
+            log.error("User id cannot be found for user: " + authenticatedUser.getLoggableUserId() + ". Hence " +
+                    "skip revoking its tokens for the token binding reference: " + tokenBindingReference);
+            return false;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Revoking tokens for the application with consumerKey:" + consumerKey + " for the user: "
+                    + authenticatedUser.getLoggableUserId());
+        }
+        OAuthUtil.invokePreRevocationBySystemListeners(accessTokenDO, Collections.emptyMap());
+        return true;
+    }
+
     /**
      * Get the access tokens mapped for the session identifier and revoke those tokens.
      *
@@ -34,6 +34,7 @@ import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientExcepti
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.AuthorizationCodeStore;
 import org.wso2.carbon.identity.oauth2.dao.AuthorizationCodeValidationResult;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenReqDTO;
@@ -55,6 +56,8 @@ public class AuthorizationCodeGrantHandler extends AbstractAuthorizationGrantHan
 
     // This is used to keep the pre processed authorization code in the OAuthTokenReqMessageContext.
     private static final String AUTHZ_CODE = "AuthorizationCode";
+    // This is used to mark that the authorization code was consumed from the write-behind store.
+    private static final String AUTHZ_CODE_FROM_STORE = "AuthorizationCodeFromStore";
     private static final int ALLOWED_MINIMUM_VALIDITY_PERIOD = 1000;
     private static final Log log = LogFactory.getLog(AuthorizationCodeGrantHandler.class);
 
@@ -62,7 +65,15 @@ public class AuthorizationCodeGrantHandler extends AbstractAuthorizationGrantHan
     public boolean validateGrant(OAuthTokenReqMessageContext tokReqMsgCtx) throws IdentityOAuth2Exception {
         super.validateGrant(tokReqMsgCtx);
         OAuth2AccessTokenReqDTO tokenReq = tokReqMsgCtx.getOauth2AccessTokenReqDTO();
-        AuthzCodeDO authzCodeBean = getPersistedAuthzCode(tokenReq);
+        // A code which is still held by the write-behind store of this node is consumed without a database lookup.
+        AuthzCodeDO authzCodeBean = AuthorizationCodeStore.getInstance().consume(tokenReq.getClientId(),
+                tokenReq.getAuthorizationCode());
+        boolean consumedFromStore = authzCodeBean != null;
+        if (consumedFromStore) {
+            tokReqMsgCtx.addProperty(AUTHZ_CODE_FROM_STORE, true);
+        } else {
+            authzCodeBean = getPersistedAuthzCode(tokenReq);
+        }
 
         validateAuthzCodeFromRequest(authzCodeBean, tokenReq.getClientId(), tokenReq.getAuthorizationCode());
         try {
@@ -75,7 +86,12 @@ public class AuthorizationCodeGrantHandler extends AbstractAuthorizationGrantHan
             // After validating grant, authorization code is revoked. This is done to stop repetitive usage of
             // same authorization code in erroneous token requests.
             tokReqMsgCtx.addProperty(CODE_ID, authzCodeBean.getAuthzCodeId());
-            revokeAuthorizationCode(authzCodeBean);
+            if (consumedFromStore) {
+                // The consumed code is never written to the database, hence only the cache entry is cleared.
+                clearAuthzCodeCache(tokReqMsgCtx, tokenReq.getAuthorizationCode());
+            } else {
+                revokeAuthorizationCode(authzCodeBean);
+            }
         }
         if (log.isDebugEnabled()) {
             log.debug("Found Authorization Code for Client : " + tokenReq.getClientId() +
@@ -91,7 +107,11 @@ public class AuthorizationCodeGrantHandler extends AbstractAuthorizationGrantHan
         OAuth2AccessTokenRespDTO tokenResp = super.issue(tokReqMsgCtx);
         String authzCode = retrieveAuthzCode(tokReqMsgCtx);
 
-        deactivateAuthzCode(tokReqMsgCtx, tokenResp.getTokenId(), authzCode);
+        if (Boolean.TRUE.equals(tokReqMsgCtx.getProperty(AUTHZ_CODE_FROM_STORE))) {
+            AuthorizationCodeStore.getInstance().setTokenId(authzCode, tokenResp.getTokenId());
+        } else {
+            deactivateAuthzCode(tokReqMsgCtx, tokenResp.getTokenId(), authzCode);
+        }
         clearAuthzCodeCache(tokReqMsgCtx, authzCode);
         return tokenResp;
     }
@@ -230,7 +250,16 @@ public class AuthorizationCodeGrantHandler extends AbstractAuthorizationGrantHan
      */
     private AuthzCodeDO getPersistedAuthzCode(OAuth2AccessTokenReqDTO tokenReqDTO) throws IdentityOAuth2Exception {
 
-        AuthzCodeDO authzCodeDO;
+        AuthzCodeDO authzCodeDO = AuthorizationCodeStore.getInstance().getConsumedCode(tokenReqDTO.getClientId(),
+                tokenReqDTO.getAuthorizationCode());
+        if (authzCodeDO != null) {
+            // The code was already consumed on this node.
+            if (authzCodeDO.getOauthTokenId() != null) {
+                revokeAccessTokensIssuedForCode(tokenReqDTO.getClientId(), authzCodeDO.getOauthTokenId(),
+                        authzCodeDO);
+            }
+            return authzCodeDO;
+        }
         // If cache is enabled, check in the cache first.
         if (cacheEnabled) {
             OAuthCacheKey cacheKey = new OAuthCacheKey(OAuth2Util.buildCacheKeyStringForAuthzCode(
@@ -254,15 +283,8 @@ public class AuthorizationCodeGrantHandler extends AbstractAuthorizationGrantHan
                         tokenReqDTO.getAuthorizationCode());
         if (validationResult != null) {
             if (!validationResult.isActiveCode()) {
-                String tokenAlias = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
-                        .getAccessTokenByTokenId(validationResult.getTokenId());
-                //revoking access token issued for authorization code as per RFC 6749 Section 4.1.2
-                revokeExistingAccessTokens(validationResult.getTokenId(), validationResult.getAuthzCodeDO());
-
-                clearTokenCache(tokenAlias, validationResult.getTokenId());
-                String scope = OAuth2Util.buildScopeString(validationResult.getAuthzCodeDO().getScope());
-                OAuthUtil.clearOAuthCache(tokenReqDTO.getClientId(), validationResult.getAuthzCodeDO().
-                        getAuthorizedUser(), scope);
+                revokeAccessTokensIssuedForCode(tokenReqDTO.getClientId(), validationResult.getTokenId(),
+                        validationResult.getAuthzCodeDO());
             }
             return validationResult.getAuthzCodeDO();
         } else {
@@ -272,6 +294,19 @@ public class AuthorizationCodeGrantHandler extends AbstractAuthorizationGrantHan
         }
     }
 
+    private void revokeAccessTokensIssuedForCode(String clientId, String tokenId, AuthzCodeDO authzCodeDO)
+            throws IdentityOAuth2Exception {
+
+        String tokenAlias = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
+                .getAccessTokenByTokenId(tokenId);
+        //revoking access token issued for authorization code as per RFC 6749 Section 4.1.2
+        revokeExistingAccessTokens(tokenId, authzCodeDO);
+
+        clearTokenCache(tokenAlias, tokenId);
+        String scope = OAuth2Util.buildScopeString(authzCodeDO.getScope());
+        OAuthUtil.clearOAuthCache(clientId, authzCodeDO.getAuthorizedUser(), scope);
+    }
+
     private void revokeExistingAccessTokens(String tokenId, AuthzCodeDO authzCodeDO) throws IdentityOAuth2Exception {
 
         String userId = null;
@@ -30,6 +30,7 @@ import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCache;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheEntry;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheKey;
+import org.wso2.carbon.identity.oauth.cache.CacheEntry;
 import org.wso2.carbon.identity.oauth.cache.OAuthCache;
 import org.wso2.carbon.identity.oauth.cache.OAuthCacheKey;
 import org.wso2.carbon.identity.oauth.common.OAuth2ErrorCodes;
@@ -80,8 +81,11 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
 
         super.validateGrant(tokReqMsgCtx);
         OAuth2AccessTokenReqDTO tokenReq = tokReqMsgCtx.getOauth2AccessTokenReqDTO();
-        RefreshTokenValidationDataDO validationBean = OAuthTokenPersistenceFactory.getInstance()
-                .getTokenManagementDAO().validateRefreshToken(tokenReq.getClientId(), tokenReq.getRefreshToken());
+        RefreshTokenValidationDataDO validationBean = getIndexedValidationData(tokenReq);
+        if (validationBean == null) {
+            validationBean = OAuthTokenPersistenceFactory.getInstance().getTokenManagementDAO()
+                    .validateRefreshToken(tokenReq.getClientId(), tokenReq.getRefreshToken());
+        }
 
         validatePersistedAccessToken(validationBean, tokenReq.getClientId());
         validateRefreshTokenInRequest(tokenReq, validationBean);
@@ -203,16 +207,24 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
                     validationBean.getRefreshTokenState());
         }
         if (!OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(validationBean.getRefreshTokenState())) {
-            // if refresh token is not in active state, check whether there is an access token
-            // issued with the same refresh token
-            List<AccessTokenDO> accessTokenBeans = getAccessTokenBeans(tokenReq, validationBean,
-                    getUserStoreDomain(validationBean.getAuthorizedUser()));
-            for (AccessTokenDO token : accessTokenBeans) {
-                if (tokenReq.getRefreshToken().equals(token.getRefreshToken())
-                        && (OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(token.getTokenState())
-                        || OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED.equals(token.getTokenState()))) {
+            if (validationBean.getNewerAccessTokenCount() != null) {
+                // The validation query already counted the tokens issued after this one, hence the refresh token is
+                // among the latest tokens if fewer than the retrieval limit were issued since.
+                if (validationBean.getNewerAccessTokenCount() < LAST_ACCESS_TOKEN_RETRIEVAL_LIMIT) {
                     return true;
                 }
+            } else {
+                // if refresh token is not in active state, check whether there is an access token
+                // issued with the same refresh token
+                List<AccessTokenDO> accessTokenBeans = getAccessTokenBeans(tokenReq, validationBean,
+                        getUserStoreDomain(validationBean.getAuthorizedUser()));
+                for (AccessTokenDO token : accessTokenBeans) {
+                    if (tokenReq.getRefreshToken().equals(token.getRefreshToken())
+                            && (OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(token.getTokenState())
+                            || OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED.equals(token.getTokenState()))) {
+                        return true;
+                    }
+                }
             }
             if (log.isDebugEnabled()) {
                 log.debug("Refresh token: " + tokenReq.getRefreshToken() + " is not the latest");
@@ -226,6 +238,7 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
     private void removeIfCached(OAuth2AccessTokenReqDTO tokenReq, RefreshTokenValidationDataDO validationBean)
             throws IdentityOAuth2Exception {
 
+        RefreshTokenIndexCache.getInstance().invalidate(tokenReq.getClientId(), tokenReq.getRefreshToken());
         if (cacheEnabled) {
             String userId;
             try {
@@ -357,6 +370,14 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
             // Add new access token to the AccessTokenCache
             OAuth2Util.addTokenDOtoCache(accessTokenBean);
 
+            // Index the new token against its refresh token, replacing the entry of the old refresh token
+            RefreshTokenIndexCache refreshTokenIndex = RefreshTokenIndexCache.getInstance();
+            if (refreshTokenIndex.isEnabled()) {
+                refreshTokenIndex.invalidate(clientId, tokReqMsgCtx.getOauth2AccessTokenReqDTO().getRefreshToken());
+                refreshTokenIndex.put(clientId, accessTokenBean.getRefreshToken(),
+                        buildValidationData(accessTokenBean, oldAccessToken), cacheKeyString);
+            }
+
             if (log.isDebugEnabled()) {
                 log.debug("Access Token info for the refresh token was added to the cache for " +
                         "the client id : " + clientId + ". Old access token entry was " +
@@ -365,6 +386,81 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
         }
     }
 
+    /**
+     * Get the validation data of the refresh token from the refresh token index, without reading it from the
+     * database. The indexed token is only trusted while the OAuthCache still holds it as the latest active token of
+     * the user for the client, scope and binding, since that entry is cleared across the cluster whenever the token is
+     * refreshed, revoked or replaced by a newer token.
+     *
+     * @param tokenReq Token request.
+     * @return validation data or null if the refresh token has to be validated against the database.
+     */
+    private RefreshTokenValidationDataDO getIndexedValidationData(OAuth2AccessTokenReqDTO tokenReq) {
+
+        if (!isHashDisabled || !cacheEnabled || !RefreshTokenIndexCache.getInstance().isEnabled()) {
+            return null;
+        }
+        RefreshTokenIndexCache.RefreshTokenIndexEntry indexEntry = RefreshTokenIndexCache.getInstance()
+                .get(tokenReq.getClientId(), tokenReq.getRefreshToken());
+        if (indexEntry == null) {
+            return null;
+        }
+        CacheEntry cacheEntry = OAuthCache.getInstance().getValueFromCache(
+                new OAuthCacheKey(indexEntry.getCacheKey()), indexEntry.getTenantDomain());
+        if (cacheEntry instanceof AccessTokenDO) {
+            AccessTokenDO latestToken = (AccessTokenDO) cacheEntry;
+            if (StringUtils.equals(indexEntry.getTokenId(), latestToken.getTokenId())
+                    && StringUtils.equals(tokenReq.getRefreshToken(), latestToken.getRefreshToken())
+                    && OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(latestToken.getTokenState())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Refresh token of client: " + tokenReq.getClientId() + " validated from the refresh " +
+                            "token index.");
+                }
+                return indexEntry.getValidationData();
+            }
+        }
+        RefreshTokenIndexCache.getInstance().invalidate(tokenReq.getClientId(), tokenReq.getRefreshToken());
+        return null;
+    }
+
+    private RefreshTokenValidationDataDO buildValidationData(AccessTokenDO accessTokenBean,
+                                                             RefreshTokenValidationDataDO oldAccessToken)
+            throws IdentityOAuth2Exception {
+
+        RefreshTokenValidationDataDO validationData = new RefreshTokenValidationDataDO();
+        validationData.setTokenId(accessTokenBean.getTokenId());
+        // The validation query returns the persisted alias of the access token, which is what the cache is keyed by.
+        validationData.setAccessToken(getPersistedAccessTokenAlias(accessTokenBean));
+        validationData.setAuthorizedUser(accessTokenBean.getAuthzUser());
+        validationData.setScope(accessTokenBean.getScope());
+        validationData.setRefreshTokenState(OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+        validationData.setGrantType(accessTokenBean.getGrantType());
+        validationData.setIssuedTime(accessTokenBean.getRefreshTokenIssuedTime());
+        validationData.setValidityPeriodInMillis(accessTokenBean.getRefreshTokenValidityPeriodInMillis());
+        validationData.setTokenBindingReference(oldAccessToken.getTokenBindingReference());
+        validationData.setAccessTokenIssuedTime(accessTokenBean.getIssuedTime());
+        validationData.setAccessTokenValidityInMillis(accessTokenBean.getValidityPeriodInMillis());
+        validationData.setNewerAccessTokenCount(0);
+        return validationData;
+    }
+
+    private String getPersistedAccessTokenAlias(AccessTokenDO accessTokenBean) throws IdentityOAuth2Exception {
+
+        try {
+            OauthTokenIssuer oauthTokenIssuer = OAuth2Util
+                    .getOAuthTokenIssuerForOAuthApp(accessTokenBean.getConsumerKey());
+            if (oauthTokenIssuer.usePersistedAccessTokenAlias()) {
+                return oauthTokenIssuer.getAccessTokenHash(accessTokenBean.getAccessToken());
+            }
+            return accessTokenBean.getAccessToken();
+        } catch (OAuthSystemException e) {
+            throw new IdentityOAuth2Exception("Error while getting access token hash.", e);
+        } catch (InvalidOAuthClientException e) {
+            throw new IdentityOAuth2Exception("Error while retrieving oauth issuer for the app with clientId: " +
+                    accessTokenBean.getConsumerKey(), e);
+        }
+    }
+
     private void setTokenDataToMessageContext(OAuthTokenReqMessageContext tokReqMsgCtx, AccessTokenDO accessTokenBean) {
         // set the validity period. this is needed by downstream handlers.
         // if this is set before - then this will override it by the calculated new value.
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.token.handlers.grant;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth2.model.RefreshTokenValidationDataDO;
+import org.wso2.carbon.identity.oauth2.util.BoundedTTLCache;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Bounded node local index from a refresh token to the token it was last issued with. The refresh grant records the
+ * validation data of every token it issues here, so that the next refresh of the same refresh token can be validated
+ * without reading the token back from the database.
+ * <p>
+ * An entry only names the token that was the latest one when it was indexed. Callers must confirm that the token is
+ * still the latest active token of the user, e.g. against the {@link org.wso2.carbon.identity.oauth.cache.OAuthCache}
+ * entry that is invalidated across the cluster when the token is refreshed or revoked, before trusting an entry.
+ * Entries expire after the configured time to live or when the refresh token expires, whichever comes first.
+ */
+public class RefreshTokenIndexCache {
+
+    private static final Log log = LogFactory.getLog(RefreshTokenIndexCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String INDEX_CACHE_ENABLE = "OAuth.RefreshToken.IndexCache.Enable";
+    private static final String INDEX_CACHE_MAX_SIZE = "OAuth.RefreshToken.IndexCache.MaxSize";
+    private static final String INDEX_CACHE_TIME_TO_LIVE = "OAuth.RefreshToken.IndexCache.TimeToLiveSeconds";
+
+    private static final long DEFAULT_MAX_SIZE = 10000;
+    private static final long DEFAULT_TIME_TO_LIVE_SECONDS = 900;
+    private static final String KEY_SEPARATOR = ":";
+
+    private static final RefreshTokenIndexCache instance = new RefreshTokenIndexCache();
+
+    private final boolean enabled;
+    private final long timeToLiveMillis;
+    private final BoundedTTLCache<String, RefreshTokenIndexEntry> entries;
+
+    private RefreshTokenIndexCache() {
+
+        this(getBooleanProperty(INDEX_CACHE_ENABLE, false),
+                getLongProperty(INDEX_CACHE_MAX_SIZE, DEFAULT_MAX_SIZE),
+                TimeUnit.SECONDS.toMillis(getLongProperty(INDEX_CACHE_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE_SECONDS)));
+    }
+
+    RefreshTokenIndexCache(boolean enabled, long maxSize, long timeToLiveMillis) {
+
+        this.enabled = enabled;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.entries = new BoundedTTLCache<>(maxSize, timeToLiveMillis);
+    }
+
+    public static RefreshTokenIndexCache getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Index the token a refresh token was issued with.
+     *
+     * @param consumerKey    Client id.
+     * @param refreshToken   Refresh token as sent by the client.
+     * @param validationData Validation data of the token, as the refresh token validation query would return it.
+     * @param cacheKey       Key of the OAuthCache entry holding the latest token of the user for the client, scope
+     *                       and binding.
+     */
+    public void put(String consumerKey, String refreshToken, RefreshTokenValidationDataDO validationData,
+                    String cacheKey) {
+
+        if (!enabled || refreshToken == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiryTime = now + timeToLiveMillis;
+        if (validationData.getIssuedTime() != null && validationData.getValidityPeriodInMillis() > 0) {
+            expiryTime = Math.min(expiryTime,
+                    validationData.getIssuedTime().getTime() + validationData.getValidityPeriodInMillis());
+        }
+        if (expiryTime <= now) {
+            return;
+        }
+        entries.put(buildKey(consumerKey, refreshToken), new RefreshTokenIndexEntry(validationData, cacheKey),
+                expiryTime);
+    }
+
+    /**
+     * Get the indexed token of a refresh token.
+     *
+     * @param consumerKey  Client id.
+     * @param refreshToken Refresh token as sent by the client.
+     * @return index entry or null if the refresh token is not indexed on this node.
+     */
+    public RefreshTokenIndexEntry get(String consumerKey, String refreshToken) {
+
+        if (!enabled || refreshToken == null) {
+            return null;
+        }
+        return entries.get(buildKey(consumerKey, refreshToken));
+    }
+
+    /**
+     * Remove the index entry of a refresh token.
+     *
+     * @param consumerKey  Client id.
+     * @param refreshToken Refresh token as sent by the client.
+     */
+    public void invalidate(String consumerKey, String refreshToken) {
+
+        if (!enabled || refreshToken == null) {
+            return;
+        }
+        RefreshTokenIndexEntry removed = entries.remove(buildKey(consumerKey, refreshToken));
+        if (removed != null && log.isDebugEnabled()) {
+            log.debug("Refresh token index entry invalidated for client: " + consumerKey);
+        }
+    }
+
+    public int size() {
+
+        return entries.size();
+    }
+
+    public long getHitCount() {
+
+        return entries.getHitCount();
+    }
+
+    public long getMissCount() {
+
+        return entries.getMissCount();
+    }
+
+    private static String buildKey(String consumerKey, String refreshToken) {
+
+        // Refresh tokens are not kept in plain text in memory.
+        return consumerKey + KEY_SEPARATOR + DigestUtils.sha256Hex(refreshToken);
+    }
+
+    /**
+     * Token a refresh token was last issued with.
+     */
+    public static class RefreshTokenIndexEntry {
+
+        private final RefreshTokenValidationDataDO validationData;
+        private final String cacheKey;
+
+        RefreshTokenIndexEntry(RefreshTokenValidationDataDO validationData, String cacheKey) {
+
+            this.validationData = validationData;
+            this.cacheKey = cacheKey;
+        }
+
+        public String getTokenId() {
+
+            return validationData.getTokenId();
+        }
+
+        public String getTokenState() {
+
+            return validationData.getRefreshTokenState();
+        }
+
+        public String getCacheKey() {
+
+            return cacheKey;
+        }
+
+        public String getTenantDomain() {
+
+            return validationData.getAuthorizedUser().getTenantDomain();
+        }
+
+        /**
+         * Get a copy of the indexed validation data, which the caller is free to modify.
+         *
+         * @return validation data of the indexed token.
+         */
+        public RefreshTokenValidationDataDO getValidationData() {
+
+            RefreshTokenValidationDataDO copy = new RefreshTokenValidationDataDO();
+            copy.setTokenId(validationData.getTokenId());
+            copy.setAccessToken(validationData.getAccessToken());
+            copy.setAuthorizedUser(validationData.getAuthorizedUser());
+            copy.setScope(validationData.getScope() == null ? null : validationData.getScope().clone());
+            copy.setRefreshTokenState(validationData.getRefreshTokenState());
+            copy.setGrantType(validationData.getGrantType());
+            copy.setIssuedTime(validationData.getIssuedTime());
+            copy.setValidityPeriodInMillis(validationData.getValidityPeriodInMillis());
+            copy.setTokenBindingReference(validationData.getTokenBindingReference());
+            copy.setAccessTokenIssuedTime(validationData.getAccessTokenIssuedTime());
+            copy.setAccessTokenValidityInMillis(validationData.getAccessTokenValidityInMillis());
+            copy.setNewerAccessTokenCount(0);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.token.handlers.grant.saml;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opensaml.security.x509.X509Credential;
+import org.wso2.carbon.identity.oauth2.util.BoundedTTLCache;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Bounded node local cache of the signing credentials parsed from the certificates of the identity providers of each
+ * tenant. Entries are keyed by the tenant, the identity provider name and the SHA-256 fingerprint of the encoded
+ * certificate, so a rotated or updated certificate is parsed again on first use while the credential of the old
+ * certificate simply ages out in LRU order.
+ */
+public class IdPCredentialCache {
+
+    private static final Log log = LogFactory.getLog(IdPCredentialCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String CREDENTIAL_CACHE_ENABLE = "OAuth.SAML2Bearer.IdPCredentialCache.Enable";
+    private static final String CREDENTIAL_CACHE_MAX_SIZE = "OAuth.SAML2Bearer.IdPCredentialCache.MaxSize";
+
+    private static final long DEFAULT_MAX_SIZE = 1000;
+    private static final String KEY_SEPARATOR = ":";
+
+    private static final IdPCredentialCache instance = new IdPCredentialCache();
+
+    private final boolean enabled;
+    private final BoundedTTLCache<String, X509Credential> credentials;
+
+    private IdPCredentialCache() {
+
+        this(getBooleanProperty(CREDENTIAL_CACHE_ENABLE, false),
+                getLongProperty(CREDENTIAL_CACHE_MAX_SIZE, DEFAULT_MAX_SIZE));
+    }
+
+    IdPCredentialCache(boolean enabled, long maxSize) {
+
+        this.enabled = enabled;
+        // Entries are keyed by the certificate, hence they do not expire.
+        this.credentials = new BoundedTTLCache<>(maxSize, Long.MAX_VALUE);
+    }
+
+    public static IdPCredentialCache getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Get the cached credential of an identity provider certificate.
+     *
+     * @param tenantDomain Tenant domain of the identity provider.
+     * @param idpName      Identity provider name.
+     * @param certValue    Encoded certificate of the identity provider.
+     * @return credential or null if the certificate has not been parsed on this node.
+     */
+    public X509Credential get(String tenantDomain, String idpName, String certValue) {
+
+        if (!enabled || certValue == null) {
+            return null;
+        }
+        return credentials.get(buildKey(tenantDomain, idpName, certValue));
+    }
+
+    /**
+     * Cache the credential parsed from an identity provider certificate.
+     *
+     * @param tenantDomain Tenant domain of the identity provider.
+     * @param idpName      Identity provider name.
+     * @param certValue    Encoded certificate of the identity provider.
+     * @param credential   Credential built from the certificate.
+     */
+    public void put(String tenantDomain, String idpName, String certValue, X509Credential credential) {
+
+        if (!enabled || certValue == null) {
+            return;
+        }
+        credentials.put(buildKey(tenantDomain, idpName, certValue), credential);
+        if (log.isDebugEnabled()) {
+            log.debug("Signing credential cached for identity provider: " + idpName + " of tenant: " + tenantDomain);
+        }
+    }
+
+    /**
+     * Remove the credentials of all identity providers of a tenant, when the tenant is deleted or deactivated.
+     *
+     * @param tenantDomain Tenant domain.
+     */
+    public void clear(String tenantDomain) {
+
+        String prefix = tenantDomain + KEY_SEPARATOR;
+        credentials.removeIf(key -> key.startsWith(prefix));
+    }
+
+    public int size() {
+
+        return credentials.size();
+    }
+
+    private static String buildKey(String tenantDomain, String idpName, String certValue) {
+
+        return tenantDomain + KEY_SEPARATOR + idpName + KEY_SEPARATOR + DigestUtils.sha256Hex(certValue);
+    }
+}
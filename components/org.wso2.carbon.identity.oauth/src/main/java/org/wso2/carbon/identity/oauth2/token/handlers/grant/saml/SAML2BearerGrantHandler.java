@@ -19,6 +19,7 @@
 package org.wso2.carbon.identity.oauth2.token.handlers.grant.saml;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
@@ -113,6 +114,7 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
     private static final Log log = LogFactory.getLog(SAML2BearerGrantHandler.class);
     private static final String SAMLSSO_AUTHENTICATOR = "samlsso";
     private static final String SAML2SSO_AUTHENTICATOR_NAME = "SAMLSSOAuthenticator";
+    private static final String RESOLVED_IDENTITY_PROVIDER = "SAML2BearerResolvedIdentityProvider";
 
     public static final String SECURITY_SAML_SIGN_KEY_STORE_LOCATION = "Security.SAMLSignKeyStore.Location";
     public static final String SECURITY_SAML_SIGN_KEY_STORE_TYPE = "Security.SAMLSignKeyStore.Type";
@@ -170,16 +172,24 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
         Assertion assertion = getAssertionObject(tokReqMsgCtx);
         validateSubject(tokReqMsgCtx, assertion);
         validateIssuer(tokReqMsgCtx, assertion);
-        validateSignature(assertion);
 
         String tenantDomain = getTenantDomain(tokReqMsgCtx);
-        IdentityProvider identityProvider = getIdentityProvider(assertion, tenantDomain);
-        // If SAMLSignKeyStore property defined in the carbon.xml then validate the signature against provided
-        // SAML Sign KeyStore certificate else validate against the IDP certificate.
-        if (isSAMLSignKeyStoreConfigured()) {
-            validateSignatureAgainstSAMLSignKeyStoreCertificate(assertion);
-        } else {
-            validateSignatureAgainstIdpCertificate(assertion, tenantDomain, identityProvider);
+        // The signature of an assertion that was already verified on this node is not validated again.
+        boolean isVerifiedAssertion = VerifiedAssertionCache.getInstance().isVerified(tenantDomain,
+                assertion.getID(), getAssertionDigest(tokReqMsgCtx));
+        if (!isVerifiedAssertion) {
+            validateSignature(assertion);
+        }
+
+        IdentityProvider identityProvider = getIdentityProvider(tokReqMsgCtx, assertion, tenantDomain);
+        if (!isVerifiedAssertion) {
+            // If SAMLSignKeyStore property defined in the carbon.xml then validate the signature against provided
+            // SAML Sign KeyStore certificate else validate against the IDP certificate.
+            if (isSAMLSignKeyStoreConfigured()) {
+                validateSignatureAgainstSAMLSignKeyStoreCertificate(assertion);
+            } else {
+                validateSignatureAgainstIdpCertificate(assertion, tenantDomain, identityProvider);
+            }
         }
         validateConditions(tokReqMsgCtx, assertion, identityProvider, tenantDomain);
 
@@ -198,9 +208,43 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
 
         setValuesInMessageContext(tokReqMsgCtx, assertion, identityProvider, tenantDomain);
         invokeExtension(tokReqMsgCtx);
+        addVerifiedAssertion(tokReqMsgCtx, assertion, tenantDomain, timestampSkewInMillis);
         return true;
     }
 
+    /**
+     * Record the assertion as verified until it expires, so that it is not verified again when it is re-presented,
+     * or rejected when replay prevention is enabled.
+     *
+     * @param tokReqMsgCtx          Token request message context.
+     * @param assertion             Verified assertion.
+     * @param tenantDomain          Tenant domain the assertion was verified for.
+     * @param timestampSkewInMillis Allowed clock skew.
+     * @throws IdentityOAuth2Exception If the assertion was used by a concurrent request and replays are prevented.
+     */
+    private void addVerifiedAssertion(OAuthTokenReqMessageContext tokReqMsgCtx, Assertion assertion,
+                                      String tenantDomain, long timestampSkewInMillis)
+            throws IdentityOAuth2Exception {
+
+        VerifiedAssertionCache verifiedAssertionCache = VerifiedAssertionCache.getInstance();
+        DateTime notOnOrAfter = getNotOnOrAfter(assertion);
+        if (!verifiedAssertionCache.isEnabled() || notOnOrAfter == null) {
+            return;
+        }
+        if (!verifiedAssertionCache.addVerified(tenantDomain, assertion.getID(), getAssertionDigest(tokReqMsgCtx),
+                notOnOrAfter.getMillis() + timestampSkewInMillis)) {
+            throw new IdentityOAuth2Exception("Assertion with ID: " + assertion.getID() + " has already been used.");
+        }
+    }
+
+    private String getAssertionDigest(OAuthTokenReqMessageContext tokReqMsgCtx) {
+
+        if (!VerifiedAssertionCache.getInstance().isEnabled()) {
+            return null;
+        }
+        return DigestUtils.sha256Hex(tokReqMsgCtx.getOauth2AccessTokenReqDTO().getAssertion());
+    }
+
     @Override
     public boolean issueRefreshToken() throws IdentityOAuth2Exception {
 
@@ -238,7 +282,7 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
 
             if (OAuthServerConfiguration.getInstance().isConvertOriginalClaimsFromAssertionsToOIDCDialect()) {
 
-                IdentityProvider identityProvider = getIdentityProvider(assertion, tenantDomain);
+                IdentityProvider identityProvider = getIdentityProvider(tokenReqMsgCtx, assertion, tenantDomain);
 
                 boolean localClaimDialect = identityProvider.getClaimConfig().isLocalClaimDialect();
                 ClaimMapping[] idPClaimMappings = identityProvider.getClaimConfig().getClaimMappings();
@@ -283,7 +327,8 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
                             equals(entry.getKey().getLocalClaim().getClaimUri())) && StringUtils.isNotBlank(
                                     entry.getValue())) {
 
-                        IdentityProvider identityProvider = getIdentityProvider(assertion, tenantDomain);
+                        IdentityProvider identityProvider = getIdentityProvider(tokenReqMsgCtx, assertion,
+                                tenantDomain);
                         String updatedRoleClaimValue = getUpdatedRoleClaimValue(identityProvider,
                                 entry.getValue());
                         if (updatedRoleClaimValue != null) {
@@ -569,9 +614,8 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
             try {
                 int index = 0;
                 for (CertificateInfo certificateInfo : certificateInfos) {
-                    X509Certificate x509Certificate = getIdpCertificate(tenantDomain, identityProvider,
+                    X509Credential x509Credential = getIdpCredential(tenantDomain, identityProvider,
                             certificateInfo);
-                    X509Credential x509Credential = new X509CredentialImpl(x509Certificate);
 
                     try {
                         if (log.isDebugEnabled()) {
@@ -608,6 +652,21 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
         }
     }
 
+    private X509Credential getIdpCredential(String tenantDomain, IdentityProvider identityProvider,
+                                            CertificateInfo certificateInfo) throws IdentityOAuth2Exception {
+
+        IdPCredentialCache credentialCache = IdPCredentialCache.getInstance();
+        X509Credential x509Credential = credentialCache.get(tenantDomain, identityProvider.getIdentityProviderName(),
+                certificateInfo.getCertValue());
+        if (x509Credential == null) {
+            x509Credential = new X509CredentialImpl(getIdpCertificate(tenantDomain, identityProvider,
+                    certificateInfo));
+            credentialCache.put(tenantDomain, identityProvider.getIdentityProviderName(),
+                    certificateInfo.getCertValue(), x509Credential);
+        }
+        return x509Credential;
+    }
+
     private X509Certificate getIdpCertificate(String tenantDomain, IdentityProvider identityProvider,
                                               CertificateInfo certificateInfo) throws IdentityOAuth2Exception {
 
@@ -863,6 +922,29 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
         return idpEntityId;
     }
 
+    /**
+     * Get the identity provider of the assertion issuer. The identity provider is resolved once per request and kept
+     * in the token request message context for the subsequent calls.
+     *
+     * @param tokReqMsgCtx Token request message context.
+     * @param assertion    SAML2 Assertion.
+     * @param tenantDomain Tenant domain.
+     * @return Identity provider of the assertion issuer.
+     * @throws IdentityOAuth2Exception If the identity provider could not be resolved.
+     */
+    private IdentityProvider getIdentityProvider(OAuthTokenReqMessageContext tokReqMsgCtx, Assertion assertion,
+                                                 String tenantDomain) throws IdentityOAuth2Exception {
+
+        String propertyName = RESOLVED_IDENTITY_PROVIDER + ":" + tenantDomain;
+        Object resolvedIdentityProvider = tokReqMsgCtx.getProperty(propertyName);
+        if (resolvedIdentityProvider instanceof IdentityProvider) {
+            return (IdentityProvider) resolvedIdentityProvider;
+        }
+        IdentityProvider identityProvider = getIdentityProvider(assertion, tenantDomain);
+        tokReqMsgCtx.addProperty(propertyName, identityProvider);
+        return identityProvider;
+    }
+
     private IdentityProvider getIdentityProvider(Assertion assertion, String tenantDomain)
             throws IdentityOAuth2Exception {
         try {
@@ -1257,7 +1339,7 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
     protected void setFederatedUser(OAuthTokenReqMessageContext tokReqMsgCtx, Assertion assertion, String
             tenantDomain) throws IdentityOAuth2Exception {
 
-        IdentityProvider identityProvider = getIdentityProvider(assertion, tenantDomain);
+        IdentityProvider identityProvider = getIdentityProvider(tokReqMsgCtx, assertion, tenantDomain);
         String subjectIdentifier = getUserId(tokReqMsgCtx, identityProvider, assertion);
         if (log.isDebugEnabled()) {
             log.debug("Setting federated user : " + subjectIdentifier + ". with SP tenant domain : " + tenantDomain);
@@ -1265,7 +1347,7 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
         AuthenticatedUser user =
                 AuthenticatedUser.createFederateAuthenticatedUserFromSubjectIdentifier(subjectIdentifier);
         user.setUserName(subjectIdentifier);
-        user.setFederatedIdPName(getIdentityProvider(assertion, getTenantDomain(tokReqMsgCtx))
+        user.setFederatedIdPName(getIdentityProvider(tokReqMsgCtx, assertion, getTenantDomain(tokReqMsgCtx))
                 .getIdentityProviderName());
         tokReqMsgCtx.setAuthorizedUser(user);
     }
@@ -1348,7 +1430,7 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
             throws IdentityOAuth2Exception {
 
         AuthenticatedUser authenticatedUser = new AuthenticatedUser();
-        IdentityProvider identityProvider = getIdentityProvider(assertion, spTenantDomain);
+        IdentityProvider identityProvider = getIdentityProvider(tokReqMsgCtx, assertion, spTenantDomain);
         String subjectIdentifier = getUserId(tokReqMsgCtx, identityProvider, assertion);
         String userTenantDomain = null;
         if (log.isDebugEnabled()) {
@@ -1370,8 +1452,8 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
 
         authenticatedUser.setTenantDomain(userTenantDomain);
         authenticatedUser.setAuthenticatedSubjectIdentifier(authenticatedUser.getUserName(), serviceProvider);
-        authenticatedUser.setFederatedIdPName(getIdentityProvider(assertion, getTenantDomain(tokReqMsgCtx))
-                .getIdentityProviderName());
+        authenticatedUser.setFederatedIdPName(getIdentityProvider(tokReqMsgCtx, assertion,
+                getTenantDomain(tokReqMsgCtx)).getIdentityProviderName());
 
         return authenticatedUser;
     }
@@ -1387,14 +1469,14 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
             throws IdentityOAuth2Exception {
 
         String tenantDomain = getTenantDomain(tokReqMsgCtx);
-        IdentityProvider identityProvider = getIdentityProvider(assertion, tenantDomain);
+        IdentityProvider identityProvider = getIdentityProvider(tokReqMsgCtx, assertion, tenantDomain);
         //Check whether NameID value is null before call this method.
         String resourceOwnerUserName = getUserId(tokReqMsgCtx, identityProvider, assertion);
         AuthenticatedUser user = OAuth2Util.getUserFromUserName(resourceOwnerUserName);
 
         user.setAuthenticatedSubjectIdentifier(resourceOwnerUserName);
         user.setFederatedUser(true);
-        user.setFederatedIdPName(getIdentityProvider(assertion, getTenantDomain(tokReqMsgCtx))
+        user.setFederatedIdPName(getIdentityProvider(tokReqMsgCtx, assertion, getTenantDomain(tokReqMsgCtx))
                 .getIdentityProviderName());
         tokReqMsgCtx.setAuthorizedUser(user);
     }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.token.handlers.grant.saml;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.util.BoundedTTLCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Bounded node local cache of the IDs of SAML assertions that were fully verified by the SAML2 bearer grant, kept
+ * until the assertion expires. Each entry records a digest of the assertion as it was presented, so that re-presenting
+ * the exact same assertion within its validity can skip the signature validation, while an assertion that reuses the
+ * ID of a verified assertion with different content is rejected.
+ * <p>
+ * When replay prevention is enabled, an assertion is accepted only once and every re-presentation of a verified
+ * assertion ID is rejected instead. Since the cache is local to the node and bounded in size, replays are only
+ * detected when they reach the same node while the entry is still held.
+ */
+public class VerifiedAssertionCache {
+
+    private static final Log log = LogFactory.getLog(VerifiedAssertionCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String VERIFIED_ASSERTION_CACHE_ENABLE = "OAuth.SAML2Bearer.VerifiedAssertionCache.Enable";
+    private static final String VERIFIED_ASSERTION_CACHE_MAX_SIZE =
+            "OAuth.SAML2Bearer.VerifiedAssertionCache.MaxSize";
+    private static final String PREVENT_ASSERTION_REPLAY = "OAuth.SAML2Bearer.VerifiedAssertionCache.PreventReplay";
+
+    private static final long DEFAULT_MAX_SIZE = 10000;
+    private static final String KEY_SEPARATOR = ":";
+
+    private static final VerifiedAssertionCache instance = new VerifiedAssertionCache();
+
+    private final boolean enabled;
+    private final boolean replayPreventionEnabled;
+    private final BoundedTTLCache<String, String> verifiedAssertions;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private VerifiedAssertionCache() {
+
+        this(getBooleanProperty(VERIFIED_ASSERTION_CACHE_ENABLE, false),
+                getBooleanProperty(PREVENT_ASSERTION_REPLAY, false),
+                getLongProperty(VERIFIED_ASSERTION_CACHE_MAX_SIZE, DEFAULT_MAX_SIZE));
+    }
+
+    VerifiedAssertionCache(boolean enabled, boolean replayPreventionEnabled, long maxSize) {
+
+        this.enabled = enabled || replayPreventionEnabled;
+        this.replayPreventionEnabled = replayPreventionEnabled;
+        // Entries are kept until the assertion expires, hence there is no time to live of the cache.
+        this.verifiedAssertions = new BoundedTTLCache<>(maxSize, Long.MAX_VALUE);
+    }
+
+    public static VerifiedAssertionCache getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    public boolean isReplayPreventionEnabled() {
+
+        return replayPreventionEnabled;
+    }
+
+    /**
+     * Check whether an assertion has already been verified on this node.
+     *
+     * @param tenantDomain    Tenant domain the assertion was verified for.
+     * @param assertionId     ID of the assertion.
+     * @param assertionDigest Digest of the assertion as presented.
+     * @return true if the same assertion was verified before and has not expired yet.
+     * @throws IdentityOAuth2Exception If the assertion ID was verified before with different content, or at all when
+     *                                 replay prevention is enabled.
+     */
+    public boolean isVerified(String tenantDomain, String assertionId, String assertionDigest)
+            throws IdentityOAuth2Exception {
+
+        if (!enabled || StringUtils.isBlank(assertionId)) {
+            return false;
+        }
+        String verifiedDigest = verifiedAssertions.get(buildKey(tenantDomain, assertionId));
+        if (verifiedDigest == null) {
+            return false;
+        }
+        if (replayPreventionEnabled) {
+            throw new IdentityOAuth2Exception("Assertion with ID: " + assertionId + " has already been used.");
+        }
+        if (!StringUtils.equals(verifiedDigest, assertionDigest)) {
+            throw new IdentityOAuth2Exception("Assertion ID: " + assertionId + " has already been used by a " +
+                    "different assertion.");
+        }
+        hitCount.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug("Assertion with ID: " + assertionId + " has already been verified for tenant: " +
+                    tenantDomain);
+        }
+        return true;
+    }
+
+    /**
+     * Record a fully verified assertion until it expires.
+     *
+     * @param tenantDomain    Tenant domain the assertion was verified for.
+     * @param assertionId     ID of the assertion.
+     * @param assertionDigest Digest of the assertion as presented.
+     * @param expiryTime      Time in milliseconds after which the assertion is no longer accepted.
+     * @return false if the assertion ID was already recorded by a concurrent request.
+     */
+    public boolean addVerified(String tenantDomain, String assertionId, String assertionDigest, long expiryTime) {
+
+        if (!enabled || StringUtils.isBlank(assertionId) || assertionDigest == null ||
+                expiryTime <= System.currentTimeMillis()) {
+            return true;
+        }
+        String existingDigest = verifiedAssertions.putIfAbsent(buildKey(tenantDomain, assertionId), assertionDigest,
+                expiryTime);
+        return existingDigest == null || (StringUtils.equals(existingDigest, assertionDigest) &&
+                !replayPreventionEnabled);
+    }
+
+    public int size() {
+
+        return verifiedAssertions.size();
+    }
+
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    private static String buildKey(String tenantDomain, String assertionId) {
+
+        return tenantDomain + KEY_SEPARATOR + assertionId;
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Bounded node local cache whose entries are evicted in LRU order once the maximum size is reached and expire after
+ * a time to live. Large caches are split into segments with their own lock, so that concurrent lookups of different
+ * keys do not contend on a single lock, while the LRU order is kept per segment.
+ * <p>
+ * The cache keeps an invalidation count that is incremented before any entry is removed. A caller that loads a value
+ * outside the cache reads the count through {@link #getInvalidationCount()} before loading and adds the value with
+ * {@link #putIfNotInvalidated(Object, Object, long)}, so that a value loaded before a concurrent invalidation is not
+ * added back to the cache.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public class BoundedTTLCache<K, V> {
+
+    private static final int SEGMENTATION_THRESHOLD = 1024;
+    private static final int SEGMENT_COUNT = 16;
+
+    private final long timeToLiveMillis;
+    private final Segment<K, V>[] segments;
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize          Maximum number of entries.
+     * @param timeToLiveMillis Time an entry is kept after it is added, in milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedTTLCache(long maxSize, long timeToLiveMillis) {
+
+        this.timeToLiveMillis = timeToLiveMillis;
+        // Small caches keep a single segment, so that the LRU order is exact.
+        int segmentCount = maxSize < SEGMENTATION_THRESHOLD ? 1 : SEGMENT_COUNT;
+        long segmentMaxSize = Math.max(maxSize / segmentCount, 0);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentMaxSize);
+        }
+    }
+
+    /**
+     * Get an unexpired value.
+     *
+     * @param key Key.
+     * @return cached value or null if there is no unexpired entry.
+     */
+    public V get(K key) {
+
+        Segment<K, V> segment = segmentFor(key);
+        TimedValue<V> timedValue;
+        synchronized (segment) {
+            timedValue = segment.get(key);
+            if (timedValue != null && timedValue.expiryTime <= System.currentTimeMillis()) {
+                segment.remove(key);
+                timedValue = null;
+            }
+        }
+        if (timedValue == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return timedValue.value;
+    }
+
+    /**
+     * Add a value that expires after the time to live of the cache.
+     *
+     * @param key   Key.
+     * @param value Value.
+     */
+    public void put(K key, V value) {
+
+        put(key, value, getExpiryTime());
+    }
+
+    /**
+     * Add a value that expires at the given time.
+     *
+     * @param key        Key.
+     * @param value      Value.
+     * @param expiryTime Expiry time in milliseconds since the epoch.
+     */
+    public void put(K key, V value, long expiryTime) {
+
+        if (key == null || value == null) {
+            return;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new TimedValue<>(value, expiryTime));
+        }
+    }
+
+    /**
+     * Add a value that expires at the given time, unless there is an unexpired entry for the key.
+     *
+     * @param key        Key.
+     * @param value      Value.
+     * @param expiryTime Expiry time in milliseconds since the epoch.
+     * @return unexpired value already cached for the key, or null if the given value was added.
+     */
+    public V putIfAbsent(K key, V value, long expiryTime) {
+
+        if (key == null || value == null) {
+            return null;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            TimedValue<V> existing = segment.get(key);
+            if (existing != null && existing.expiryTime > System.currentTimeMillis()) {
+                return existing.value;
+            }
+            segment.put(key, new TimedValue<>(value, expiryTime));
+        }
+        return null;
+    }
+
+    /**
+     * Add a value that expires after the time to live of the cache, unless an entry was invalidated since the given
+     * invalidation count was read.
+     *
+     * @param key               Key.
+     * @param value             Value.
+     * @param invalidationCount Invalidation count read before the value was loaded.
+     * @return true if the value was added.
+     */
+    public boolean putIfNotInvalidated(K key, V value, long invalidationCount) {
+
+        return putIfNotInvalidated(key, value, getExpiryTime(), invalidationCount);
+    }
+
+    /**
+     * Add a value that expires at the given time, unless an entry was invalidated since the given invalidation count
+     * was read.
+     *
+     * @param key               Key.
+     * @param value             Value.
+     * @param expiryTime        Expiry time in milliseconds since the epoch.
+     * @param invalidationCount Invalidation count read before the value was loaded.
+     * @return true if the value was added.
+     */
+    public boolean putIfNotInvalidated(K key, V value, long expiryTime, long invalidationCount) {
+
+        if (key == null || value == null) {
+            return false;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            // Invalidations increment the count before taking the lock of the segment, hence an invalidation either
+            // is seen here or removes the value after it is added.
+            if (this.invalidationCount.get() != invalidationCount) {
+                return false;
+            }
+            segment.put(key, new TimedValue<>(value, expiryTime));
+        }
+        return true;
+    }
+
+    /**
+     * Remove an entry.
+     *
+     * @param key Key.
+     * @return removed value, which may have expired, or null if there was no entry.
+     */
+    public V remove(K key) {
+
+        if (key == null) {
+            return null;
+        }
+        invalidationCount.incrementAndGet();
+        Segment<K, V> segment = segmentFor(key);
+        TimedValue<V> removed;
+        synchronized (segment) {
+            removed = segment.remove(key);
+        }
+        return removed == null ? null : removed.value;
+    }
+
+    /**
+     * Remove the entries whose keys match the given predicate.
+     *
+     * @param keyPredicate Predicate on the keys.
+     */
+    public void removeIf(Predicate<K> keyPredicate) {
+
+        invalidationCount.incrementAndGet();
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.keySet().removeIf(keyPredicate);
+            }
+        }
+    }
+
+    /**
+     * Remove the entries that match the given predicate on their keys and values.
+     *
+     * @param entryPredicate Predicate on the keys and values.
+     */
+    public void removeEntriesIf(BiPredicate<K, V> entryPredicate) {
+
+        invalidationCount.incrementAndGet();
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.entrySet().removeIf(entry -> entryPredicate.test(entry.getKey(), entry.getValue().value));
+            }
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+
+        invalidationCount.incrementAndGet();
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getInvalidationCount() {
+
+        return invalidationCount.get();
+    }
+
+    public long getTimeToLiveMillis() {
+
+        return timeToLiveMillis;
+    }
+
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+
+        return missCount.get();
+    }
+
+    private long getExpiryTime() {
+
+        long now = System.currentTimeMillis();
+        return timeToLiveMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeToLiveMillis;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+
+        if (segments.length == 1) {
+            return segments[0];
+        }
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, TimedValue<V>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long maxSize;
+
+        private Segment(long maxSize) {
+
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, TimedValue<V>> eldest) {
+
+            return size() > maxSize;
+        }
+    }
+
+    private static class TimedValue<V> {
+
+        private final V value;
+        private final long expiryTime;
+
+        private TimedValue(V value, long expiryTime) {
+
+            this.value = value;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
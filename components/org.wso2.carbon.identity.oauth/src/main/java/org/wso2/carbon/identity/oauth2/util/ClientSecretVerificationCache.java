@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Node local cache of successfully verified client credentials, used when client secrets are stored hashed. For each
+ * client id, the cache keeps an HMAC of the last client secret that was verified, computed with a random key
+ * generated when the node starts, together with the hashed secret of the application it was verified against. A
+ * request presenting the same secret is authenticated without hashing the secret again, as long as the stored secret
+ * of the application is unchanged.
+ * <p>
+ * The presented secret is not kept and its HMAC is of no use outside this node. Failed verifications are never
+ * cached. Entries must be cleared through {@link #clear(String)} whenever the credentials or the state of the
+ * application change, while a secret changed on another node is detected by comparing the stored secret of the
+ * application.
+ */
+public class ClientSecretVerificationCache {
+
+    private static final Log log = LogFactory.getLog(ClientSecretVerificationCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String CACHE_ENABLE = "OAuth.ClientSecretVerificationCache.Enable";
+    private static final String CACHE_MAX_SIZE = "OAuth.ClientSecretVerificationCache.MaxSize";
+    private static final String CACHE_TIME_TO_LIVE = "OAuth.ClientSecretVerificationCache.TimeToLiveSeconds";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int HMAC_KEY_LENGTH = 32;
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    private static final long DEFAULT_TIME_TO_LIVE_SECONDS = 900;
+
+    private static final ClientSecretVerificationCache instance = new ClientSecretVerificationCache();
+
+    private final boolean enabled;
+    private final SecretKeySpec hmacKey;
+    // Mac instances are not thread safe, hence each thread keeps its own instance initialized with the key.
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+    private final BoundedTTLCache<String, VerifiedCredential> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private ClientSecretVerificationCache() {
+
+        this(getBooleanProperty(CACHE_ENABLE, true),
+                getLongProperty(CACHE_MAX_SIZE, DEFAULT_MAX_SIZE),
+                TimeUnit.SECONDS.toMillis(getLongProperty(CACHE_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE_SECONDS)));
+    }
+
+    ClientSecretVerificationCache(boolean enabled, long maxSize, long timeToLiveMillis) {
+
+        this.enabled = enabled;
+        byte[] key = new byte[HMAC_KEY_LENGTH];
+        new SecureRandom().nextBytes(key);
+        this.hmacKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+        this.entries = new BoundedTTLCache<>(maxSize, timeToLiveMillis);
+    }
+
+    public static ClientSecretVerificationCache getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Check whether the given secret was already verified for the client against the given stored secret.
+     *
+     * @param clientId             Client id.
+     * @param clientSecretProvided Client secret presented by the client.
+     * @param storedClientSecret   Client secret of the application, in the form it is stored.
+     * @return true if the same secret was verified against the same stored secret, false otherwise.
+     */
+    public boolean isVerified(String clientId, String clientSecretProvided, String storedClientSecret) {
+
+        if (!enabled || clientId == null || clientSecretProvided == null || storedClientSecret == null) {
+            return false;
+        }
+        VerifiedCredential verifiedCredential = entries.get(clientId);
+        if (verifiedCredential == null) {
+            missCount.incrementAndGet();
+            return false;
+        }
+        boolean verified = false;
+        // The stored secret is in the hashed form kept with the application data, hence it is compared as is.
+        if (storedClientSecret.equals(verifiedCredential.storedSecret)) {
+            byte[] secretHmac = computeHmac(clientSecretProvided);
+            // Compared in constant time, so that the time taken does not depend on the presented secret.
+            verified = secretHmac != null && MessageDigest.isEqual(verifiedCredential.secretHmac, secretHmac);
+        }
+        if (verified) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return verified;
+    }
+
+    /**
+     * Record a successful verification of the client secret.
+     *
+     * @param clientId             Client id.
+     * @param clientSecretProvided Client secret presented by the client.
+     * @param storedClientSecret   Client secret of the application, in the form it is stored.
+     */
+    public void putVerified(String clientId, String clientSecretProvided, String storedClientSecret) {
+
+        if (!enabled || clientId == null || clientSecretProvided == null || storedClientSecret == null) {
+            return;
+        }
+        byte[] secretHmac = computeHmac(clientSecretProvided);
+        if (secretHmac == null) {
+            return;
+        }
+        entries.put(clientId, new VerifiedCredential(secretHmac, storedClientSecret));
+    }
+
+    /**
+     * Remove the verified credential of a client.
+     *
+     * @param clientId Client id.
+     */
+    public void clear(String clientId) {
+
+        if (!enabled || clientId == null) {
+            return;
+        }
+        entries.remove(clientId);
+        if (log.isDebugEnabled()) {
+            log.debug("Verified client credentials cleared for client id: " + clientId);
+        }
+    }
+
+    /**
+     * Remove the verified credentials of all clients.
+     */
+    public void clearAll() {
+
+        entries.clear();
+    }
+
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+
+        return missCount.get();
+    }
+
+    int size() {
+
+        return entries.size();
+    }
+
+    private byte[] computeHmac(String clientSecret) {
+
+        Mac mac = macs.get();
+        if (mac == null) {
+            return null;
+        }
+        // doFinal resets the Mac, so that the instance is ready for the next secret of the thread.
+        return mac.doFinal(clientSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac createMac() {
+
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(hmacKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            log.error("Error while initializing the HMAC of client secrets. Verified client credentials will not " +
+                    "be cached.", e);
+            return null;
+        }
+    }
+
+    private static class VerifiedCredential {
+
+        private final byte[] secretHmac;
+        private final String storedSecret;
+
+        private VerifiedCredential(byte[] secretHmac, String storedSecret) {
+
+            this.secretHmac = secretHmac;
+            this.storedSecret = storedSecret;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+/**
+ * Utility to read the numeric and boolean config properties defined in identity.xml. Values that can not be parsed
+ * are logged and replaced by the given default value.
+ */
+public class ConfigPropertyUtil {
+
+    private static final Log log = LogFactory.getLog(ConfigPropertyUtil.class);
+
+    private ConfigPropertyUtil() {
+
+    }
+
+    /**
+     * Get a long config property.
+     *
+     * @param property     Name of the property.
+     * @param defaultValue Value to use if the property is not configured or is invalid.
+     * @return configured value or the default value.
+     */
+    public static long getLongProperty(String property, long defaultValue) {
+
+        String value = IdentityUtil.getProperty(property);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                logInvalidValue(property, value, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Get an int config property.
+     *
+     * @param property     Name of the property.
+     * @param defaultValue Value to use if the property is not configured or is invalid.
+     * @return configured value or the default value.
+     */
+    public static int getIntProperty(String property, int defaultValue) {
+
+        String value = IdentityUtil.getProperty(property);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                logInvalidValue(property, value, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Get a boolean config property. Any value other than the opposite of the default value, ignoring case,
+     * keeps the default value.
+     *
+     * @param property     Name of the property.
+     * @param defaultValue Value to use if the property is not configured or is invalid.
+     * @return configured value or the default value.
+     */
+    public static boolean getBooleanProperty(String property, boolean defaultValue) {
+
+        String value = StringUtils.trim(IdentityUtil.getProperty(property));
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        if (defaultValue) {
+            return !"false".equalsIgnoreCase(value);
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    private static void logInvalidValue(String property, String value, Object defaultValue) {
+
+        log.warn("Invalid value: " + value + " configured for " + property + ". Using the default value: " +
+                defaultValue);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Node local cache of serialized documents served by an endpoint, such as the JWKS or the OpenID Connect discovery
+ * document of each tenant. A document is kept in its serialized form along with a strong entity tag derived from its
+ * content, so that the endpoint can answer both plain and conditional requests without building the document again.
+ * <p>
+ * Changes which are not notified to the cache, such as changes made through the other nodes of a cluster, are picked
+ * up once the entries expire after the configured time to live.
+ *
+ * @param <K> Type of the key the documents are cached by.
+ */
+public class ETagResponseCache<K> {
+
+    private static final Log log = LogFactory.getLog(ETagResponseCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String JWKS_CACHE = "OAuth.JWKSEndpoint.ResponseCache";
+    private static final String DISCOVERY_CACHE = "OAuth.OIDCDiscovery.ResponseCache";
+    private static final String ENABLE = ".Enable";
+    private static final String TIME_TO_LIVE = ".TimeToLiveSeconds";
+    private static final String MAX_AGE = ".MaxAgeSeconds";
+
+    private static final long DEFAULT_JWKS_TIME_TO_LIVE_SECONDS = 900;
+    private static final long DEFAULT_JWKS_MAX_AGE_SECONDS = 300;
+    private static final long DEFAULT_DISCOVERY_TIME_TO_LIVE_SECONDS = 300;
+    private static final long DEFAULT_DISCOVERY_MAX_AGE_SECONDS = 60;
+
+    private static final String ETAG_DIGEST_ALGORITHM = "SHA-256";
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final String ANY_ETAG = "*";
+
+    /*
+     * The JWKS responses of a tenant are cleared through OAuth2Util#clearSigningKeyMaterial(int) together with the
+     * rest of the tenant's key material. The discovery responses of a tenant are cleared when its OIDC claim dialect
+     * or OIDC scopes change on this node, and when the tenant is deleted or deactivated.
+     */
+    private static final ETagResponseCache<Integer> jwksResponseCache =
+            new ETagResponseCache<>("JWKS", JWKS_CACHE, DEFAULT_JWKS_TIME_TO_LIVE_SECONDS,
+                    DEFAULT_JWKS_MAX_AGE_SECONDS);
+    private static final ETagResponseCache<String> discoveryResponseCache =
+            new ETagResponseCache<>("discovery", DISCOVERY_CACHE, DEFAULT_DISCOVERY_TIME_TO_LIVE_SECONDS,
+                    DEFAULT_DISCOVERY_MAX_AGE_SECONDS);
+
+    private final String name;
+    private final boolean enabled;
+    private final long timeToLiveMillis;
+    private final long maxAgeSeconds;
+    private final Map<K, ETagResponse> responses = new ConcurrentHashMap<>();
+
+    private ETagResponseCache(String name, String configPrefix, long defaultTimeToLiveSeconds,
+                              long defaultMaxAgeSeconds) {
+
+        this(name, getBooleanProperty(configPrefix + ENABLE, true),
+                TimeUnit.SECONDS.toMillis(getLongProperty(configPrefix + TIME_TO_LIVE, defaultTimeToLiveSeconds)),
+                getLongProperty(configPrefix + MAX_AGE, defaultMaxAgeSeconds));
+    }
+
+    ETagResponseCache(String name, boolean enabled, long timeToLiveMillis, long maxAgeSeconds) {
+
+        this.name = name;
+        this.enabled = enabled;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    /**
+     * Get the cache of the JWKS responses, kept by tenant id.
+     *
+     * @return JWKS response cache.
+     */
+    public static ETagResponseCache<Integer> getJWKSResponseCache() {
+
+        return jwksResponseCache;
+    }
+
+    /**
+     * Get the cache of the OpenID Connect discovery responses, kept by tenant domain.
+     *
+     * @return Discovery response cache.
+     */
+    public static ETagResponseCache<String> getDiscoveryResponseCache() {
+
+        return discoveryResponseCache;
+    }
+
+    /**
+     * Whether responses are cached. When disabled, an endpoint may respond as it did without the cache, without
+     * entity tags or caching headers.
+     *
+     * @return true if the cache is enabled.
+     */
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Get the cached response of a key.
+     *
+     * @param key Key of the document, such as the tenant.
+     * @return Cached response or null if there is no live entry for the key.
+     */
+    public ETagResponse get(K key) {
+
+        if (!enabled) {
+            return null;
+        }
+        ETagResponse response = responses.get(key);
+        if (response != null && response.isExpired(System.currentTimeMillis())) {
+            responses.remove(key, response);
+            return null;
+        }
+        return response;
+    }
+
+    /**
+     * Build the response for the given document and cache it for the key.
+     *
+     * @param key      Key of the document, such as the tenant.
+     * @param document Serialized document.
+     * @return Response holding the document and its entity tag.
+     */
+    public ETagResponse put(K key, String document) {
+
+        byte[] body = document.getBytes(StandardCharsets.UTF_8);
+        ETagResponse response = new ETagResponse(document, body, buildETag(body),
+                System.currentTimeMillis() + timeToLiveMillis);
+        if (enabled) {
+            responses.put(key, response);
+            if (log.isDebugEnabled()) {
+                log.debug("The " + name + " response cached for key: " + key + " with entity tag: " +
+                        response.getETag());
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Remove the cached response of a key.
+     *
+     * @param key Key of the document, such as the tenant.
+     */
+    public void clear(K key) {
+
+        responses.remove(key);
+        if (log.isDebugEnabled()) {
+            log.debug("The " + name + " response cache cleared for key: " + key);
+        }
+    }
+
+    /**
+     * Remove all the cached responses.
+     */
+    public void clearAll() {
+
+        responses.clear();
+        if (log.isDebugEnabled()) {
+            log.debug("The " + name + " response cache cleared.");
+        }
+    }
+
+    /**
+     * Maximum time in seconds a client may reuse a response before revalidating it.
+     *
+     * @return max age in seconds.
+     */
+    public long getMaxAgeSeconds() {
+
+        return maxAgeSeconds;
+    }
+
+    int size() {
+
+        return responses.size();
+    }
+
+    private String buildETag(byte[] body) {
+
+        try {
+            byte[] digest = MessageDigest.getInstance(ETAG_DIGEST_ALGORITHM).digest(body);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is a mandatory algorithm of every Java platform.
+            throw new IllegalStateException("Error while generating the entity tag of the " + name + " response.",
+                    e);
+        }
+    }
+
+    /**
+     * Serialized document and its entity tag.
+     */
+    public static class ETagResponse {
+
+        private final String document;
+        private final byte[] body;
+        private final String eTag;
+        private final long expiryTime;
+
+        ETagResponse(String document, byte[] body, String eTag, long expiryTime) {
+
+            this.document = document;
+            this.body = body;
+            this.eTag = eTag;
+            this.expiryTime = expiryTime;
+        }
+
+        /**
+         * Serialized document.
+         *
+         * @return document.
+         */
+        public String getDocument() {
+
+            return document;
+        }
+
+        /**
+         * Serialized document encoded in UTF-8. The returned array is shared and must not be modified.
+         *
+         * @return UTF-8 encoded document.
+         */
+        public byte[] getBody() {
+
+            return body;
+        }
+
+        /**
+         * Opaque value of the strong entity tag of the document, without the surrounding quotes.
+         *
+         * @return entity tag.
+         */
+        public String getETag() {
+
+            return eTag;
+        }
+
+        /**
+         * Check whether the value of an If-None-Match request header matches this response. As defined for
+         * If-None-Match, the weak comparison is used and the header may carry a list of entity tags.
+         *
+         * @param ifNoneMatch Value of the If-None-Match header.
+         * @return True if the client already holds this response.
+         */
+        public boolean matches(String ifNoneMatch) {
+
+            if (StringUtils.isBlank(ifNoneMatch)) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (ANY_ETAG.equals(tag)) {
+                    return true;
+                }
+                if (tag.startsWith(WEAK_ETAG_PREFIX)) {
+                    tag = tag.substring(WEAK_ETAG_PREFIX.length());
+                }
+                if (eTag.equals(StringUtils.removeEnd(StringUtils.removeStart(tag, "\""), "\""))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isExpired(long currentTime) {
+
+            return currentTime >= expiryTime;
+        }
+    }
+}
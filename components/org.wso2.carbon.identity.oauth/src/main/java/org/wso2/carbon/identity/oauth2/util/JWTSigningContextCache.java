@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.util.Base64URL;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import java.security.Key;
+import java.security.interfaces.RSAPrivateKey;
+import java.text.ParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Node local cache of the material needed to sign JWTs with the tenant's RSA key. For each tenant, signature
+ * algorithm and "typ" header value, the signer and the JWS header carrying the key ID and the certificate thumbprint
+ * are built once and reused, so that signing a token does not resolve the key ID, compute the certificate thumbprint
+ * or serialize the header again. The header is kept in its parsed form so that the Base64URL encoded header is reused
+ * when the signed JWT is serialized.
+ * <p>
+ * The cached signers hold the tenant's private key and hence are never put into a distributed cache. Entries of a
+ * tenant are cleared through {@link OAuth2Util#clearSigningKeyMaterial(int)} when the tenant is removed. A rotated
+ * signing key is detected by comparing the thumbprint of the certificate in the tenant's key store with the one the
+ * signing contexts were built from, at most once per configured interval. When the thumbprints differ, the key
+ * material of the tenant is cleared and reloaded.
+ */
+public class JWTSigningContextCache {
+
+    private static final Log log = LogFactory.getLog(JWTSigningContextCache.class);
+    private static final JWTSigningContextCache instance = new JWTSigningContextCache();
+    private static final String KEY_SEPARATOR = ":";
+
+    // These config properties are defined in identity.xml
+    private static final String KEY_STORE_CHECK_INTERVAL = "OAuth.JWTSigningContextCache.KeyStoreCheckIntervalSeconds";
+
+    private static final long DEFAULT_KEY_STORE_CHECK_INTERVAL_SECONDS = 300;
+
+    private final Map<String, JWTSigningContext> signingContexts = new ConcurrentHashMap<>();
+    private final Map<Integer, SigningCertificateCheck> signingCertificateChecks = new ConcurrentHashMap<>();
+    private final long keyStoreCheckIntervalMillis;
+
+    JWTSigningContextCache() {
+
+        this(TimeUnit.SECONDS.toMillis(getLongProperty(KEY_STORE_CHECK_INTERVAL,
+                DEFAULT_KEY_STORE_CHECK_INTERVAL_SECONDS)));
+    }
+
+    /**
+     * @param keyStoreCheckIntervalMillis Minimum time between two checks of a tenant's signing certificate. A
+     *                                    negative value disables the check.
+     */
+    JWTSigningContextCache(long keyStoreCheckIntervalMillis) {
+
+        this.keyStoreCheckIntervalMillis = keyStoreCheckIntervalMillis;
+    }
+
+    public static JWTSigningContextCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the signing context of the tenant for the given algorithm, building it if it is not cached yet.
+     *
+     * @param tenantDomain       Tenant domain of the signing key.
+     * @param tenantId           Tenant id of the signing key.
+     * @param signatureAlgorithm RSA family signature algorithm.
+     * @param type               Value of the "typ" header or null if the header should not be set.
+     * @return Signing context.
+     * @throws IdentityOAuth2Exception If the key material of the tenant could not be loaded.
+     */
+    public JWTSigningContext getSigningContext(String tenantDomain, int tenantId, JWSAlgorithm signatureAlgorithm,
+                                               JOSEObjectType type) throws IdentityOAuth2Exception {
+
+        checkSigningCertificate(tenantDomain, tenantId);
+        String cacheKey = buildCacheKey(tenantId, signatureAlgorithm, type);
+        JWTSigningContext signingContext = signingContexts.get(cacheKey);
+        if (signingContext == null) {
+            // Concurrent misses may build the context more than once, which is harmless as the result is identical.
+            signingContext = buildSigningContext(tenantDomain, tenantId, signatureAlgorithm, type);
+            signingContexts.put(cacheKey, signingContext);
+            if (log.isDebugEnabled()) {
+                log.debug("JWT signing context cached for tenant: " + tenantDomain + " and algorithm: " +
+                        signatureAlgorithm);
+            }
+        }
+        return signingContext;
+    }
+
+    /**
+     * Remove the signing contexts of a tenant.
+     *
+     * @param tenantId Tenant id.
+     */
+    public void clear(int tenantId) {
+
+        String prefix = tenantId + KEY_SEPARATOR;
+        signingContexts.keySet().removeIf(cacheKey -> cacheKey.startsWith(prefix));
+        signingCertificateChecks.remove(tenantId);
+        if (log.isDebugEnabled()) {
+            log.debug("JWT signing contexts cleared for tenant id: " + tenantId);
+        }
+    }
+
+    /**
+     * Remove the signing contexts of all tenants.
+     */
+    public void clearAll() {
+
+        signingContexts.clear();
+        signingCertificateChecks.clear();
+    }
+
+    int size() {
+
+        return signingContexts.size();
+    }
+
+    /**
+     * Clear the key material of the tenant if the signing certificate in the tenant's key store is not the one the
+     * cached signing contexts were built from. The key store is read at most once per check interval.
+     */
+    private void checkSigningCertificate(String tenantDomain, int tenantId) throws IdentityOAuth2Exception {
+
+        if (keyStoreCheckIntervalMillis < 0) {
+            return;
+        }
+        long currentTime = System.currentTimeMillis();
+        SigningCertificateCheck check = signingCertificateChecks.get(tenantId);
+        if (check != null && currentTime < check.nextCheckTime) {
+            return;
+        }
+        // Concurrent checks may read the key store more than once, which is harmless as the result is identical.
+        String thumbprint = OAuth2Util.getThumbPrint(OAuth2Util.loadCertificate(tenantDomain, tenantId));
+        if (check != null && !check.thumbprint.equals(thumbprint)) {
+            log.info("Signing certificate of tenant: " + tenantDomain + " has changed. Hence the cached signing key " +
+                    "material is reloaded.");
+            // Clear the private key and certificate cached in OAuth2Util as well as the contexts built from them.
+            OAuth2Util.clearSigningKeyMaterial(tenantId);
+            clear(tenantId);
+        }
+        signingCertificateChecks.put(tenantId, new SigningCertificateCheck(thumbprint,
+                currentTime + keyStoreCheckIntervalMillis));
+    }
+
+    private JWTSigningContext buildSigningContext(String tenantDomain, int tenantId, JWSAlgorithm signatureAlgorithm,
+                                                  JOSEObjectType type) throws IdentityOAuth2Exception {
+
+        Key privateKey = OAuth2Util.getPrivateKey(tenantDomain, tenantId);
+        JWSSigner signer = OAuth2Util.createJWSSigner((RSAPrivateKey) privateKey);
+        JWSHeader.Builder headerBuilder = new JWSHeader.Builder(signatureAlgorithm);
+        headerBuilder.keyID(OAuth2Util.getKID(OAuth2Util.getCertificate(tenantDomain, tenantId), signatureAlgorithm,
+                tenantDomain));
+        if (type != null) {
+            headerBuilder.type(type);
+        }
+        headerBuilder.x509CertThumbprint(new Base64URL(OAuth2Util.getThumbPrint(tenantDomain, tenantId)));
+        try {
+            // Parse the header back from its encoded form so that the encoded header is retained and reused.
+            JWSHeader header = JWSHeader.parse(headerBuilder.build().toBase64URL());
+            return new JWTSigningContext(signer, header);
+        } catch (ParseException e) {
+            throw new IdentityOAuth2Exception("Error occurred while building the JWS header for tenant: " +
+                    tenantDomain, e);
+        }
+    }
+
+    private static String buildCacheKey(int tenantId, JWSAlgorithm signatureAlgorithm, JOSEObjectType type) {
+
+        return tenantId + KEY_SEPARATOR + signatureAlgorithm.getName() + KEY_SEPARATOR +
+                (type == null ? "" : type.getType());
+    }
+
+    /**
+     * Signer and JWS header of a tenant for a given algorithm.
+     */
+    public static class JWTSigningContext {
+
+        private final JWSSigner signer;
+        private final JWSHeader header;
+
+        JWTSigningContext(JWSSigner signer, JWSHeader header) {
+
+            this.signer = signer;
+            this.header = header;
+        }
+
+        public JWSSigner getSigner() {
+
+            return signer;
+        }
+
+        public JWSHeader getHeader() {
+
+            return header;
+        }
+    }
+
+    /**
+     * Thumbprint of the signing certificate of a tenant and the time it has to be checked again.
+     */
+    private static class SigningCertificateCheck {
+
+        private final String thumbprint;
+        private final long nextCheckTime;
+
+        SigningCertificateCheck(String thumbprint, long nextCheckTime) {
+
+            this.thumbprint = thumbprint;
+            this.nextCheckTime = nextCheckTime;
+        }
+    }
+}
@@ -26,7 +26,6 @@ import com.nimbusds.jose.JWEEncrypter;
 import com.nimbusds.jose.JWEHeader;
 import com.nimbusds.jose.JWEObject;
 import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jose.Payload;
@@ -162,6 +161,7 @@ import java.sql.Timestamp;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -304,6 +304,7 @@ public class OAuth2Util {
     private static ThreadLocal<Integer> clientTenantId = new ThreadLocal<>();
     private static ThreadLocal<OAuthTokenReqMessageContext> tokenRequestContext = new ThreadLocal<>();
     private static ThreadLocal<OAuthAuthzReqMessageContext> authzRequestContext = new ThreadLocal<>();
+    private static ThreadLocal<Map<String, AccessTokenDO>> prefetchedAccessTokens = new ThreadLocal<>();
     //Precompile PKCE Regex pattern for performance improvement
     private static Pattern pkceCodeVerifierPattern = Pattern.compile("[\\w\\-\\._~]+");
     // System flag to allow the weak keys (key length less than 2048) to be used for the signing.
@@ -487,31 +488,45 @@ public class OAuth2Util {
             return false;
         }
 
-        // Cache miss
-        boolean isHashDisabled = isHashDisabled();
         String appClientSecret = appDO.getOauthConsumerSecret();
-        if (isHashDisabled) {
-            if (!StringUtils.equals(appClientSecret, clientSecretProvided)) {
+        if (isHashDisabled()) {
+            // Plain text secrets are compared directly, which is cheaper than looking up the verified credentials.
+            if (!isEqualInConstantTime(appClientSecret, clientSecretProvided)) {
                 if (log.isDebugEnabled()) {
                     log.debug("Provided the Client ID : " + clientId +
                             " and Client Secret do not match with the issued credentials.");
                 }
                 return false;
             }
-        } else {
-            TokenPersistenceProcessor persistenceProcessor = getPersistenceProcessor();
-            // We convert the provided client_secret to the processed form stored in the DB.
-            String processedProvidedClientSecret = persistenceProcessor.getProcessedClientSecret(clientSecretProvided);
+            if (log.isDebugEnabled()) {
+                log.debug("Successfully authenticated the client with client id : " + clientId);
+            }
+            return true;
+        }
 
-            if (!StringUtils.equals(appClientSecret, processedProvidedClientSecret)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Provided the Client ID : " + clientId +
-                            " and Client Secret do not match with the issued credentials.");
-                }
-                return false;
+        ClientSecretVerificationCache verificationCache = ClientSecretVerificationCache.getInstance();
+        if (verificationCache.isVerified(clientId, clientSecretProvided, appClientSecret)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Successfully authenticated the client with client id : " + clientId +
+                        " using the verified client credentials.");
             }
+            return true;
         }
 
+        // Cache miss
+        TokenPersistenceProcessor persistenceProcessor = getPersistenceProcessor();
+        // We convert the provided client_secret to the processed form stored in the DB.
+        String processedProvidedClientSecret = persistenceProcessor.getProcessedClientSecret(clientSecretProvided);
+
+        if (!isEqualInConstantTime(appClientSecret, processedProvidedClientSecret)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Provided the Client ID : " + clientId +
+                        " and Client Secret do not match with the issued credentials.");
+            }
+            return false;
+        }
+        verificationCache.putVerified(clientId, clientSecretProvided, appClientSecret);
+
         if (log.isDebugEnabled()) {
             log.debug("Successfully authenticated the client with client id : " + clientId);
         }
@@ -519,6 +534,22 @@ public class OAuth2Util {
         return true;
     }
 
+    /**
+     * Compare two secrets in a time that does not depend on the position of the first mismatching character.
+     *
+     * @param expected Expected value.
+     * @param provided Provided value.
+     * @return true if both values are non null and equal, false otherwise.
+     */
+    private static boolean isEqualInConstantTime(String expected, String provided) {
+
+        if (expected == null || provided == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                provided.getBytes(StandardCharsets.UTF_8));
+    }
+
     public static TokenPersistenceProcessor getPersistenceProcessor() {
 
         TokenPersistenceProcessor persistenceProcessor;
@@ -1673,6 +1704,15 @@ public class OAuth2Util {
                                                                     boolean includeExpired)
             throws IdentityOAuth2Exception {
 
+        Map<String, AccessTokenDO> prefetchedTokens = prefetchedAccessTokens.get();
+        if (!includeExpired && prefetchedTokens != null && prefetchedTokens.containsKey(accessTokenIdentifier)) {
+            AccessTokenDO prefetchedTokenDO = prefetchedTokens.get(accessTokenIdentifier);
+            if (prefetchedTokenDO == null) {
+                throw new IllegalArgumentException(ACCESS_TOKEN_IS_NOT_ACTIVE_ERROR_MESSAGE);
+            }
+            return prefetchedTokenDO;
+        }
+
         boolean cacheHit = false;
         AccessTokenDO accessTokenDO = null;
 
@@ -1724,6 +1764,57 @@ public class OAuth2Util {
         return accessTokenDO;
     }
 
+    /**
+     * Load the active access tokens of a batch of token identifiers and make them available to
+     * {@link #getAccessTokenDOFromTokenIdentifier(String, boolean)} on the current thread, until
+     * {@link #clearPrefetchedAccessTokens()} is called. Tokens found in the OAuthCache are taken from there and the
+     * rest are retrieved from the database with a single query. Identifiers without an active token are remembered as
+     * such, so that they are not looked up again.
+     *
+     * @param accessTokenIdentifiers Access token identifiers.
+     * @throws IdentityOAuth2Exception If an error occurs while retrieving the tokens.
+     */
+    public static void prefetchAccessTokens(Collection<String> accessTokenIdentifiers)
+            throws IdentityOAuth2Exception {
+
+        Map<String, AccessTokenDO> prefetchedTokens = new HashMap<>();
+        List<String> cacheMissedIdentifiers = new ArrayList<>();
+        for (String accessTokenIdentifier : accessTokenIdentifiers) {
+            CacheEntry result = OAuthCache.getInstance().getValueFromCache(new OAuthCacheKey(accessTokenIdentifier));
+            if (result instanceof AccessTokenDO) {
+                prefetchedTokens.put(accessTokenIdentifier, (AccessTokenDO) result);
+            } else {
+                cacheMissedIdentifiers.add(accessTokenIdentifier);
+            }
+        }
+
+        if (!cacheMissedIdentifiers.isEmpty()) {
+            Map<String, AccessTokenDO> loadedTokens = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
+                    .getAccessTokens(cacheMissedIdentifiers);
+            for (String accessTokenIdentifier : cacheMissedIdentifiers) {
+                AccessTokenDO accessTokenDO = loadedTokens.get(accessTokenIdentifier);
+                prefetchedTokens.put(accessTokenIdentifier, accessTokenDO);
+                // Same as a single lookup, tokens are not added to the cache when token hashing is enabled.
+                if (accessTokenDO != null && isHashDisabled()) {
+                    OAuthCache.getInstance().addToCache(new OAuthCacheKey(accessTokenIdentifier), accessTokenDO);
+                }
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Prefetched " + prefetchedTokens.size() + " access tokens. Cache misses: " +
+                    cacheMissedIdentifiers.size());
+        }
+        prefetchedAccessTokens.set(prefetchedTokens);
+    }
+
+    /**
+     * Clear the access tokens prefetched for the current thread.
+     */
+    public static void clearPrefetchedAccessTokens() {
+
+        prefetchedAccessTokens.remove();
+    }
+
     public static String getClientIdForAccessToken(String accessTokenIdentifier) throws IdentityOAuth2Exception {
 
         AccessTokenDO accessTokenDO = getAccessTokenDOfromTokenIdentifier(accessTokenIdentifier);
@@ -2741,19 +2832,30 @@ public class OAuth2Util {
             }
 
             int tenantId = IdentityTenantUtil.getTenantId(tenantDomain);
-            Key privateKey = getPrivateKey(tenantDomain, tenantId);
-            JWSSigner signer = OAuth2Util.createJWSSigner((RSAPrivateKey) privateKey);
-            JWSHeader.Builder headerBuilder = new JWSHeader.Builder((JWSAlgorithm) signatureAlgorithm);
-            headerBuilder.keyID(getKID(getCertificate(tenantDomain, tenantId), signatureAlgorithm, tenantDomain));
-            headerBuilder.x509CertThumbprint(new Base64URL(getThumbPrint(tenantDomain, tenantId)));
-            SignedJWT signedJWT = new SignedJWT(headerBuilder.build(), jwtClaimsSet);
-            signedJWT.sign(signer);
+            JWTSigningContextCache.JWTSigningContext signingContext = JWTSigningContextCache.getInstance()
+                    .getSigningContext(tenantDomain, tenantId, signatureAlgorithm, null);
+            SignedJWT signedJWT = new SignedJWT(signingContext.getHeader(), jwtClaimsSet);
+            signedJWT.sign(signingContext.getSigner());
             return signedJWT;
         } catch (JOSEException e) {
             throw new IdentityOAuth2Exception("Error occurred while signing JWT", e);
         }
     }
 
+    /**
+     * Clear the cached private key, certificate, JWT signing contexts and JWKS response of a tenant, so that they are
+     * reloaded from the tenant's key store when they are needed next.
+     *
+     * @param tenantId Tenant id.
+     */
+    public static void clearSigningKeyMaterial(int tenantId) {
+
+        privateKeys.remove(tenantId);
+        publicCerts.remove(tenantId);
+        JWTSigningContextCache.getInstance().clear(tenantId);
+        ETagResponseCache.getJWKSResponseCache().clear(tenantId);
+    }
+
     public static Key getPrivateKey(String tenantDomain, int tenantId) throws IdentityOAuth2Exception {
 
         Key privateKey;
@@ -2903,55 +3005,67 @@ public class OAuth2Util {
      */
     public static Certificate getCertificate(String tenantDomain, int tenantId) throws IdentityOAuth2Exception {
 
-        Certificate publicCert = null;
-
-        if (!(publicCerts.containsKey(tenantId))) {
-            if (log.isDebugEnabled()) {
-                log.debug(String.format("Obtaining certificate for the tenant %s", tenantDomain));
-            }
-            try {
-                IdentityTenantUtil.initializeRegistry(tenantId, tenantDomain);
-            } catch (IdentityException e) {
-                throw new IdentityOAuth2Exception("Error occurred while loading registry for tenant " + tenantDomain,
-                        e);
+        Certificate publicCert = publicCerts.get(tenantId);
+        if (publicCert == null) {
+            publicCert = loadCertificate(tenantDomain, tenantId);
+            if (publicCert != null) {
+                publicCerts.put(tenantId, publicCert);
             }
+        }
+        return publicCert;
+    }
 
-            // get tenant's key store manager
-            KeyStoreManager tenantKSM = KeyStoreManager.getInstance(tenantId);
+    /**
+     * Load the default signing certificate of a tenant from the tenant's key store, without using the certificates
+     * cached by {@link #getCertificate(String, int)}.
+     *
+     * @param tenantDomain Tenant Domain as a String.
+     * @param tenantId     Tenant ID as an integer.
+     * @return Default Signing Certificate of the tenant domain.
+     * @throws IdentityOAuth2Exception When failed to obtain the certificate for the requested tenant.
+     */
+    public static Certificate loadCertificate(String tenantDomain, int tenantId) throws IdentityOAuth2Exception {
 
-            KeyStore keyStore = null;
-            if (!tenantDomain.equals(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME)) {
-                // derive key store name
-                String ksName = tenantDomain.trim().replace(".", "-");
-                String jksName = ksName + ".jks";
-                if (log.isDebugEnabled()) {
-                    log.debug(String.format("Loading default tenant certificate for tenant : %s from the KeyStore" +
-                            " %s", tenantDomain, ksName));
-                }
-                try {
-                    keyStore = tenantKSM.getKeyStore(jksName);
-                    publicCert = keyStore.getCertificate(tenantDomain);
-                } catch (KeyStoreException e) {
-                    throw new IdentityOAuth2Exception("Error occurred while loading public certificate for tenant: " +
-                            tenantDomain, e);
-                } catch (Exception e) {
-                    throw new IdentityOAuth2Exception("Error occurred while loading Keystore for tenant: " +
-                            tenantDomain, e);
-                }
+        Certificate publicCert;
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Obtaining certificate for the tenant %s", tenantDomain));
+        }
+        try {
+            IdentityTenantUtil.initializeRegistry(tenantId, tenantDomain);
+        } catch (IdentityException e) {
+            throw new IdentityOAuth2Exception("Error occurred while loading registry for tenant " + tenantDomain, e);
+        }
 
-            } else {
-                try {
-                    publicCert = tenantKSM.getDefaultPrimaryCertificate();
-                } catch (Exception e) {
-                    throw new IdentityOAuth2Exception("Error occurred while loading default public " +
-                            "certificate for tenant: " + tenantDomain, e);
-                }
+        // get tenant's key store manager
+        KeyStoreManager tenantKSM = KeyStoreManager.getInstance(tenantId);
+
+        KeyStore keyStore = null;
+        if (!tenantDomain.equals(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME)) {
+            // derive key store name
+            String ksName = tenantDomain.trim().replace(".", "-");
+            String jksName = ksName + ".jks";
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Loading default tenant certificate for tenant : %s from the KeyStore" +
+                        " %s", tenantDomain, ksName));
             }
-            if (publicCert != null) {
-                publicCerts.put(tenantId, publicCert);
+            try {
+                keyStore = tenantKSM.getKeyStore(jksName);
+                publicCert = keyStore.getCertificate(tenantDomain);
+            } catch (KeyStoreException e) {
+                throw new IdentityOAuth2Exception("Error occurred while loading public certificate for tenant: " +
+                        tenantDomain, e);
+            } catch (Exception e) {
+                throw new IdentityOAuth2Exception("Error occurred while loading Keystore for tenant: " +
+                        tenantDomain, e);
             }
+
         } else {
-            publicCert = publicCerts.get(tenantId);
+            try {
+                publicCert = tenantKSM.getDefaultPrimaryCertificate();
+            } catch (Exception e) {
+                throw new IdentityOAuth2Exception("Error occurred while loading default public " +
+                        "certificate for tenant: " + tenantDomain, e);
+            }
         }
         return publicCert;
     }
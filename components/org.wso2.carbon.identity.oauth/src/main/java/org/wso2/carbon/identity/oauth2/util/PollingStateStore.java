@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.base.IdentityException;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Node local store of the polling state of the flows in which a client polls the token endpoint until the user acts
+ * on the request, such as CIBA and the device authorization grant. The last poll time and the polling interval
+ * raised on slow_down responses are kept in memory and written to the database by a background flush, so that
+ * a poll which does not change the status of the request does not update the database. Several polls of a request
+ * that fall within a flush interval are written as a single update carrying the latest values.
+ * <p>
+ * The polling state read from the database is combined with the locally held state by taking the later poll time
+ * and the larger interval, hence the rate limiting of a request is the same as with synchronous updates on the node
+ * that serves its polls. Other nodes see the state once it is flushed. The state of a request is kept until the
+ * request reaches a final status or expires, and a flush only writes the values which changed since they were last
+ * written. When the store is full or disabled the state is written synchronously. Status transitions are not
+ * handled here and must be persisted by the caller, which should {@link #remove(String)} the polling state of the
+ * request once it reaches a final status.
+ */
+public class PollingStateStore {
+
+    private static final Log log = LogFactory.getLog(PollingStateStore.class);
+
+    // These config properties are defined in identity.xml
+    private static final String WRITE_BEHIND_ENABLE = "OAuth.PollingState.WriteBehind.Enable";
+    private static final String WRITE_BEHIND_FLUSH_INTERVAL = "OAuth.PollingState.WriteBehind.FlushIntervalSeconds";
+    private static final String WRITE_BEHIND_MAX_SIZE = "OAuth.PollingState.WriteBehind.MaxSize";
+
+    private static final long DEFAULT_FLUSH_INTERVAL_SECONDS = 10;
+    private static final long DEFAULT_MAX_SIZE = 100000;
+    private static final long NOT_SET = -1;
+
+    private static final List<PollingStateStore> stores = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final PollingStateWriter writer;
+    private final boolean enabled;
+    private final long flushIntervalMillis;
+    private final long maxSize;
+    private final Map<String, PollingState> pollingStates = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService scheduler;
+
+    private final AtomicLong deferredUpdateCount = new AtomicLong();
+    private final AtomicLong synchronousUpdateCount = new AtomicLong();
+    private final AtomicLong flushedUpdateCount = new AtomicLong();
+    private final AtomicLong failedUpdateCount = new AtomicLong();
+
+    /**
+     * Create a polling state store configured through identity.xml. The store is flushed and stopped with the
+     * other stores on {@link #shutdownAll()}.
+     *
+     * @param name   Name of the flow, used in logs and as the name of the flush thread.
+     * @param writer Writer that persists the polling state of a request.
+     */
+    public PollingStateStore(String name, PollingStateWriter writer) {
+
+        this(name, writer, getBooleanProperty(WRITE_BEHIND_ENABLE, true),
+                TimeUnit.SECONDS.toMillis(getLongProperty(WRITE_BEHIND_FLUSH_INTERVAL,
+                        DEFAULT_FLUSH_INTERVAL_SECONDS)), getLongProperty(WRITE_BEHIND_MAX_SIZE, DEFAULT_MAX_SIZE));
+        stores.add(this);
+    }
+
+    /**
+     * Create a polling state store. A store with a non positive flush interval is only flushed through
+     * {@link #flush()}.
+     */
+    PollingStateStore(String name, PollingStateWriter writer, boolean enabled, long flushIntervalMillis,
+                      long maxSize) {
+
+        this.name = name;
+        this.writer = writer;
+        this.enabled = enabled;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the last poll time of a request, taking the locally held poll time into account.
+     *
+     * @param key               Identifier of the request.
+     * @param persistedPollTime Last poll time read from the database.
+     * @return Last poll time of the request.
+     */
+    public Timestamp getLastPollTime(String key, Timestamp persistedPollTime) {
+
+        PollingState pollingState = getPollingState(key);
+        if (pollingState == null || pollingState.lastPollTime == NOT_SET) {
+            return persistedPollTime;
+        }
+        if (persistedPollTime != null && persistedPollTime.getTime() >= pollingState.lastPollTime) {
+            return persistedPollTime;
+        }
+        return new Timestamp(pollingState.lastPollTime);
+    }
+
+    /**
+     * Get the polling interval of a request, taking the locally held interval into account.
+     *
+     * @param key               Identifier of the request.
+     * @param persistedInterval Polling interval read from the database.
+     * @return Polling interval of the request.
+     */
+    public long getInterval(String key, long persistedInterval) {
+
+        PollingState pollingState = getPollingState(key);
+        if (pollingState == null) {
+            return persistedInterval;
+        }
+        return Math.max(persistedInterval, pollingState.interval);
+    }
+
+    /**
+     * Record the time a request was polled. The poll time is written to the database on the next flush.
+     *
+     * @param key          Identifier of the request.
+     * @param lastPollTime Time of the poll.
+     * @param expiryTime   Time in milliseconds at which the request expires, after which its state is dropped.
+     * @throws IdentityOAuth2Exception If the store could not defer the update and the synchronous update failed.
+     */
+    public void updateLastPollTime(String key, Timestamp lastPollTime, long expiryTime)
+            throws IdentityOAuth2Exception {
+
+        if (!defer(key, lastPollTime.getTime(), NOT_SET, expiryTime)) {
+            try {
+                writer.writeLastPollTime(key, lastPollTime);
+            } catch (IdentityException e) {
+                throw toOAuth2Exception(e);
+            }
+        }
+    }
+
+    /**
+     * Record the polling interval of a request. The interval is written to the database on the next flush.
+     *
+     * @param key        Identifier of the request.
+     * @param interval   Polling interval.
+     * @param expiryTime Time in milliseconds at which the request expires, after which its state is dropped.
+     * @throws IdentityOAuth2Exception If the store could not defer the update and the synchronous update failed.
+     */
+    public void updateInterval(String key, long interval, long expiryTime) throws IdentityOAuth2Exception {
+
+        if (!defer(key, NOT_SET, interval, expiryTime)) {
+            try {
+                writer.writeInterval(key, interval);
+            } catch (IdentityException e) {
+                throw toOAuth2Exception(e);
+            }
+        }
+    }
+
+    /**
+     * Drop the polling state of a request without writing it. This is called once a request reaches a final
+     * status, after which its polling state is no longer used.
+     *
+     * @param key Identifier of the request.
+     */
+    public void remove(String key) {
+
+        if (key != null) {
+            pollingStates.remove(key);
+        }
+    }
+
+    /**
+     * Write the changed polling state to the database and drop the state of expired requests. State which fails to
+     * be written is kept and retried on the next flush.
+     */
+    public void flush() {
+
+        int flushed = 0;
+        long currentTime = System.currentTimeMillis();
+        for (Map.Entry<String, PollingState> entry : pollingStates.entrySet()) {
+            String key = entry.getKey();
+            PollingState pollingState = entry.getValue();
+            if (pollingState.expiryTime <= currentTime) {
+                // The request can no longer be polled, hence its pending state is not needed either.
+                pollingStates.computeIfPresent(key, (k, current) -> current.expiryTime <= currentTime ? null :
+                        current);
+                continue;
+            }
+            if (!pollingState.pollTimeDirty && !pollingState.intervalDirty) {
+                continue;
+            }
+            long lastPollTime = pollingState.lastPollTime;
+            long interval = pollingState.interval;
+            boolean pollTimeDirty = pollingState.pollTimeDirty;
+            boolean intervalDirty = pollingState.intervalDirty;
+            try {
+                if (pollTimeDirty) {
+                    writer.writeLastPollTime(key, new Timestamp(lastPollTime));
+                    flushedUpdateCount.incrementAndGet();
+                }
+                if (intervalDirty) {
+                    writer.writeInterval(key, interval);
+                    flushedUpdateCount.incrementAndGet();
+                }
+            } catch (IdentityException e) {
+                failedUpdateCount.incrementAndGet();
+                log.error("Error while persisting the polling state of a " + name + " request. The update will be " +
+                        "retried on the next flush.", e);
+                continue;
+            }
+            flushed++;
+            // Keep the state for the next polls of the request. Values which changed while being written stay dirty
+            // and are written on the next flush.
+            pollingStates.computeIfPresent(key, (k, current) -> {
+                if (pollTimeDirty && current.lastPollTime == lastPollTime) {
+                    current.pollTimeDirty = false;
+                }
+                if (intervalDirty && current.interval == interval) {
+                    current.intervalDirty = false;
+                }
+                return current;
+            });
+        }
+        if (log.isDebugEnabled() && flushed > 0) {
+            log.debug("Flushed the polling state of " + flushed + " " + name + " requests.");
+        }
+    }
+
+    /**
+     * Stop the background flush and write the pending polling state to the database.
+     */
+    public synchronized void shutdown() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        flush();
+    }
+
+    /**
+     * Stop the background flush of all the polling state stores and write their pending state to the database.
+     */
+    public static void shutdownAll() {
+
+        for (PollingStateStore store : stores) {
+            store.shutdown();
+        }
+    }
+
+    public int size() {
+
+        return pollingStates.size();
+    }
+
+    public long getDeferredUpdateCount() {
+
+        return deferredUpdateCount.get();
+    }
+
+    public long getSynchronousUpdateCount() {
+
+        return synchronousUpdateCount.get();
+    }
+
+    public long getFlushedUpdateCount() {
+
+        return flushedUpdateCount.get();
+    }
+
+    public long getFailedUpdateCount() {
+
+        return failedUpdateCount.get();
+    }
+
+    private PollingState getPollingState(String key) {
+
+        return key == null ? null : pollingStates.get(key);
+    }
+
+    /**
+     * Merge an update into the local polling state of a request.
+     *
+     * @return false if the update has to be written synchronously.
+     */
+    private boolean defer(String key, long lastPollTime, long interval, long expiryTime) {
+
+        if (!enabled || key == null || (pollingStates.size() >= maxSize && !pollingStates.containsKey(key))) {
+            synchronousUpdateCount.incrementAndGet();
+            return false;
+        }
+        pollingStates.compute(key, (k, current) -> {
+            PollingState pollingState = current == null ? new PollingState() : current;
+            if (lastPollTime > pollingState.lastPollTime) {
+                pollingState.lastPollTime = lastPollTime;
+                pollingState.pollTimeDirty = true;
+            }
+            if (interval > pollingState.interval) {
+                pollingState.interval = interval;
+                pollingState.intervalDirty = true;
+            }
+            pollingState.expiryTime = expiryTime;
+            return pollingState;
+        });
+        deferredUpdateCount.incrementAndGet();
+        startScheduler();
+        return true;
+    }
+
+    private void startScheduler() {
+
+        if (scheduler != null || flushIntervalMillis <= 0) {
+            return;
+        }
+        synchronized (this) {
+            if (scheduler == null) {
+                ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "PollingStateStore-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flushScheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                        TimeUnit.MILLISECONDS);
+                scheduler = flushScheduler;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled flush.
+            log.error("Error while flushing the polling state of " + name + " requests.", e);
+        }
+    }
+
+    private IdentityOAuth2Exception toOAuth2Exception(IdentityException e) {
+
+        if (e instanceof IdentityOAuth2Exception) {
+            return (IdentityOAuth2Exception) e;
+        }
+        return new IdentityOAuth2Exception("Error while persisting the polling state of a " + name + " request.", e);
+    }
+
+    /**
+     * Locally held polling state of a request. The fields are only modified within a compute of the state map.
+     */
+    private static class PollingState {
+
+        private volatile long lastPollTime = NOT_SET;
+        private volatile long interval = NOT_SET;
+        private volatile boolean pollTimeDirty;
+        private volatile boolean intervalDirty;
+        private volatile long expiryTime;
+    }
+
+    /**
+     * Persists the polling state of a request of a flow.
+     */
+    public interface PollingStateWriter {
+
+        /**
+         * Persist the last poll time of a request.
+         *
+         * @param key          Identifier of the request.
+         * @param lastPollTime Last poll time.
+         * @throws IdentityException If the poll time could not be persisted.
+         */
+        void writeLastPollTime(String key, Timestamp lastPollTime) throws IdentityException;
+
+        /**
+         * Persist the polling interval of a request.
+         *
+         * @param key      Identifier of the request.
+         * @param interval Polling interval.
+         * @throws IdentityException If the interval could not be persisted.
+         */
+        void writeInterval(String key, long interval) throws IdentityException;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.validators;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2IntrospectionResponseDTO;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationRequestDTO;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Builds the introspection responses of a batch of tokens. The opaque access tokens of a batch are looked up with a
+ * single query, or taken from the OAuthCache, before they are introspected one after the other on the calling thread.
+ * Self-contained JWT access tokens do not need the lookup, so they are introspected in parallel on a bounded thread
+ * pool, in the tenant of the calling thread. Each token still goes through the validation listeners as a single
+ * introspection would, and the responses are returned in the order of the requests.
+ */
+public class BatchIntrospectionHandler {
+
+    private static final Log log = LogFactory.getLog(BatchIntrospectionHandler.class);
+
+    // These config properties are defined in identity.xml
+    private static final String BATCH_MAX_TOKENS = "OAuth.Introspection.Batch.MaxTokens";
+    private static final String BATCH_THREAD_POOL_SIZE = "OAuth.Introspection.Batch.ThreadPoolSize";
+    private static final String BATCH_TIMEOUT = "OAuth.Introspection.Batch.TimeoutSeconds";
+
+    private static final int DEFAULT_MAX_TOKENS = 100;
+    // The opaque tokens of a batch are bound to an IN clause, which is limited to 1000 elements by some databases.
+    private static final int MAX_TOKENS_LIMIT = 1000;
+    private static final int DEFAULT_THREAD_POOL_SIZE = 4;
+    private static final long DEFAULT_TIMEOUT_SECONDS = 30;
+    private static final String BEARER_TOKEN_TYPE = "bearer";
+    private static final String SERVER_ERROR_MESSAGE = "Server error occurred while building the introspection response";
+
+    private static final BatchIntrospectionHandler instance = new BatchIntrospectionHandler();
+
+    private final int maxTokens;
+    private final int threadPoolSize;
+    private final long timeoutMillis;
+    private volatile ExecutorService executor;
+
+    private BatchIntrospectionHandler() {
+
+        this((int) Math.min(getLongProperty(BATCH_MAX_TOKENS, DEFAULT_MAX_TOKENS), MAX_TOKENS_LIMIT),
+                (int) getLongProperty(BATCH_THREAD_POOL_SIZE, DEFAULT_THREAD_POOL_SIZE),
+                TimeUnit.SECONDS.toMillis(getLongProperty(BATCH_TIMEOUT, DEFAULT_TIMEOUT_SECONDS)));
+    }
+
+    BatchIntrospectionHandler(int maxTokens, int threadPoolSize, long timeoutMillis) {
+
+        this.maxTokens = maxTokens;
+        this.threadPoolSize = threadPoolSize;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static BatchIntrospectionHandler getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the maximum number of tokens accepted in a batch.
+     *
+     * @return maximum number of tokens.
+     */
+    public int getMaxTokens() {
+
+        return maxTokens;
+    }
+
+    /**
+     * Build the introspection responses of a batch of tokens.
+     *
+     * @param validationReqs Introspection requests of the batch.
+     * @param introspector   Builds the introspection response of a single request.
+     * @return Introspection responses, in the order of the requests.
+     * @throws IdentityOAuth2ClientException If the batch contains more tokens than allowed.
+     */
+    public OAuth2IntrospectionResponseDTO[] buildIntrospectionResponses(
+            OAuth2TokenValidationRequestDTO[] validationReqs,
+            Function<OAuth2TokenValidationRequestDTO, OAuth2IntrospectionResponseDTO> introspector)
+            throws IdentityOAuth2ClientException {
+
+        if (validationReqs.length > maxTokens) {
+            throw new IdentityOAuth2ClientException("Batch introspection request contains " + validationReqs.length +
+                    " tokens. The maximum allowed is " + maxTokens + ".");
+        }
+
+        OAuth2IntrospectionResponseDTO[] responses = new OAuth2IntrospectionResponseDTO[validationReqs.length];
+        List<Integer> sequentialRequests = new ArrayList<>();
+        Set<String> accessTokenIdentifiers = new LinkedHashSet<>();
+        Map<Integer, Future<OAuth2IntrospectionResponseDTO>> parallelRequests = new LinkedHashMap<>();
+        String tenantDomain = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
+
+        for (int i = 0; i < validationReqs.length; i++) {
+            OAuth2TokenValidationRequestDTO validationReq = validationReqs[i];
+            OAuth2TokenValidationRequestDTO.OAuth2AccessToken accessToken = validationReq.getAccessToken();
+            String tokenIdentifier = accessToken != null ? accessToken.getIdentifier() : null;
+            if (threadPoolSize > 0 && StringUtils.isNotBlank(tokenIdentifier) && OAuth2Util.isJWT(tokenIdentifier)) {
+                parallelRequests.put(i, getExecutor().submit(
+                        () -> introspectInTenantFlow(validationReq, introspector, tenantDomain, tenantId)));
+            } else {
+                sequentialRequests.add(i);
+                if (StringUtils.isNotBlank(tokenIdentifier) &&
+                        BEARER_TOKEN_TYPE.equalsIgnoreCase(accessToken.getTokenType())) {
+                    accessTokenIdentifiers.add(tokenIdentifier);
+                }
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Introspecting a batch of " + validationReqs.length + " tokens. Tokens introspected in " +
+                    "parallel: " + parallelRequests.size() + ", access tokens prefetched: " +
+                    accessTokenIdentifiers.size());
+        }
+
+        if (!accessTokenIdentifiers.isEmpty()) {
+            try {
+                OAuth2Util.prefetchAccessTokens(accessTokenIdentifiers);
+            } catch (IdentityOAuth2Exception e) {
+                // The tokens are then retrieved one by one while they are introspected.
+                log.error("Error occurred while prefetching the access tokens of the batch.", e);
+            }
+        }
+        try {
+            for (int i : sequentialRequests) {
+                responses[i] = introspector.apply(validationReqs[i]);
+            }
+        } finally {
+            OAuth2Util.clearPrefetchedAccessTokens();
+        }
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Map.Entry<Integer, Future<OAuth2IntrospectionResponseDTO>> parallelRequest :
+                parallelRequests.entrySet()) {
+            Future<OAuth2IntrospectionResponseDTO> future = parallelRequest.getValue();
+            try {
+                responses[parallelRequest.getKey()] = future.get(Math.max(deadline - System.currentTimeMillis(), 0),
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                responses[parallelRequest.getKey()] = buildErrorResponse();
+            } catch (ExecutionException | TimeoutException e) {
+                log.error("Error occurred while building the introspection response of a token in the batch.", e);
+                future.cancel(true);
+                responses[parallelRequest.getKey()] = buildErrorResponse();
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Shut down the threads introspecting the tokens in parallel.
+     */
+    public synchronized void stop() {
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private ExecutorService getExecutor() {
+
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    // Once the queue is full the calling thread introspects the token itself, which bounds the
+                    // backlog under load.
+                    executor = new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 0L, TimeUnit.MILLISECONDS,
+                            new LinkedBlockingQueue<>(maxTokens), runnable -> {
+                                Thread thread = new Thread(runnable,
+                                        "BatchIntrospectionHandler-" + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            }, new ThreadPoolExecutor.CallerRunsPolicy());
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static OAuth2IntrospectionResponseDTO introspectInTenantFlow(
+            OAuth2TokenValidationRequestDTO validationReq,
+            Function<OAuth2TokenValidationRequestDTO, OAuth2IntrospectionResponseDTO> introspector,
+            String tenantDomain, int tenantId) {
+
+        PrivilegedCarbonContext.startTenantFlow();
+        try {
+            PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+            carbonContext.setTenantDomain(tenantDomain);
+            carbonContext.setTenantId(tenantId);
+            return introspector.apply(validationReq);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    private static OAuth2IntrospectionResponseDTO buildErrorResponse() {
+
+        OAuth2IntrospectionResponseDTO errRespDTO = new OAuth2IntrospectionResponseDTO();
+        errRespDTO.setActive(false);
+        errRespDTO.setError(SERVER_ERROR_MESSAGE);
+        return errRespDTO;
+    }
+}
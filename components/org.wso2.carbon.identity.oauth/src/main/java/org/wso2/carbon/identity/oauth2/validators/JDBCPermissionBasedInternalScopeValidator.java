@@ -24,6 +24,7 @@ import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.base.MultitenantConstants;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.identity.application.authentication.framework.exception.UserIdNotFoundException;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
@@ -53,12 +54,13 @@ import org.wso2.carbon.user.api.UserStoreException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static org.wso2.carbon.identity.oauth2.Oauth2ScopeConstants.INTERNAL_SCOPE_PREFIX;
 import static org.wso2.carbon.identity.oauth2.Oauth2ScopeConstants.SYSTEM_SCOPE;
@@ -77,6 +79,9 @@ public class JDBCPermissionBasedInternalScopeValidator {
     private static final String ADMIN_PERMISSION_ROOT = "/permission/admin";
     private static final String EVERYONE_PERMISSION = "everyone_permission";
     private static final String ATTRIBUTE_SEPARATOR = FrameworkUtils.getMultiAttributeSeparator();
+    // System level scopes are shared by all tenants, hence indexed under a key which is not a valid tenant id.
+    private static final int SYSTEM_SCOPES_INDEX_KEY = MultitenantConstants.INVALID_TENANT_ID;
+    private static final Map<Integer, PermissionScopeIndex> permissionScopeIndexes = new ConcurrentHashMap<>();
 
     public String[] validateScope(OAuthTokenReqMessageContext tokReqMsgCtx) {
 
@@ -187,39 +192,16 @@ public class JDBCPermissionBasedInternalScopeValidator {
             } else {
                 allowedUIResourcesForUser = getAllowedUIResourcesOfUser(authenticatedUser, authorizationManager);
             }
-            Set<Scope> allScopes = getScopesOfPermissionType(tenantId);
+            PermissionScopeIndex scopeIndex = getPermissionScopeIndex(tenantId);
             if (ArrayUtils.contains(allowedUIResourcesForUser, ROOT) || ArrayUtils.contains(allowedUIResourcesForUser,
                     PERMISSION_ROOT)) {
-                return new ArrayList<>(allScopes);
+                return new ArrayList<>(scopeIndex.getScopes());
             } else if (ArrayUtils.contains(allowedUIResourcesForUser, ADMIN_PERMISSION_ROOT)) {
-                return new ArrayList<>(getAdminAllowedScopes(allScopes, requestedScopes));
+                return new ArrayList<>(getAdminAllowedScopes(new HashSet<>(scopeIndex.getScopes()), requestedScopes));
             }
 
-            for (Scope scope : allScopes) {
-                if (!isSystemScope && !ArrayUtils.contains(requestedScopes, scope.getName())) {
-                    continue;
-                }
-                List<ScopeBinding> bindings = scope.getScopeBindings();
-                boolean isScopeAllowed = true;
-                for (ScopeBinding scopeBinding : bindings) {
-                    if (PERMISSION_BINDING_TYPE.equalsIgnoreCase(scopeBinding.getBindingType())) {
-                        for (String binding : scopeBinding.getBindings()) {
-                            boolean isAllowed = false;
-                            for (String allowedScope : allowedUIResourcesForUser) {
-                                if ((binding + "/").startsWith(allowedScope + "/")) {
-                                    isAllowed = true;
-                                    break;
-                                }
-                            }
-                            if (!isAllowed) {
-                                isScopeAllowed = false;
-                                break;
-                            }
-                        }
-                    }
-                }
-
-                if (isScopeAllowed) {
+            for (Scope scope : scopeIndex.getAllowedScopes(allowedUIResourcesForUser)) {
+                if (isSystemScope || ArrayUtils.contains(requestedScopes, scope.getName())) {
                     userAllowedScopes.add(scope);
                 }
             }
@@ -334,26 +316,59 @@ public class JDBCPermissionBasedInternalScopeValidator {
         return (String[]) ArrayUtils.add(allowedUIResourcesForUser, EVERYONE_PERMISSION);
     }
 
-    private Set<Scope> getScopesOfPermissionType(int tenantId) throws IdentityOAuth2ScopeServerException {
+    /**
+     * Remove the permission scope index of a tenant, e.g. when the tenant is deleted or deactivated.
+     *
+     * @param tenantId Tenant id.
+     */
+    public static void clearPermissionScopeIndex(int tenantId) {
+
+        permissionScopeIndexes.remove(tenantId);
+    }
+
+    /**
+     * Get the index of the permission bound scopes of the tenant. The index is rebuilt when the loaded scopes differ
+     * from the scopes it was built from, which happens once the scope binding cache entry of the tenant is cleared on
+     * a scope change.
+     *
+     * @param tenantId Tenant id.
+     * @return Permission scope index.
+     * @throws IdentityOAuth2ScopeServerException If the scopes could not be retrieved.
+     */
+    private PermissionScopeIndex getPermissionScopeIndex(int tenantId) throws IdentityOAuth2ScopeServerException {
 
         if (Oauth2ScopeUtils.isSystemLevelInternalSystemScopeManagementEnabled()) {
             List<Scope> oauthScopeBinding = OAuth2ServiceComponentHolder.getInstance().getOauthScopeBinding();
-            return new HashSet<>(oauthScopeBinding);
+            PermissionScopeIndex scopeIndex = permissionScopeIndexes.get(SYSTEM_SCOPES_INDEX_KEY);
+            if (scopeIndex == null || !scopeIndex.isBuiltFrom(oauthScopeBinding)) {
+                scopeIndex = PermissionScopeIndex.build(oauthScopeBinding);
+                permissionScopeIndexes.put(SYSTEM_SCOPES_INDEX_KEY, scopeIndex);
+            }
+            return scopeIndex;
         }
         Scope[] scopesFromCache = OAuthScopeBindingCache.getInstance()
                 .getValueFromCache(new OAuthScopeBindingCacheKey(PERMISSION_BINDING_TYPE), tenantId);
-        Set<Scope> allScopes;
-        if (scopesFromCache != null) {
-            allScopes = Arrays.stream(scopesFromCache).collect(Collectors.toSet());
-        } else {
-            allScopes = OAuthTokenPersistenceFactory.getInstance().getOAuthScopeDAO().getScopes(tenantId,
+        if (scopesFromCache == null) {
+            Set<Scope> allScopes = OAuthTokenPersistenceFactory.getInstance().getOAuthScopeDAO().getScopes(tenantId,
                     PERMISSION_BINDING_TYPE);
-            if (CollectionUtils.isNotEmpty(allScopes)) {
-                OAuthScopeBindingCache.getInstance().addToCache(new OAuthScopeBindingCacheKey(PERMISSION_BINDING_TYPE
-                ), allScopes.toArray(new Scope[0]), tenantId);
+            if (CollectionUtils.isEmpty(allScopes)) {
+                return PermissionScopeIndex.build(allScopes == null ? Collections.emptySet() : allScopes);
+            }
+            scopesFromCache = allScopes.toArray(new Scope[0]);
+            OAuthScopeBindingCache.getInstance().addToCache(new OAuthScopeBindingCacheKey(PERMISSION_BINDING_TYPE
+            ), scopesFromCache, tenantId);
+        }
+        PermissionScopeIndex scopeIndex = permissionScopeIndexes.get(tenantId);
+        if (scopeIndex == null || !scopeIndex.isBuiltFrom(scopesFromCache)) {
+            // Concurrent rebuilds are harmless as the resulting indexes are identical.
+            scopeIndex = PermissionScopeIndex.build(scopesFromCache);
+            permissionScopeIndexes.put(tenantId, scopeIndex);
+            if (log.isDebugEnabled()) {
+                log.debug("Permission scope index rebuilt with " + scopesFromCache.length + " scopes for tenant: "
+                        + tenantId);
             }
         }
-        return allScopes;
+        return scopeIndex;
     }
 
     private void startTenantFlow(String tenantDomain, int tenantId) {
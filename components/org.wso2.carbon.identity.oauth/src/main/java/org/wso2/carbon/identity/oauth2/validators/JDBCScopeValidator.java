@@ -43,12 +43,15 @@ import org.wso2.carbon.identity.oauth.IdentityOAuthAdminException;
 import org.wso2.carbon.identity.oauth.cache.CacheEntry;
 import org.wso2.carbon.identity.oauth.cache.OAuthCache;
 import org.wso2.carbon.identity.oauth.cache.OAuthCacheKey;
+import org.wso2.carbon.identity.oauth.cache.OAuthScopeCache;
+import org.wso2.carbon.identity.oauth.cache.OAuthScopeCacheKey;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2ScopeServerException;
 import org.wso2.carbon.identity.oauth2.OAuth2Constants;
 import org.wso2.carbon.identity.oauth2.authz.OAuthAuthzReqMessageContext;
 import org.wso2.carbon.identity.oauth2.bean.Scope;
+import org.wso2.carbon.identity.oauth2.bean.ScopeBinding;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
@@ -63,6 +66,7 @@ import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -181,7 +185,8 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
                 return false;
             }
 
-            return isUserAuthorizedForScope(resourceScope, userRoles, tenantId);
+            return isUserAuthorizedForScope(resourceScope, getRolesOfScope(resourceScope, tenantId),
+                    new HashSet<>(Arrays.asList(userRoles)));
 
         } catch (UserStoreException e) {
             //Log and return since we do not want to stop issuing the token in case of scope validation failures.
@@ -220,23 +225,28 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
     private boolean validateScope(String[] requestedScopes, AuthenticatedUser user, String clientId)
             throws UserStoreException, IdentityOAuth2Exception {
 
-        // Remove openid scope from the list if available
-        requestedScopes = (String[]) ArrayUtils.removeElement(requestedScopes, OPENID);
-
-        // Remove OIDC scopes from the list if exists.
+        // Remove openid and OIDC scopes from the list if exists.
+        Set<String> oidcScopes;
         try {
-            String[] oidcScopes = OAuth2ServiceComponentHolder.getInstance().getOAuthAdminService().getScopeNames();
-            for (String oidcScope : oidcScopes) {
-                requestedScopes = (String[]) ArrayUtils.removeElement(requestedScopes, oidcScope);
-            }
-
+            oidcScopes = new HashSet<>(Arrays.asList(
+                    OAuth2ServiceComponentHolder.getInstance().getOAuthAdminService().getScopeNames()));
         } catch (IdentityOAuthAdminException e) {
             log.error("Unable to obtain OIDC scopes list.");
             return false;
         }
+        oidcScopes.add(OPENID);
+
+        List<String> scopesToValidate = new ArrayList<>();
+        if (requestedScopes != null) {
+            for (String scope : requestedScopes) {
+                if (!oidcScopes.contains(scope)) {
+                    scopesToValidate.add(scope);
+                }
+            }
+        }
 
         //If the token is not requested for specific scopes, return true
-        if (ArrayUtils.isEmpty(requestedScopes)) {
+        if (scopesToValidate.isEmpty()) {
             return true;
         }
 
@@ -266,22 +276,31 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
         } else {
             userRoles = getUserRoles(user);
         }
-        if (ArrayUtils.isNotEmpty(userRoles)) {
-            for (String scope : requestedScopes) {
-                if (!isScopeValid(scope, tenantId)) {
-                    // If the scope is not registered return false.
-                    log.error("Requested scope " + scope + " is invalid");
-                    return false;
-                }
-                if (!isUserAuthorizedForScope(scope, userRoles, tenantId)) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("User " + user.getLoggableUserId() + "in not authorised for scope " + scope);
-                    }
-                    return false;
+        if (ArrayUtils.isEmpty(userRoles)) {
+            return false;
+        }
+
+        // Resolve all the requested scopes first so that the user is authorized in a single in-memory pass.
+        Map<String, Set<String>> rolesOfScopes = new HashMap<>();
+        for (String scope : scopesToValidate) {
+            Scope registeredScope = getScope(scope, tenantId);
+            if (registeredScope == null) {
+                // If the scope is not registered return false.
+                log.error("Requested scope " + scope + " is invalid");
+                return false;
+            }
+            rolesOfScopes.put(scope, getRolesOfScope(registeredScope));
+        }
+
+        Set<String> userRoleSet = new HashSet<>(Arrays.asList(userRoles));
+        for (Map.Entry<String, Set<String>> rolesOfScope : rolesOfScopes.entrySet()) {
+            if (!isUserAuthorizedForScope(rolesOfScope.getKey(), rolesOfScope.getValue(), userRoleSet)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("User " + user.getLoggableUserId() + "in not authorised for scope " +
+                            rolesOfScope.getKey());
                 }
+                return false;
             }
-        } else {
-            return false;
         }
         return true;
     }
@@ -356,24 +375,62 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
         return SCOPE_VALIDATOR_NAME;
     }
 
-    private boolean isScopeValid(String scopeName, int tenantId) {
-
-        Scope scope = null;
+    /**
+     * Get a registered OAuth2 scope, reading through the {@link OAuthScopeCache} so that the scope and its bindings
+     * are loaded from the database only once until the scope is changed.
+     *
+     * @param scopeName Name of the scope.
+     * @param tenantId  Tenant id.
+     * @return Scope or null if the scope is not registered or could not be retrieved.
+     */
+    private Scope getScope(String scopeName, int tenantId) {
 
+        OAuthScopeCacheKey cacheKey = new OAuthScopeCacheKey(scopeName);
+        Scope scope = OAuthScopeCache.getInstance().getValueFromCache(cacheKey, tenantId);
+        if (scope != null) {
+            return scope;
+        }
         try {
             scope = OAuthTokenPersistenceFactory.getInstance().getOAuthScopeDAO().getScopeByName(scopeName, tenantId);
         } catch (IdentityOAuth2ScopeServerException e) {
             log.error("Error while retrieving scope with name :" + scopeName);
+            return null;
         }
-
-        return scope != null;
+        if (scope != null) {
+            OAuthScopeCache.getInstance().addToCache(cacheKey, scope, tenantId);
+        }
+        return scope;
     }
 
-    private boolean isUserAuthorizedForScope(String scopeName, String[] userRoles, int tenantId)
-            throws IdentityOAuth2Exception {
+    private Set<String> getRolesOfScope(String scopeName, int tenantId) throws IdentityOAuth2Exception {
 
-        Set<String> rolesOfScope = OAuthTokenPersistenceFactory.getInstance().getOAuthScopeDAO().
+        Scope scope = getScope(scopeName, tenantId);
+        if (scope != null) {
+            return getRolesOfScope(scope);
+        }
+        // The resource scope may not be an OAuth2 scope, hence fall back to the bindings of any scope by the name.
+        return OAuthTokenPersistenceFactory.getInstance().getOAuthScopeDAO().
                 getBindingsOfScopeByScopeName(scopeName, tenantId);
+    }
+
+    private Set<String> getRolesOfScope(Scope scope) {
+
+        Set<String> rolesOfScope = new HashSet<>();
+        if (scope.getScopeBindings() != null) {
+            for (ScopeBinding scopeBinding : scope.getScopeBindings()) {
+                if (scopeBinding.getBindings() != null) {
+                    for (String binding : scopeBinding.getBindings()) {
+                        if (StringUtils.isNotEmpty(binding)) {
+                            rolesOfScope.add(binding);
+                        }
+                    }
+                }
+            }
+        }
+        return rolesOfScope;
+    }
+
+    private boolean isUserAuthorizedForScope(String scopeName, Set<String> rolesOfScope, Set<String> userRoles) {
 
         if (CollectionUtils.isEmpty(rolesOfScope)) {
             if (log.isDebugEnabled()) {
@@ -388,7 +445,7 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
             log.debug(logMessage.toString());
         }
 
-        if (ArrayUtils.isEmpty(userRoles)) {
+        if (CollectionUtils.isEmpty(userRoles)) {
             if (log.isDebugEnabled()) {
                 log.debug("User does not have required roles for scope " + scopeName);
             }
@@ -396,23 +453,20 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
         }
 
         //Check if the user still has a valid role for this scope.
-        Set<String> scopeRoles = new HashSet<>(rolesOfScope);
-        rolesOfScope.retainAll(Arrays.asList(userRoles));
-
-        if (rolesOfScope.isEmpty()) {
-            // when the role is an internal one, check if the user has valid role
-            boolean validInternalUserRole = validateInternalUserRoles(scopeRoles, userRoles);
-
-            if (validInternalUserRole) {
+        for (String role : rolesOfScope) {
+            if (userRoles.contains(role)) {
                 return true;
             }
-            if (log.isDebugEnabled()) {
-                log.debug("User does not have required roles for scope " + scopeName);
-            }
-            return false;
         }
 
-        return true;
+        // when the role is an internal one, check if the user has valid role
+        if (validateInternalUserRoles(rolesOfScope, userRoles)) {
+            return true;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("User does not have required roles for scope " + scopeName);
+        }
+        return false;
     }
 
     /**
@@ -421,7 +475,7 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
      * @param userRoles user roles
      * @return
      */
-    private boolean validateInternalUserRoles(Set<String> scopeRoles,  String[] userRoles) {
+    private boolean validateInternalUserRoles(Set<String> scopeRoles, Set<String> userRoles) {
         for (String role : scopeRoles) {
             int index = role.indexOf(CarbonConstants.DOMAIN_SEPARATOR);
             if (index > 0) {
@@ -446,6 +500,15 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
 
         RealmService realmService = OAuthComponentServiceHolder.getInstance().getRealmService();
         int tenantId = getTenantId(user);
+        UserRolesCache userRolesCache = UserRolesCache.getInstance();
+        userRoles = userRolesCache.getRoles(tenantId, user.getUserStoreDomain(), user.getUserName());
+        if (userRoles != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Found cached roles of user " + user.getLoggableUserId() + " " +
+                        String.join(",", userRoles));
+            }
+            return userRoles;
+        }
         try {
             if (tenantId != MultitenantConstants.SUPER_TENANT_ID) {
                 PrivilegedCarbonContext.startTenantFlow();
@@ -463,6 +526,7 @@ public class JDBCScopeValidator extends OAuth2ScopeValidator {
             }
         }
 
+        userRolesCache.putRoles(tenantId, user.getUserStoreDomain(), user.getUserName(), userRoles);
         if (ArrayUtils.isNotEmpty(userRoles)) {
             if (log.isDebugEnabled()) {
                 String logMessage = "Found roles of user " + user.getLoggableUserId() + " "
@@ -28,12 +28,16 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.application.common.model.FederatedAuthenticatorConfig;
 import org.wso2.carbon.identity.application.common.model.IdentityProvider;
 import org.wso2.carbon.identity.application.common.util.IdentityApplicationConstants;
 import org.wso2.carbon.identity.application.common.util.IdentityApplicationManagementUtil;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.util.BoundedTTLCache;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.idp.mgt.IdentityProviderManagementException;
 import org.wso2.carbon.idp.mgt.IdentityProviderManager;
@@ -43,12 +47,23 @@ import java.security.PublicKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPublicKey;
+import java.sql.Timestamp;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getIntProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
 
 /**
- * JWT Access token validator
+ * JWT Access token validator.
+ * <p>
+ * When local validation is enabled, self-contained access tokens are validated purely from the JWT: the signature is
+ * verified with the cached certificate of the tenant's resident identity provider, the expiry, audience and scopes
+ * are taken from the claims and revocation is checked against the {@link RevokedJWTRegistry}. Neither the database nor
+ * the OAuth cache is consulted, hence the introspection of such tokens is bound by CPU only.
  */
 public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
 
@@ -58,6 +73,24 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
     private static final String OIDC_IDP_ENTITY_ID = "IdPEntityId";
     private static final String DOT_SEPARATOR = ".";
     private static final String TRUE = "true";
+    private static final String CLIENT_ID = "client_id";
+    private static final String AUTHORIZATION_PARTY = "azp";
+    private static final String SCOPE = "scope";
+    private static final String KEY_SEPARATOR = ":";
+
+    // These config properties are defined in identity.xml
+    private static final String ENABLE_LOCAL_VALIDATION = "OAuth.LocalJWTTokenValidation.Enable";
+    private static final String VALIDATION_KEY_CACHE_TIMEOUT =
+            "OAuth.LocalJWTTokenValidation.KeyCacheTimeoutSeconds";
+    private static final String VALIDATION_KEY_CACHE_SIZE = "OAuth.LocalJWTTokenValidation.KeyCacheSize";
+    private static final long DEFAULT_VALIDATION_KEY_CACHE_TIMEOUT_SECONDS = 900;
+    private static final int DEFAULT_VALIDATION_KEY_CACHE_SIZE = 100;
+
+    // Keys are only added once a token signed with them has been verified, hence the cache holds genuine keys only.
+    private static final BoundedTTLCache<String, ValidationKey> validationKeys = new BoundedTTLCache<>(
+            getIntProperty(VALIDATION_KEY_CACHE_SIZE, DEFAULT_VALIDATION_KEY_CACHE_SIZE),
+            TimeUnit.SECONDS.toMillis(getLongProperty(VALIDATION_KEY_CACHE_TIMEOUT,
+                    DEFAULT_VALIDATION_KEY_CACHE_TIMEOUT_SECONDS)));
 
     @Override
     public boolean validateAccessToken(OAuth2TokenValidationMessageContext validationReqDTO)
@@ -78,6 +111,10 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
                 return false;
             }
 
+            if (isLocalValidationEnabled()) {
+                return validateLocally(validationReqDTO, signedJWT, claimsSet);
+            }
+
             IdentityProvider identityProvider = getResidentIDPForIssuer(claimsSet.getIssuer());
 
             if (!validateSignature(signedJWT, identityProvider)) {
@@ -100,6 +137,38 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
         return "JWT";
     }
 
+    /**
+     * Check whether self-contained access tokens are validated locally, without looking up the persisted token.
+     * Revocations are then only known through the node local {@link RevokedJWTRegistry}, hence a token revoked on
+     * another node or before a restart may be accepted until it expires.
+     *
+     * @return true if local validation is enabled.
+     */
+    public static boolean isLocalValidationEnabled() {
+
+        return getBooleanProperty(ENABLE_LOCAL_VALIDATION, false);
+    }
+
+    /**
+     * Clear the cached certificates and issuers used to validate tokens locally. This needs to be invoked when the
+     * key store or the resident identity provider of a tenant changes.
+     */
+    public static void clearValidationKeys() {
+
+        validationKeys.clear();
+    }
+
+    /**
+     * Clear the cached certificates and issuers of the given tenant, which are used to validate its tokens locally.
+     *
+     * @param tenantDomain Tenant domain.
+     */
+    public static void clearValidationKeys(String tenantDomain) {
+
+        String keyPrefix = tenantDomain + KEY_SEPARATOR;
+        validationKeys.removeIf(key -> key.startsWith(keyPrefix));
+    }
+
     /**
      * The default implementation resolves one certificate to Identity Provider and ignores the JWT header.
      * Override this method, to resolve and enforce the certificate in any other way
@@ -134,8 +203,17 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
 
     private IdentityProvider getResidentIDPForIssuer(String jwtIssuer) throws IdentityOAuth2Exception {
 
+        IdentityProvider residentIdentityProvider = getResidentIDP();
+        String issuer = getResidentIDPIssuer(residentIdentityProvider);
+        if (!jwtIssuer.equals(issuer)) {
+            throw new IdentityOAuth2Exception("No Registered IDP found for the token with issuer name : " + jwtIssuer);
+        }
+        return residentIdentityProvider;
+    }
+
+    private IdentityProvider getResidentIDP() throws IdentityOAuth2Exception {
+
         String tenantDomain = getTenantDomain();
-        String issuer = StringUtils.EMPTY;
         IdentityProvider residentIdentityProvider;
         try {
             residentIdentityProvider = IdentityProviderManager.getInstance().getResidentIdP(tenantDomain);
@@ -144,6 +222,12 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
                     String.format("Error while getting Resident Identity Provider of '%s' tenant.", tenantDomain);
             throw new IdentityOAuth2Exception(errorMsg, e);
         }
+        return residentIdentityProvider;
+    }
+
+    private String getResidentIDPIssuer(IdentityProvider residentIdentityProvider) {
+
+        String issuer = StringUtils.EMPTY;
         FederatedAuthenticatorConfig[] fedAuthnConfigs = residentIdentityProvider.getFederatedAuthenticatorConfigs();
         FederatedAuthenticatorConfig oauthAuthenticatorConfig =
                 IdentityApplicationManagementUtil.getFederatedAuthenticator(fedAuthnConfigs,
@@ -152,25 +236,30 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
             issuer = IdentityApplicationManagementUtil.getProperty(oauthAuthenticatorConfig.getProperties(),
                     OIDC_IDP_ENTITY_ID).getValue();
         }
-
-        if (!jwtIssuer.equals(issuer)) {
-            throw new IdentityOAuth2Exception("No Registered IDP found for the token with issuer name : " + jwtIssuer);
-        }
-        return residentIdentityProvider;
+        return issuer;
     }
 
     private boolean validateSignature(SignedJWT signedJWT, IdentityProvider idp)
             throws JOSEException, IdentityOAuth2Exception {
 
+        JWSVerifier verifier = getVerifier(signedJWT.getHeader(), idp);
+        boolean isValid = signedJWT.verify(verifier);
+        if (log.isDebugEnabled()) {
+            log.debug("Signature verified: " + isValid);
+        }
+        return isValid;
+    }
+
+    private JWSVerifier getVerifier(JWSHeader header, IdentityProvider idp) throws IdentityOAuth2Exception {
+
         JWSVerifier verifier = null;
-        JWSHeader header = signedJWT.getHeader();
         X509Certificate x509Certificate = resolveSignerCertificate(header, idp);
         if (x509Certificate == null) {
             throw new IdentityOAuth2Exception("Unable to locate certificate for Identity Provider: " + idp
                     .getDisplayName());
         }
 
-        String alg = signedJWT.getHeader().getAlgorithm().getName();
+        String alg = header.getAlgorithm().getName();
         if (StringUtils.isEmpty(alg)) {
             throw new IdentityOAuth2Exception("Algorithm must not be null.");
 
@@ -195,12 +284,7 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
                 throw new IdentityOAuth2Exception("Could not create a signature verifier for algorithm type: " + alg);
             }
         }
-
-        boolean isValid = signedJWT.verify(verifier);
-        if (log.isDebugEnabled()) {
-            log.debug("Signature verified: " + isValid);
-        }
-        return isValid;
+        return verifier;
     }
 
     private boolean checkExpirationTime(Date expirationTime) {
@@ -288,4 +372,154 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
         validationReqDTO.addProperty(OAuth2Util.AUD, String.join(",", claimsSet.getAudience()));
         validationReqDTO.addProperty(OAuth2Util.JTI, claimsSet.getJWTID());
     }
+
+    private boolean validateLocally(OAuth2TokenValidationMessageContext validationReqDTO, SignedJWT signedJWT,
+                                    JWTClaimsSet claimsSet) throws IdentityOAuth2Exception, JOSEException {
+
+        String validationKeyCacheKey = getValidationKeyCacheKey(signedJWT.getHeader());
+        ValidationKey validationKey = validationKeys.get(validationKeyCacheKey);
+        boolean isCachedValidationKey = validationKey != null;
+        if (!isCachedValidationKey) {
+            validationKey = resolveValidationKey(signedJWT.getHeader());
+        }
+        if (!claimsSet.getIssuer().equals(validationKey.issuer)) {
+            throw new IdentityOAuth2Exception("No Registered IDP found for the token with issuer name : " +
+                    claimsSet.getIssuer());
+        }
+        if (!signedJWT.verify(validationKey.verifier)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Signature verification failed for the token with jti: " + claimsSet.getJWTID());
+            }
+            return false;
+        }
+        if (!isCachedValidationKey) {
+            // The header the cache key is built from is covered by the verified signature.
+            validationKeys.put(validationKeyCacheKey, validationKey);
+            if (log.isDebugEnabled()) {
+                log.debug("JWT validation key cached for tenant: " + getTenantDomain());
+            }
+        }
+        if (!checkExpirationTime(claimsSet.getExpirationTime())) {
+            return false;
+        }
+        checkNotBeforeTime(claimsSet.getNotBeforeTime());
+
+        String clientId = getClientId(claimsSet);
+        if (StringUtils.isEmpty(clientId) || !claimsSet.getAudience().contains(clientId)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Audience of the token with jti: " + claimsSet.getJWTID() + " does not contain the " +
+                        "client id: " + clientId);
+            }
+            return false;
+        }
+        if (RevokedJWTRegistry.getInstance().isRevoked(claimsSet.getJWTID())) {
+            if (log.isDebugEnabled()) {
+                log.debug("Token with jti: " + claimsSet.getJWTID() + " has been revoked.");
+            }
+            return false;
+        }
+
+        setJWTMessageContext(validationReqDTO, claimsSet);
+        setLocalValidationMessageContext(validationReqDTO, claimsSet, clientId);
+        return true;
+    }
+
+    /**
+     * Build the key under which the validation key of the current tenant for the certificate referred by the header
+     * is cached.
+     */
+    private String getValidationKeyCacheKey(JWSHeader header) {
+
+        String certificateReference = header.getX509CertThumbprint() != null ?
+                header.getX509CertThumbprint().toString() : StringUtils.defaultString(header.getKeyID());
+        return getTenantDomain() + KEY_SEPARATOR + header.getAlgorithm().getName() + KEY_SEPARATOR +
+                certificateReference;
+    }
+
+    /**
+     * Resolve the issuer and the signature verifier of the current tenant for the certificate referred by the header
+     * through the resident identity provider.
+     */
+    private ValidationKey resolveValidationKey(JWSHeader header) throws IdentityOAuth2Exception {
+
+        IdentityProvider residentIdentityProvider = getResidentIDP();
+        return new ValidationKey(getResidentIDPIssuer(residentIdentityProvider),
+                getVerifier(header, residentIdentityProvider));
+    }
+
+    private String getClientId(JWTClaimsSet claimsSet) throws IdentityOAuth2Exception {
+
+        try {
+            String clientId = claimsSet.getStringClaim(CLIENT_ID);
+            if (clientId == null) {
+                clientId = claimsSet.getStringClaim(AUTHORIZATION_PARTY);
+            }
+            return clientId;
+        } catch (ParseException e) {
+            throw new IdentityOAuth2Exception("Error while reading the client id of the token.", e);
+        }
+    }
+
+    /**
+     * Add the token attributes, which are otherwise read from the persisted token, to the message context. The
+     * attributes are set as those of a remote access token so that the introspection response is built from them, and
+     * an access token built from the claims is added for the scope validators of the application.
+     */
+    private void setLocalValidationMessageContext(OAuth2TokenValidationMessageContext validationReqDTO,
+                                                  JWTClaimsSet claimsSet, String clientId)
+            throws IdentityOAuth2Exception {
+
+        String scope;
+        String authorizedUserType;
+        try {
+            scope = claimsSet.getStringClaim(SCOPE);
+            authorizedUserType = claimsSet.getStringClaim(OAuthConstants.AUTHORIZED_USER_TYPE);
+        } catch (ParseException e) {
+            throw new IdentityOAuth2Exception("Error while reading the claims of the token.", e);
+        }
+        long expiryTime = claimsSet.getExpirationTime().getTime();
+        long issuedTime = claimsSet.getIssueTime() != null ? claimsSet.getIssueTime().getTime() :
+                System.currentTimeMillis();
+
+        validationReqDTO.addProperty(OAuth2Util.REMOTE_ACCESS_TOKEN, TRUE);
+        validationReqDTO.addProperty(OAuth2Util.EXP, String.valueOf(expiryTime / 1000));
+        validationReqDTO.addProperty(OAuth2Util.IAT, String.valueOf(issuedTime / 1000));
+        validationReqDTO.addProperty(OAuth2Util.USERNAME, claimsSet.getSubject());
+        validationReqDTO.addProperty(OAuth2Util.CLIENT_ID, clientId);
+        if (scope != null) {
+            validationReqDTO.addProperty(OAuth2Util.SCOPE, scope);
+        }
+        if (claimsSet.getNotBeforeTime() != null) {
+            validationReqDTO.addProperty(OAuth2Util.NBF,
+                    String.valueOf(claimsSet.getNotBeforeTime().getTime() / 1000));
+        }
+
+        AccessTokenDO accessTokenDO = new AccessTokenDO();
+        accessTokenDO.setAccessToken(validationReqDTO.getRequestDTO().getAccessToken().getIdentifier());
+        accessTokenDO.setTokenId(claimsSet.getJWTID());
+        accessTokenDO.setConsumerKey(clientId);
+        accessTokenDO.setScope(OAuth2Util.buildScopeArray(scope));
+        accessTokenDO.setAuthzUser(AuthenticatedUser
+                .createLocalAuthenticatedUserFromSubjectIdentifier(claimsSet.getSubject()));
+        accessTokenDO.setTokenType(authorizedUserType);
+        accessTokenDO.setTokenState(OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+        accessTokenDO.setIssuedTime(new Timestamp(issuedTime));
+        accessTokenDO.setValidityPeriodInMillis(expiryTime - issuedTime);
+        validationReqDTO.addProperty(OAuthConstants.ACCESS_TOKEN_DO, accessTokenDO);
+    }
+
+    /**
+     * Issuer and signature verifier of a tenant's resident identity provider.
+     */
+    private static class ValidationKey {
+
+        private final String issuer;
+        private final JWSVerifier verifier;
+
+        private ValidationKey(String issuer, JWSVerifier verifier) {
+
+            this.issuer = issuer;
+            this.verifier = verifier;
+        }
+    }
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.validators;
+
+import org.wso2.carbon.identity.oauth2.bean.Scope;
+import org.wso2.carbon.identity.oauth2.bean.ScopeBinding;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Index of the permission bound scopes of a tenant, used to find the scopes a user is allowed to request from the
+ * permissions of the user.
+ * <p>
+ * A scope is allowed when each of its permission bindings is granted, either directly or through one of its parent
+ * permissions. The permission paths of the bindings are kept in a trie keyed by path segment, where each binding node
+ * lists the scopes that require it. The scopes allowed for a user are found by walking the trie once for each of the
+ * user's permissions and counting, for each scope under the reached sub trees, how many of its bindings are granted.
+ * This avoids matching every binding of every scope against every permission of the user.
+ * <p>
+ * An index is immutable and built from the scopes loaded for a tenant. It is rebuilt whenever the loaded scopes differ
+ * in content from the scopes it was built from, i.e. after a scope is added, updated or deleted.
+ */
+public class PermissionScopeIndex {
+
+    private static final String PERMISSION_BINDING_TYPE = "PERMISSION";
+    private static final String PATH_SEPARATOR = "/";
+
+    private final Object source;
+    private final List<Scope> scopes;
+    private final List<Scope> unconditionalScopes = new ArrayList<>();
+    private final int[] requiredPermissionCounts;
+    private final Node root = new Node();
+
+    private PermissionScopeIndex(Object source, Collection<Scope> scopes) {
+
+        this.source = source;
+        this.scopes = Collections.unmodifiableList(new ArrayList<>(scopes));
+        this.requiredPermissionCounts = new int[this.scopes.size()];
+
+        for (int i = 0; i < this.scopes.size(); i++) {
+            Set<String> permissions = new HashSet<>();
+            for (ScopeBinding scopeBinding : this.scopes.get(i).getScopeBindings()) {
+                if (PERMISSION_BINDING_TYPE.equalsIgnoreCase(scopeBinding.getBindingType())) {
+                    for (String binding : scopeBinding.getBindings()) {
+                        permissions.add(String.valueOf(binding));
+                    }
+                }
+            }
+            if (permissions.isEmpty()) {
+                unconditionalScopes.add(this.scopes.get(i));
+                continue;
+            }
+            for (String permission : permissions) {
+                getOrAddNode(permission).addScope(i);
+            }
+            requiredPermissionCounts[i] = permissions.size();
+        }
+    }
+
+    /**
+     * Build the index of the given scopes.
+     *
+     * @param scopes Permission bound scopes.
+     * @return Index of the scopes.
+     */
+    public static PermissionScopeIndex build(Collection<Scope> scopes) {
+
+        return new PermissionScopeIndex(scopes, scopes);
+    }
+
+    /**
+     * Build the index of the given scopes.
+     *
+     * @param scopes Permission bound scopes.
+     * @return Index of the scopes.
+     */
+    public static PermissionScopeIndex build(Scope[] scopes) {
+
+        List<Scope> scopeList = new ArrayList<>(scopes.length);
+        Collections.addAll(scopeList, scopes);
+        return new PermissionScopeIndex(scopes, scopeList);
+    }
+
+    /**
+     * Check whether this index reflects the given scopes. Scopes loaded from a distributed cache are new instances on
+     * each lookup, hence the scopes are compared by content unless they are the instance the index was built from.
+     *
+     * @param scopes Loaded scopes.
+     * @return True if the index reflects the given scopes.
+     */
+    public boolean isBuiltFrom(Collection<Scope> scopes) {
+
+        if (source == scopes) {
+            return true;
+        }
+        if (scopes == null || scopes.size() != this.scopes.size()) {
+            return false;
+        }
+        int i = 0;
+        for (Scope scope : scopes) {
+            if (!isSameScope(this.scopes.get(i++), scope)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether this index reflects the given scopes, compared by content unless they are the instance the index
+     * was built from.
+     *
+     * @param scopes Loaded scopes.
+     * @return True if the index reflects the given scopes.
+     */
+    public boolean isBuiltFrom(Scope[] scopes) {
+
+        return source == scopes || (scopes != null && isBuiltFrom(Arrays.asList(scopes)));
+    }
+
+    /**
+     * Get all the scopes in the index.
+     *
+     * @return Indexed scopes.
+     */
+    public List<Scope> getScopes() {
+
+        return scopes;
+    }
+
+    /**
+     * Get the scopes for which each permission binding is granted by the given permissions. A permission grants a
+     * binding when it is the same as or a parent of the bound permission.
+     *
+     * @param permissions Permissions of the user.
+     * @return Allowed scopes.
+     */
+    public Set<Scope> getAllowedScopes(String[] permissions) {
+
+        Set<Scope> allowedScopes = new LinkedHashSet<>(unconditionalScopes);
+        if (permissions == null || permissions.length == 0) {
+            return allowedScopes;
+        }
+
+        int[] grantedPermissionCounts = new int[scopes.size()];
+        Set<Node> visitedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node> pendingNodes = new ArrayDeque<>();
+        for (String permission : permissions) {
+            Node node = findNode(permission);
+            if (node == null || !visitedNodes.add(node)) {
+                // The sub tree of a visited node has already been counted.
+                continue;
+            }
+            pendingNodes.push(node);
+            while (!pendingNodes.isEmpty()) {
+                Node current = pendingNodes.pop();
+                for (int i = 0; i < current.scopeCount; i++) {
+                    int scopeIndex = current.scopeIndexes[i];
+                    if (++grantedPermissionCounts[scopeIndex] == requiredPermissionCounts[scopeIndex]) {
+                        allowedScopes.add(scopes.get(scopeIndex));
+                    }
+                }
+                for (Node child : current.children.values()) {
+                    if (visitedNodes.add(child)) {
+                        pendingNodes.push(child);
+                    }
+                }
+            }
+        }
+        return allowedScopes;
+    }
+
+    private static boolean isSameScope(Scope indexedScope, Scope scope) {
+
+        if (indexedScope == scope) {
+            return true;
+        }
+        if (scope == null || !Objects.equals(indexedScope.getName(), scope.getName()) ||
+                !Objects.equals(indexedScope.getDisplayName(), scope.getDisplayName()) ||
+                !Objects.equals(indexedScope.getDescription(), scope.getDescription())) {
+            return false;
+        }
+        List<ScopeBinding> indexedBindings = indexedScope.getScopeBindings();
+        List<ScopeBinding> bindings = scope.getScopeBindings();
+        if (indexedBindings == null || bindings == null) {
+            return indexedBindings == bindings;
+        }
+        if (indexedBindings.size() != bindings.size()) {
+            return false;
+        }
+        for (int i = 0; i < bindings.size(); i++) {
+            if (!Objects.equals(indexedBindings.get(i).getBindingType(), bindings.get(i).getBindingType()) ||
+                    !Objects.equals(indexedBindings.get(i).getBindings(), bindings.get(i).getBindings())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Node getOrAddNode(String permission) {
+
+        Node node = root;
+        for (String segment : permission.split(PATH_SEPARATOR, -1)) {
+            node = node.children.computeIfAbsent(segment, key -> new Node());
+        }
+        return node;
+    }
+
+    private Node findNode(String permission) {
+
+        Node node = root;
+        for (String segment : String.valueOf(permission).split(PATH_SEPARATOR, -1)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Node of a permission path segment.
+     */
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>(4);
+        private int[] scopeIndexes = new int[0];
+        private int scopeCount;
+
+        private void addScope(int scopeIndex) {
+
+            if (scopeCount == scopeIndexes.length) {
+                int[] expanded = new int[Math.max(2, scopeCount * 2)];
+                System.arraycopy(scopeIndexes, 0, expanded, 0, scopeCount);
+                scopeIndexes = expanded;
+            }
+            scopeIndexes[scopeCount++] = scopeIndex;
+        }
+    }
+}
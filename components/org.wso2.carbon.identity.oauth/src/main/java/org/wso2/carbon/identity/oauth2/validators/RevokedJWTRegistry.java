@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.validators;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.JWTParser;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.text.ParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Node local registry of the JWT IDs (jti) of revoked self-contained access tokens. It is consulted by the
+ * {@link OAuth2JWTTokenValidator} when JWT access tokens are validated locally, so that a revoked token is rejected
+ * without looking up the token state in the database.
+ * <p>
+ * The registry is populated when access tokens are revoked on this node and when the OAuth cache entry of a JWT access
+ * token is removed through a cluster invalidation. A revoked token only needs to be remembered until it expires, hence
+ * entries are purged once the expiry time of the token has passed.
+ * <p>
+ * As the registry is neither shared across the cluster nor persisted, a node which validates tokens locally can accept
+ * a revoked token until the token expires, when it was revoked on another node whose OAuth cache removal did not reach
+ * this node, or when it was revoked before this node was restarted. Local validation should therefore only be enabled
+ * when such a stale revocation window, bounded by the access token validity period, is acceptable.
+ */
+public class RevokedJWTRegistry {
+
+    private static final Log log = LogFactory.getLog(RevokedJWTRegistry.class);
+    private static final RevokedJWTRegistry instance = new RevokedJWTRegistry();
+
+    // This config property is defined in identity.xml
+    private static final String REVOKED_TOKEN_RETENTION =
+            "OAuth.LocalJWTTokenValidation.RevokedTokenRetentionSeconds";
+    private static final long DEFAULT_REVOKED_TOKEN_RETENTION_SECONDS = TimeUnit.DAYS.toSeconds(1);
+    private static final int PURGE_INTERVAL = 1000;
+
+    private final boolean enabled;
+    private final long retentionMillis;
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final AtomicInteger additionsSincePurge = new AtomicInteger();
+
+    private RevokedJWTRegistry() {
+
+        this(OAuth2JWTTokenValidator.isLocalValidationEnabled(),
+                TimeUnit.SECONDS.toMillis(getLongProperty(REVOKED_TOKEN_RETENTION,
+                        DEFAULT_REVOKED_TOKEN_RETENTION_SECONDS)));
+    }
+
+    RevokedJWTRegistry(boolean enabled, long retentionMillis) {
+
+        this.enabled = enabled;
+        this.retentionMillis = retentionMillis;
+        if (enabled) {
+            log.warn("Local JWT access token validation is enabled. Tokens revoked on other nodes or before a " +
+                    "restart of this node may be accepted until they expire.");
+        }
+    }
+
+    public static RevokedJWTRegistry getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Record revoked access tokens. A token can either be a JWT or the persisted alias of a JWT, which is its JWT ID.
+     * As the expiry time of a token is not known from its alias, such entries are kept for the configured retention
+     * period.
+     *
+     * @param tokens Revoked access tokens or their persisted aliases.
+     */
+    public void revokeTokens(String... tokens) {
+
+        if (!enabled || tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            if (StringUtils.isBlank(token)) {
+                continue;
+            }
+            try {
+                JWTClaimsSet claimsSet = JWTParser.parse(token).getJWTClaimsSet();
+                if (claimsSet.getJWTID() != null) {
+                    long expiryTime = claimsSet.getExpirationTime() != null ?
+                            claimsSet.getExpirationTime().getTime() : System.currentTimeMillis() + retentionMillis;
+                    revoke(claimsSet.getJWTID(), expiryTime);
+                }
+            } catch (ParseException e) {
+                revoke(token, System.currentTimeMillis() + retentionMillis);
+            }
+        }
+    }
+
+    /**
+     * Record a revoked JWT ID.
+     *
+     * @param jwtId      JWT ID of the revoked token.
+     * @param expiryTime Expiry time of the revoked token in milliseconds, after which the entry can be purged.
+     */
+    public void revoke(String jwtId, long expiryTime) {
+
+        if (!enabled || jwtId == null) {
+            return;
+        }
+        revokedTokens.merge(jwtId, expiryTime, Math::max);
+        if (log.isDebugEnabled()) {
+            log.debug("JWT ID: " + jwtId + " added to the revoked token registry.");
+        }
+        if (additionsSincePurge.incrementAndGet() >= PURGE_INTERVAL) {
+            additionsSincePurge.set(0);
+            purgeExpiredEntries();
+        }
+    }
+
+    /**
+     * Check whether the token with the given JWT ID has been revoked.
+     *
+     * @param jwtId JWT ID.
+     * @return true if the token has been revoked.
+     */
+    public boolean isRevoked(String jwtId) {
+
+        return jwtId != null && revokedTokens.containsKey(jwtId);
+    }
+
+    /**
+     * Remove the entries of the tokens which have already expired, as those are rejected on their expiry time.
+     */
+    public void purgeExpiredEntries() {
+
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiryTime -> expiryTime <= now);
+    }
+
+    public int size() {
+
+        return revokedTokens.size();
+    }
+}
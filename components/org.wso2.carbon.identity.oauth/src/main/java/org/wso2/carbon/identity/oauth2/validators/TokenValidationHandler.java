@@ -29,6 +29,7 @@ import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.tokenprocessor.HashingPersistenceProcessor;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.authcontext.AuthorizationContextTokenGenerator;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
@@ -139,8 +140,14 @@ public class TokenValidationHandler {
     public OAuth2TokenValidationResponseDTO validate(OAuth2TokenValidationRequestDTO requestDTO)
             throws IdentityOAuth2Exception {
 
-        OAuth2ClientApplicationDTO appToken = findOAuthConsumerIfTokenIsValid(requestDTO);
-        return appToken.getAccessTokenValidationResponse();
+        // The same token is hashed several times while it is validated.
+        HashingPersistenceProcessor.startHashMemo();
+        try {
+            OAuth2ClientApplicationDTO appToken = findOAuthConsumerIfTokenIsValid(requestDTO);
+            return appToken.getAccessTokenValidationResponse();
+        } finally {
+            HashingPersistenceProcessor.endHashMemo();
+        }
     }
 
     /**
@@ -225,6 +232,18 @@ public class TokenValidationHandler {
     public OAuth2IntrospectionResponseDTO buildIntrospectionResponse(OAuth2TokenValidationRequestDTO validationRequest)
             throws IdentityOAuth2Exception {
 
+        // The same token is hashed several times while it is introspected.
+        HashingPersistenceProcessor.startHashMemo();
+        try {
+            return introspect(validationRequest);
+        } finally {
+            HashingPersistenceProcessor.endHashMemo();
+        }
+    }
+
+    private OAuth2IntrospectionResponseDTO introspect(OAuth2TokenValidationRequestDTO validationRequest)
+            throws IdentityOAuth2Exception {
+
         OAuth2TokenValidationResponseDTO responseDTO = new OAuth2TokenValidationResponseDTO();
         OAuth2IntrospectionResponseDTO introResp = new OAuth2IntrospectionResponseDTO();
 
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.validators;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth2.util.BoundedTTLCache;
+import org.wso2.carbon.user.core.UserCoreConstants;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Bounded node local cache of the roles of local users, used by the {@link JDBCScopeValidator} so that validating
+ * the scopes of a token request does not call the user store each time. Entries are evicted in LRU order once the
+ * configured size is reached and expire after a short time to live. Entries of a user are invalidated on this node
+ * when the role list of the user or the user list of a role is changed, while the other nodes of a cluster rely on
+ * the time to live.
+ */
+public class UserRolesCache {
+
+    private static final Log log = LogFactory.getLog(UserRolesCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String USER_ROLES_CACHE_ENABLE = "OAuth.ScopeValidation.UserRolesCache.Enable";
+    private static final String USER_ROLES_CACHE_MAX_SIZE = "OAuth.ScopeValidation.UserRolesCache.MaxSize";
+    private static final String USER_ROLES_CACHE_TIME_TO_LIVE =
+            "OAuth.ScopeValidation.UserRolesCache.TimeToLiveSeconds";
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    private static final long DEFAULT_TIME_TO_LIVE_SECONDS = 15;
+    private static final String KEY_SEPARATOR = ":";
+
+    private static final UserRolesCache instance = new UserRolesCache();
+
+    private final boolean enabled;
+    private final BoundedTTLCache<String, String[]> entries;
+
+    private UserRolesCache() {
+
+        this(getBooleanProperty(USER_ROLES_CACHE_ENABLE, true),
+                getLongProperty(USER_ROLES_CACHE_MAX_SIZE, DEFAULT_MAX_SIZE),
+                TimeUnit.SECONDS.toMillis(getLongProperty(USER_ROLES_CACHE_TIME_TO_LIVE,
+                        DEFAULT_TIME_TO_LIVE_SECONDS)));
+    }
+
+    UserRolesCache(boolean enabled, long maxSize, long timeToLiveMillis) {
+
+        this.enabled = enabled && maxSize > 0 && timeToLiveMillis > 0;
+        this.entries = new BoundedTTLCache<>(maxSize, timeToLiveMillis);
+    }
+
+    public static UserRolesCache getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Get the cached roles of a user. The returned array is shared and must not be modified.
+     *
+     * @param tenantId        Tenant id of the user.
+     * @param userStoreDomain User store domain of the user.
+     * @param username        Tenant unaware username of the user, without the user store domain.
+     * @return Roles of the user or null if there is no unexpired entry.
+     */
+    public String[] getRoles(int tenantId, String userStoreDomain, String username) {
+
+        if (!enabled) {
+            return null;
+        }
+        return entries.get(buildCacheKey(tenantId, userStoreDomain, username));
+    }
+
+    /**
+     * Cache the roles of a user.
+     *
+     * @param tenantId        Tenant id of the user.
+     * @param userStoreDomain User store domain of the user.
+     * @param username        Tenant unaware username of the user, without the user store domain.
+     * @param roles           Roles of the user.
+     */
+    public void putRoles(int tenantId, String userStoreDomain, String username, String[] roles) {
+
+        if (!enabled || roles == null) {
+            return;
+        }
+        entries.put(buildCacheKey(tenantId, userStoreDomain, username), roles.clone());
+    }
+
+    /**
+     * Remove the cached roles of a user.
+     *
+     * @param tenantId        Tenant id of the user.
+     * @param userStoreDomain User store domain of the user.
+     * @param username        Tenant unaware username of the user, without the user store domain.
+     */
+    public void clear(int tenantId, String userStoreDomain, String username) {
+
+        if (!enabled) {
+            return;
+        }
+        entries.remove(buildCacheKey(tenantId, userStoreDomain, username));
+        if (log.isDebugEnabled()) {
+            log.debug("Cached roles cleared for user: " + username + " of user store: " + userStoreDomain +
+                    " in tenant id: " + tenantId);
+        }
+    }
+
+    /**
+     * Remove the cached roles of all users of a tenant.
+     *
+     * @param tenantId Tenant id.
+     */
+    public void clear(int tenantId) {
+
+        if (!enabled) {
+            return;
+        }
+        String prefix = tenantId + KEY_SEPARATOR;
+        entries.removeIf(cacheKey -> cacheKey.startsWith(prefix));
+        if (log.isDebugEnabled()) {
+            log.debug("Cached user roles cleared for tenant id: " + tenantId);
+        }
+    }
+
+    public int size() {
+
+        return entries.size();
+    }
+
+    public long getHitCount() {
+
+        return entries.getHitCount();
+    }
+
+    public long getMissCount() {
+
+        return entries.getMissCount();
+    }
+
+    private static String buildCacheKey(int tenantId, String userStoreDomain, String username) {
+
+        String domain = StringUtils.isBlank(userStoreDomain) ? UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME :
+                userStoreDomain.toUpperCase();
+        return tenantId + KEY_SEPARATOR + domain + KEY_SEPARATOR + username;
+    }
+}
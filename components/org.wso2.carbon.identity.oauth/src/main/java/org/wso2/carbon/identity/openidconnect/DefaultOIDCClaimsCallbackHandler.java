@@ -32,8 +32,6 @@ import org.wso2.carbon.identity.application.common.model.ServiceProvider;
 import org.wso2.carbon.identity.application.mgt.ApplicationManagementService;
 import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.base.IdentityException;
-import org.wso2.carbon.identity.claim.metadata.mgt.ClaimMetadataHandler;
-import org.wso2.carbon.identity.claim.metadata.mgt.exception.ClaimMetadataException;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCache;
@@ -76,7 +74,6 @@ public class DefaultOIDCClaimsCallbackHandler implements CustomClaimsCallbackHan
 
     private static final Log log = LogFactory.getLog(DefaultOIDCClaimsCallbackHandler.class);
     private static final String OAUTH2 = "oauth2";
-    private static final String OIDC_DIALECT = "http://wso2.org/oidc/claim";
     private static final String ATTRIBUTE_SEPARATOR = FrameworkUtils.getMultiAttributeSeparator();
 
     @Override
@@ -483,7 +480,9 @@ public class DefaultOIDCClaimsCallbackHandler implements CustomClaimsCallbackHan
         }
 
         List<String> requestedClaimUris = getRequestedClaimUris(requestClaimMappings);
-        Map<String, String> userClaims = getUserClaimsInLocalDialect(fullQualifiedUsername, realm, requestedClaimUris);
+        OIDCClaimPlanCache.ClaimPlan claimPlan =
+                OIDCClaimPlanCache.getInstance().getClaimPlan(spTenantDomain, clientId, requestedClaimUris);
+        Map<String, String> userClaims = getUserClaimsInLocalDialect(authenticatedUser, realm, claimPlan);
 
         if (isEmpty(userClaims)) {
             // User claims can be empty if user does not exist in user stores. Probably a federated user.
@@ -500,7 +499,12 @@ public class DefaultOIDCClaimsCallbackHandler implements CustomClaimsCallbackHan
             handleServiceProviderRoleMappings(serviceProvider, ATTRIBUTE_SEPARATOR, userClaims);
 
             // Get the user claims in oidc dialect to be returned in the id_token.
-            Map<String, Object> userClaimsInOIDCDialect = getUserClaimsInOIDCDialect(spTenantDomain, userClaims);
+            Map<String, Object> userClaimsInOIDCDialect = claimPlan.toOIDCDialect(userClaims);
+            if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.USER_CLAIMS)) {
+                for (Map.Entry<String, Object> claim : userClaimsInOIDCDialect.entrySet()) {
+                    log.debug("Mapped claim: key - " + claim.getKey() + " value - " + claim.getValue());
+                }
+            }
             userClaimsMappedToOIDCDialect.putAll(userClaimsInOIDCDialect);
         }
 
@@ -514,25 +518,29 @@ public class DefaultOIDCClaimsCallbackHandler implements CustomClaimsCallbackHan
         return serviceProvider.getClaimConfig().getClaimMappings();
     }
 
-    private Map<String, Object> getUserClaimsInOIDCDialect(String spTenantDomain,
-                                                           Map<String, String> userClaims)
-            throws ClaimMetadataException {
-        // Retrieve OIDC to Local Claim Mappings.
-        Map<String, String> oidcToLocalClaimMappings = ClaimMetadataHandler.getInstance()
-                .getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null, spTenantDomain, false);
-        // Get user claims in OIDC dialect.
-        return getUserClaimsInOidcDialect(oidcToLocalClaimMappings, userClaims);
-    }
-
-    private Map<String, String> getUserClaimsInLocalDialect(String username,
+    private Map<String, String> getUserClaimsInLocalDialect(AuthenticatedUser authenticatedUser,
                                                             UserRealm realm,
-                                                            List<String> claimURIList)
+                                                            OIDCClaimPlanCache.ClaimPlan claimPlan)
             throws UserStoreException {
-        return realm.getUserStoreManager()
+
+        UserClaimValuesCache userClaimValuesCache = UserClaimValuesCache.getInstance();
+        Map<String, String> userClaims = userClaimValuesCache.getClaimValues(authenticatedUser.getTenantDomain(),
+                authenticatedUser.getUserStoreDomain(), authenticatedUser.getUserName(), claimPlan.getClaimSetKey());
+        if (userClaims != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Retrieved cached claims of user: " + authenticatedUser.getLoggableUserId());
+            }
+            return userClaims;
+        }
+        userClaims = realm.getUserStoreManager()
                 .getUserClaimValues(
-                        MultitenantUtils.getTenantAwareUsername(username),
-                        claimURIList.toArray(new String[claimURIList.size()]),
+                        MultitenantUtils.getTenantAwareUsername(authenticatedUser.toFullQualifiedUsername()),
+                        claimPlan.getLocalClaimUris(),
                         null);
+        userClaimValuesCache.putClaimValues(authenticatedUser.getTenantDomain(),
+                authenticatedUser.getUserStoreDomain(), authenticatedUser.getUserName(), claimPlan.getClaimSetKey(),
+                userClaims);
+        return userClaims;
     }
 
     private void handleServiceProviderRoleMappings(ServiceProvider serviceProvider,
@@ -594,35 +602,6 @@ public class DefaultOIDCClaimsCallbackHandler implements CustomClaimsCallbackHan
         return applicationMgtService.getApplicationExcludingFileBasedSPs(spName, spTenantDomain);
     }
 
-    /**
-     * Get user claims in OIDC claim dialect.
-     *
-     * @param oidcToLocalClaimMappings OIDC dialect to Local dialect claim mappings
-     * @param userClaims               User claims in local dialect
-     * @return Map of user claim values in OIDC dialect.
-     */
-    private Map<String, Object> getUserClaimsInOidcDialect(Map<String, String> oidcToLocalClaimMappings,
-                                                           Map<String, String> userClaims) {
-
-        Map<String, Object> userClaimsInOidcDialect = new HashMap<>();
-        if (isNotEmpty(userClaims)) {
-            // Map<"email", "http://wso2.org/claims/emailaddress">
-            for (Map.Entry<String, String> claimMapping : oidcToLocalClaimMappings.entrySet()) {
-                String claimValue = userClaims.get(claimMapping.getValue());
-                if (claimValue != null) {
-                    String oidcClaimUri = claimMapping.getKey();
-                    userClaimsInOidcDialect.put(oidcClaimUri, claimValue);
-                    if (log.isDebugEnabled() &&
-                            IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.USER_CLAIMS)) {
-                        log.debug("Mapped claim: key - " + oidcClaimUri + " value - " + claimValue);
-                    }
-                }
-            }
-        }
-
-        return userClaimsInOidcDialect;
-    }
-
     /**
      * To check whether a token has custom user claims.
      *
@@ -21,18 +21,20 @@ package org.wso2.carbon.identity.openidconnect;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.event.IdentityEventConstants;
 import org.wso2.carbon.identity.event.IdentityEventException;
 import org.wso2.carbon.identity.event.event.Event;
 import org.wso2.carbon.identity.event.handler.AbstractEventHandler;
+import org.wso2.carbon.identity.oauth2.util.ETagResponseCache;
 import org.wso2.carbon.identity.openidconnect.cache.OIDCScopeClaimCache;
 
 import java.util.Map;
 
 /**
  * This handles the claim metadata operation related events and it will clear the OIDCScopeClaimCache
- * cache when the event is triggered. When these relevant events are fired the cache will be
- * cleared based on the tenant and the cache will be rebuilt with the next request.
+ * cache and the cached discovery responses when the event is triggered. When these relevant events are fired the
+ * cache will be cleared based on the tenant and the cache will be rebuilt with the next request.
  */
 public class OIDCClaimMetaDataOperationHandler extends AbstractEventHandler {
 
@@ -58,6 +60,8 @@ public class OIDCClaimMetaDataOperationHandler extends AbstractEventHandler {
         }
         int tenantId = (int) eventProperties.get(IdentityEventConstants.EventProperty.TENANT_ID);
         oidcScopeClaimCache.clearScopeClaimMap(tenantId);
+        // The claims supported by the tenant are listed in the discovery response.
+        ETagResponseCache.getDiscoveryResponseCache().clear(IdentityTenantUtil.getTenantDomain(tenantId));
     }
 
     @Override
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.openidconnect;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.claim.metadata.mgt.ClaimMetadataHandler;
+import org.wso2.carbon.identity.claim.metadata.mgt.exception.ClaimMetadataException;
+import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
+import org.wso2.carbon.identity.oauth2.util.BoundedTTLCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Node local cache of the compiled plans used to build the user claims of ID tokens and user info responses.
+ * <p>
+ * A {@link ClaimPlan} is compiled per service provider and holds the local claim URIs requested by the service
+ * provider, together with the OIDC claim URIs each of them is returned as. It is rebuilt when the claims requested by
+ * the service provider change and after the configured time to live, which bounds the time a change of the OIDC
+ * claim dialect takes to be applied.
+ * <p>
+ * A {@link ScopeClaimPlan} is compiled per tenant and set of requested scopes and holds the OIDC claim URIs permitted
+ * by those scopes. It is rebuilt whenever the OIDC scope claim mappings of the tenant are reloaded.
+ */
+public class OIDCClaimPlanCache {
+
+    private static final Log log = LogFactory.getLog(OIDCClaimPlanCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String CLAIM_PLAN_CACHE_ENABLE = "OAuth.OpenIDConnect.ClaimPlanCache.Enable";
+    private static final String CLAIM_PLAN_CACHE_MAX_SIZE = "OAuth.OpenIDConnect.ClaimPlanCache.MaxSize";
+    private static final String CLAIM_PLAN_CACHE_TIME_TO_LIVE =
+            "OAuth.OpenIDConnect.ClaimPlanCache.TimeToLiveSeconds";
+
+    private static final String OIDC_DIALECT = "http://wso2.org/oidc/claim";
+    private static final String ADDRESS_PREFIX = "address.";
+    private static final String ADDRESS_SCOPE = "address";
+    private static final String KEY_SEPARATOR = ":";
+    private static final String SCOPE_SEPARATOR = " ";
+    private static final int DEFAULT_MAX_SIZE = 1000;
+    private static final long DEFAULT_TIME_TO_LIVE_SECONDS = 300;
+
+    private static final OIDCClaimPlanCache instance = new OIDCClaimPlanCache();
+
+    private final boolean enabled;
+    private final BoundedTTLCache<String, ClaimPlan> claimPlans;
+    private final BoundedTTLCache<String, ScopeClaimPlan> scopeClaimPlans;
+
+    private OIDCClaimPlanCache() {
+
+        this(getBooleanProperty(CLAIM_PLAN_CACHE_ENABLE, true),
+                getLongProperty(CLAIM_PLAN_CACHE_MAX_SIZE, DEFAULT_MAX_SIZE),
+                TimeUnit.SECONDS.toMillis(getLongProperty(CLAIM_PLAN_CACHE_TIME_TO_LIVE,
+                        DEFAULT_TIME_TO_LIVE_SECONDS)));
+    }
+
+    OIDCClaimPlanCache(boolean enabled, long maxSize, long timeToLiveMillis) {
+
+        this.enabled = enabled && maxSize > 0;
+        this.claimPlans = new BoundedTTLCache<>(maxSize, timeToLiveMillis);
+        // Scope claim plans are rebuilt when the OIDC scopes of the tenant change, hence they do not expire.
+        this.scopeClaimPlans = new BoundedTTLCache<>(maxSize, Long.MAX_VALUE);
+    }
+
+    public static OIDCClaimPlanCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the claim plan of a service provider, compiling it if it is not cached, has expired or was compiled for a
+     * different set of requested claims.
+     *
+     * @param spTenantDomain         Tenant domain of the service provider.
+     * @param clientId               Client id of the service provider.
+     * @param requestedLocalClaimUris Local claim URIs requested by the service provider.
+     * @return Claim plan.
+     * @throws ClaimMetadataException If the OIDC claim mappings of the tenant could not be loaded.
+     */
+    public ClaimPlan getClaimPlan(String spTenantDomain, String clientId, List<String> requestedLocalClaimUris)
+            throws ClaimMetadataException {
+
+        String cacheKey = spTenantDomain + KEY_SEPARATOR + clientId;
+        if (enabled) {
+            ClaimPlan claimPlan = claimPlans.get(cacheKey);
+            if (claimPlan != null && claimPlan.localClaimUris.equals(requestedLocalClaimUris)) {
+                return claimPlan;
+            }
+        }
+
+        Map<String, String> oidcToLocalClaimMappings = ClaimMetadataHandler.getInstance()
+                .getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null, spTenantDomain, false);
+        ClaimPlan claimPlan = new ClaimPlan(requestedLocalClaimUris, oidcToLocalClaimMappings);
+        if (enabled) {
+            claimPlans.put(cacheKey, claimPlan);
+            if (log.isDebugEnabled()) {
+                log.debug("OIDC claim plan compiled for client id: " + clientId + " in tenant domain: " +
+                        spTenantDomain);
+            }
+        }
+        return claimPlan;
+    }
+
+    /**
+     * Get the scope claim plan for the requested scopes, compiling it if it is not cached or was compiled from a
+     * different version of the OIDC scope claim mappings.
+     *
+     * @param tenantId        Tenant id of the service provider.
+     * @param requestedScopes Requested scopes.
+     * @param oidcScopes      OIDC scopes of the tenant with their claims.
+     * @return Scope claim plan.
+     */
+    public ScopeClaimPlan getScopeClaimPlan(int tenantId, String[] requestedScopes, List<ScopeDTO> oidcScopes) {
+
+        if (requestedScopes == null) {
+            requestedScopes = new String[0];
+        }
+        if (!enabled) {
+            return new ScopeClaimPlan(requestedScopes, oidcScopes);
+        }
+        String cacheKey = tenantId + KEY_SEPARATOR + String.join(SCOPE_SEPARATOR,
+                new TreeSet<>(Arrays.asList(requestedScopes)));
+        ScopeClaimPlan scopeClaimPlan = scopeClaimPlans.get(cacheKey);
+        if (scopeClaimPlan == null || !scopeClaimPlan.isCompiledFrom(oidcScopes)) {
+            scopeClaimPlan = new ScopeClaimPlan(requestedScopes, oidcScopes);
+            scopeClaimPlans.put(cacheKey, scopeClaimPlan);
+        }
+        return scopeClaimPlan;
+    }
+
+    /**
+     * Remove all the compiled plans.
+     */
+    public void clearAll() {
+
+        claimPlans.clear();
+        scopeClaimPlans.clear();
+    }
+
+    /**
+     * Local claims to be retrieved for a service provider and the OIDC claims they are returned as.
+     */
+    public static class ClaimPlan {
+
+        private final List<String> localClaimUris;
+        private final String[] localClaimUriArray;
+        private final String claimSetKey;
+        private final Map<String, List<String>> oidcClaimUrisByLocalClaimUri;
+
+        ClaimPlan(List<String> requestedLocalClaimUris, Map<String, String> oidcToLocalClaimMappings) {
+
+            this.localClaimUris = Collections.unmodifiableList(new ArrayList<>(requestedLocalClaimUris));
+            this.localClaimUriArray = requestedLocalClaimUris.toArray(new String[0]);
+            this.claimSetKey = String.join(",", requestedLocalClaimUris);
+            Set<String> requested = new LinkedHashSet<>(requestedLocalClaimUris);
+            Map<String, List<String>> mappings = new HashMap<>();
+            if (oidcToLocalClaimMappings != null) {
+                // Only the mappings of the requested claims are kept, as no other claim is retrieved for the user.
+                for (Map.Entry<String, String> mapping : oidcToLocalClaimMappings.entrySet()) {
+                    if (requested.contains(mapping.getValue())) {
+                        mappings.computeIfAbsent(mapping.getValue(), k -> new ArrayList<>()).add(mapping.getKey());
+                    }
+                }
+            }
+            this.oidcClaimUrisByLocalClaimUri = mappings;
+        }
+
+        /**
+         * Get the local claim URIs to be retrieved for the user. The returned array must not be modified.
+         *
+         * @return Local claim URIs.
+         */
+        public String[] getLocalClaimUris() {
+
+            return localClaimUriArray;
+        }
+
+        /**
+         * Get a key identifying the set of local claims retrieved with this plan.
+         *
+         * @return Claim set key.
+         */
+        public String getClaimSetKey() {
+
+            return claimSetKey;
+        }
+
+        /**
+         * Convert user claims in the local dialect to the OIDC dialect.
+         *
+         * @param userClaims User claims in the local dialect.
+         * @return User claims in the OIDC dialect.
+         */
+        public Map<String, Object> toOIDCDialect(Map<String, String> userClaims) {
+
+            Map<String, Object> userClaimsInOidcDialect = new HashMap<>();
+            if (userClaims == null) {
+                return userClaimsInOidcDialect;
+            }
+            for (Map.Entry<String, List<String>> mapping : oidcClaimUrisByLocalClaimUri.entrySet()) {
+                String claimValue = userClaims.get(mapping.getKey());
+                if (claimValue != null) {
+                    for (String oidcClaimUri : mapping.getValue()) {
+                        userClaimsInOidcDialect.put(oidcClaimUri, claimValue);
+                    }
+                }
+            }
+            return userClaimsInOidcDialect;
+        }
+    }
+
+    /**
+     * OIDC claims permitted by a set of requested scopes. Claims of the address scope, or claims prefixed with
+     * "address.", are kept separately without the prefix as they are returned within the address claim.
+     */
+    public static class ScopeClaimPlan {
+
+        private final List<ScopeDTO> oidcScopes;
+        private final String[] oidcScopeNames;
+        private final String[][] oidcScopeClaims;
+        private final boolean hasOIDCScopes;
+        private final Set<String> claimUris = new LinkedHashSet<>();
+        private final Set<String> addressClaimUris = new LinkedHashSet<>();
+
+        ScopeClaimPlan(String[] requestedScopes, List<ScopeDTO> oidcScopes) {
+
+            this.oidcScopes = oidcScopes;
+            int oidcScopeCount = oidcScopes == null ? 0 : oidcScopes.size();
+            this.oidcScopeNames = new String[oidcScopeCount];
+            this.oidcScopeClaims = new String[oidcScopeCount][];
+            Map<String, List<String>> scopeClaimsMap = new HashMap<>();
+            if (oidcScopes != null) {
+                int i = 0;
+                for (ScopeDTO scope : oidcScopes) {
+                    // Keep a copy of the mappings, so that the plan is compared with what it was compiled from.
+                    oidcScopeNames[i] = scope.getName();
+                    oidcScopeClaims[i++] = scope.getClaim() == null ? null : scope.getClaim().clone();
+                    scopeClaimsMap.put(scope.getName(), scope.getClaim() == null ? Collections.emptyList() :
+                            Arrays.asList(scope.getClaim()));
+                }
+            }
+            this.hasOIDCScopes = !scopeClaimsMap.isEmpty();
+            List<String> addressScopeClaimUris = scopeClaimsMap.getOrDefault(ADDRESS_SCOPE, Collections.emptyList());
+            for (String requestedScope : requestedScopes) {
+                List<String> scopeClaims = scopeClaimsMap.get(requestedScope);
+                if (scopeClaims == null) {
+                    continue;
+                }
+                for (String scopeClaim : scopeClaims) {
+                    if (StringUtils.startsWith(scopeClaim, ADDRESS_PREFIX)) {
+                        addressClaimUris.add(StringUtils.substringAfterLast(scopeClaim, ADDRESS_PREFIX));
+                    } else if (addressScopeClaimUris.contains(scopeClaim)) {
+                        addressClaimUris.add(scopeClaim);
+                    } else {
+                        claimUris.add(scopeClaim);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Whether the plan was compiled from the given OIDC scope claim mappings. The mappings are loaded from a
+         * distributed cache and hence are usually a new copy, in which case they are compared by content.
+         *
+         * @param oidcScopes OIDC scopes of the tenant with their claims.
+         * @return True if the scopes and their claims are the same as the ones the plan was compiled from.
+         */
+        boolean isCompiledFrom(List<ScopeDTO> oidcScopes) {
+
+            if (this.oidcScopes == oidcScopes) {
+                return true;
+            }
+            if (oidcScopes == null || oidcScopes.size() != oidcScopeNames.length) {
+                return false;
+            }
+            int i = 0;
+            for (ScopeDTO scope : oidcScopes) {
+                if (!StringUtils.equals(oidcScopeNames[i], scope.getName()) ||
+                        !Arrays.equals(oidcScopeClaims[i], scope.getClaim())) {
+                    return false;
+                }
+                i++;
+            }
+            return true;
+        }
+
+        /**
+         * Whether the tenant has any OIDC scope defined.
+         *
+         * @return True if OIDC scopes are defined.
+         */
+        public boolean hasOIDCScopes() {
+
+            return hasOIDCScopes;
+        }
+
+        /**
+         * OIDC claims permitted by the requested scopes, excluding the address claims.
+         *
+         * @return OIDC claim URIs.
+         */
+        public Set<String> getClaimUris() {
+
+            return Collections.unmodifiableSet(claimUris);
+        }
+
+        /**
+         * OIDC claims permitted by the requested scopes to be returned within the address claim.
+         *
+         * @return OIDC claim URIs without the "address." prefix.
+         */
+        public Set<String> getAddressClaimUris() {
+
+            return Collections.unmodifiableSet(addressClaimUris);
+        }
+    }
+}
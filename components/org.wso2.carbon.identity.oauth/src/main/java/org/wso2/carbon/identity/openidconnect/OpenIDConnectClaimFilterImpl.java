@@ -78,8 +78,6 @@ import static org.wso2.carbon.identity.oauth.common.OAuthConstants.SCOPE_RESOURC
  */
 public class OpenIDConnectClaimFilterImpl implements OpenIDConnectClaimFilter {
 
-    private static final String ADDRESS_PREFIX = "address.";
-    private static final String ADDRESS_SCOPE = "address";
     private static final String OIDC_DIALECT = "http://wso2.org/oidc/claim";
 
     private static final Log log = LogFactory.getLog(OpenIDConnectClaimFilterImpl.class);
@@ -100,37 +98,19 @@ public class OpenIDConnectClaimFilterImpl implements OpenIDConnectClaimFilter {
         Map<String, Object> claimsToBeReturned = new HashMap<>();
         Map<String, Object> addressScopeClaims = new HashMap<>();
 
-        // Map<"openid", "first_name,last_name,username">
-        Map<String, List<String>> scopeClaimsMap = new HashMap<>();
         int tenantId = IdentityTenantUtil.getTenantId(spTenantDomain);
         //load oidc scopes and mapped claims from the cache or db.
         List<ScopeDTO> oidcScopesList = getOIDCScopes(tenantId);
-        for (ScopeDTO scope : oidcScopesList) {
-            scopeClaimsMap.put(scope.getName(), Arrays.asList(scope.getClaim()));
-        }
-        if (MapUtils.isNotEmpty(scopeClaimsMap)) {
-            List<String> addressScopeClaimUris = getAddressScopeClaimUris(scopeClaimsMap);
-            // Iterate through scopes requested in the OAuth2/OIDC request to filter claims
-            for (String requestedScope : requestedScopes) {
-                // Check if requested scope is a supported OIDC scope value
-
-                if (scopeClaimsMap.containsKey(requestedScope)) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Requested scope: " + requestedScope + " is a defined OIDC Scope in tenantDomain: " +
-                                spTenantDomain + ". Filtering claims based on the permitted claims in the scope.");
-                    }
-                    // Requested scope is an registered OIDC scope. Filter and return the claims belonging to the scope.
-                    Map<String, Object> filteredClaims =
-                            handleRequestedOIDCScope(userClaims, addressScopeClaims, scopeClaimsMap,
-                                    addressScopeClaimUris, requestedScope);
-                    claimsToBeReturned.putAll(filteredClaims);
-                } else {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Requested scope: " + requestedScope + " is not a defined OIDC Scope in " +
-                                "tenantDomain: " + spTenantDomain + ".");
-                    }
-                }
+        // The claims permitted by the requested scopes are compiled once per tenant and set of requested scopes.
+        OIDCClaimPlanCache.ScopeClaimPlan scopeClaimPlan =
+                OIDCClaimPlanCache.getInstance().getScopeClaimPlan(tenantId, requestedScopes, oidcScopesList);
+        if (scopeClaimPlan.hasOIDCScopes()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Filtering claims based on the permitted claims of the requested scopes: " +
+                        Arrays.toString(requestedScopes) + " in tenantDomain: " + spTenantDomain);
             }
+            copyPermittedClaims(userClaims, scopeClaimPlan.getClaimUris(), claimsToBeReturned);
+            copyPermittedClaims(userClaims, scopeClaimPlan.getAddressClaimUris(), addressScopeClaims);
         } else {
             if (log.isDebugEnabled()) {
                 log.debug("No OIDC scopes defined for tenantDomain: " + spTenantDomain + ". Cannot proceed with " +
@@ -329,59 +309,22 @@ public class OpenIDConnectClaimFilterImpl implements OpenIDConnectClaimFilter {
         return oidcScopesList;
     }
 
-    private Map<String, Object> handleRequestedOIDCScope(Map<String, Object> userClaimsInOIDCDialect,
-                                                         Map<String, Object> addressScopeClaims,
-                                                         Map<String, List<String>> scopeClaimsMap,
-                                                         List<String> addressScopeClaimUris,
-                                                         String oidcScope) {
-
-        Map<String, Object> filteredClaims = new HashMap<>();
-        List<String> claimUrisInRequestedScope = getClaimUrisInSupportedOIDCScope(scopeClaimsMap, oidcScope);
-        for (String scopeClaim : claimUrisInRequestedScope) {
-            String oidcClaimUri = scopeClaim;
-            boolean isAddressClaim = false;
-            if (isAddressClaim(scopeClaim, addressScopeClaimUris)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Identified an address claim: " + scopeClaim + ". Removing \"address.\" prefix from " +
-                            "the claimUri");
-                }
-                oidcClaimUri = removeAddressPrefix(scopeClaim);
-                isAddressClaim = true;
-            }
+    private void copyPermittedClaims(Map<String, Object> userClaimsInOIDCDialect, Set<String> permittedClaimUris,
+                                     Map<String, Object> filteredClaims) {
+
+        for (String oidcClaimUri : permittedClaimUris) {
             // Check whether the user claims contain the permitted claim uri
             if (userClaimsInOIDCDialect.containsKey(oidcClaimUri)) {
                 if (log.isDebugEnabled()) {
                     log.debug("Adding claim:" + oidcClaimUri + " into the filtered claims");
                 }
-                Object claimValue = userClaimsInOIDCDialect.get(oidcClaimUri);
-                // User claim is allowed for this scope.
-                if (isAddressClaim) {
-                    addressScopeClaims.put(oidcClaimUri, claimValue);
-                } else {
-                    filteredClaims.put(oidcClaimUri, claimValue);
-                }
+                filteredClaims.put(oidcClaimUri, userClaimsInOIDCDialect.get(oidcClaimUri));
             } else {
                 if (log.isDebugEnabled()) {
                     log.debug("No valid user claim value found for the claimUri:" + oidcClaimUri);
                 }
             }
         }
-        return filteredClaims;
-    }
-
-    /**
-     * There can be situations where we have added a scope prefix to identify special claims.
-     * <p>
-     * For example, claims belonging to address can be prefixed as address.country, address.street. But when
-     * returning we need to remove the prefix.
-     *
-     * @param scopeClaim claim uri defined in the OIDC Scope
-     * @return Scope prefix removed claim URI
-     */
-    private String removeAddressPrefix(String scopeClaim) {
-
-        return StringUtils.startsWith(scopeClaim, ADDRESS_PREFIX) ?
-                StringUtils.substringAfterLast(scopeClaim, ADDRESS_PREFIX) : scopeClaim;
     }
 
     private void handleAddressClaim(Map<String, Object> returnedClaims,
@@ -396,16 +339,6 @@ public class OpenIDConnectClaimFilterImpl implements OpenIDConnectClaimFilter {
         }
     }
 
-    private List<String> getAddressScopeClaimUris(Map<String, List<String>> scopeClaimsMap) {
-
-        return getClaimUrisInSupportedOIDCScope(scopeClaimsMap, ADDRESS_SCOPE);
-    }
-
-    private boolean isAddressClaim(String scopeClaim, List<String> addressScopeClaims) {
-
-        return StringUtils.startsWith(scopeClaim, ADDRESS_PREFIX) || addressScopeClaims.contains(scopeClaim);
-    }
-
     private List<String> getClaimUrisInSupportedOIDCScope(Map<String, List<String>> scopeClaimsMap,
                                                           String requestedScope) {
 
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.openidconnect;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth2.util.BoundedTTLCache;
+import org.wso2.carbon.identity.openidconnect.model.RequestedClaim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Bounded node local cache of the claims requested through the request object of an access token. The claims
+ * requested for the ID token and for the user info response are kept together in a single entry per token id, so that
+ * both are loaded with a single query. Tokens without a request object are cached as well, with no requested claims.
+ * <p>
+ * Entries are evicted in LRU order once the configured size is reached and expire after the configured time to live.
+ * Entries are invalidated on this node when the request object reference of a token changes. A token id is only
+ * moved to another request object when the token is issued or refreshed, which is before the token is handed over to
+ * the client, hence the other nodes of a cluster do not see a stale entry of a token in use.
+ */
+public class RequestedClaimsCache {
+
+    private static final Log log = LogFactory.getLog(RequestedClaimsCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String REQUESTED_CLAIMS_CACHE_ENABLE = "OAuth.RequestObject.RequestedClaimsCache.Enable";
+    private static final String REQUESTED_CLAIMS_CACHE_MAX_SIZE = "OAuth.RequestObject.RequestedClaimsCache.MaxSize";
+    private static final String REQUESTED_CLAIMS_CACHE_TIME_TO_LIVE =
+            "OAuth.RequestObject.RequestedClaimsCache.TimeToLiveSeconds";
+
+    private static final long DEFAULT_MAX_SIZE = 10000;
+    private static final long DEFAULT_TIME_TO_LIVE_SECONDS = 900;
+
+    private static final RequestedClaimsCache instance = new RequestedClaimsCache();
+
+    private final boolean enabled;
+    private final long timeToLiveMillis;
+    private final BoundedTTLCache<String, RequestedClaimsCacheEntry> entries;
+
+    private RequestedClaimsCache() {
+
+        this(getBooleanProperty(REQUESTED_CLAIMS_CACHE_ENABLE, false),
+                getLongProperty(REQUESTED_CLAIMS_CACHE_MAX_SIZE, DEFAULT_MAX_SIZE),
+                TimeUnit.SECONDS.toMillis(getLongProperty(REQUESTED_CLAIMS_CACHE_TIME_TO_LIVE,
+                        DEFAULT_TIME_TO_LIVE_SECONDS)));
+    }
+
+    RequestedClaimsCache(boolean enabled, long maxSize, long timeToLiveMillis) {
+
+        this.enabled = enabled && maxSize > 0 && timeToLiveMillis > 0;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.entries = new BoundedTTLCache<>(maxSize, timeToLiveMillis);
+    }
+
+    public static RequestedClaimsCache getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Get a copy of the cached requested claims of an access token.
+     *
+     * @param tokenId    Id of the access token.
+     * @param isUserInfo Whether the claims requested for the user info response or for the ID token are returned.
+     * @return Requested claims or null if there is no unexpired entry.
+     */
+    public List<RequestedClaim> getRequestedClaims(String tokenId, boolean isUserInfo) {
+
+        if (!enabled || tokenId == null) {
+            return null;
+        }
+        RequestedClaimsCacheEntry cacheEntry = entries.get(tokenId);
+        if (cacheEntry == null) {
+            return null;
+        }
+        // Callers may modify the returned claims, hence copies are returned.
+        return copyOf(isUserInfo ? cacheEntry.userInfoClaims : cacheEntry.idTokenClaims);
+    }
+
+    /**
+     * Get the number of invalidations done so far. The value needs to be read before the requested claims are loaded
+     * and passed to {@link #putRequestedClaims(String, List, List, long)}, so that claims loaded before a concurrent
+     * invalidation are not cached.
+     *
+     * @return Number of invalidations.
+     */
+    public long getInvalidationCount() {
+
+        return entries.getInvalidationCount();
+    }
+
+    /**
+     * Cache the requested claims of an access token, unless an entry was invalidated after the claims were loaded.
+     *
+     * @param tokenId           Id of the access token.
+     * @param idTokenClaims     Claims requested for the ID token.
+     * @param userInfoClaims    Claims requested for the user info response.
+     * @param invalidationCount Number of invalidations read before the claims were loaded.
+     */
+    public void putRequestedClaims(String tokenId, List<RequestedClaim> idTokenClaims,
+                                   List<RequestedClaim> userInfoClaims, long invalidationCount) {
+
+        if (!enabled || tokenId == null) {
+            return;
+        }
+        RequestedClaimsCacheEntry cacheEntry = new RequestedClaimsCacheEntry(copyOf(idTokenClaims),
+                copyOf(userInfoClaims), System.currentTimeMillis() + timeToLiveMillis);
+        entries.putIfNotInvalidated(tokenId, cacheEntry, cacheEntry.expiryTime, invalidationCount);
+    }
+
+    /**
+     * Remove the cached requested claims of an access token.
+     *
+     * @param tokenId Id of the access token.
+     */
+    public void invalidate(String tokenId) {
+
+        if (!enabled) {
+            return;
+        }
+        entries.remove(tokenId);
+        if (log.isDebugEnabled()) {
+            log.debug("Cached requested claims invalidated for token id: " + tokenId);
+        }
+    }
+
+    /**
+     * Move the cached requested claims of a refreshed access token to the new access token.
+     *
+     * @param oldTokenId Id of the refreshed access token.
+     * @param newTokenId Id of the new access token.
+     */
+    public void move(String oldTokenId, String newTokenId) {
+
+        if (!enabled) {
+            return;
+        }
+        RequestedClaimsCacheEntry cacheEntry = entries.remove(oldTokenId);
+        entries.remove(newTokenId);
+        if (cacheEntry != null && cacheEntry.expiryTime > System.currentTimeMillis()) {
+            entries.put(newTokenId, cacheEntry, cacheEntry.expiryTime);
+        }
+    }
+
+    /**
+     * Remove the cached requested claims of all access tokens.
+     */
+    public void clearAll() {
+
+        entries.clear();
+    }
+
+    public int size() {
+
+        return entries.size();
+    }
+
+    public long getHitCount() {
+
+        return entries.getHitCount();
+    }
+
+    public long getMissCount() {
+
+        return entries.getMissCount();
+    }
+
+    private static List<RequestedClaim> copyOf(List<RequestedClaim> requestedClaims) {
+
+        if (requestedClaims == null || requestedClaims.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<RequestedClaim> copies = new ArrayList<>(requestedClaims.size());
+        for (RequestedClaim requestedClaim : requestedClaims) {
+            RequestedClaim copy = new RequestedClaim();
+            copy.setName(requestedClaim.getName());
+            copy.setType(requestedClaim.getType());
+            copy.setEssential(requestedClaim.isEssential());
+            copy.setValue(requestedClaim.getValue());
+            if (requestedClaim.getValues() != null) {
+                copy.setValues(new ArrayList<>(requestedClaim.getValues()));
+            }
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static class RequestedClaimsCacheEntry {
+
+        private final List<RequestedClaim> idTokenClaims;
+        private final List<RequestedClaim> userInfoClaims;
+        private final long expiryTime;
+
+        private RequestedClaimsCacheEntry(List<RequestedClaim> idTokenClaims, List<RequestedClaim> userInfoClaims,
+                                          long expiryTime) {
+
+            this.idTokenClaims = Collections.unmodifiableList(idTokenClaims);
+            this.userInfoClaims = Collections.unmodifiableList(userInfoClaims);
+            this.expiryTime = expiryTime;
+        }
+    }
+}
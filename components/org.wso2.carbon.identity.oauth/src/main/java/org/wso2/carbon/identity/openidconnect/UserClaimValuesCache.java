@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.openidconnect;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth2.util.BoundedTTLCache;
+import org.wso2.carbon.user.core.UserCoreConstants;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getLongProperty;
+
+/**
+ * Bounded node local cache of the claim values of local users retrieved from the user store to build ID tokens and
+ * user info responses. Entries are kept per user and set of requested claims, are evicted in LRU order once the
+ * configured size is reached and expire after a short time to live. Entries of a user are invalidated on this node
+ * when the claims or roles of the user are updated, while the other nodes of a cluster rely on the time to live.
+ */
+public class UserClaimValuesCache {
+
+    private static final Log log = LogFactory.getLog(UserClaimValuesCache.class);
+
+    // These config properties are defined in identity.xml
+    private static final String USER_CLAIMS_CACHE_ENABLE = "OAuth.OpenIDConnect.UserClaimsCache.Enable";
+    private static final String USER_CLAIMS_CACHE_MAX_SIZE = "OAuth.OpenIDConnect.UserClaimsCache.MaxSize";
+    private static final String USER_CLAIMS_CACHE_TIME_TO_LIVE =
+            "OAuth.OpenIDConnect.UserClaimsCache.TimeToLiveSeconds";
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    private static final long DEFAULT_TIME_TO_LIVE_SECONDS = 10;
+    private static final String KEY_SEPARATOR = ":";
+    private static final String CLAIM_SET_SEPARATOR = "|";
+
+    private static final UserClaimValuesCache instance = new UserClaimValuesCache();
+
+    private final boolean enabled;
+    private final BoundedTTLCache<String, Map<String, String>> entries;
+
+    private UserClaimValuesCache() {
+
+        this(getBooleanProperty(USER_CLAIMS_CACHE_ENABLE, true),
+                getLongProperty(USER_CLAIMS_CACHE_MAX_SIZE, DEFAULT_MAX_SIZE),
+                TimeUnit.SECONDS.toMillis(getLongProperty(USER_CLAIMS_CACHE_TIME_TO_LIVE,
+                        DEFAULT_TIME_TO_LIVE_SECONDS)));
+    }
+
+    UserClaimValuesCache(boolean enabled, long maxSize, long timeToLiveMillis) {
+
+        this.enabled = enabled && maxSize > 0 && timeToLiveMillis > 0;
+        this.entries = new BoundedTTLCache<>(maxSize, timeToLiveMillis);
+    }
+
+    public static UserClaimValuesCache getInstance() {
+
+        return instance;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Get a copy of the cached claim values of a user.
+     *
+     * @param tenantDomain    Tenant domain of the user.
+     * @param userStoreDomain User store domain of the user.
+     * @param username        Tenant unaware username of the user, without the user store domain.
+     * @param claimSetKey     Key of the set of requested claims.
+     * @return Claim values in the local dialect or null if there is no unexpired entry.
+     */
+    public Map<String, String> getClaimValues(String tenantDomain, String userStoreDomain, String username,
+                                              String claimSetKey) {
+
+        if (!enabled) {
+            return null;
+        }
+        Map<String, String> claimValues = entries.get(buildUserKey(tenantDomain, userStoreDomain, username) +
+                claimSetKey);
+        // Callers may modify the returned claims, hence a copy is returned.
+        return claimValues == null ? null : new HashMap<>(claimValues);
+    }
+
+    /**
+     * Cache the claim values of a user.
+     *
+     * @param tenantDomain    Tenant domain of the user.
+     * @param userStoreDomain User store domain of the user.
+     * @param username        Tenant unaware username of the user, without the user store domain.
+     * @param claimSetKey     Key of the set of requested claims.
+     * @param claimValues     Claim values in the local dialect.
+     */
+    public void putClaimValues(String tenantDomain, String userStoreDomain, String username, String claimSetKey,
+                               Map<String, String> claimValues) {
+
+        if (!enabled || claimValues == null) {
+            return;
+        }
+        entries.put(buildUserKey(tenantDomain, userStoreDomain, username) + claimSetKey,
+                Collections.unmodifiableMap(new HashMap<>(claimValues)));
+    }
+
+    /**
+     * Remove the cached claim values of a user for all the sets of requested claims.
+     *
+     * @param tenantDomain    Tenant domain of the user.
+     * @param userStoreDomain User store domain of the user.
+     * @param username        Tenant unaware username of the user, without the user store domain.
+     */
+    public void clear(String tenantDomain, String userStoreDomain, String username) {
+
+        if (!enabled) {
+            return;
+        }
+        String prefix = buildUserKey(tenantDomain, userStoreDomain, username);
+        entries.removeIf(cacheKey -> cacheKey.startsWith(prefix));
+        if (log.isDebugEnabled()) {
+            log.debug("Cached claim values cleared for user: " + username + " of user store: " + userStoreDomain +
+                    " in tenant domain: " + tenantDomain);
+        }
+    }
+
+    /**
+     * Remove the cached claim values of all users.
+     */
+    public void clearAll() {
+
+        entries.clear();
+    }
+
+    public int size() {
+
+        return entries.size();
+    }
+
+    public long getHitCount() {
+
+        return entries.getHitCount();
+    }
+
+    public long getMissCount() {
+
+        return entries.getMissCount();
+    }
+
+    private static String buildUserKey(String tenantDomain, String userStoreDomain, String username) {
+
+        String domain = StringUtils.isBlank(userStoreDomain) ? UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME :
+                userStoreDomain.toUpperCase();
+        return tenantDomain + KEY_SEPARATOR + domain + KEY_SEPARATOR + username + CLAIM_SET_SEPARATOR;
+    }
+}
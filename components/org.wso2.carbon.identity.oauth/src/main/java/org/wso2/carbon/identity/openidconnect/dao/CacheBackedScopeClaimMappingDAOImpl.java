@@ -22,9 +22,11 @@ package org.wso2.carbon.identity.openidconnect.dao;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+import org.wso2.carbon.identity.oauth2.util.ETagResponseCache;
 import org.wso2.carbon.identity.openidconnect.cache.OIDCScopeClaimCache;
 import org.wso2.carbon.identity.openidconnect.cache.OIDCScopeClaimCacheEntry;
 
@@ -58,6 +60,7 @@ public class CacheBackedScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO
     public void addScopes(int tenantId, List<ScopeDTO> scopeClaimsMap) throws IdentityOAuth2Exception {
 
         scopeClaimMappingDAOImpl.addScopes(tenantId, scopeClaimsMap);
+        clearDiscoveryDocuments(tenantId);
         OIDCScopeClaimCacheEntry oidcScopeClaimCacheEntry = new OIDCScopeClaimCacheEntry();
         oidcScopeClaimCacheEntry.setScopeClaimMapping(scopeClaimsMap);
         oidcScopeClaimCache.addScopeClaimMap(tenantId, oidcScopeClaimCacheEntry);
@@ -71,6 +74,7 @@ public class CacheBackedScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO
 
         oidcScopeClaimCache.clearScopeClaimMap(tenantId);
         scopeClaimMappingDAOImpl.addScope(tenantId, scope, claimsList);
+        clearDiscoveryDocuments(tenantId);
         if (log.isDebugEnabled()) {
             log.debug("The cache oidcScopeClaimCache is cleared for the tenant : " + tenantId);
         }
@@ -81,6 +85,7 @@ public class CacheBackedScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO
 
         oidcScopeClaimCache.clearScopeClaimMap(tenantId);
         scopeClaimMappingDAOImpl.addScope(scope, tenantId);
+        clearDiscoveryDocuments(tenantId);
         if (log.isDebugEnabled()) {
             log.debug("The cache oidcScopeClaimCache is cleared for the tenant : " + tenantId);
         }
@@ -98,6 +103,7 @@ public class CacheBackedScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO
     public void deleteScope(String scope, int tenantId) throws IdentityOAuth2Exception {
 
         scopeClaimMappingDAOImpl.deleteScope(scope, tenantId);
+        clearDiscoveryDocuments(tenantId);
         oidcScopeClaimCache.clearScopeClaimMap(tenantId);
         if (log.isDebugEnabled()) {
             log.debug("OIDC scope claims mapping deleted from the oidcScopeClaimCache for tenant: " + tenantId);
@@ -199,4 +205,10 @@ public class CacheBackedScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO
         }
         return scopeClaimMappingDAOImpl.getScope(scopeName, tenantId);
     }
+
+    private void clearDiscoveryDocuments(int tenantId) {
+
+        // The OIDC scopes of the tenant are listed in the discovery response.
+        ETagResponseCache.getDiscoveryResponseCache().clear(IdentityTenantUtil.getTenantDomain(tenantId));
+    }
 }
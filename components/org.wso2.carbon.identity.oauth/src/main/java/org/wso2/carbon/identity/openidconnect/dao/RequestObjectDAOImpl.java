@@ -31,6 +31,7 @@ import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dao.AuthorizationCodeDAOImpl;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.openidconnect.OIDCConstants;
+import org.wso2.carbon.identity.openidconnect.RequestedClaimsCache;
 import org.wso2.carbon.identity.openidconnect.model.RequestedClaim;
 import org.wso2.carbon.utils.DBUtils;
 
@@ -44,6 +45,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.wso2.carbon.identity.oauth.OAuthUtil.handleError;
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getBooleanProperty;
 
 /**
  * This class handles all the DAO layer activities which are related to OIDC request object.
@@ -53,6 +55,15 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
     private static final String ID = "ID";
     private static final Log log = LogFactory.getLog(AuthorizationCodeDAOImpl.class);
 
+    // These config properties are defined in identity.xml
+    private static final String PERSIST_CLAIM_VALUES = "OAuth.RequestObject.PersistClaimValues";
+
+    /*
+     * The values of the requested claims are only stored for reference and are never read back by this component.
+     * Hence storing them, which needs the ids of the stored claims to be read back, can be turned off.
+     */
+    private final boolean persistClaimValues = getBooleanProperty(PERSIST_CLAIM_VALUES, true);
+
     /**
      * Store request object related data into related db tables.
      *
@@ -84,21 +95,23 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
             } else {
                 log.warn("Unable to persist Request Object reference for : " + sessionDataKey);
             }
+            if (requestObjectId != -1 && CollectionUtils.isNotEmpty(claims)) {
+                insertRequestObjectClaims(requestObjectId, claims, connection);
+            }
+            // The reference and its claims are committed together.
             IdentityDatabaseUtil.commitTransaction(connection);
-            if (requestObjectId != -1) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Successfully stored the Request Object reference: " + requestObjectId + " for " +
-                            "sessionDataKey: " + sessionDataKey);
-                }
-                if (CollectionUtils.isNotEmpty(claims)) {
-                    insertRequestObjectClaims(requestObjectId, claims, connection);
-                }
+            if (requestObjectId != -1 && log.isDebugEnabled()) {
+                log.debug("Successfully stored the Request Object reference: " + requestObjectId + " for " +
+                        "sessionDataKey: " + sessionDataKey);
             }
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
             String errorMessage = "Error when storing the request object reference";
             log.error(errorMessage, e);
             throw new IdentityOAuth2Exception(errorMessage, e);
+        } catch (IdentityOAuth2Exception e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw e;
         } finally {
             IdentityDatabaseUtil.closeAllConnections(connection, rs, prepStmt);
         }
@@ -159,6 +172,7 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
             ps.setString(3, sessionDataKey);
             ps.execute();
             IdentityDatabaseUtil.commitTransaction(connection);
+            RequestedClaimsCache.getInstance().invalidate(accessTokenId);
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
             String errorMsg = "Can not update code id or the access token id of the table ."
@@ -171,16 +185,14 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
     }
 
     private void insertRequestObjectClaims(int requestObjectId, List<List<RequestedClaim>> claims,
-                                           Connection connection) throws IdentityOAuth2Exception {
+                                           Connection connection) throws SQLException, IdentityOAuth2Exception {
 
         String sqlStmt = SQLQueries.STORE_IDN_OIDC_REQ_OBJECT_CLAIMS;
         PreparedStatement prepStmt = null;
         Map<Integer, List<String>> claimValues = new HashMap<>();
         try {
-            connection.setAutoCommit(false);
-            String dbProductName = connection.getMetaData().getDatabaseProductName();
-            prepStmt = connection.prepareStatement(sqlStmt, new String[]{
-                    DBUtils.getConvertedAutoGeneratedColumnName(dbProductName, ID)});
+            prepStmt = connection.prepareStatement(sqlStmt);
+            boolean hasClaimValues = false;
             for (List<RequestedClaim> list : claims) {
                 if (CollectionUtils.isNotEmpty(list)) {
                     for (RequestedClaim claim : list) {
@@ -194,13 +206,18 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
                             prepStmt.setString(5, "0");
                         }
                         prepStmt.addBatch();
+                        hasClaimValues = hasClaimValues || CollectionUtils.isNotEmpty(claim.getValues());
                         if (log.isDebugEnabled()) {
                             log.debug(
                                     "Claim :" + claim.getName() + "is added to the batch against :" + claim.getType());
                         }
                     }
                 }
-                prepStmt.executeBatch();
+            }
+            // All the claims of the request object are inserted in a single batch.
+            prepStmt.executeBatch();
+            if (!hasClaimValues || !persistClaimValues) {
+                return;
             }
             Map<Integer, String> insertedRequestObjectClaims
                     = getInsertedRequestObjectClaims(connection, requestObjectId);
@@ -222,17 +239,6 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
                     insertRequestObjectClaimValues(claimValues, connection);
                 }
             }
-            IdentityDatabaseUtil.commitTransaction(connection);
-        } catch (SQLException e) {
-            try {
-                connection.rollback();
-            } catch (SQLException e1) {
-                String errorMessage = "Rollback error when storing the request object claims.";
-                throw new IdentityOAuth2Exception(errorMessage, e);
-            }
-            String errorMessage = "Error when storing the request object claims.";
-            log.error(errorMessage, e);
-            throw new IdentityOAuth2Exception(errorMessage, e);
         } finally {
             IdentityApplicationManagementUtil.closeStatement(prepStmt);
         }
@@ -339,12 +345,33 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
      */
     @Override
     public List<RequestedClaim> getRequestedClaims(String token, boolean isUserInfo) throws IdentityOAuth2Exception {
+
+        String tokenId = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO().
+                getTokenIdByAccessToken(token);
+        RequestedClaimsCache requestedClaimsCache = RequestedClaimsCache.getInstance();
+        if (!requestedClaimsCache.isEnabled() || tokenId == null) {
+            return getRequestedClaimsByTokenId(tokenId, isUserInfo);
+        }
+        List<RequestedClaim> requestedClaims = requestedClaimsCache.getRequestedClaims(tokenId, isUserInfo);
+        if (requestedClaims != null) {
+            return requestedClaims;
+        }
+        // Read before loading the claims, so that claims loaded before a concurrent update are not cached.
+        long invalidationCount = requestedClaimsCache.getInvalidationCount();
+        List<RequestedClaim> idTokenClaims = new ArrayList<>();
+        List<RequestedClaim> userInfoClaims = new ArrayList<>();
+        loadRequestedClaimsByTokenId(tokenId, idTokenClaims, userInfoClaims);
+        requestedClaimsCache.putRequestedClaims(tokenId, idTokenClaims, userInfoClaims, invalidationCount);
+        return isUserInfo ? userInfoClaims : idTokenClaims;
+    }
+
+    private List<RequestedClaim> getRequestedClaimsByTokenId(String tokenId, boolean isUserInfo)
+            throws IdentityOAuth2Exception {
+
         Connection connection = null;
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
         List<RequestedClaim> essentialClaims = new ArrayList<>();
-        String tokenId = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO().
-                getTokenIdByAccessToken(token);
         try {
             connection = IdentityDatabaseUtil.getDBConnection(false);
             String sql = SQLQueries.RETRIEVE_REQUESTED_CLAIMS_BY_TOKEN;
@@ -370,6 +397,41 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
         return essentialClaims;
     }
 
+    /**
+     * Load the claims requested for the ID token and for the user info response of a token with a single query.
+     *
+     * @param tokenId        token id
+     * @param idTokenClaims  list to add the claims requested for the ID token
+     * @param userInfoClaims list to add the claims requested for the user info response
+     * @throws IdentityOAuth2Exception
+     */
+    private void loadRequestedClaimsByTokenId(String tokenId, List<RequestedClaim> idTokenClaims,
+                                              List<RequestedClaim> userInfoClaims) throws IdentityOAuth2Exception {
+
+        String sql = SQLQueries.RETRIEVE_ALL_REQUESTED_CLAIMS_BY_TOKEN;
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+             PreparedStatement prepStmt = connection.prepareStatement(sql)) {
+            prepStmt.setString(1, tokenId);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                while (resultSet.next()) {
+                    RequestedClaim requestedClaim = new RequestedClaim();
+                    requestedClaim.setName(resultSet.getString(1));
+                    requestedClaim.setEssential(!"0".equals(resultSet.getString(2)));
+                    requestedClaim.setValue(resultSet.getString(3));
+                    String isUserInfo = resultSet.getString(4);
+                    if ("1".equals(isUserInfo)) {
+                        userInfoClaims.add(requestedClaim);
+                    } else if ("0".equals(isUserInfo)) {
+                        idTokenClaims.add(requestedClaim);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            String errorMsg = "Error occurred while retrieving request object.";
+            throw new IdentityOAuth2Exception(errorMsg, e);
+        }
+    }
+
     @Override
     public void refreshRequestObjectReference(String oldAccessTokenId, String newAccessTokenId)
             throws IdentityOAuth2Exception {
@@ -384,6 +446,7 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
             ps.setString(2, oldAccessTokenId);
             ps.execute();
             IdentityDatabaseUtil.commitTransaction(connection);
+            RequestedClaimsCache.getInstance().move(oldAccessTokenId, newAccessTokenId);
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
             String errorMsg = "Can not update refreshed token id of the table ."
@@ -409,6 +472,7 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
             ps.setString(2, codeId);
             ps.execute();
             IdentityDatabaseUtil.commitTransaction(connection);
+            RequestedClaimsCache.getInstance().invalidate(tokenId);
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
             String errorMsg = "Can not update token id for code id: " + codeId;
@@ -441,6 +505,7 @@ public class RequestObjectDAOImpl implements RequestObjectDAO {
                 prepStmt.setString(1, tokenId);
                 prepStmt.execute();
                 IdentityDatabaseUtil.commitTransaction(connection);
+                RequestedClaimsCache.getInstance().invalidate(tokenId);
             } catch (SQLException e1) {
                 IdentityDatabaseUtil.rollbackTransaction(connection);
                 throw handleError("Error when executing the SQL : " + SQLQueries.DELETE_REQ_OBJECT_BY_TOKEN_ID, e1);
@@ -67,6 +67,12 @@ public class SQLQueries {
             " ON IDN_OIDC_REQ_OBJECT_CLAIMS.REQ_OBJECT_ID = IDN_OIDC_REQ_OBJECT_REFERENCE.ID" +
             " WHERE TOKEN_ID=? AND IS_USERINFO=? ";
 
+    public static final String RETRIEVE_ALL_REQUESTED_CLAIMS_BY_TOKEN = "SELECT CLAIM_ATTRIBUTE, ESSENTIAL, VALUE," +
+            " IS_USERINFO FROM IDN_OIDC_REQ_OBJECT_CLAIMS" +
+            " LEFT JOIN IDN_OIDC_REQ_OBJECT_REFERENCE" +
+            " ON IDN_OIDC_REQ_OBJECT_CLAIMS.REQ_OBJECT_ID = IDN_OIDC_REQ_OBJECT_REFERENCE.ID" +
+            " WHERE TOKEN_ID=?";
+
     public static final String RETRIEVE_REQUESTED_CLAIMS_BY_SESSION_DATA_KEY = "SELECT CLAIM_ATTRIBUTE, ESSENTIAL," +
             " VALUE FROM IDN_OIDC_REQ_OBJECT_CLAIMS" +
             " LEFT JOIN IDN_OIDC_REQ_OBJECT_REFERENCE" +
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+
+import java.sql.Timestamp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Unit tests for OAuthNearCache.
+ */
+public class OAuthNearCacheTest {
+
+    private static final long TIME_TO_LIVE = 60000;
+
+    @Test
+    public void testGetAfterPut() {
+
+        OAuthNearCache nearCache = new OAuthNearCache(true, 10, TIME_TO_LIVE);
+        OAuthCacheKey key = new OAuthCacheKey("token");
+        AccessTokenDO accessTokenDO = getAccessToken(TIME_TO_LIVE);
+
+        assertNull(nearCache.get(key));
+        nearCache.put(key, accessTokenDO);
+
+        assertSame(nearCache.get(key), accessTokenDO);
+        assertEquals(nearCache.getHitCount(), 1);
+        assertEquals(nearCache.getMissCount(), 1);
+        assertEquals(nearCache.getHitRatio(), 0.5);
+    }
+
+    @Test
+    public void testNonAccessTokenEntriesAreNotCached() {
+
+        OAuthNearCache nearCache = new OAuthNearCache(true, 10, TIME_TO_LIVE);
+        OAuthCacheKey key = new OAuthCacheKey("code");
+        nearCache.put(key, new AuthzCodeDO());
+
+        assertNull(nearCache.get(key));
+    }
+
+    @Test
+    public void testExpiredTokensAreNotCached() {
+
+        OAuthNearCache nearCache = new OAuthNearCache(true, 10, TIME_TO_LIVE);
+        OAuthCacheKey key = new OAuthCacheKey("token");
+        AccessTokenDO expiredToken = getAccessToken(TIME_TO_LIVE);
+        expiredToken.setIssuedTime(new Timestamp(System.currentTimeMillis() - 2 * TIME_TO_LIVE));
+        nearCache.put(key, expiredToken);
+
+        assertNull(nearCache.get(key));
+        assertEquals(nearCache.size(), 0);
+    }
+
+    @Test
+    public void testSizeBoundEvictsLeastRecentlyUsed() {
+
+        OAuthNearCache nearCache = new OAuthNearCache(true, 2, TIME_TO_LIVE);
+        OAuthCacheKey first = new OAuthCacheKey("first");
+        OAuthCacheKey second = new OAuthCacheKey("second");
+        OAuthCacheKey third = new OAuthCacheKey("third");
+        nearCache.put(first, getAccessToken(TIME_TO_LIVE));
+        nearCache.put(second, getAccessToken(TIME_TO_LIVE));
+        nearCache.get(first);
+        nearCache.put(third, getAccessToken(TIME_TO_LIVE));
+
+        assertEquals(nearCache.size(), 2);
+        assertNull(nearCache.get(second));
+    }
+
+    @Test
+    public void testInvalidate() {
+
+        OAuthNearCache nearCache = new OAuthNearCache(true, 10, TIME_TO_LIVE);
+        OAuthCacheKey key = new OAuthCacheKey("token");
+        nearCache.put(key, getAccessToken(TIME_TO_LIVE));
+        nearCache.invalidate(key);
+
+        assertNull(nearCache.get(key));
+        assertEquals(nearCache.getInvalidationCount(), 1);
+    }
+
+    @Test
+    public void testEntryInvalidatedWhileLoadingIsNotAdded() {
+
+        OAuthNearCache nearCache = new OAuthNearCache(true, 10, TIME_TO_LIVE);
+        OAuthCacheKey key = new OAuthCacheKey("token");
+        long invalidationGeneration = nearCache.getInvalidationGeneration();
+        // The entry is cleared by another node while this node loads it from the cluster cache.
+        nearCache.invalidate(key);
+        nearCache.put(key, getAccessToken(TIME_TO_LIVE), invalidationGeneration);
+
+        assertNull(nearCache.get(key));
+        nearCache.put(key, getAccessToken(TIME_TO_LIVE), nearCache.getInvalidationGeneration());
+        assertNotNull(nearCache.get(key));
+    }
+
+    @Test
+    public void testInvalidateTenant() {
+
+        OAuthNearCache nearCache = new OAuthNearCache(true, 10, TIME_TO_LIVE);
+        OAuthCacheKey tenantKey = new OAuthCacheKey("tenantToken");
+        OAuthCacheKey otherTenantKey = new OAuthCacheKey("otherTenantToken");
+        nearCache.put(tenantKey, getAccessToken(TIME_TO_LIVE, "tenant.com"));
+        nearCache.put(otherTenantKey, getAccessToken(TIME_TO_LIVE, "other.com"));
+        nearCache.invalidateTenant("tenant.com");
+
+        assertNull(nearCache.get(tenantKey));
+        assertNotNull(nearCache.get(otherTenantKey));
+    }
+
+    @Test
+    public void testDisabledNearCache() {
+
+        OAuthNearCache nearCache = new OAuthNearCache(false, 10, TIME_TO_LIVE);
+        OAuthCacheKey key = new OAuthCacheKey("token");
+        nearCache.put(key, getAccessToken(TIME_TO_LIVE));
+
+        assertNull(nearCache.get(key));
+        assertEquals(nearCache.getMissCount(), 0);
+    }
+
+    private AccessTokenDO getAccessToken(long validityPeriodInMillis) {
+
+        AccessTokenDO accessTokenDO = new AccessTokenDO();
+        accessTokenDO.setIssuedTime(new Timestamp(System.currentTimeMillis()));
+        accessTokenDO.setValidityPeriodInMillis(validityPeriodInMillis);
+        return accessTokenDO;
+    }
+
+    private AccessTokenDO getAccessToken(long validityPeriodInMillis, String tenantDomain) {
+
+        AccessTokenDO accessTokenDO = getAccessToken(validityPeriodInMillis);
+        AuthenticatedUser authenticatedUser = new AuthenticatedUser();
+        authenticatedUser.setTenantDomain(tenantDomain);
+        accessTokenDO.setAuthzUser(authenticatedUser);
+        return accessTokenDO;
+    }
+}
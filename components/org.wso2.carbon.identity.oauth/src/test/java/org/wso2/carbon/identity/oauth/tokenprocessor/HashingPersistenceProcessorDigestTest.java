@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.tokenprocessor;
+
+import org.json.JSONObject;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.Whitebox;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Tests the reuse of message digests and hashes in HashingPersistenceProcessor.
+ */
+@PrepareForTest({OAuthServerConfiguration.class})
+public class HashingPersistenceProcessorDigestTest extends PowerMockIdentityBaseTest {
+
+    private static final String ACCESS_TOKEN = "c9e8a6c4-4f2a-3f35-b3b6-7cbe0b2b4c3f";
+    private static final String REFRESH_TOKEN = "5d4b63e1-6b50-3c4e-b0a1-7d0c3a5e8d21";
+
+    @Mock
+    private OAuthServerConfiguration mockedServerConfig;
+
+    private HashingPersistenceProcessor hashingPersistenceProcessor;
+
+    @BeforeMethod
+    public void setUp() {
+
+        mockStatic(OAuthServerConfiguration.class);
+        when(OAuthServerConfiguration.getInstance()).thenReturn(mockedServerConfig);
+        when(mockedServerConfig.getHashAlgorithm()).thenReturn("SHA-256");
+        hashingPersistenceProcessor = new HashingPersistenceProcessor();
+    }
+
+    @Test
+    public void testHashFormat() throws Exception {
+
+        assertEquals(hashingPersistenceProcessor.getProcessedAccessTokenIdentifier(ACCESS_TOKEN),
+                getExpectedHash(ACCESS_TOKEN, "SHA-256"));
+        assertEquals(hashingPersistenceProcessor.getProcessedClientSecret(ACCESS_TOKEN),
+                getExpectedHash(ACCESS_TOKEN, "SHA-256"));
+    }
+
+    @Test
+    public void testRepeatedHashing() throws Exception {
+
+        String accessTokenHash = hashingPersistenceProcessor.getProcessedAccessTokenIdentifier(ACCESS_TOKEN);
+        String refreshTokenHash = hashingPersistenceProcessor.getProcessedRefreshToken(REFRESH_TOKEN);
+
+        assertNotEquals(accessTokenHash, refreshTokenHash);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(hashingPersistenceProcessor.getProcessedAccessTokenIdentifier(ACCESS_TOKEN), accessTokenHash);
+            assertEquals(hashingPersistenceProcessor.getProcessedRefreshToken(REFRESH_TOKEN), refreshTokenHash);
+            assertEquals(hashingPersistenceProcessor.getProcessedAuthzCode(ACCESS_TOKEN), accessTokenHash);
+        }
+    }
+
+    @Test
+    public void testHashAlgorithmChange() throws Exception {
+
+        hashingPersistenceProcessor.getProcessedAccessTokenIdentifier(ACCESS_TOKEN);
+        when(mockedServerConfig.getHashAlgorithm()).thenReturn("SHA-512");
+
+        String hash = hashingPersistenceProcessor.getProcessedAccessTokenIdentifier(ACCESS_TOKEN);
+        assertEquals(hash, getExpectedHash(ACCESS_TOKEN, "SHA-512"));
+        assertEquals(new JSONObject(hash).getString(HashingPersistenceProcessor.ALGORITHM), "SHA-512");
+    }
+
+    @Test
+    public void testHashMemoIsRequestScoped() throws Exception {
+
+        HashingPersistenceProcessor.startHashMemo();
+        try {
+            String hash = hashingPersistenceProcessor.getProcessedAccessTokenIdentifier(ACCESS_TOKEN);
+            assertEquals(hashingPersistenceProcessor.getProcessedAccessTokenIdentifier(ACCESS_TOKEN), hash);
+            assertEquals(hashingPersistenceProcessor.getProcessedRefreshToken(ACCESS_TOKEN), hash);
+
+            // Hashes of another algorithm are not served from the memo.
+            when(mockedServerConfig.getHashAlgorithm()).thenReturn("SHA-512");
+            assertEquals(hashingPersistenceProcessor.getProcessedAccessTokenIdentifier(ACCESS_TOKEN),
+                    getExpectedHash(ACCESS_TOKEN, "SHA-512"));
+
+            // A nested flow keeps the memo of the outer flow.
+            HashingPersistenceProcessor.startHashMemo();
+            HashingPersistenceProcessor.endHashMemo();
+            assertNotNull(getHashMemo().get());
+        } finally {
+            HashingPersistenceProcessor.endHashMemo();
+        }
+        assertNull(getHashMemo().get());
+    }
+
+    private ThreadLocal<?> getHashMemo() {
+
+        return Whitebox.getInternalState(HashingPersistenceProcessor.class, "HASH_MEMO");
+    }
+
+    private String getExpectedHash(String plainText, String hashAlgorithm) throws Exception {
+
+        MessageDigest messageDigest = MessageDigest.getInstance(hashAlgorithm);
+        byte[] hash = messageDigest.digest(plainText.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte byt : hash) {
+            hex.append(Integer.toString((byt & 0xff) + 0x100, 16).substring(1));
+        }
+        JSONObject object = new JSONObject();
+        object.put(HashingPersistenceProcessor.ALGORITHM, hashAlgorithm);
+        object.put(HashingPersistenceProcessor.HASH, hex.toString());
+        return object.toString();
+    }
+}
@@ -35,7 +35,10 @@ import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.cache.OAuthScopeCache;
 import org.wso2.carbon.identity.oauth.cache.OAuthScopeCacheKey;
 import org.wso2.carbon.identity.oauth2.bean.Scope;
+import org.wso2.carbon.identity.oauth2.dao.CacheBackedOAuthUserConsentedScopesDAOImpl;
+import org.wso2.carbon.identity.oauth2.dao.OAuthUserConsentedScopesDAOImpl;
 import org.wso2.carbon.identity.oauth2.model.OAuth2ScopeConsentResponse;
+import org.wso2.carbon.identity.oauth2.model.UserApplicationScopeConsentDO;
 import org.wso2.carbon.identity.oauth2.util.Oauth2ScopeUtils;
 
 import java.sql.Connection;
@@ -45,10 +48,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 @WithCarbonHome
@@ -482,6 +487,71 @@ public class OAuth2ScopeServiceTest extends PowerMockTestCase {
         assertEquals(response.get(0).getDeniedScopes().size(), deniedScopes.size());
     }
 
+    @Test
+    public void testGetUserConsentForNotConsentedApp() throws Exception {
+
+        String appId = UUID.randomUUID().toString();
+        String otherAppId = UUID.randomUUID().toString();
+        insertAppId(appId);
+        insertAppId(otherAppId);
+        int tenantId = 1;
+        String userId = "notConsentedUserId";
+        oAuth2ScopeService.addUserConsentForApplication(userId, appId, tenantId,
+                new ArrayList<>(Arrays.asList("read")), new ArrayList<>());
+
+        OAuth2ScopeConsentResponse otherAppConsent = oAuth2ScopeService.getUserConsentForApp(userId, otherAppId,
+                tenantId);
+        assertEquals(otherAppConsent.getApprovedScopes().size(), 0);
+        assertEquals(otherAppConsent.getDeniedScopes().size(), 0);
+        assertEquals(oAuth2ScopeService.getUserConsentForApp(userId, appId, tenantId).getApprovedScopes().size(),
+                1);
+
+        oAuth2ScopeService.addUserConsentForApplication(userId, otherAppId, tenantId,
+                new ArrayList<>(Arrays.asList("write")), new ArrayList<>());
+        assertEquals(oAuth2ScopeService.getUserConsentForApp(userId, otherAppId, tenantId).getApprovedScopes()
+                .get(0), "write");
+    }
+
+    @Test
+    public void testGetUserConsentsOfUsers() throws Exception {
+
+        String appId = UUID.randomUUID().toString();
+        insertAppId(appId);
+        int tenantId = 2;
+        oAuth2ScopeService.addUserConsentForApplication("bulkUserId1", appId, tenantId,
+                new ArrayList<>(Arrays.asList("read", "write")), new ArrayList<>(Arrays.asList("delete")));
+        oAuth2ScopeService.addUserConsentForApplication("bulkUserId2", appId, tenantId,
+                new ArrayList<>(Arrays.asList("read")), new ArrayList<>());
+
+        Map<String, List<UserApplicationScopeConsentDO>> userConsents = new OAuthUserConsentedScopesDAOImpl()
+                .getUserConsents(Arrays.asList("bulkUserId1", "bulkUserId2", "bulkUserId3"), tenantId);
+        assertEquals(userConsents.get("bulkUserId1").get(0).getApprovedScopes().size(), 2);
+        assertEquals(userConsents.get("bulkUserId1").get(0).getDeniedScopes().size(), 1);
+        assertEquals(userConsents.get("bulkUserId2").get(0).getAppId(), appId);
+        assertTrue(userConsents.get("bulkUserId3").isEmpty());
+    }
+
+    @Test
+    public void testWarmUpUserConsentCache() throws Exception {
+
+        String appId = UUID.randomUUID().toString();
+        insertAppId(appId);
+        String otherAppId = UUID.randomUUID().toString();
+        insertAppId(otherAppId);
+        int tenantId = 3;
+        oAuth2ScopeService.addUserConsentForApplication("warmUpUserId", appId, tenantId,
+                new ArrayList<>(Arrays.asList("read")), new ArrayList<>());
+        oAuth2ScopeService.addUserConsentForApplication("latestUserId", appId, tenantId,
+                new ArrayList<>(Arrays.asList("read")), new ArrayList<>());
+        oAuth2ScopeService.addUserConsentForApplication("latestUserId", otherAppId, tenantId,
+                new ArrayList<>(Arrays.asList("read")), new ArrayList<>());
+
+        Map<Integer, List<String>> recentlyConsentedUsers = new OAuthUserConsentedScopesDAOImpl()
+                .getRecentlyConsentedUsers(2);
+        assertEquals(recentlyConsentedUsers.get(tenantId), Arrays.asList("latestUserId", "warmUpUserId"));
+        assertTrue(new CacheBackedOAuthUserConsentedScopesDAOImpl().warmUpCache(10) > 0);
+    }
+
     @Test
     public void testRevokeUserConsents() throws Exception {
 
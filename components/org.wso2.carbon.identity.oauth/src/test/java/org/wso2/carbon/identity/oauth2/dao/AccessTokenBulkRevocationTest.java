@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth.dao.SQLQueries;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.util.DAOUtils;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.TokenRevocationCriteria;
+import org.wso2.carbon.identity.oauth2.util.OAuth2TokenUtil;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+import org.wso2.carbon.user.core.UserCoreConstants;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.OAuthVersions.VERSION_2;
+import static org.wso2.carbon.identity.oauth2.dao.SQLQueries.STORE_TOKEN_BINDING;
+
+/**
+ * Unit tests for the bulk access token revocation of AccessTokenDAOImpl.
+ */
+@WithCarbonHome
+@PrepareForTest({IdentityDatabaseUtil.class, OAuth2Util.class, OAuth2TokenUtil.class})
+public class AccessTokenBulkRevocationTest extends PowerMockIdentityBaseTest {
+
+    private static final String DB_NAME = "testBulkRevocationDB";
+    private static final int TENANT_ID = 1;
+    private static final int OTHER_TENANT_ID = 2;
+    private static final String SECONDARY_USER_STORE = "SECONDARY";
+
+    private Connection readConnection;
+    private Connection writeConnection;
+    private AccessTokenDAOImpl accessTokenDAO;
+
+    @BeforeClass
+    public void initTest() throws Exception {
+
+        DAOUtils.initializeDataSource(DB_NAME, DAOUtils.getFilePath("identity.sql"));
+        accessTokenDAO = new AccessTokenDAOImpl();
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        readConnection = DAOUtils.getConnection(DB_NAME);
+        writeConnection = DAOUtils.getConnection(DB_NAME);
+        mockStatic(IdentityDatabaseUtil.class);
+        when(IdentityDatabaseUtil.getDBConnection(false)).thenReturn(readConnection);
+        when(IdentityDatabaseUtil.getDBConnection(true)).thenReturn(writeConnection);
+
+        mockStatic(OAuth2TokenUtil.class);
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.getTenantDomain(anyInt())).thenReturn("carbon.super");
+        when(OAuth2Util.getSanitizedUserStoreDomain(anyString()))
+                .thenAnswer(invocation -> ((String) invocation.getArguments()[0]).toUpperCase());
+        when(OAuth2Util.buildScopeArray(anyString()))
+                .thenAnswer(invocation -> new String[]{(String) invocation.getArguments()[0]});
+        when(OAuth2Util.createAuthenticatedUser(anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    AuthenticatedUser user = new AuthenticatedUser();
+                    user.setUserName((String) invocation.getArguments()[0]);
+                    user.setUserStoreDomain((String) invocation.getArguments()[1]);
+                    return user;
+                });
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+
+        readConnection.close();
+        writeConnection.close();
+    }
+
+    @Test
+    public void testRevokeByConsumerKey() throws Exception {
+
+        String consumerKey = createApplication();
+        String otherConsumerKey = createApplication();
+        List<String> tokenIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tokenIds.add(createAccessToken(consumerKey, TENANT_ID, UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME,
+                    i % 2 == 0 ? OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE :
+                            OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED, "openid", "email"));
+        }
+        String inactiveTokenId = createAccessToken(consumerKey, TENANT_ID,
+                UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME, OAuthConstants.TokenStates.TOKEN_STATE_INACTIVE,
+                "openid");
+        String otherTokenId = createAccessToken(otherConsumerKey, TENANT_ID,
+                UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME, OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE,
+                "openid");
+
+        TokenRevocationCriteria criteria = new TokenRevocationCriteria();
+        criteria.setConsumerKey(consumerKey);
+        List<List<AccessTokenDO>> chunks = new ArrayList<>();
+        int revokedCount = accessTokenDAO.revokeAccessTokens(criteria, 2, chunks::add);
+
+        Assert.assertEquals(revokedCount, 5);
+        Assert.assertEquals(chunks.size(), 3);
+        Assert.assertEquals(chunks.get(0).size(), 2);
+        Assert.assertEquals(chunks.get(2).size(), 1);
+        for (List<AccessTokenDO> chunk : chunks) {
+            for (AccessTokenDO accessTokenDO : chunk) {
+                Assert.assertTrue(tokenIds.contains(accessTokenDO.getTokenId()));
+                Assert.assertEquals(accessTokenDO.getConsumerKey(), consumerKey);
+                Assert.assertEquals(accessTokenDO.getScope().length, 2);
+            }
+        }
+        for (String tokenId : tokenIds) {
+            Assert.assertEquals(getTokenState(tokenId), OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+        }
+        Assert.assertEquals(getTokenState(inactiveTokenId), OAuthConstants.TokenStates.TOKEN_STATE_INACTIVE);
+        Assert.assertEquals(getTokenState(otherTokenId), OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+    }
+
+    @Test
+    public void testRevokeByTenantAndUserStore() throws Exception {
+
+        String consumerKey = createApplication();
+        String primaryTokenId = createAccessToken(consumerKey, OTHER_TENANT_ID,
+                UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME, OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE,
+                "openid");
+        String secondaryTokenId = createAccessToken(consumerKey, OTHER_TENANT_ID, SECONDARY_USER_STORE,
+                OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE, "openid");
+
+        TokenRevocationCriteria criteria = new TokenRevocationCriteria();
+        criteria.setTenantId(OTHER_TENANT_ID);
+        criteria.setUserStoreDomain(SECONDARY_USER_STORE.toLowerCase());
+
+        Assert.assertEquals(accessTokenDAO.revokeAccessTokens(criteria, 100, null), 1);
+        Assert.assertEquals(getTokenState(secondaryTokenId), OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+        Assert.assertEquals(getTokenState(primaryTokenId), OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+    }
+
+    @Test
+    public void testRevokeByBindingReferenceWithFilter() throws Exception {
+
+        String consumerKey = createApplication();
+        String bindingReference = UUID.randomUUID().toString().replace("-", "");
+        String revokedTokenId = createBoundAccessToken(consumerKey, bindingReference);
+        String filteredTokenId = createBoundAccessToken(consumerKey, bindingReference);
+        String otherTokenId = createBoundAccessToken(consumerKey, UUID.randomUUID().toString().replace("-", ""));
+
+        TokenRevocationCriteria criteria = new TokenRevocationCriteria();
+        criteria.setTokenBindingReference(bindingReference);
+        List<String> filteredTokenIds = new ArrayList<>();
+        List<AccessTokenDO> revokedTokens = new ArrayList<>();
+        int revokedCount = accessTokenDAO.revokeAccessTokens(criteria, 100, accessTokenDO -> {
+            filteredTokenIds.add(accessTokenDO.getTokenId());
+            return revokedTokenId.equals(accessTokenDO.getTokenId());
+        }, revokedTokens::addAll);
+
+        Assert.assertEquals(revokedCount, 1);
+        Assert.assertEquals(filteredTokenIds.size(), 2);
+        Assert.assertEquals(revokedTokens.size(), 1);
+        Assert.assertEquals(revokedTokens.get(0).getTokenBinding().getBindingReference(), bindingReference);
+        Assert.assertEquals(getTokenState(revokedTokenId), OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+        Assert.assertEquals(getTokenState(filteredTokenId), OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+        Assert.assertEquals(getTokenState(otherTokenId), OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+    }
+
+    @Test
+    public void testRevokeTokensWithMoreScopesThanPageRows() throws Exception {
+
+        String consumerKey = createApplication();
+        String[] scopes = {"openid", "email", "profile", "phone", "address", "groups"};
+        List<String> tokenIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tokenIds.add(createAccessToken(consumerKey, TENANT_ID, UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME,
+                    OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE, scopes));
+        }
+
+        TokenRevocationCriteria criteria = new TokenRevocationCriteria();
+        criteria.setConsumerKey(consumerKey);
+        List<List<AccessTokenDO>> chunks = new ArrayList<>();
+        int revokedCount = accessTokenDAO.revokeAccessTokens(criteria, 1, chunks::add);
+
+        Assert.assertEquals(revokedCount, 3);
+        Assert.assertEquals(chunks.size(), 3);
+        for (List<AccessTokenDO> chunk : chunks) {
+            Assert.assertEquals(chunk.size(), 1);
+            // Each token is revoked once, with all of its scopes.
+            Assert.assertTrue(tokenIds.remove(chunk.get(0).getTokenId()));
+            Assert.assertEquals(chunk.get(0).getScope().length, scopes.length);
+        }
+    }
+
+    @Test(expectedExceptions = IdentityOAuth2Exception.class)
+    public void testRevokeWithoutCriteria() throws Exception {
+
+        accessTokenDAO.revokeAccessTokens(new TokenRevocationCriteria(), 100, null);
+    }
+
+    private String createApplication() throws Exception {
+
+        String consumerKey = UUID.randomUUID().toString();
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     SQLQueries.OAuthAppDAOSQLQueries.ADD_OAUTH_APP)) {
+            prepStmt.setString(1, consumerKey);
+            prepStmt.setString(2, UUID.randomUUID().toString());
+            prepStmt.setString(3, "admin");
+            prepStmt.setInt(4, TENANT_ID);
+            prepStmt.setString(5, UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME);
+            prepStmt.setString(6, "app-" + consumerKey);
+            prepStmt.setString(7, VERSION_2);
+            prepStmt.setString(8, "http://localhost:8080/redirect");
+            prepStmt.setString(9, "authorization_code refresh_token");
+            prepStmt.setLong(10, 3600L);
+            prepStmt.setLong(11, 3600L);
+            prepStmt.setLong(12, 84600L);
+            prepStmt.setLong(13, 3600L);
+            prepStmt.execute();
+        }
+        return consumerKey;
+    }
+
+    private String createAccessToken(String consumerKey, int tenantId, String userStoreDomain, String tokenState,
+                                     String... scopes) throws Exception {
+
+        String tokenId = UUID.randomUUID().toString();
+        String accessToken = UUID.randomUUID().toString();
+        String insertToken = "INSERT INTO IDN_OAUTH2_ACCESS_TOKEN (TOKEN_ID, ACCESS_TOKEN, CONSUMER_KEY_ID, " +
+                "AUTHZ_USER, TENANT_ID, USER_DOMAIN, USER_TYPE, TOKEN_STATE, TOKEN_STATE_ID, ACCESS_TOKEN_HASH) " +
+                "SELECT ?, ?, ID, ?, ?, ?, 'APPLICATION_USER', ?, ?, ? FROM IDN_OAUTH_CONSUMER_APPS WHERE " +
+                "CONSUMER_KEY = ?";
+        try (Connection connection = DAOUtils.getConnection(DB_NAME)) {
+            try (PreparedStatement prepStmt = connection.prepareStatement(insertToken)) {
+                prepStmt.setString(1, tokenId);
+                prepStmt.setString(2, accessToken);
+                // A user per token keeps the rows unique with respect to the CON_APP_KEY constraint.
+                prepStmt.setString(3, "user-" + tokenId);
+                prepStmt.setInt(4, tenantId);
+                prepStmt.setString(5, userStoreDomain);
+                prepStmt.setString(6, tokenState);
+                prepStmt.setString(7, OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(tokenState) ? "NONE" :
+                        UUID.randomUUID().toString());
+                prepStmt.setString(8, accessToken);
+                prepStmt.setString(9, consumerKey);
+                prepStmt.execute();
+            }
+            for (String scope : scopes) {
+                try (PreparedStatement prepStmt = connection.prepareStatement("INSERT INTO " +
+                        "IDN_OAUTH2_ACCESS_TOKEN_SCOPE (TOKEN_ID, TOKEN_SCOPE, TENANT_ID) VALUES (?, ?, ?)")) {
+                    prepStmt.setString(1, tokenId);
+                    prepStmt.setString(2, scope);
+                    prepStmt.setInt(3, tenantId);
+                    prepStmt.execute();
+                }
+            }
+        }
+        return tokenId;
+    }
+
+    private String createBoundAccessToken(String consumerKey, String bindingReference) throws Exception {
+
+        String tokenId = createAccessToken(consumerKey, TENANT_ID, UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME,
+                OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE, "openid");
+        try (Connection connection = DAOUtils.getConnection(DB_NAME)) {
+            try (PreparedStatement prepStmt = connection.prepareStatement("UPDATE IDN_OAUTH2_ACCESS_TOKEN SET " +
+                    "TOKEN_BINDING_REF = ? WHERE TOKEN_ID = ?")) {
+                prepStmt.setString(1, bindingReference);
+                prepStmt.setString(2, tokenId);
+                prepStmt.execute();
+            }
+            try (PreparedStatement prepStmt = connection.prepareStatement(STORE_TOKEN_BINDING)) {
+                prepStmt.setString(1, tokenId);
+                prepStmt.setString(2, "cookie");
+                prepStmt.setString(3, bindingReference);
+                prepStmt.setString(4, UUID.randomUUID().toString());
+                prepStmt.setInt(5, TENANT_ID);
+                prepStmt.execute();
+            }
+        }
+        return tokenId;
+    }
+
+    private String getTokenState(String tokenId) throws Exception {
+
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     "SELECT TOKEN_STATE FROM IDN_OAUTH2_ACCESS_TOKEN WHERE TOKEN_ID = ?")) {
+            prepStmt.setString(1, tokenId);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                Assert.assertTrue(resultSet.next());
+                return resultSet.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for AuthorizationCodeStore.
+ */
+public class AuthorizationCodeStoreTest {
+
+    private static final String CONSUMER_KEY = "consumerKey";
+    private static final String CALLBACK_URL = "https://localhost/callback";
+    private static final String AUTHZ_CODE = "authzCode";
+    private static final String CODE_ID = "codeId";
+    private static final long FLUSH_DELAY = 60000;
+
+    private AuthorizationCodeDAO authorizationCodeDAO;
+    private AuthorizationCodeStore store;
+
+    @BeforeMethod
+    public void setUp() {
+
+        authorizationCodeDAO = mock(AuthorizationCodeDAO.class);
+        store = new AuthorizationCodeStore(true, FLUSH_DELAY, 10, authorizationCodeDAO);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        store.stop();
+    }
+
+    @Test
+    public void testConsumedCodeIsNotPersisted() throws Exception {
+
+        AuthzCodeDO authzCodeDO = createAuthzCode();
+        assertTrue(store.store(AUTHZ_CODE, CONSUMER_KEY, CALLBACK_URL, authzCodeDO));
+        assertEquals(store.getCodeId(AUTHZ_CODE), CODE_ID);
+
+        assertSame(store.consume(CONSUMER_KEY, AUTHZ_CODE), authzCodeDO);
+        assertNull(store.consume(CONSUMER_KEY, AUTHZ_CODE));
+        store.flush(Long.MAX_VALUE);
+
+        verify(authorizationCodeDAO, never()).insertAuthorizationCode(anyString(), anyString(), anyString(),
+                any(AuthzCodeDO.class));
+        assertEquals(store.getConsumedCount(), 1);
+        assertEquals(store.size(), 0);
+    }
+
+    @Test
+    public void testConcurrentRedeemsConsumeCodeOnce() throws Exception {
+
+        int codeCount = 100;
+        int redeemCount = 8;
+        AuthorizationCodeStore concurrentStore = new AuthorizationCodeStore(true, FLUSH_DELAY, codeCount,
+                authorizationCodeDAO);
+        ExecutorService executorService = Executors.newFixedThreadPool(redeemCount);
+        try {
+            for (int i = 0; i < codeCount; i++) {
+                String authzCode = AUTHZ_CODE + i;
+                concurrentStore.store(authzCode, CONSUMER_KEY, CALLBACK_URL, createAuthzCode());
+                CountDownLatch startLatch = new CountDownLatch(1);
+                List<Future<AuthzCodeDO>> redeems = new ArrayList<>();
+                for (int j = 0; j < redeemCount; j++) {
+                    Callable<AuthzCodeDO> redeem = () -> {
+                        startLatch.await();
+                        return concurrentStore.consume(CONSUMER_KEY, authzCode);
+                    };
+                    redeems.add(executorService.submit(redeem));
+                }
+                startLatch.countDown();
+
+                int consumed = 0;
+                for (Future<AuthzCodeDO> redeem : redeems) {
+                    if (redeem.get() != null) {
+                        consumed++;
+                    }
+                }
+                assertEquals(consumed, 1);
+                // The other redeems find the code as already consumed.
+                assertNotNull(concurrentStore.getConsumedCode(CONSUMER_KEY, authzCode));
+            }
+            concurrentStore.flush(Long.MAX_VALUE);
+
+            verify(authorizationCodeDAO, never()).insertAuthorizationCode(anyString(), anyString(), anyString(),
+                    any(AuthzCodeDO.class));
+            assertEquals(concurrentStore.getConsumedCount(), codeCount);
+        } finally {
+            executorService.shutdownNow();
+            concurrentStore.stop();
+        }
+    }
+
+    @Test
+    public void testCodeOfOtherClientIsNotConsumed() {
+
+        store.store(AUTHZ_CODE, CONSUMER_KEY, CALLBACK_URL, createAuthzCode());
+
+        assertNull(store.consume("otherConsumerKey", AUTHZ_CODE));
+        assertEquals(store.size(), 1);
+    }
+
+    @Test
+    public void testConsumedCodeIsRemembered() {
+
+        store.store(AUTHZ_CODE, CONSUMER_KEY, CALLBACK_URL, createAuthzCode());
+        store.consume(CONSUMER_KEY, AUTHZ_CODE);
+        store.setTokenId(AUTHZ_CODE, "tokenId");
+
+        AuthzCodeDO consumedCode = store.getConsumedCode(CONSUMER_KEY, AUTHZ_CODE);
+        assertEquals(consumedCode.getState(), OAuthConstants.AuthorizationCodeState.INACTIVE);
+        assertEquals(consumedCode.getOauthTokenId(), "tokenId");
+        assertEquals(store.getCodeId(AUTHZ_CODE), CODE_ID);
+        assertNull(store.getConsumedCode("otherConsumerKey", AUTHZ_CODE));
+    }
+
+    @Test
+    public void testFlushPersistsCodesAfterDelay() throws Exception {
+
+        AuthzCodeDO authzCodeDO = createAuthzCode();
+        store.store(AUTHZ_CODE, CONSUMER_KEY, CALLBACK_URL, authzCodeDO);
+
+        store.flush(System.currentTimeMillis());
+        assertEquals(store.size(), 1);
+
+        store.flush(System.currentTimeMillis() + FLUSH_DELAY);
+        verify(authorizationCodeDAO, times(1)).insertAuthorizationCode(AUTHZ_CODE, CONSUMER_KEY, CALLBACK_URL,
+                authzCodeDO);
+        assertEquals(store.getFlushedCount(), 1);
+        // A flushed code is redeemed through the database.
+        assertNull(store.consume(CONSUMER_KEY, AUTHZ_CODE));
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() throws Exception {
+
+        AuthzCodeDO authzCodeDO = createAuthzCode();
+        store.store(AUTHZ_CODE, CONSUMER_KEY, CALLBACK_URL, authzCodeDO);
+        doThrow(new IdentityOAuth2Exception("error")).when(authorizationCodeDAO)
+                .insertAuthorizationCode(eq(AUTHZ_CODE), anyString(), anyString(), any(AuthzCodeDO.class));
+
+        store.flush(Long.MAX_VALUE);
+
+        assertEquals(store.getFailedCount(), 1);
+        assertSame(store.consume(CONSUMER_KEY, AUTHZ_CODE), authzCodeDO);
+    }
+
+    @Test
+    public void testStoreIsBounded() {
+
+        AuthorizationCodeStore boundedStore = new AuthorizationCodeStore(true, FLUSH_DELAY, 1, authorizationCodeDAO);
+        try {
+            assertTrue(boundedStore.store(AUTHZ_CODE, CONSUMER_KEY, CALLBACK_URL, createAuthzCode()));
+            assertFalse(boundedStore.store("otherCode", CONSUMER_KEY, CALLBACK_URL, createAuthzCode()));
+            assertEquals(boundedStore.getSynchronousCount(), 1);
+        } finally {
+            boundedStore.stop();
+        }
+    }
+
+    @Test
+    public void testCodeIsPersistedOnceConsumedCodesAreFull() throws Exception {
+
+        AuthorizationCodeStore boundedStore = new AuthorizationCodeStore(true, FLUSH_DELAY, 2, authorizationCodeDAO);
+        try {
+            boundedStore.store("first", CONSUMER_KEY, CALLBACK_URL, createAuthzCode());
+            boundedStore.store("second", CONSUMER_KEY, CALLBACK_URL, createAuthzCode());
+            boundedStore.consume(CONSUMER_KEY, "first");
+            AuthzCodeDO authzCodeDO = createAuthzCode();
+            assertTrue(boundedStore.store("third", CONSUMER_KEY, CALLBACK_URL, authzCodeDO));
+            boundedStore.consume(CONSUMER_KEY, "second");
+
+            // Reuse of the code could not be detected if it was consumed from memory.
+            assertNull(boundedStore.consume(CONSUMER_KEY, "third"));
+            verify(authorizationCodeDAO, times(1)).insertAuthorizationCode("third", CONSUMER_KEY, CALLBACK_URL,
+                    authzCodeDO);
+            assertEquals(boundedStore.size(), 0);
+            assertFalse(boundedStore.store("fourth", CONSUMER_KEY, CALLBACK_URL, createAuthzCode()));
+        } finally {
+            boundedStore.stop();
+        }
+    }
+
+    @Test
+    public void testDisabledStore() {
+
+        AuthorizationCodeStore disabledStore = new AuthorizationCodeStore(false, FLUSH_DELAY, 10,
+                authorizationCodeDAO);
+
+        assertFalse(disabledStore.store(AUTHZ_CODE, CONSUMER_KEY, CALLBACK_URL, createAuthzCode()));
+        assertNull(disabledStore.consume(CONSUMER_KEY, AUTHZ_CODE));
+    }
+
+    private AuthzCodeDO createAuthzCode() {
+
+        return new AuthzCodeDO(null, new String[]{"openid"}, new Timestamp(System.currentTimeMillis()), 600000,
+                CALLBACK_URL, CONSUMER_KEY, AUTHZ_CODE, CODE_ID, null, null);
+    }
+}
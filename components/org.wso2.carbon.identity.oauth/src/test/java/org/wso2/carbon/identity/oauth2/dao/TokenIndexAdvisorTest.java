@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth2.dao.util.DAOUtils;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for TokenIndexAdvisor.
+ */
+public class TokenIndexAdvisorTest {
+
+    private static final String DB_NAME = "TokenIndexAdvisorDB";
+
+    @BeforeClass
+    public void setUp() throws Exception {
+
+        DAOUtils.initializeDataSource(DB_NAME, DAOUtils.getFilePath("identity.sql"));
+    }
+
+    @Test
+    public void testMissingIndexesAreReported() throws Exception {
+
+        try (Connection connection = DAOUtils.getConnection(DB_NAME)) {
+            List<String> missingIndexes = getCreateStatements(TokenIndexAdvisor.getMissingIndexes(connection));
+
+            // The CON_APP_KEY unique key serves the latest active token lookup.
+            assertFalse(missingIndexes.contains(getCreateStatement("latest active access token lookup")));
+            assertFalse(missingIndexes.contains(getCreateStatement("session bound token revocation")));
+            assertTrue(missingIndexes.contains(getCreateStatement("access token validation")));
+            // The request object tables are not part of this schema.
+            assertFalse(missingIndexes.contains(getCreateStatement("requested claims lookup")));
+        }
+    }
+
+    @Test(dependsOnMethods = "testMissingIndexesAreReported")
+    public void testCreatedIndexesAreRecognised() throws Exception {
+
+        try (Connection connection = DAOUtils.getConnection(DB_NAME)) {
+            try (Statement statement = connection.createStatement()) {
+                for (TokenIndexAdvisor.IndexRecommendation recommendation :
+                        TokenIndexAdvisor.getMissingIndexes(connection)) {
+                    statement.execute(recommendation.getCreateStatement());
+                }
+            }
+            assertEquals(TokenIndexAdvisor.getMissingIndexes(connection).size(), 0);
+        }
+    }
+
+    @Test
+    public void testIndexCoverage() {
+
+        TokenIndexAdvisor.IndexRecommendation recommendation = new TokenIndexAdvisor.IndexRecommendation("test",
+                "TABLE", "IDX", 2, "A", "B", "C");
+
+        assertTrue(recommendation.isCoveredByAny(Collections.singletonList(Arrays.asList("B", "A"))));
+        assertTrue(recommendation.isCoveredByAny(Collections.singletonList(Arrays.asList("A", "B", "D"))));
+        assertFalse(recommendation.isCoveredByAny(Collections.singletonList(Arrays.asList("A", "C", "B"))));
+        assertFalse(recommendation.isCoveredByAny(Collections.singletonList(Collections.singletonList("A"))));
+        assertEquals(recommendation.getCreateStatement(), "CREATE INDEX IDX ON TABLE (A, B, C)");
+    }
+
+    private String getCreateStatement(String purpose) {
+
+        for (TokenIndexAdvisor.IndexRecommendation recommendation : TokenIndexAdvisor.RECOMMENDED_INDEXES) {
+            if (recommendation.getPurpose().equals(purpose)) {
+                return recommendation.getCreateStatement();
+            }
+        }
+        throw new IllegalArgumentException("No recommendation for: " + purpose);
+    }
+
+    private List<String> getCreateStatements(List<TokenIndexAdvisor.IndexRecommendation> recommendations) {
+
+        List<String> createStatements = new ArrayList<>();
+        for (TokenIndexAdvisor.IndexRecommendation recommendation : recommendations) {
+            createStatements.add(recommendation.getCreateStatement());
+        }
+        return createStatements;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.mockito.internal.util.reflection.Whitebox;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for TokenPersistencePipeline.
+ */
+@WithCarbonHome
+public class TokenPersistencePipelineTest extends PowerMockIdentityBaseTest {
+
+    private static final String CONSUMER_KEY = "consumerKey";
+
+    private AccessTokenDAO originalAccessTokenDAO;
+    private AccessTokenDAO mockAccessTokenDAO;
+
+    @BeforeMethod
+    public void setUp() {
+
+        OAuthTokenPersistenceFactory factory = OAuthTokenPersistenceFactory.getInstance();
+        originalAccessTokenDAO = factory.getAccessTokenDAO();
+        mockAccessTokenDAO = mock(AccessTokenDAO.class);
+        Whitebox.setInternalState(factory, "tokenDAO", mockAccessTokenDAO);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        Whitebox.setInternalState(OAuthTokenPersistenceFactory.getInstance(), "tokenDAO", originalAccessTokenDAO);
+    }
+
+    @Test
+    public void testFlushPersistsBatch() throws Exception {
+
+        TokenPersistencePipeline pipeline = new TokenPersistencePipeline(true, 1, 10, 10, 10);
+        List<AccessContextTokenDO> batch = createBatch(3);
+
+        pipeline.flush(batch);
+
+        verify(mockAccessTokenDAO, times(1)).insertAccessTokens(batch);
+        assertEquals(pipeline.getPersistedCount(), 3);
+        assertEquals(pipeline.getRetriedCount(), 0);
+        assertEquals(pipeline.getLastBatchSize(), 3);
+        assertEquals(pipeline.getFlushCount(), 1);
+    }
+
+    @Test
+    public void testFlushRetriesFailedBatchIndividually() throws Exception {
+
+        TokenPersistencePipeline pipeline = new TokenPersistencePipeline(true, 1, 10, 10, 10);
+        List<AccessContextTokenDO> batch = createBatch(3);
+        doThrow(new IdentityOAuth2Exception("Batch failed")).when(mockAccessTokenDAO)
+                .insertAccessTokens(anyListOf(AccessContextTokenDO.class));
+        doThrow(new IdentityOAuth2Exception("Row failed")).when(mockAccessTokenDAO)
+                .insertAccessToken(eq("token1"), anyString(), eq(batch.get(1).getNewAccessTokenDO()),
+                        eq((AccessTokenDO) null), anyString());
+
+        pipeline.flush(batch);
+
+        assertEquals(pipeline.getRetriedCount(), 3);
+        assertEquals(pipeline.getPersistedCount(), 2);
+        assertEquals(pipeline.getDroppedCount(), 1);
+    }
+
+    @Test
+    public void testInvalidSizesFallBackToDefaults() {
+
+        TokenPersistencePipeline pipeline = new TokenPersistencePipeline(true, 0, -1, 0, -5);
+
+        assertEquals(Whitebox.getInternalState(pipeline, "consumerCount"), 4);
+        assertEquals(Whitebox.getInternalState(pipeline, "batchSize"), 100);
+        assertEquals(Whitebox.getInternalState(pipeline, "flushIntervalMillis"), 50L);
+        assertEquals(((LinkedBlockingDeque<?>) Whitebox.getInternalState(pipeline, "accessContextTokenQueue"))
+                .remainingCapacity(), 10000);
+    }
+
+    @Test
+    public void testTakeBatchHonoursBatchSize() throws Exception {
+
+        TokenPersistencePipeline pipeline = new TokenPersistencePipeline(true, 1, 10, 2, 10);
+        // Mark the pipeline as started without any consumers, so that the queued tokens stay in the queue.
+        Whitebox.setInternalState(pipeline, "consumers", Executors.newSingleThreadExecutor());
+        for (AccessContextTokenDO accessContextTokenDO : createBatch(3)) {
+            assertTrue(pipeline.enqueue(accessContextTokenDO));
+        }
+
+        assertEquals(pipeline.takeBatch().size(), 2);
+        assertEquals(pipeline.takeBatch().size(), 1);
+        assertEquals(pipeline.getQueueDepth(), 0);
+    }
+
+    @Test
+    public void testTakeBatchReturnsPartialBatchWhenInterrupted() throws Exception {
+
+        TokenPersistencePipeline pipeline = new TokenPersistencePipeline(true, 1, 10, 10, 60000);
+        Whitebox.setInternalState(pipeline, "consumers", Executors.newSingleThreadExecutor());
+        assertTrue(pipeline.enqueue(createBatch(1).get(0)));
+        Thread consumer = Thread.currentThread();
+        Executors.newSingleThreadScheduledExecutor().schedule(consumer::interrupt, 200, TimeUnit.MILLISECONDS);
+
+        List<AccessContextTokenDO> batch = pipeline.takeBatch();
+
+        // Clear the interrupt status of the test thread.
+        assertTrue(Thread.interrupted());
+        assertEquals(batch.size(), 1);
+        assertEquals(pipeline.getQueueDepth(), 0);
+    }
+
+    @Test
+    public void testEnqueueRejectedWhenNotStarted() {
+
+        TokenPersistencePipeline pipeline = new TokenPersistencePipeline(false, 1, 10, 10, 10);
+        pipeline.start();
+
+        assertFalse(pipeline.enqueue(createBatch(1).get(0)));
+        assertEquals(pipeline.getRejectedCount(), 1);
+    }
+
+    @Test
+    public void testStopPersistsQueuedTokens() throws Exception {
+
+        TokenPersistencePipeline pipeline = new TokenPersistencePipeline(true, 1, 10, 10, 10);
+        pipeline.start();
+        for (AccessContextTokenDO accessContextTokenDO : createBatch(5)) {
+            pipeline.enqueue(accessContextTokenDO);
+        }
+        pipeline.stop();
+
+        assertEquals(pipeline.getQueueDepth(), 0);
+        assertEquals(pipeline.getPersistedCount(), 5);
+        assertFalse(pipeline.enqueue(createBatch(1).get(0)));
+    }
+
+    private List<AccessContextTokenDO> createBatch(int size) {
+
+        List<AccessContextTokenDO> batch = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            AccessTokenDO accessTokenDO = new AccessTokenDO();
+            accessTokenDO.setTokenId("tokenId" + i);
+            batch.add(new AccessContextTokenDO("token" + i, CONSUMER_KEY, accessTokenDO, null, "PRIMARY"));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeDAO.PurgeChunk;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeDAO.PurgeCursor;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeDAO.PurgeTable;
+import org.wso2.carbon.identity.oauth2.dao.util.DAOUtils;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+/**
+ * Unit tests for TokenPurgeDAO.
+ */
+@WithCarbonHome
+@PrepareForTest({IdentityDatabaseUtil.class})
+public class TokenPurgeDAOTest extends PowerMockIdentityBaseTest {
+
+    private static final String DB_NAME = "testTokenPurgeDB";
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private TokenPurgeDAO tokenPurgeDAO;
+
+    @BeforeClass
+    public void initTest() throws Exception {
+
+        DAOUtils.initializeDataSource(DB_NAME, DAOUtils.getFilePath("identity.sql"));
+        tokenPurgeDAO = new TokenPurgeDAO();
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        clearTables();
+        mockStatic(IdentityDatabaseUtil.class);
+        when(IdentityDatabaseUtil.getDBConnection(false)).thenAnswer(invocation -> DAOUtils.getConnection(DB_NAME));
+        when(IdentityDatabaseUtil.getDBConnection(true)).thenAnswer(invocation -> DAOUtils.getConnection(DB_NAME));
+    }
+
+    @Test
+    public void testPurgeAccessTokens() throws Exception {
+
+        long now = System.currentTimeMillis();
+        String expiredActiveToken = createAccessToken(now - 5 * HOUR, OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE,
+                HOUR, HOUR);
+        String refreshableToken = createAccessToken(now - 4 * HOUR, OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE,
+                HOUR, 24 * HOUR);
+        String expiredToken = createAccessToken(now - 3 * HOUR, OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED,
+                HOUR, HOUR);
+        String neverExpiringToken = createAccessToken(now - 2 * HOUR, OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE,
+                -1, -1);
+        String recentlyRevokedToken = createAccessToken(now - TimeUnit.MINUTES.toMillis(10),
+                OAuthConstants.TokenStates.TOKEN_STATE_REVOKED, HOUR, HOUR);
+        Timestamp createdBefore = new Timestamp(now - HOUR);
+
+        PurgeChunk firstChunk = tokenPurgeDAO.getPurgeCandidates(PurgeTable.ACCESS_TOKEN, PurgeCursor.START,
+                createdBefore, 2);
+        Assert.assertEquals(firstChunk.getScannedCount(), 2);
+        Assert.assertEquals(firstChunk.getPurgeableIds(), Collections.singletonList(expiredActiveToken));
+        Assert.assertEquals(firstChunk.getLastCursor().getId(), refreshableToken);
+
+        PurgeChunk secondChunk = tokenPurgeDAO.getPurgeCandidates(PurgeTable.ACCESS_TOKEN,
+                firstChunk.getLastCursor(), createdBefore, 2);
+        Assert.assertEquals(secondChunk.getScannedCount(), 2);
+        Assert.assertEquals(secondChunk.getPurgeableIds(), Collections.singletonList(expiredToken));
+
+        PurgeChunk lastChunk = tokenPurgeDAO.getPurgeCandidates(PurgeTable.ACCESS_TOKEN,
+                secondChunk.getLastCursor(), createdBefore, 2);
+        Assert.assertEquals(lastChunk.getScannedCount(), 0);
+
+        Assert.assertEquals(tokenPurgeDAO.purge(PurgeTable.ACCESS_TOKEN,
+                Arrays.asList(expiredActiveToken, expiredToken), false), 2);
+        Assert.assertFalse(exists("IDN_OAUTH2_ACCESS_TOKEN", "TOKEN_ID", expiredActiveToken));
+        Assert.assertFalse(exists("IDN_OAUTH2_ACCESS_TOKEN", "TOKEN_ID", expiredToken));
+        Assert.assertFalse(exists("IDN_OAUTH2_ACCESS_TOKEN_SCOPE", "TOKEN_ID", expiredToken));
+        Assert.assertTrue(exists("IDN_OAUTH2_ACCESS_TOKEN", "TOKEN_ID", refreshableToken));
+        Assert.assertTrue(exists("IDN_OAUTH2_ACCESS_TOKEN", "TOKEN_ID", neverExpiringToken));
+        Assert.assertTrue(exists("IDN_OAUTH2_ACCESS_TOKEN", "TOKEN_ID", recentlyRevokedToken));
+    }
+
+    @Test
+    public void testPurgeAuthorizationCodes() throws Exception {
+
+        long now = System.currentTimeMillis();
+        String expiredCode = createAuthorizationCode(now - 3 * HOUR, OAuthConstants.AuthorizationCodeState.ACTIVE,
+                TimeUnit.MINUTES.toMillis(10));
+        String usedCode = createAuthorizationCode(now - 2 * HOUR, OAuthConstants.AuthorizationCodeState.INACTIVE,
+                TimeUnit.MINUTES.toMillis(10));
+        String validCode = createAuthorizationCode(now - 2 * HOUR, OAuthConstants.AuthorizationCodeState.ACTIVE,
+                24 * HOUR);
+
+        PurgeChunk chunk = tokenPurgeDAO.getPurgeCandidates(PurgeTable.AUTHORIZATION_CODE, PurgeCursor.START,
+                new Timestamp(now - HOUR), 10);
+        Assert.assertEquals(chunk.getScannedCount(), 3);
+        Assert.assertEquals(chunk.getPurgeableIds(), Arrays.asList(expiredCode, usedCode));
+
+        Assert.assertEquals(tokenPurgeDAO.purge(PurgeTable.AUTHORIZATION_CODE, chunk.getPurgeableIds(), false), 2);
+        Assert.assertFalse(exists("IDN_OAUTH2_AUTHORIZATION_CODE", "CODE_ID", expiredCode));
+        Assert.assertFalse(exists("IDN_OAUTH2_AUTHORIZATION_CODE", "CODE_ID", usedCode));
+        Assert.assertTrue(exists("IDN_OAUTH2_AUTHORIZATION_CODE", "CODE_ID", validCode));
+    }
+
+    @Test
+    public void testIsPurgeableAccessToken() {
+
+        long now = System.currentTimeMillis();
+        Timestamp issuedTime = new Timestamp(now - 2 * HOUR);
+
+        Assert.assertTrue(TokenPurgeDAO.isPurgeableAccessToken(OAuthConstants.TokenStates.TOKEN_STATE_INACTIVE,
+                issuedTime, Long.MAX_VALUE, issuedTime, Long.MAX_VALUE, now));
+        Assert.assertTrue(TokenPurgeDAO.isPurgeableAccessToken(OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE,
+                issuedTime, HOUR, issuedTime, HOUR, now));
+        Assert.assertFalse(TokenPurgeDAO.isPurgeableAccessToken(OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE,
+                issuedTime, HOUR, issuedTime, Long.MAX_VALUE, now));
+        Assert.assertFalse(TokenPurgeDAO.isPurgeableAccessToken(OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE,
+                issuedTime, -1, issuedTime, HOUR, now));
+    }
+
+    private String createAccessToken(long timeCreated, String tokenState, long validityPeriod,
+                                     long refreshTokenValidityPeriod) throws Exception {
+
+        String tokenId = UUID.randomUUID().toString();
+        Calendar utcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        try (Connection connection = DAOUtils.getConnection(DB_NAME)) {
+            try (PreparedStatement prepStmt = connection.prepareStatement("INSERT INTO IDN_OAUTH2_ACCESS_TOKEN " +
+                    "(TOKEN_ID, ACCESS_TOKEN, AUTHZ_USER, TENANT_ID, TIME_CREATED, REFRESH_TOKEN_TIME_CREATED, " +
+                    "VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_STATE, TOKEN_STATE_ID) VALUES " +
+                    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                prepStmt.setString(1, tokenId);
+                prepStmt.setString(2, UUID.randomUUID().toString());
+                // A user per token keeps the rows unique with respect to the CON_APP_KEY constraint.
+                prepStmt.setString(3, "user-" + tokenId);
+                prepStmt.setInt(4, -1234);
+                prepStmt.setTimestamp(5, new Timestamp(timeCreated), utcCalendar);
+                prepStmt.setTimestamp(6, new Timestamp(timeCreated), utcCalendar);
+                prepStmt.setLong(7, validityPeriod);
+                prepStmt.setLong(8, refreshTokenValidityPeriod);
+                prepStmt.setString(9, tokenState);
+                prepStmt.setString(10, OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(tokenState) ? "NONE" :
+                        UUID.randomUUID().toString());
+                prepStmt.execute();
+            }
+            try (PreparedStatement prepStmt = connection.prepareStatement("INSERT INTO " +
+                    "IDN_OAUTH2_ACCESS_TOKEN_SCOPE (TOKEN_ID, TOKEN_SCOPE, TENANT_ID) VALUES (?, ?, ?)")) {
+                prepStmt.setString(1, tokenId);
+                prepStmt.setString(2, "openid");
+                prepStmt.setInt(3, -1234);
+                prepStmt.execute();
+            }
+        }
+        return tokenId;
+    }
+
+    private String createAuthorizationCode(long timeCreated, String state, long validityPeriod) throws Exception {
+
+        String codeId = UUID.randomUUID().toString();
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement("INSERT INTO IDN_OAUTH2_AUTHORIZATION_CODE " +
+                     "(CODE_ID, AUTHORIZATION_CODE, TIME_CREATED, VALIDITY_PERIOD, STATE) VALUES (?, ?, ?, ?, ?)")) {
+            prepStmt.setString(1, codeId);
+            prepStmt.setString(2, UUID.randomUUID().toString());
+            prepStmt.setTimestamp(3, new Timestamp(timeCreated), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+            prepStmt.setLong(4, validityPeriod);
+            prepStmt.setString(5, state);
+            prepStmt.execute();
+        }
+        return codeId;
+    }
+
+    private boolean exists(String table, String idColumn, String id) throws Exception {
+
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     "SELECT 1 FROM " + table + " WHERE " + idColumn + " = ?")) {
+            prepStmt.setString(1, id);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    private void clearTables() throws Exception {
+
+        try (Connection connection = DAOUtils.getConnection(DB_NAME)) {
+            connection.createStatement().executeUpdate("DELETE FROM IDN_OAUTH2_ACCESS_TOKEN");
+            connection.createStatement().executeUpdate("DELETE FROM IDN_OAUTH2_AUTHORIZATION_CODE");
+        }
+    }
+}
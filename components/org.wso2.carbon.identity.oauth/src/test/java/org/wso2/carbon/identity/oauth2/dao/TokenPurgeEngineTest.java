@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeDAO.PurgeChunk;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeDAO.PurgeCursor;
+import org.wso2.carbon.identity.oauth2.dao.TokenPurgeDAO.PurgeTable;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.sql.Timestamp;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for TokenPurgeEngine.
+ */
+@PrepareForTest({OAuthServerConfiguration.class})
+public class TokenPurgeEngineTest extends PowerMockIdentityBaseTest {
+
+    private static final int ROW_COUNT = 5;
+
+    @BeforeMethod
+    public void setUp() {
+
+        OAuthServerConfiguration oAuthServerConfiguration = mock(OAuthServerConfiguration.class);
+        mockStatic(OAuthServerConfiguration.class);
+        when(OAuthServerConfiguration.getInstance()).thenReturn(oAuthServerConfiguration);
+    }
+
+    @Test
+    public void testRunResumesFromLastPosition() {
+
+        InMemoryTokenPurgeDAO tokenPurgeDAO = new InMemoryTokenPurgeDAO();
+        TokenPurgeEngine engine = new TokenPurgeEngine(true, 60, 2, 2, 0, 0, Collections.emptyList(), true,
+                tokenPurgeDAO);
+
+        engine.runOnce();
+        TokenPurgeEngine.PurgeProgress progress = engine.getProgress(PurgeTable.ACCESS_TOKEN);
+        assertEquals(progress.getScannedCount(), 4);
+        assertEquals(progress.getPurgedCount(), 4);
+        assertEquals(progress.getPassCount(), 0);
+        assertEquals(progress.getCursorTime().getTime(), 4);
+
+        engine.runOnce();
+        assertEquals(progress.getScannedCount(), ROW_COUNT);
+        assertEquals(progress.getPassCount(), 1);
+        assertEquals(progress.getCursorTime(), PurgeCursor.START.getTimeCreated());
+        assertEquals(tokenPurgeDAO.purgedIds.get(PurgeTable.ACCESS_TOKEN.ordinal()).size(), ROW_COUNT);
+        assertEquals(tokenPurgeDAO.purgedIds.get(PurgeTable.AUTHORIZATION_CODE.ordinal()).size(), ROW_COUNT);
+        assertEquals(engine.getRunCount(), 2);
+    }
+
+    @Test
+    public void testFailedChunkIsRetried() {
+
+        InMemoryTokenPurgeDAO tokenPurgeDAO = new InMemoryTokenPurgeDAO();
+        tokenPurgeDAO.failures = 1;
+        TokenPurgeEngine engine = new TokenPurgeEngine(true, 60, 10, 10, 0, 0, Collections.emptyList(), true,
+                tokenPurgeDAO);
+
+        engine.runOnce();
+        TokenPurgeEngine.PurgeProgress progress = engine.getProgress(PurgeTable.ACCESS_TOKEN);
+        assertEquals(progress.getFailedChunkCount(), 1);
+        assertEquals(progress.getPurgedCount(), 0);
+
+        engine.runOnce();
+        assertEquals(progress.getPurgedCount(), ROW_COUNT);
+        assertEquals(progress.getPassCount(), 1);
+    }
+
+    @Test
+    public void testQuietWindows() {
+
+        List<TokenPurgeEngine.QuietWindow> quietWindows =
+                TokenPurgeEngine.parseQuietWindows("22:00-06:00, 12:00-13:00, invalid");
+        assertEquals(quietWindows.size(), 2);
+
+        InMemoryTokenPurgeDAO tokenPurgeDAO = new InMemoryTokenPurgeDAO();
+        TokenPurgeEngine engine = new TokenPurgeEngine(true, 60, 10, 10, 0, 0, quietWindows, true, tokenPurgeDAO);
+        assertTrue(engine.isInQuietWindow(LocalTime.of(23, 30)));
+        assertTrue(engine.isInQuietWindow(LocalTime.of(5, 59)));
+        assertTrue(engine.isInQuietWindow(LocalTime.of(12, 0)));
+        assertFalse(engine.isInQuietWindow(LocalTime.of(6, 0)));
+        assertFalse(engine.isInQuietWindow(LocalTime.of(13, 0)));
+    }
+
+    @Test
+    public void testInlineCleanupIsOnlyDisabledWithEngine() {
+
+        assertTrue(new TokenPurgeEngine(true, 60, 10, 10, 0, 0, Collections.emptyList(), true,
+                new InMemoryTokenPurgeDAO()).isInlineCleanupDisabled());
+        assertFalse(new TokenPurgeEngine(false, 60, 10, 10, 0, 0, Collections.emptyList(), true,
+                new InMemoryTokenPurgeDAO()).isInlineCleanupDisabled());
+    }
+
+    /**
+     * Purge DAO over rows kept in memory, all of which can be purged.
+     */
+    private static class InMemoryTokenPurgeDAO extends TokenPurgeDAO {
+
+        private final List<List<String>> purgedIds = new ArrayList<>();
+        private int failures;
+
+        private InMemoryTokenPurgeDAO() {
+
+            for (int i = 0; i < PurgeTable.values().length; i++) {
+                purgedIds.add(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public PurgeChunk getPurgeCandidates(PurgeTable table, PurgeCursor after, Timestamp createdBefore,
+                                             int chunkSize) throws IdentityOAuth2Exception {
+
+            if (failures > 0) {
+                failures--;
+                throw new IdentityOAuth2Exception("Simulated failure.");
+            }
+            List<String> ids = new ArrayList<>();
+            PurgeCursor lastCursor = after;
+            // Row i is created at time i + 1 and has the id "row-i".
+            for (int i = 0; i < ROW_COUNT && ids.size() < chunkSize; i++) {
+                if (i + 1 > after.getTimeCreated().getTime()) {
+                    ids.add("row-" + i);
+                    lastCursor = new PurgeCursor(new Timestamp(i + 1), "row-" + i);
+                }
+            }
+            return new PurgeChunk(ids, ids.size(), lastCursor);
+        }
+
+        @Override
+        public int purge(PurgeTable table, List<String> ids, boolean archive) {
+
+            purgedIds.get(table.ordinal()).addAll(ids);
+            return ids.size();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.token;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for TokenIssuanceLockManager.
+ */
+public class TokenIssuanceLockManagerTest {
+
+    private static final String LOCK_KEY = "clientId:userId:openid:NONE";
+
+    @Test
+    public void testStripeCountIsRoundedToPowerOfTwo() {
+
+        assertEquals(new TokenIssuanceLockManager(1000).getStripeCount(), 1024);
+        assertEquals(new TokenIssuanceLockManager(16).getStripeCount(), 16);
+        assertEquals(new TokenIssuanceLockManager(0).getStripeCount(), 1);
+    }
+
+    @Test
+    public void testSameKeyMapsToSameStripe() {
+
+        TokenIssuanceLockManager lockManager = new TokenIssuanceLockManager(64);
+        int stripe = lockManager.getStripe(LOCK_KEY);
+
+        assertEquals(lockManager.getStripe(new String(LOCK_KEY.toCharArray())), stripe);
+        assertTrue(stripe >= 0 && stripe < 64);
+    }
+
+    @Test
+    public void testUncontendedLock() {
+
+        TokenIssuanceLockManager lockManager = new TokenIssuanceLockManager(16);
+        Lock lock = lockManager.lock(LOCK_KEY);
+        lock.unlock();
+
+        assertEquals(lockManager.getAcquisitionCount(), 1);
+        assertEquals(lockManager.getContendedAcquisitionCount(), 0);
+        assertEquals(lockManager.getContentionRatio(), 0.0);
+    }
+
+    @Test
+    public void testConcurrentRequestsForSameTokenAreSerialized() throws Exception {
+
+        TokenIssuanceLockManager lockManager = new TokenIssuanceLockManager(16);
+        CountDownLatch waiterStarted = new CountDownLatch(1);
+        CountDownLatch waiterAcquired = new CountDownLatch(1);
+        AtomicBoolean issuedByFirstRequest = new AtomicBoolean();
+        AtomicBoolean waiterSawIssuedToken = new AtomicBoolean();
+
+        Lock lock = lockManager.lock(LOCK_KEY);
+        Thread waiter = new Thread(() -> {
+            waiterStarted.countDown();
+            Lock waiterLock = lockManager.lock(LOCK_KEY);
+            try {
+                waiterSawIssuedToken.set(issuedByFirstRequest.get());
+            } finally {
+                waiterLock.unlock();
+            }
+            waiterAcquired.countDown();
+        });
+        try {
+            waiter.start();
+            waiterStarted.await(5, TimeUnit.SECONDS);
+            assertFalse(waiterAcquired.await(200, TimeUnit.MILLISECONDS), "Lock was acquired by a second request.");
+            issuedByFirstRequest.set(true);
+        } finally {
+            lock.unlock();
+        }
+
+        assertTrue(waiterAcquired.await(5, TimeUnit.SECONDS));
+        assertTrue(waiterSawIssuedToken.get(), "Second request did not observe the token issued by the first.");
+        assertEquals(lockManager.getAcquisitionCount(), 2);
+        assertEquals(lockManager.getContendedAcquisitionCount(), 1);
+        assertEquals(lockManager.getContentionRatio(), 0.5);
+        assertTrue(lockManager.getAverageContendedWaitMillis() > 0);
+    }
+}
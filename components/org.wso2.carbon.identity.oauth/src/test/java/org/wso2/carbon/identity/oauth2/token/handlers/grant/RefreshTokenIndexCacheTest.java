@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.token.handlers.grant;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth2.model.RefreshTokenValidationDataDO;
+
+import java.sql.Timestamp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Unit tests for RefreshTokenIndexCache.
+ */
+public class RefreshTokenIndexCacheTest {
+
+    private static final long TIME_TO_LIVE = 60000;
+    private static final String CLIENT_ID = "clientId";
+    private static final String CACHE_KEY = "cacheKey";
+
+    @Test
+    public void testGetAfterPut() {
+
+        RefreshTokenIndexCache index = new RefreshTokenIndexCache(true, 10, TIME_TO_LIVE);
+        assertNull(index.get(CLIENT_ID, "refreshToken"));
+
+        index.put(CLIENT_ID, "refreshToken", getValidationData("tokenId", TIME_TO_LIVE), CACHE_KEY);
+        RefreshTokenIndexCache.RefreshTokenIndexEntry entry = index.get(CLIENT_ID, "refreshToken");
+
+        assertEquals(entry.getTokenId(), "tokenId");
+        assertEquals(entry.getTokenState(), "ACTIVE");
+        assertEquals(entry.getCacheKey(), CACHE_KEY);
+        assertEquals(entry.getValidationData().getNewerAccessTokenCount(), Integer.valueOf(0));
+        assertNull(index.get("otherClientId", "refreshToken"));
+        assertEquals(index.getHitCount(), 1);
+        assertEquals(index.getMissCount(), 2);
+    }
+
+    @Test
+    public void testValidationDataIsCopied() {
+
+        RefreshTokenIndexCache index = new RefreshTokenIndexCache(true, 10, TIME_TO_LIVE);
+        index.put(CLIENT_ID, "refreshToken", getValidationData("tokenId", TIME_TO_LIVE), CACHE_KEY);
+        RefreshTokenIndexCache.RefreshTokenIndexEntry entry = index.get(CLIENT_ID, "refreshToken");
+
+        RefreshTokenValidationDataDO validationData = entry.getValidationData();
+        validationData.getScope()[0] = "modified";
+
+        assertNotSame(entry.getValidationData(), validationData);
+        assertEquals(entry.getValidationData().getScope()[0], "openid");
+    }
+
+    @Test
+    public void testExpiredRefreshTokensAreNotIndexed() {
+
+        RefreshTokenIndexCache index = new RefreshTokenIndexCache(true, 10, TIME_TO_LIVE);
+        RefreshTokenValidationDataDO validationData = getValidationData("tokenId", TIME_TO_LIVE);
+        validationData.setIssuedTime(new Timestamp(System.currentTimeMillis() - 2 * TIME_TO_LIVE));
+        index.put(CLIENT_ID, "refreshToken", validationData, CACHE_KEY);
+
+        assertNull(index.get(CLIENT_ID, "refreshToken"));
+        assertEquals(index.size(), 0);
+    }
+
+    @Test
+    public void testSizeBoundEvictsLeastRecentlyUsed() {
+
+        RefreshTokenIndexCache index = new RefreshTokenIndexCache(true, 2, TIME_TO_LIVE);
+        index.put(CLIENT_ID, "first", getValidationData("first", TIME_TO_LIVE), CACHE_KEY);
+        index.put(CLIENT_ID, "second", getValidationData("second", TIME_TO_LIVE), CACHE_KEY);
+        index.get(CLIENT_ID, "first");
+        index.put(CLIENT_ID, "third", getValidationData("third", TIME_TO_LIVE), CACHE_KEY);
+
+        assertEquals(index.size(), 2);
+        assertNull(index.get(CLIENT_ID, "second"));
+    }
+
+    @Test
+    public void testInvalidate() {
+
+        RefreshTokenIndexCache index = new RefreshTokenIndexCache(true, 10, TIME_TO_LIVE);
+        index.put(CLIENT_ID, "refreshToken", getValidationData("tokenId", TIME_TO_LIVE), CACHE_KEY);
+        index.invalidate(CLIENT_ID, "refreshToken");
+
+        assertNull(index.get(CLIENT_ID, "refreshToken"));
+        assertEquals(index.size(), 0);
+    }
+
+    @Test
+    public void testDisabledIndex() {
+
+        RefreshTokenIndexCache index = new RefreshTokenIndexCache(false, 10, TIME_TO_LIVE);
+        index.put(CLIENT_ID, "refreshToken", getValidationData("tokenId", TIME_TO_LIVE), CACHE_KEY);
+
+        assertNull(index.get(CLIENT_ID, "refreshToken"));
+        assertEquals(index.getMissCount(), 0);
+    }
+
+    private RefreshTokenValidationDataDO getValidationData(String tokenId, long validityPeriodInMillis) {
+
+        RefreshTokenValidationDataDO validationData = new RefreshTokenValidationDataDO();
+        validationData.setTokenId(tokenId);
+        validationData.setAccessToken("accessToken");
+        validationData.setScope(new String[]{"openid"});
+        validationData.setRefreshTokenState("ACTIVE");
+        validationData.setIssuedTime(new Timestamp(System.currentTimeMillis()));
+        validationData.setValidityPeriodInMillis(validityPeriodInMillis);
+        validationData.setNewerAccessTokenCount(0);
+        return validationData;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.token.handlers.grant.saml;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for VerifiedAssertionCache.
+ */
+public class VerifiedAssertionCacheTest {
+
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final String ASSERTION_ID = "assertionId";
+    private static final String DIGEST = "digest";
+    private static final long TIME_TO_LIVE = 60000;
+
+    @Test
+    public void testVerifiedAssertionIsReused() throws Exception {
+
+        VerifiedAssertionCache cache = new VerifiedAssertionCache(true, false, 10);
+
+        assertFalse(cache.isVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST));
+        assertTrue(cache.addVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST, getExpiryTime()));
+        assertTrue(cache.isVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST));
+        assertTrue(cache.addVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST, getExpiryTime()));
+        assertFalse(cache.isVerified("wso2.com", ASSERTION_ID, DIGEST));
+        assertEquals(cache.getHitCount(), 1);
+    }
+
+    @Test(expectedExceptions = IdentityOAuth2Exception.class)
+    public void testDifferentAssertionWithSameId() throws Exception {
+
+        VerifiedAssertionCache cache = new VerifiedAssertionCache(true, false, 10);
+        cache.addVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST, getExpiryTime());
+
+        assertFalse(cache.addVerified(TENANT_DOMAIN, ASSERTION_ID, "otherDigest", getExpiryTime()));
+        cache.isVerified(TENANT_DOMAIN, ASSERTION_ID, "otherDigest");
+    }
+
+    @Test(expectedExceptions = IdentityOAuth2Exception.class)
+    public void testReplayPrevention() throws Exception {
+
+        VerifiedAssertionCache cache = new VerifiedAssertionCache(false, true, 10);
+        assertTrue(cache.isEnabled());
+        assertTrue(cache.addVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST, getExpiryTime()));
+
+        assertFalse(cache.addVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST, getExpiryTime()));
+        cache.isVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST);
+    }
+
+    @Test
+    public void testExpiredAssertionsAreNotCached() throws Exception {
+
+        VerifiedAssertionCache cache = new VerifiedAssertionCache(true, true, 10);
+        cache.addVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST, System.currentTimeMillis() - 1);
+
+        assertFalse(cache.isVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testSizeBound() throws Exception {
+
+        VerifiedAssertionCache cache = new VerifiedAssertionCache(true, false, 2);
+        cache.addVerified(TENANT_DOMAIN, "first", DIGEST, getExpiryTime());
+        cache.addVerified(TENANT_DOMAIN, "second", DIGEST, getExpiryTime());
+        cache.addVerified(TENANT_DOMAIN, "third", DIGEST, getExpiryTime());
+
+        assertEquals(cache.size(), 2);
+        assertFalse(cache.isVerified(TENANT_DOMAIN, "first", DIGEST));
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+
+        VerifiedAssertionCache cache = new VerifiedAssertionCache(false, false, 10);
+        cache.addVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST, getExpiryTime());
+
+        assertFalse(cache.isVerified(TENANT_DOMAIN, ASSERTION_ID, DIGEST));
+        assertEquals(cache.size(), 0);
+    }
+
+    private long getExpiryTime() {
+
+        return System.currentTimeMillis() + TIME_TO_LIVE;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for BoundedTTLCache.
+ */
+public class BoundedTTLCacheTest {
+
+    private static final long TIME_TO_LIVE = 60000;
+
+    @Test
+    public void testGetAndPut() {
+
+        BoundedTTLCache<String, String> cache = new BoundedTTLCache<>(10, TIME_TO_LIVE);
+        assertNull(cache.get("key"));
+
+        cache.put("key", "value");
+
+        assertEquals(cache.get("key"), "value");
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.getMissCount(), 1);
+    }
+
+    @Test
+    public void testLruEviction() {
+
+        BoundedTTLCache<String, String> cache = new BoundedTTLCache<>(2, TIME_TO_LIVE);
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        // Access the first entry so that the second one is the least recently used.
+        cache.get("key1");
+        cache.put("key3", "value3");
+
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.get("key1"), "value1");
+        assertNull(cache.get("key2"));
+        assertEquals(cache.get("key3"), "value3");
+    }
+
+    @Test
+    public void testSegmentedCacheIsBounded() {
+
+        BoundedTTLCache<Integer, Integer> cache = new BoundedTTLCache<>(2048, TIME_TO_LIVE);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() <= 2048);
+        assertEquals(cache.get(9999), Integer.valueOf(9999));
+    }
+
+    @Test
+    public void testExpiredEntry() {
+
+        BoundedTTLCache<String, String> cache = new BoundedTTLCache<>(10, 0);
+        cache.put("key", "value");
+        cache.put("otherKey", "value", System.currentTimeMillis() + TIME_TO_LIVE);
+
+        assertNull(cache.get("key"));
+        assertEquals(cache.get("otherKey"), "value");
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+
+        BoundedTTLCache<String, String> cache = new BoundedTTLCache<>(10, TIME_TO_LIVE);
+        long expiryTime = System.currentTimeMillis() + TIME_TO_LIVE;
+
+        assertNull(cache.putIfAbsent("key", "value", expiryTime));
+        assertEquals(cache.putIfAbsent("key", "otherValue", expiryTime), "value");
+        assertEquals(cache.get("key"), "value");
+    }
+
+    @Test
+    public void testPutIfNotInvalidated() {
+
+        BoundedTTLCache<String, String> cache = new BoundedTTLCache<>(10, TIME_TO_LIVE);
+        long invalidationCount = cache.getInvalidationCount();
+        cache.remove("otherKey");
+
+        assertFalse(cache.putIfNotInvalidated("key", "value", invalidationCount));
+        assertNull(cache.get("key"));
+        assertTrue(cache.putIfNotInvalidated("key", "value", cache.getInvalidationCount()));
+        assertEquals(cache.get("key"), "value");
+    }
+
+    @Test
+    public void testRemoveIfAndClear() {
+
+        BoundedTTLCache<String, String> cache = new BoundedTTLCache<>(10, TIME_TO_LIVE);
+        cache.put("tenant1:user1", "value");
+        cache.put("tenant1:user2", "value");
+        cache.put("tenant2:user1", "value");
+        cache.removeIf(key -> key.startsWith("tenant1:"));
+
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.get("tenant2:user1"), "value");
+
+        cache.clear();
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testNoTimeToLive() {
+
+        BoundedTTLCache<String, String> cache = new BoundedTTLCache<>(10, Long.MAX_VALUE);
+        cache.put("key", "value");
+
+        assertEquals(cache.get("key"), "value");
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for ClientSecretVerificationCache.
+ */
+public class ClientSecretVerificationCacheTest {
+
+    private static final long TIME_TO_LIVE = 60000;
+    private static final String CLIENT_ID = "clientId";
+    private static final String CLIENT_SECRET = "clientSecret";
+    private static final String STORED_SECRET = "storedSecret";
+
+    @Test
+    public void testVerifiedSecret() {
+
+        ClientSecretVerificationCache cache = new ClientSecretVerificationCache(true, 10, TIME_TO_LIVE);
+        assertFalse(cache.isVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET));
+
+        cache.putVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET);
+
+        assertTrue(cache.isVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET));
+        assertFalse(cache.isVerified(CLIENT_ID, "otherSecret", STORED_SECRET));
+        assertFalse(cache.isVerified("otherClientId", CLIENT_SECRET, STORED_SECRET));
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.getMissCount(), 3);
+    }
+
+    @Test
+    public void testChangedStoredSecret() {
+
+        ClientSecretVerificationCache cache = new ClientSecretVerificationCache(true, 10, TIME_TO_LIVE);
+        cache.putVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET);
+
+        assertFalse(cache.isVerified(CLIENT_ID, CLIENT_SECRET, "regeneratedSecret"));
+    }
+
+    @Test
+    public void testExpiredEntry() {
+
+        ClientSecretVerificationCache cache = new ClientSecretVerificationCache(true, 10, 0);
+        cache.putVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET);
+
+        assertFalse(cache.isVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testClear() {
+
+        ClientSecretVerificationCache cache = new ClientSecretVerificationCache(true, 10, TIME_TO_LIVE);
+        cache.putVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET);
+        cache.putVerified("otherClientId", CLIENT_SECRET, STORED_SECRET);
+        cache.clear(CLIENT_ID);
+
+        assertFalse(cache.isVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET));
+        assertTrue(cache.isVerified("otherClientId", CLIENT_SECRET, STORED_SECRET));
+    }
+
+    @Test
+    public void testSizeBound() {
+
+        ClientSecretVerificationCache cache = new ClientSecretVerificationCache(true, 2, TIME_TO_LIVE);
+        cache.putVerified("first", CLIENT_SECRET, STORED_SECRET);
+        cache.putVerified("second", CLIENT_SECRET, STORED_SECRET);
+        cache.putVerified("third", CLIENT_SECRET, STORED_SECRET);
+
+        assertEquals(cache.size(), 2);
+        assertFalse(cache.isVerified("first", CLIENT_SECRET, STORED_SECRET));
+    }
+
+    @Test
+    public void testDisabledCache() {
+
+        ClientSecretVerificationCache cache = new ClientSecretVerificationCache(false, 10, TIME_TO_LIVE);
+        cache.putVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET);
+
+        assertFalse(cache.isVerified(CLIENT_ID, CLIENT_SECRET, STORED_SECRET));
+        assertEquals(cache.size(), 0);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.Certificate;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for JWTSigningContextCache.
+ */
+@PrepareForTest({OAuth2Util.class})
+public class JWTSigningContextCacheTest extends PowerMockIdentityBaseTest {
+
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final int TENANT_ID = -1234;
+    private static final String KID = "kid";
+    private static final String THUMBPRINT = "thumbprint";
+
+    private KeyPair keyPair;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        keyPair = keyPairGenerator.generateKeyPair();
+        RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.getPrivateKey(anyString(), anyInt())).thenReturn(privateKey);
+        when(OAuth2Util.createJWSSigner(any(RSAPrivateKey.class))).thenReturn(new RSASSASigner(privateKey));
+        when(OAuth2Util.getKID(any(Certificate.class), any(JWSAlgorithm.class), anyString())).thenReturn(KID);
+        when(OAuth2Util.getThumbPrint(anyString(), anyInt())).thenReturn(THUMBPRINT);
+        when(OAuth2Util.getThumbPrint(any(Certificate.class))).thenReturn(THUMBPRINT);
+    }
+
+    @Test
+    public void testSigningContextIsReused() throws Exception {
+
+        JWTSigningContextCache cache = new JWTSigningContextCache();
+        JWTSigningContextCache.JWTSigningContext signingContext =
+                cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256, null);
+
+        assertSame(cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256, null), signingContext);
+        assertNotSame(cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.PS256, null), signingContext);
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testSigningContextHeader() throws Exception {
+
+        JWTSigningContextCache cache = new JWTSigningContextCache();
+        JWSHeader header = cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256,
+                new JOSEObjectType("at+jwt")).getHeader();
+
+        assertEquals(header.getAlgorithm(), JWSAlgorithm.RS256);
+        assertEquals(header.getKeyID(), KID);
+        assertEquals(header.getType().getType(), "at+jwt");
+        assertNull(cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256, null).getHeader()
+                .getType());
+    }
+
+    @Test
+    public void testSignWithCachedContext() throws Exception {
+
+        JWTSigningContextCache cache = new JWTSigningContextCache();
+        JWTSigningContextCache.JWTSigningContext signingContext =
+                cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256, null);
+
+        for (int i = 0; i < 2; i++) {
+            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder().subject("user" + i).build();
+            SignedJWT signedJWT = new SignedJWT(signingContext.getHeader(), claimsSet);
+            signedJWT.sign(signingContext.getSigner());
+
+            SignedJWT parsedJWT = SignedJWT.parse(signedJWT.serialize());
+            assertTrue(parsedJWT.verify(new RSASSAVerifier((RSAPublicKey) keyPair.getPublic())));
+            assertEquals(parsedJWT.getJWTClaimsSet().getSubject(), "user" + i);
+        }
+    }
+
+    @Test
+    public void testClearTenant() throws Exception {
+
+        JWTSigningContextCache cache = new JWTSigningContextCache();
+        JWTSigningContextCache.JWTSigningContext signingContext =
+                cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256, null);
+        cache.getSigningContext("wso2.com", 1, JWSAlgorithm.RS256, null);
+
+        cache.clear(TENANT_ID);
+
+        assertEquals(cache.size(), 1);
+        assertNotSame(cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256, null), signingContext);
+    }
+
+    @Test
+    public void testRotatedSigningCertificate() throws Exception {
+
+        JWTSigningContextCache cache = new JWTSigningContextCache(0);
+        JWTSigningContextCache.JWTSigningContext signingContext =
+                cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256, null);
+        assertSame(cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256, null), signingContext);
+
+        when(OAuth2Util.getThumbPrint(any(Certificate.class))).thenReturn("rotatedThumbprint");
+
+        assertNotSame(cache.getSigningContext(TENANT_DOMAIN, TENANT_ID, JWSAlgorithm.RS256, null), signingContext);
+        assertEquals(cache.size(), 1);
+    }
+}
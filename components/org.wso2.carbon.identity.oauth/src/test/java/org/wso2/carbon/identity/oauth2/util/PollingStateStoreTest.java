@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.base.IdentityException;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for PollingStateStore.
+ */
+public class PollingStateStoreTest {
+
+    private static final String KEY = "deviceCode";
+    private static final long EXPIRY_TIME = Long.MAX_VALUE;
+
+    @Test
+    public void testUpdatesAreCoalescedUntilFlush() throws Exception {
+
+        RecordingWriter writer = new RecordingWriter();
+        PollingStateStore store = new PollingStateStore("test", writer, true, 0, 10);
+        store.updateLastPollTime(KEY, new Timestamp(1000), EXPIRY_TIME);
+        store.updateLastPollTime(KEY, new Timestamp(2000), EXPIRY_TIME);
+        store.updateInterval(KEY, 7, EXPIRY_TIME);
+
+        assertEquals(writer.writeCount, 0);
+        assertEquals(store.getLastPollTime(KEY, new Timestamp(500)).getTime(), 2000);
+        assertEquals(store.getInterval(KEY, 5), 7);
+
+        store.flush();
+
+        assertEquals(writer.writeCount, 2);
+        assertEquals(writer.lastPollTimes.get(KEY).getTime(), 2000);
+        assertEquals((long) writer.intervals.get(KEY), 7);
+        assertEquals(store.size(), 1);
+        assertEquals(store.getInterval(KEY, 5), 7);
+
+        // Unchanged state is not written again.
+        store.flush();
+        assertEquals(writer.writeCount, 2);
+
+        store.updateLastPollTime(KEY, new Timestamp(3000), EXPIRY_TIME);
+        store.flush();
+
+        assertEquals(writer.writeCount, 3);
+        assertEquals(writer.lastPollTimes.get(KEY).getTime(), 3000);
+    }
+
+    @Test
+    public void testExpiredStateIsDropped() throws Exception {
+
+        RecordingWriter writer = new RecordingWriter();
+        PollingStateStore store = new PollingStateStore("test", writer, true, 0, 10);
+        store.updateLastPollTime(KEY, new Timestamp(1000), System.currentTimeMillis() - 1);
+        store.updateLastPollTime("other", new Timestamp(1000), EXPIRY_TIME);
+        store.flush();
+
+        assertEquals(store.size(), 1);
+        assertFalse(writer.lastPollTimes.containsKey(KEY));
+        assertTrue(writer.lastPollTimes.containsKey("other"));
+    }
+
+    @Test
+    public void testPersistedStateIsUsedWhenLater() throws Exception {
+
+        PollingStateStore store = new PollingStateStore("test", new RecordingWriter(), true, 0, 10);
+        Timestamp persistedPollTime = new Timestamp(3000);
+        store.updateLastPollTime(KEY, new Timestamp(2000), EXPIRY_TIME);
+        store.updateInterval(KEY, 5, EXPIRY_TIME);
+
+        assertSame(store.getLastPollTime(KEY, persistedPollTime), persistedPollTime);
+        assertEquals(store.getInterval(KEY, 9), 9);
+        assertSame(store.getLastPollTime("other", persistedPollTime), persistedPollTime);
+    }
+
+    @Test
+    public void testRemoveDiscardsPendingState() throws Exception {
+
+        RecordingWriter writer = new RecordingWriter();
+        PollingStateStore store = new PollingStateStore("test", writer, true, 0, 10);
+        store.updateLastPollTime(KEY, new Timestamp(1000), EXPIRY_TIME);
+        store.remove(KEY);
+        store.flush();
+
+        assertEquals(writer.writeCount, 0);
+        assertEquals(store.size(), 0);
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() throws Exception {
+
+        RecordingWriter writer = new RecordingWriter();
+        writer.fail = true;
+        PollingStateStore store = new PollingStateStore("test", writer, true, 0, 10);
+        store.updateLastPollTime(KEY, new Timestamp(1000), EXPIRY_TIME);
+        store.flush();
+
+        assertEquals(store.size(), 1);
+        assertEquals(store.getFailedUpdateCount(), 1);
+
+        writer.fail = false;
+        store.flush();
+
+        assertEquals(writer.lastPollTimes.get(KEY).getTime(), 1000);
+        assertEquals(store.size(), 1);
+    }
+
+    @Test
+    public void testSynchronousWriteWhenFullOrDisabled() throws Exception {
+
+        RecordingWriter writer = new RecordingWriter();
+        PollingStateStore store = new PollingStateStore("test", writer, true, 0, 1);
+        store.updateLastPollTime(KEY, new Timestamp(1000), EXPIRY_TIME);
+        store.updateLastPollTime("other", new Timestamp(1000), EXPIRY_TIME);
+
+        assertEquals(writer.writeCount, 1);
+        assertTrue(writer.lastPollTimes.containsKey("other"));
+        assertFalse(writer.lastPollTimes.containsKey(KEY));
+
+        PollingStateStore disabledStore = new PollingStateStore("test", writer, false, 0, 10);
+        disabledStore.updateInterval(KEY, 5, EXPIRY_TIME);
+
+        assertEquals((long) writer.intervals.get(KEY), 5);
+        assertEquals(disabledStore.size(), 0);
+    }
+
+    @Test(expectedExceptions = IdentityOAuth2Exception.class)
+    public void testSynchronousWriteFailure() throws Exception {
+
+        RecordingWriter writer = new RecordingWriter();
+        writer.fail = true;
+        new PollingStateStore("test", writer, false, 0, 10).updateLastPollTime(KEY, new Timestamp(1000), EXPIRY_TIME);
+    }
+
+    private static class RecordingWriter implements PollingStateStore.PollingStateWriter {
+
+        private final Map<String, Timestamp> lastPollTimes = new HashMap<>();
+        private final Map<String, Long> intervals = new HashMap<>();
+        private int writeCount;
+        private boolean fail;
+
+        @Override
+        public void writeLastPollTime(String key, Timestamp lastPollTime) throws IdentityException {
+
+            if (fail) {
+                throw new IdentityOAuth2Exception("Error while writing the poll time.");
+            }
+            writeCount++;
+            lastPollTimes.put(key, lastPollTime);
+        }
+
+        @Override
+        public void writeInterval(String key, long interval) throws IdentityException {
+
+            if (fail) {
+                throw new IdentityOAuth2Exception("Error while writing the interval.");
+            }
+            writeCount++;
+            intervals.put(key, interval);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.oauth2.validators;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2IntrospectionResponseDTO;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationRequestDTO;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.mockito.Matchers.anyString;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for BatchIntrospectionHandler.
+ */
+@WithCarbonHome
+@PrepareForTest({OAuth2Util.class})
+public class BatchIntrospectionHandlerTest extends PowerMockIdentityBaseTest {
+
+    private static final String JWT = "header.payload.signature";
+    private static final String FAILING_JWT = "failing.payload.signature";
+    private static final String SERVER_ERROR_MESSAGE = "Server error occurred while building the introspection response";
+
+    private final Map<String, String> introspectingThreads = new ConcurrentHashMap<>();
+
+    @BeforeMethod
+    public void setUp() {
+
+        introspectingThreads.clear();
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.isJWT(anyString())).thenCallRealMethod();
+    }
+
+    @Test
+    public void testResponsesKeepRequestOrder() throws Exception {
+
+        BatchIntrospectionHandler handler = new BatchIntrospectionHandler(10, 2, 5000);
+        OAuth2TokenValidationRequestDTO[] requests = {buildRequest("opaque1", "bearer"), buildRequest(JWT, "bearer"),
+                buildRequest("refresh1", "refresh_token"), buildRequest("opaque2", "bearer")};
+        try {
+            OAuth2IntrospectionResponseDTO[] responses = handler.buildIntrospectionResponses(requests,
+                    this::introspect);
+
+            assertEquals(responses.length, 4);
+            assertEquals(responses[0].getClientId(), "opaque1");
+            assertEquals(responses[1].getClientId(), JWT);
+            assertEquals(responses[2].getClientId(), "refresh1");
+            assertEquals(responses[3].getClientId(), "opaque2");
+            assertTrue(introspectingThreads.get(JWT).startsWith("BatchIntrospectionHandler-"));
+            assertEquals(introspectingThreads.get("opaque1"), Thread.currentThread().getName());
+        } finally {
+            handler.stop();
+        }
+    }
+
+    @Test
+    public void testFailedParallelIntrospection() throws Exception {
+
+        BatchIntrospectionHandler handler = new BatchIntrospectionHandler(10, 2, 5000);
+        OAuth2TokenValidationRequestDTO[] requests = {buildRequest(FAILING_JWT, "bearer"),
+                buildRequest(JWT, "bearer")};
+        try {
+            OAuth2IntrospectionResponseDTO[] responses = handler.buildIntrospectionResponses(requests,
+                    this::introspect);
+
+            assertFalse(responses[0].isActive());
+            assertEquals(responses[0].getError(), SERVER_ERROR_MESSAGE);
+            assertEquals(responses[1].getClientId(), JWT);
+        } finally {
+            handler.stop();
+        }
+    }
+
+    @Test
+    public void testSequentialIntrospectionWithoutThreadPool() throws Exception {
+
+        BatchIntrospectionHandler handler = new BatchIntrospectionHandler(10, 0, 5000);
+        OAuth2TokenValidationRequestDTO[] requests = {buildRequest(JWT, "bearer")};
+
+        OAuth2IntrospectionResponseDTO[] responses = handler.buildIntrospectionResponses(requests, this::introspect);
+
+        assertEquals(responses[0].getClientId(), JWT);
+        assertEquals(introspectingThreads.get(JWT), Thread.currentThread().getName());
+    }
+
+    @Test(expectedExceptions = IdentityOAuth2ClientException.class)
+    public void testBatchSizeLimit() throws Exception {
+
+        BatchIntrospectionHandler handler = new BatchIntrospectionHandler(1, 2, 5000);
+        OAuth2TokenValidationRequestDTO[] requests = {buildRequest("opaque1", "bearer"),
+                buildRequest("opaque2", "bearer")};
+
+        handler.buildIntrospectionResponses(requests, this::introspect);
+    }
+
+    private OAuth2IntrospectionResponseDTO introspect(OAuth2TokenValidationRequestDTO request) {
+
+        String identifier = request.getAccessToken().getIdentifier();
+        if (FAILING_JWT.equals(identifier)) {
+            throw new IllegalStateException("Introspection failed");
+        }
+        introspectingThreads.put(identifier, Thread.currentThread().getName());
+        OAuth2IntrospectionResponseDTO response = new OAuth2IntrospectionResponseDTO();
+        response.setActive(true);
+        response.setClientId(identifier);
+        return response;
+    }
+
+    private static OAuth2TokenValidationRequestDTO buildRequest(String token, String tokenType) {
+
+        OAuth2TokenValidationRequestDTO request = new OAuth2TokenValidationRequestDTO();
+        OAuth2TokenValidationRequestDTO.OAuth2AccessToken accessToken = request.new OAuth2AccessToken();
+        accessToken.setIdentifier(token);
+        accessToken.setTokenType(tokenType);
+        request.setAccessToken(accessToken);
+        return request;
+    }
+}
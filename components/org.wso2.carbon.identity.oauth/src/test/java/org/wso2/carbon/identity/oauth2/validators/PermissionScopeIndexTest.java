@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.validators;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth2.bean.Scope;
+import org.wso2.carbon.identity.oauth2.bean.ScopeBinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for PermissionScopeIndex.
+ */
+public class PermissionScopeIndexTest {
+
+    private static final String PERMISSION_BINDING_TYPE = "PERMISSION";
+
+    private Scope userView;
+    private Scope userManage;
+    private Scope applicationView;
+    private Scope everyone;
+    private Scope roleBound;
+    private List<Scope> scopes;
+
+    @BeforeClass
+    public void setUp() {
+
+        userView = buildScope("internal_user_view", "/permission/admin/manage/identity/usermgt/view");
+        userManage = buildScope("internal_user_mgt", "/permission/admin/manage/identity/usermgt/view",
+                "/permission/admin/manage/identity/usermgt/update");
+        applicationView = buildScope("internal_application_view",
+                "/permission/admin/manage/identity/applicationmgt/view");
+        everyone = buildScope("internal_login", "everyone_permission");
+        List<ScopeBinding> roleBindings = new ArrayList<>();
+        roleBindings.add(new ScopeBinding("ROLE", Collections.singletonList("admin")));
+        roleBound = new Scope("internal_role_bound", "internal_role_bound", roleBindings, null);
+        scopes = Arrays.asList(userView, userManage, applicationView, everyone, roleBound);
+    }
+
+    @DataProvider(name = "permissionProvider")
+    public Object[][] permissionProvider() {
+
+        return new Object[][]{
+                {new String[0], new Scope[0]},
+                {new String[]{"everyone_permission"}, new Scope[]{everyone}},
+                {new String[]{"/permission/admin/manage/identity/usermgt/view"}, new Scope[]{userView}},
+                {new String[]{"/permission/admin/manage/identity/usermgt"}, new Scope[]{userView, userManage}},
+                {new String[]{"/permission/admin/manage/identity/usermgt/view",
+                        "/permission/admin/manage/identity/usermgt/update"}, new Scope[]{userView, userManage}},
+                {new String[]{"/permission/admin/manage/identity"}, new Scope[]{userView, userManage,
+                        applicationView}},
+                // A permission only grants the bindings below it in the permission tree, not ones sharing a prefix.
+                {new String[]{"/permission/admin/manage/identity/user"}, new Scope[0]},
+                {new String[]{"/permission/admin/manage/identity/usermgt/view/all"}, new Scope[0]},
+                {new String[]{"/permission/admin/manage/identity/usermgt", "/permission/admin/manage/identity"},
+                        new Scope[]{userView, userManage, applicationView}},
+        };
+    }
+
+    @Test(dataProvider = "permissionProvider")
+    public void testGetAllowedScopes(String[] permissions, Scope[] expectedScopes) {
+
+        Set<Scope> expected = new HashSet<>(Arrays.asList(expectedScopes));
+        // Scopes without permission bindings do not require any permission.
+        expected.add(roleBound);
+
+        assertEquals(PermissionScopeIndex.build(scopes).getAllowedScopes(permissions), expected);
+    }
+
+    @Test
+    public void testDuplicateBindingsAreCountedOnce() {
+
+        Scope duplicated = buildScope("internal_duplicated", "/permission/admin/a", "/permission/admin/a");
+        PermissionScopeIndex scopeIndex = PermissionScopeIndex.build(Collections.singletonList(duplicated));
+
+        assertTrue(scopeIndex.getAllowedScopes(new String[]{"/permission/admin/a"}).contains(duplicated));
+        assertTrue(scopeIndex.getAllowedScopes(new String[]{"/permission/admin", "/permission/admin/a"})
+                .contains(duplicated));
+    }
+
+    @Test
+    public void testIsBuiltFrom() {
+
+        Scope[] scopeArray = scopes.toArray(new Scope[0]);
+        PermissionScopeIndex scopeIndex = PermissionScopeIndex.build(scopeArray);
+
+        assertTrue(scopeIndex.isBuiltFrom(scopeArray));
+        assertEquals(scopeIndex.getScopes(), scopes);
+    }
+
+    @Test
+    public void testIsBuiltFromCopiedScopes() {
+
+        PermissionScopeIndex scopeIndex = PermissionScopeIndex.build(scopes.toArray(new Scope[0]));
+        List<Scope> copiedScopes = new ArrayList<>();
+        for (Scope scope : scopes) {
+            copiedScopes.add(copyScope(scope));
+        }
+
+        assertTrue(scopeIndex.isBuiltFrom(copiedScopes));
+        assertTrue(scopeIndex.isBuiltFrom(copiedScopes.toArray(new Scope[0])));
+
+        copiedScopes.get(0).getScopeBindings().get(0).addBinding("/permission/admin/other");
+        assertFalse(scopeIndex.isBuiltFrom(copiedScopes));
+        assertFalse(scopeIndex.isBuiltFrom(scopes.subList(1, scopes.size())));
+    }
+
+    private Scope copyScope(Scope scope) {
+
+        List<ScopeBinding> scopeBindings = new ArrayList<>();
+        for (ScopeBinding scopeBinding : scope.getScopeBindings()) {
+            scopeBindings.add(new ScopeBinding(scopeBinding.getBindingType(),
+                    new ArrayList<>(scopeBinding.getBindings())));
+        }
+        return new Scope(scope.getName(), scope.getDisplayName(), scopeBindings, scope.getDescription());
+    }
+
+    private Scope buildScope(String name, String... permissions) {
+
+        List<ScopeBinding> scopeBindings = new ArrayList<>();
+        scopeBindings.add(new ScopeBinding(PERMISSION_BINDING_TYPE, Arrays.asList(permissions)));
+        return new Scope(name, name, scopeBindings, null);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.validators;
+
+import com.nimbusds.jose.PlainHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import org.testng.annotations.Test;
+
+import java.util.Date;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for RevokedJWTRegistry.
+ */
+public class RevokedJWTRegistryTest {
+
+    private static final long RETENTION = 60000;
+
+    @Test
+    public void testRevokeJWT() {
+
+        RevokedJWTRegistry registry = new RevokedJWTRegistry(true, RETENTION);
+        registry.revokeTokens(buildJWT("jti-1", System.currentTimeMillis() + RETENTION));
+
+        assertTrue(registry.isRevoked("jti-1"));
+        assertFalse(registry.isRevoked("jti-2"));
+    }
+
+    @Test
+    public void testRevokePersistedAlias() {
+
+        RevokedJWTRegistry registry = new RevokedJWTRegistry(true, RETENTION);
+        registry.revokeTokens("jti-1", null, "");
+
+        assertTrue(registry.isRevoked("jti-1"));
+        assertEquals(registry.size(), 1);
+    }
+
+    @Test
+    public void testPurgeExpiredEntries() {
+
+        RevokedJWTRegistry registry = new RevokedJWTRegistry(true, RETENTION);
+        registry.revoke("expired", System.currentTimeMillis() - 1);
+        registry.revoke("active", System.currentTimeMillis() + RETENTION);
+        registry.purgeExpiredEntries();
+
+        assertFalse(registry.isRevoked("expired"));
+        assertTrue(registry.isRevoked("active"));
+    }
+
+    @Test
+    public void testDisabledRegistry() {
+
+        RevokedJWTRegistry registry = new RevokedJWTRegistry(false, RETENTION);
+        registry.revokeTokens(buildJWT("jti-1", System.currentTimeMillis() + RETENTION));
+
+        assertFalse(registry.isRevoked("jti-1"));
+        assertEquals(registry.size(), 0);
+    }
+
+    private String buildJWT(String jwtId, long expiryTime) {
+
+        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder().jwtID(jwtId).expirationTime(new Date(expiryTime))
+                .build();
+        return new PlainJWT(new PlainHeader(), claimsSet).serialize();
+    }
+}
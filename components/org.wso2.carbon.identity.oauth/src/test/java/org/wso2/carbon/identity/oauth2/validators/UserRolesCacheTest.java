@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.validators;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Unit tests for UserRolesCache.
+ */
+public class UserRolesCacheTest {
+
+    private static final long TIME_TO_LIVE = 60000;
+    private static final int TENANT_ID = -1234;
+    private static final String[] ROLES = {"admin", "Internal/everyone"};
+
+    @Test
+    public void testGetAfterPut() {
+
+        UserRolesCache cache = new UserRolesCache(true, 10, TIME_TO_LIVE);
+
+        assertNull(cache.getRoles(TENANT_ID, "PRIMARY", "alice"));
+        cache.putRoles(TENANT_ID, "PRIMARY", "alice", ROLES);
+
+        assertEquals(cache.getRoles(TENANT_ID, "PRIMARY", "alice"), ROLES);
+        assertEquals(cache.getRoles(TENANT_ID, null, "alice"), ROLES);
+        assertNull(cache.getRoles(TENANT_ID, "SECONDARY", "alice"));
+        assertNull(cache.getRoles(1, "PRIMARY", "alice"));
+        assertEquals(cache.getHitCount(), 2);
+        assertEquals(cache.getMissCount(), 3);
+    }
+
+    @Test
+    public void testCachedRolesAreCopied() {
+
+        UserRolesCache cache = new UserRolesCache(true, 10, TIME_TO_LIVE);
+        String[] roles = ROLES.clone();
+        cache.putRoles(TENANT_ID, "PRIMARY", "alice", roles);
+        roles[0] = "modified";
+
+        assertEquals(cache.getRoles(TENANT_ID, "PRIMARY", "alice")[0], "admin");
+    }
+
+    @Test
+    public void testExpiredEntriesAreNotReturned() {
+
+        UserRolesCache cache = new UserRolesCache(true, 10, 1);
+        cache.putRoles(TENANT_ID, "PRIMARY", "alice", ROLES);
+        long expiry = System.currentTimeMillis() + 1;
+        while (System.currentTimeMillis() <= expiry) {
+            Thread.yield();
+        }
+
+        assertNull(cache.getRoles(TENANT_ID, "PRIMARY", "alice"));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testSizeBoundEvictsLeastRecentlyUsed() {
+
+        UserRolesCache cache = new UserRolesCache(true, 2, TIME_TO_LIVE);
+        cache.putRoles(TENANT_ID, "PRIMARY", "alice", ROLES);
+        cache.putRoles(TENANT_ID, "PRIMARY", "bob", ROLES);
+        cache.getRoles(TENANT_ID, "PRIMARY", "alice");
+        cache.putRoles(TENANT_ID, "PRIMARY", "carol", ROLES);
+
+        assertEquals(cache.size(), 2);
+        assertNull(cache.getRoles(TENANT_ID, "PRIMARY", "bob"));
+    }
+
+    @Test
+    public void testClear() {
+
+        UserRolesCache cache = new UserRolesCache(true, 10, TIME_TO_LIVE);
+        cache.putRoles(TENANT_ID, "PRIMARY", "alice", ROLES);
+        cache.putRoles(TENANT_ID, "PRIMARY", "bob", ROLES);
+        cache.putRoles(1, "PRIMARY", "alice", ROLES);
+
+        cache.clear(TENANT_ID, "primary", "alice");
+        assertNull(cache.getRoles(TENANT_ID, "PRIMARY", "alice"));
+        assertEquals(cache.size(), 2);
+
+        cache.clear(TENANT_ID);
+        assertNull(cache.getRoles(TENANT_ID, "PRIMARY", "bob"));
+        assertEquals(cache.getRoles(1, "PRIMARY", "alice"), ROLES);
+    }
+
+    @Test
+    public void testDisabledCache() {
+
+        UserRolesCache cache = new UserRolesCache(false, 10, TIME_TO_LIVE);
+        cache.putRoles(TENANT_ID, "PRIMARY", "alice", ROLES);
+
+        assertNull(cache.getRoles(TENANT_ID, "PRIMARY", "alice"));
+        assertEquals(cache.getMissCount(), 0);
+    }
+}
@@ -35,6 +35,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.testng.Assert;
 import org.testng.IObjectFactory;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.ObjectFactory;
 import org.testng.annotations.Test;
@@ -261,6 +262,13 @@ public class DefaultOIDCClaimsCallbackHandlerTest {
         OAuth2ServiceComponentHolder.getInstance().setScopeClaimMappingDAO(new ScopeClaimMappingDAOImpl());
     }
 
+    @BeforeMethod
+    public void clearClaimPlanCaches() {
+
+        OIDCClaimPlanCache.getInstance().clearAll();
+        UserClaimValuesCache.getInstance().clearAll();
+    }
+
     public static String getFilePath(String fileName) {
 
         if (StringUtils.isNotBlank(fileName)) {
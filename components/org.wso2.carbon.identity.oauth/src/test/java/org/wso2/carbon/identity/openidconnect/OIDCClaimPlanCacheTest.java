@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.openidconnect;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for OIDCClaimPlanCache and UserClaimValuesCache.
+ */
+public class OIDCClaimPlanCacheTest {
+
+    private static final long TIME_TO_LIVE = 60000;
+    private static final int TENANT_ID = -1234;
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final String EMAIL = "http://wso2.org/claims/emailaddress";
+    private static final String COUNTRY = "http://wso2.org/claims/country";
+    private static final String GIVEN_NAME = "http://wso2.org/claims/givenname";
+
+    @Test
+    public void testClaimPlanMapsRequestedClaimsOnly() {
+
+        Map<String, String> oidcToLocalClaimMappings = new HashMap<>();
+        oidcToLocalClaimMappings.put("email", EMAIL);
+        oidcToLocalClaimMappings.put("upn", EMAIL);
+        oidcToLocalClaimMappings.put("country", COUNTRY);
+        oidcToLocalClaimMappings.put("given_name", GIVEN_NAME);
+        OIDCClaimPlanCache.ClaimPlan claimPlan =
+                new OIDCClaimPlanCache.ClaimPlan(Arrays.asList(EMAIL, COUNTRY), oidcToLocalClaimMappings);
+
+        Map<String, String> userClaims = new HashMap<>();
+        userClaims.put(EMAIL, "alice@wso2.com");
+        userClaims.put(GIVEN_NAME, "Alice");
+        Map<String, Object> oidcClaims = claimPlan.toOIDCDialect(userClaims);
+
+        assertEquals(claimPlan.getLocalClaimUris(), new String[]{EMAIL, COUNTRY});
+        assertEquals(oidcClaims.size(), 2);
+        assertEquals(oidcClaims.get("email"), "alice@wso2.com");
+        assertEquals(oidcClaims.get("upn"), "alice@wso2.com");
+        assertTrue(claimPlan.toOIDCDialect(null).isEmpty());
+    }
+
+    @Test
+    public void testScopeClaimPlan() {
+
+        List<ScopeDTO> oidcScopes = Arrays.asList(
+                new ScopeDTO("openid", null, null, new String[]{"sub"}),
+                new ScopeDTO("profile", null, null, new String[]{"given_name", "address.locality"}),
+                new ScopeDTO("address", null, null, new String[]{"country", "street_address"}),
+                new ScopeDTO("phone", null, null, null));
+        OIDCClaimPlanCache cache = new OIDCClaimPlanCache(true, 10, TIME_TO_LIVE);
+
+        OIDCClaimPlanCache.ScopeClaimPlan scopeClaimPlan =
+                cache.getScopeClaimPlan(TENANT_ID, new String[]{"openid", "profile", "phone", "unknown"}, oidcScopes);
+
+        assertTrue(scopeClaimPlan.hasOIDCScopes());
+        assertEquals(scopeClaimPlan.getClaimUris(), new HashSet<>(Arrays.asList("sub", "given_name")));
+        assertEquals(scopeClaimPlan.getAddressClaimUris(), new HashSet<>(Arrays.asList("locality")));
+
+        scopeClaimPlan = cache.getScopeClaimPlan(TENANT_ID, new String[]{"address"}, oidcScopes);
+        assertTrue(scopeClaimPlan.getClaimUris().isEmpty());
+        assertEquals(scopeClaimPlan.getAddressClaimUris(),
+                new HashSet<>(Arrays.asList("country", "street_address")));
+    }
+
+    @Test
+    public void testScopeClaimPlanIsReusedUntilScopesChange() {
+
+        List<ScopeDTO> oidcScopes = Arrays.asList(new ScopeDTO("openid", null, null, new String[]{"sub"}));
+        OIDCClaimPlanCache cache = new OIDCClaimPlanCache(true, 10, TIME_TO_LIVE);
+        OIDCClaimPlanCache.ScopeClaimPlan scopeClaimPlan =
+                cache.getScopeClaimPlan(TENANT_ID, new String[]{"openid", "email"}, oidcScopes);
+
+        assertSame(cache.getScopeClaimPlan(TENANT_ID, new String[]{"email", "openid"}, oidcScopes), scopeClaimPlan);
+        assertNotSame(cache.getScopeClaimPlan(1, new String[]{"openid", "email"}, oidcScopes), scopeClaimPlan);
+
+        // Scopes loaded from a distributed cache are a new copy with the same content.
+        List<ScopeDTO> copiedScopes = Arrays.asList(new ScopeDTO("openid", null, null, new String[]{"sub"}));
+        assertSame(cache.getScopeClaimPlan(TENANT_ID, new String[]{"openid", "email"}, copiedScopes),
+                scopeClaimPlan);
+
+        List<ScopeDTO> reloadedScopes = Arrays.asList(new ScopeDTO("openid", null, null, new String[]{"sub", "acr"}));
+        OIDCClaimPlanCache.ScopeClaimPlan reloadedPlan =
+                cache.getScopeClaimPlan(TENANT_ID, new String[]{"openid", "email"}, reloadedScopes);
+        assertNotSame(reloadedPlan, scopeClaimPlan);
+        assertTrue(reloadedPlan.getClaimUris().contains("acr"));
+    }
+
+    @Test
+    public void testScopeClaimPlanWithoutOIDCScopes() {
+
+        OIDCClaimPlanCache cache = new OIDCClaimPlanCache(false, 10, TIME_TO_LIVE);
+        OIDCClaimPlanCache.ScopeClaimPlan scopeClaimPlan = cache.getScopeClaimPlan(TENANT_ID, null, null);
+
+        assertFalse(scopeClaimPlan.hasOIDCScopes());
+        assertTrue(scopeClaimPlan.getClaimUris().isEmpty());
+    }
+
+    @Test
+    public void testUserClaimValuesCache() {
+
+        UserClaimValuesCache cache = new UserClaimValuesCache(true, 10, TIME_TO_LIVE);
+        Map<String, String> claimValues = new HashMap<>();
+        claimValues.put(EMAIL, "alice@wso2.com");
+        cache.putClaimValues(TENANT_DOMAIN, "PRIMARY", "alice", EMAIL, claimValues);
+        cache.putClaimValues(TENANT_DOMAIN, "PRIMARY", "alice", EMAIL + "," + COUNTRY, claimValues);
+        cache.putClaimValues(TENANT_DOMAIN, "PRIMARY", "bob", EMAIL, claimValues);
+
+        Map<String, String> cachedValues = cache.getClaimValues(TENANT_DOMAIN, null, "alice", EMAIL);
+        assertEquals(cachedValues, claimValues);
+        // Modifying the returned claims must not modify the cached claims.
+        cachedValues.put(COUNTRY, "LK");
+        assertEquals(cache.getClaimValues(TENANT_DOMAIN, "PRIMARY", "alice", EMAIL), claimValues);
+        assertNull(cache.getClaimValues(TENANT_DOMAIN, "PRIMARY", "alice", COUNTRY));
+
+        cache.clear(TENANT_DOMAIN, "primary", "alice");
+        assertNull(cache.getClaimValues(TENANT_DOMAIN, "PRIMARY", "alice", EMAIL));
+        assertNull(cache.getClaimValues(TENANT_DOMAIN, "PRIMARY", "alice", EMAIL + "," + COUNTRY));
+        assertEquals(cache.getClaimValues(TENANT_DOMAIN, "PRIMARY", "bob", EMAIL), claimValues);
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testDisabledUserClaimValuesCache() {
+
+        UserClaimValuesCache cache = new UserClaimValuesCache(false, 10, TIME_TO_LIVE);
+        cache.putClaimValues(TENANT_DOMAIN, "PRIMARY", "alice", EMAIL, new HashMap<>());
+
+        assertNull(cache.getClaimValues(TENANT_DOMAIN, "PRIMARY", "alice", EMAIL));
+    }
+}
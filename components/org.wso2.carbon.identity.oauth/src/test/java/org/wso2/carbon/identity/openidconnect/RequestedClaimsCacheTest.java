@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.openidconnect;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.openidconnect.model.RequestedClaim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for RequestedClaimsCache.
+ */
+public class RequestedClaimsCacheTest {
+
+    private static final long TIME_TO_LIVE = 60000;
+
+    @Test
+    public void testGetAfterPut() {
+
+        RequestedClaimsCache cache = new RequestedClaimsCache(true, 10, TIME_TO_LIVE);
+        assertNull(cache.getRequestedClaims("token", false));
+
+        cache.putRequestedClaims("token", getClaims("email"), getClaims("phone_number"),
+                cache.getInvalidationCount());
+
+        assertEquals(cache.getRequestedClaims("token", false).get(0).getName(), "email");
+        assertEquals(cache.getRequestedClaims("token", true).get(0).getName(), "phone_number");
+        assertEquals(cache.getHitCount(), 2);
+        assertEquals(cache.getMissCount(), 1);
+    }
+
+    @Test
+    public void testTokensWithoutRequestedClaimsAreCached() {
+
+        RequestedClaimsCache cache = new RequestedClaimsCache(true, 10, TIME_TO_LIVE);
+        cache.putRequestedClaims("token", Collections.emptyList(), null, cache.getInvalidationCount());
+
+        assertTrue(cache.getRequestedClaims("token", false).isEmpty());
+        assertTrue(cache.getRequestedClaims("token", true).isEmpty());
+    }
+
+    @Test
+    public void testReturnedClaimsAreCopies() {
+
+        RequestedClaimsCache cache = new RequestedClaimsCache(true, 10, TIME_TO_LIVE);
+        cache.putRequestedClaims("token", getClaims("email"), getClaims(), cache.getInvalidationCount());
+
+        List<RequestedClaim> requestedClaims = cache.getRequestedClaims("token", false);
+        requestedClaims.get(0).setName("modified");
+        requestedClaims.clear();
+
+        assertEquals(cache.getRequestedClaims("token", false).get(0).getName(), "email");
+    }
+
+    @Test
+    public void testClaimsLoadedBeforeInvalidationAreNotCached() {
+
+        RequestedClaimsCache cache = new RequestedClaimsCache(true, 10, TIME_TO_LIVE);
+        long invalidationCount = cache.getInvalidationCount();
+        cache.invalidate("token");
+        cache.putRequestedClaims("token", getClaims("email"), getClaims(), invalidationCount);
+
+        assertNull(cache.getRequestedClaims("token", false));
+    }
+
+    @Test
+    public void testMove() {
+
+        RequestedClaimsCache cache = new RequestedClaimsCache(true, 10, TIME_TO_LIVE);
+        cache.putRequestedClaims("oldToken", getClaims("email"), getClaims(), cache.getInvalidationCount());
+        cache.putRequestedClaims("newToken", getClaims(), getClaims(), cache.getInvalidationCount());
+        cache.move("oldToken", "newToken");
+
+        assertNull(cache.getRequestedClaims("oldToken", false));
+        assertEquals(cache.getRequestedClaims("newToken", false).get(0).getName(), "email");
+
+        cache.move("unknownToken", "newToken");
+        assertNull(cache.getRequestedClaims("newToken", false));
+    }
+
+    @Test
+    public void testSizeBoundEvictsLeastRecentlyUsed() {
+
+        RequestedClaimsCache cache = new RequestedClaimsCache(true, 2, TIME_TO_LIVE);
+        cache.putRequestedClaims("first", getClaims(), getClaims(), cache.getInvalidationCount());
+        cache.putRequestedClaims("second", getClaims(), getClaims(), cache.getInvalidationCount());
+        cache.getRequestedClaims("first", false);
+        cache.putRequestedClaims("third", getClaims(), getClaims(), cache.getInvalidationCount());
+
+        assertEquals(cache.size(), 2);
+        assertNull(cache.getRequestedClaims("second", false));
+    }
+
+    @Test
+    public void testDisabledCache() {
+
+        RequestedClaimsCache cache = new RequestedClaimsCache(false, 10, TIME_TO_LIVE);
+        cache.putRequestedClaims("token", getClaims("email"), getClaims(), cache.getInvalidationCount());
+
+        assertNull(cache.getRequestedClaims("token", false));
+        assertEquals(cache.getMissCount(), 0);
+    }
+
+    private List<RequestedClaim> getClaims(String... names) {
+
+        List<RequestedClaim> requestedClaims = new ArrayList<>();
+        for (String name : names) {
+            RequestedClaim requestedClaim = new RequestedClaim();
+            requestedClaim.setName(name);
+            requestedClaim.setEssential(true);
+            requestedClaims.add(requestedClaim);
+        }
+        return requestedClaims;
+    }
+}
@@ -104,6 +104,8 @@ CREATE INDEX IDX_TC ON IDN_OAUTH2_ACCESS_TOKEN(TIME_CREATED);
 
 CREATE INDEX IDX_AT ON IDN_OAUTH2_ACCESS_TOKEN(ACCESS_TOKEN);
 
+CREATE INDEX IDX_IDN_AUTH_BIND ON IDN_OAUTH2_TOKEN_BINDING (TOKEN_BINDING_REF);
+
 CREATE TABLE IF NOT EXISTS IDN_OAUTH2_DEVICE_FLOW (
     CODE_ID VARCHAR(255),
     DEVICE_CODE VARCHAR(255),
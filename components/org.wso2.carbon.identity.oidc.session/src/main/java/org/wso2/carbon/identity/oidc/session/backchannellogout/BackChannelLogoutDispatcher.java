@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oidc.session.backchannellogout;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLContexts;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.wso2.carbon.identity.base.IdentityConstants;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.wso2.carbon.identity.oauth2.util.ConfigPropertyUtil.getIntProperty;
+
+/**
+ * Dispatches back-channel logout requests to the session participants (RPs).
+ * <p>
+ * Requests are sent through a shared HTTP client whose pooled, kept alive connections are reused across logout
+ * requests. The number of in-flight requests to a single RP host is bounded, so that a slow RP does not hold every
+ * dispatcher thread, and requests that cannot get a permit are deferred instead of blocking a thread. Pending requests
+ * are held in a bounded queue; when it is full the submitting thread waits for a slot up to the configured timeout,
+ * after which the request is dropped. Failed requests (I/O errors, 5xx and 429 responses) are retried with an
+ * exponential back-off with full jitter. Latency and failure counts are kept per RP host.
+ */
+public class BackChannelLogoutDispatcher {
+
+    private static final Log log = LogFactory.getLog(BackChannelLogoutDispatcher.class);
+
+    // These config properties are defined in identity.xml
+    private static final String CONFIG_PREFIX = "OAuth.OpenIDConnect.BackChannelLogout.";
+    private static final String POOL_SIZE = CONFIG_PREFIX + "PoolSize";
+    private static final String QUEUE_CAPACITY = CONFIG_PREFIX + "QueueCapacity";
+    private static final String ENQUEUE_TIMEOUT = CONFIG_PREFIX + "EnqueueTimeoutMillis";
+    private static final String MAX_CONNECTIONS = CONFIG_PREFIX + "MaxConnections";
+    private static final String MAX_CONCURRENCY_PER_HOST = CONFIG_PREFIX + "MaxConcurrencyPerHost";
+    private static final String MAX_RETRIES = CONFIG_PREFIX + "MaxRetries";
+    private static final String RETRY_BASE_DELAY = CONFIG_PREFIX + "RetryBaseDelayMillis";
+    private static final String CONNECT_TIMEOUT = CONFIG_PREFIX + "ConnectTimeoutMillis";
+    private static final String SOCKET_TIMEOUT = CONFIG_PREFIX + "SocketTimeoutMillis";
+
+    private static final String LOGOUT_TOKEN = "logout_token";
+    private static final long HOST_PERMIT_RETRY_DELAY_MILLIS = 50;
+
+    private static volatile BackChannelLogoutDispatcher instance;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService scheduler;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RequestConfig requestConfig;
+    private final int maxConcurrencyPerHost;
+    private final int maxRetries;
+    private final long retryBaseDelayMillis;
+    private final long enqueueTimeoutMillis;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final Map<String, BackChannelLogoutMetrics> metrics = new ConcurrentHashMap<>();
+
+    private BackChannelLogoutDispatcher() {
+
+        this(getIntProperty(POOL_SIZE, 10), getIntProperty(QUEUE_CAPACITY, 1000),
+                getIntProperty(ENQUEUE_TIMEOUT, 5000), getIntProperty(MAX_CONNECTIONS, 100),
+                getIntProperty(MAX_CONCURRENCY_PER_HOST, 5), getIntProperty(MAX_RETRIES, 2),
+                getIntProperty(RETRY_BASE_DELAY, 200), getIntProperty(CONNECT_TIMEOUT, 5000),
+                getIntProperty(SOCKET_TIMEOUT, 10000));
+    }
+
+    BackChannelLogoutDispatcher(int poolSize, int queueCapacity, long enqueueTimeoutMillis, int maxConnections,
+                                int maxConcurrencyPerHost, int maxRetries, long retryBaseDelayMillis,
+                                int connectTimeoutMillis, int socketTimeoutMillis) {
+
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+        this.maxRetries = maxRetries;
+        this.retryBaseDelayMillis = retryBaseDelayMillis;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "BackChannelLogoutDispatcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.prestartAllCoreThreads();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BackChannelLogoutDispatcher-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        SSLConnectionSocketFactory sslSocketFactory;
+        if ("false".equalsIgnoreCase(
+                IdentityUtil.getProperty(IdentityConstants.ServerConfig.SLO_HOST_NAME_VERIFICATION_ENABLED))) {
+            sslSocketFactory = new SSLConnectionSocketFactory(SSLContexts.createDefault(),
+                    SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+        } else {
+            sslSocketFactory = SSLConnectionSocketFactory.getSocketFactory();
+        }
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+        this.connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        this.connectionManager.setMaxTotal(maxConnections);
+        this.connectionManager.setDefaultMaxPerRoute(maxConcurrencyPerHost);
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setConnectionRequestTimeout(connectTimeoutMillis)
+                .setSocketTimeout(socketTimeoutMillis)
+                .build();
+        this.httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig).build();
+    }
+
+    /**
+     * Returns the dispatcher, creating it on first use.
+     *
+     * @return BackChannelLogoutDispatcher instance
+     */
+    public static BackChannelLogoutDispatcher getInstance() {
+
+        if (instance == null) {
+            synchronized (BackChannelLogoutDispatcher.class) {
+                if (instance == null) {
+                    instance = new BackChannelLogoutDispatcher();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queue a back-channel logout request. When the queue is full, the calling thread waits for a free slot up to
+     * the configured timeout.
+     *
+     * @param logoutToken          Logout token.
+     * @param backChannelLogoutUrl Back-channel logout URL of the RP.
+     * @return false if the request was dropped as the queue remained full.
+     */
+    public boolean dispatch(String logoutToken, String backChannelLogoutUrl) {
+
+        String host = getHost(backChannelLogoutUrl);
+        if (host == null) {
+            log.error("Invalid back-channel logout URL: " + backChannelLogoutUrl);
+            return false;
+        }
+        return enqueue(new LogoutRequestTask(logoutToken, backChannelLogoutUrl, host));
+    }
+
+    /**
+     * Returns the back-channel logout metrics of each RP host.
+     *
+     * @return Metrics keyed by the RP host and port.
+     */
+    public Map<String, BackChannelLogoutMetrics> getMetrics() {
+
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Number of logout requests waiting to be sent.
+     *
+     * @return Queued request count.
+     */
+    public int getQueueSize() {
+
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Shut down the dispatcher if it has been created.
+     */
+    public static void shutdownInstance() {
+
+        synchronized (BackChannelLogoutDispatcher.class) {
+            if (instance != null) {
+                instance.shutdown();
+                instance = null;
+            }
+        }
+    }
+
+    /**
+     * Stop dispatching and release the pooled connections.
+     */
+    void shutdown() {
+
+        scheduler.shutdownNow();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.error("Error while closing the back-channel logout HTTP client.", e);
+        }
+    }
+
+    private boolean enqueue(LogoutRequestTask task) {
+
+        if (executor.isShutdown()) {
+            log.error("Back-channel logout dispatcher is shut down. Dropping the logout request to: " + task.url);
+            return false;
+        }
+        try {
+            // The pool threads are started upfront, hence a task added to the queue is always picked up.
+            if (executor.getQueue().offer(task, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        getMetrics(task.host).dropped.incrementAndGet();
+        log.error("Back-channel logout request queue is full. Dropping the logout request to: " + task.url);
+        return false;
+    }
+
+    private void schedule(LogoutRequestTask task, long delayMillis) {
+
+        try {
+            scheduler.schedule(() -> enqueue(task), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.error("Back-channel logout dispatcher is shut down. Dropping the logout request to: " + task.url);
+        }
+    }
+
+    private BackChannelLogoutMetrics getMetrics(String host) {
+
+        return metrics.computeIfAbsent(host, key -> new BackChannelLogoutMetrics());
+    }
+
+    private long getRetryDelay(int attempt) {
+
+        long maxDelay = retryBaseDelayMillis << Math.min(attempt, 16);
+        return ThreadLocalRandom.current().nextLong(maxDelay + 1);
+    }
+
+    private static String getHost(String url) {
+
+        try {
+            URI uri = new URI(url);
+            if (StringUtils.isBlank(uri.getHost())) {
+                return null;
+            }
+            return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A logout request to a single session participant.
+     */
+    private class LogoutRequestTask implements Runnable {
+
+        private final String logoutToken;
+        private final String url;
+        private final String host;
+        private int attempt;
+
+        private LogoutRequestTask(String logoutToken, String url, String host) {
+
+            this.logoutToken = logoutToken;
+            this.url = url;
+            this.host = host;
+        }
+
+        @Override
+        public void run() {
+
+            Semaphore permits = hostPermits.computeIfAbsent(host, key -> new Semaphore(maxConcurrencyPerHost));
+            if (!permits.tryAcquire()) {
+                // Do not hold a dispatcher thread while the RP host is at its concurrency limit.
+                schedule(this, HOST_PERMIT_RETRY_DELAY_MILLIS);
+                return;
+            }
+            boolean retry;
+            try {
+                retry = !send();
+            } finally {
+                permits.release();
+            }
+            if (retry) {
+                if (attempt < maxRetries) {
+                    attempt++;
+                    getMetrics(host).retries.incrementAndGet();
+                    schedule(this, getRetryDelay(attempt));
+                } else {
+                    getMetrics(host).failures.incrementAndGet();
+                    log.error("Back-channel logout request to: " + url + " failed after " + (attempt + 1) +
+                            " attempt(s).");
+                }
+            }
+        }
+
+        /**
+         * Send the request once.
+         *
+         * @return false if the request failed and can be retried.
+         */
+        private boolean send() {
+
+            if (log.isDebugEnabled()) {
+                log.debug("Starting backchannel logout request to: " + url);
+            }
+            List<NameValuePair> logoutReqParams =
+                    Collections.singletonList(new BasicNameValuePair(LOGOUT_TOKEN, logoutToken));
+            HttpPost httpPost = new HttpPost(url);
+            httpPost.setEntity(new UrlEncodedFormEntity(logoutReqParams, StandardCharsets.UTF_8));
+
+            BackChannelLogoutMetrics hostMetrics = getMetrics(host);
+            long startTime = System.nanoTime();
+            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                int statusCode = response.getStatusLine().getStatusCode();
+                hostMetrics.record(System.nanoTime() - startTime);
+                if (log.isDebugEnabled()) {
+                    log.debug("Backchannel logout response: " + response.getStatusLine() + " from: " + url);
+                }
+                return statusCode < 500 && statusCode != 429;
+            } catch (IOException e) {
+                hostMetrics.record(System.nanoTime() - startTime);
+                if (log.isDebugEnabled()) {
+                    log.debug("Error sending logout request to: " + url, e);
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Back-channel logout metrics of an RP host.
+     */
+    public static class BackChannelLogoutMetrics {
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+
+        private void record(long latencyNanos) {
+
+            requests.incrementAndGet();
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        }
+
+        /**
+         * Number of HTTP requests sent, including retries.
+         */
+        public long getRequestCount() {
+
+            return requests.get();
+        }
+
+        public double getAverageLatencyMillis() {
+
+            long count = requests.get();
+            return count == 0 ? 0 : totalLatencyNanos.get() / 1000000.0 / count;
+        }
+
+        public double getMaxLatencyMillis() {
+
+            return maxLatencyNanos.get() / 1000000.0;
+        }
+
+        public long getRetryCount() {
+
+            return retries.get();
+        }
+
+        /**
+         * Number of logout requests which failed after exhausting the retries.
+         */
+        public long getFailureCount() {
+
+            return failures.get();
+        }
+
+        /**
+         * Number of logout requests dropped as the queue was full.
+         */
+        public long getDroppedCount() {
+
+            return dropped.get();
+        }
+    }
+}
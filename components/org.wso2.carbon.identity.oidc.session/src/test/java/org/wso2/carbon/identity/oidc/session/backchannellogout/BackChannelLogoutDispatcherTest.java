@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oidc.session.backchannellogout;
+
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for BackChannelLogoutDispatcher.
+ */
+@WithCarbonHome
+public class BackChannelLogoutDispatcherTest {
+
+    private static final String LOGOUT_PATH = "/logout";
+
+    private HttpServer server;
+    private String logoutUrl;
+    private String host;
+    private BackChannelLogoutDispatcher dispatcher;
+    private final AtomicInteger failuresToReturn = new AtomicInteger();
+    private final Queue<String> receivedBodies = new ConcurrentLinkedQueue<>();
+    private CountDownLatch requestLatch;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(LOGOUT_PATH, exchange -> {
+            receivedBodies.add(readBody(exchange.getRequestBody()));
+            int status = failuresToReturn.getAndDecrement() > 0 ? 503 : 200;
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            requestLatch.countDown();
+        });
+        server.start();
+        host = "localhost:" + server.getAddress().getPort();
+        logoutUrl = "http://" + host + LOGOUT_PATH;
+        dispatcher = new BackChannelLogoutDispatcher(2, 10, 100, 10, 2, 2, 10, 1000, 1000);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        dispatcher.shutdown();
+        server.stop(0);
+        receivedBodies.clear();
+        failuresToReturn.set(0);
+    }
+
+    @Test
+    public void testDispatch() throws Exception {
+
+        requestLatch = new CountDownLatch(1);
+        assertTrue(dispatcher.dispatch("token", logoutUrl));
+
+        assertTrue(requestLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(receivedBodies.poll(), "logout_token=token");
+        BackChannelLogoutDispatcher.BackChannelLogoutMetrics metrics = waitForRequests(1);
+        assertEquals(metrics.getRequestCount(), 1);
+        assertEquals(metrics.getFailureCount(), 0);
+    }
+
+    @Test
+    public void testRetryOnServerError() throws Exception {
+
+        failuresToReturn.set(1);
+        requestLatch = new CountDownLatch(2);
+        dispatcher.dispatch("token", logoutUrl);
+
+        assertTrue(requestLatch.await(5, TimeUnit.SECONDS));
+        BackChannelLogoutDispatcher.BackChannelLogoutMetrics metrics = waitForRequests(2);
+        assertEquals(metrics.getRetryCount(), 1);
+        assertEquals(metrics.getFailureCount(), 0);
+    }
+
+    @Test
+    public void testFailureAfterRetries() throws Exception {
+
+        failuresToReturn.set(10);
+        requestLatch = new CountDownLatch(3);
+        dispatcher.dispatch("token", logoutUrl);
+
+        assertTrue(requestLatch.await(5, TimeUnit.SECONDS));
+        BackChannelLogoutDispatcher.BackChannelLogoutMetrics metrics = waitForRequests(3);
+        for (int i = 0; i < 50 && metrics.getFailureCount() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(metrics.getRetryCount(), 2);
+        assertEquals(metrics.getFailureCount(), 1);
+    }
+
+    @Test
+    public void testInvalidUrl() {
+
+        assertFalse(dispatcher.dispatch("token", "not a url"));
+    }
+
+    private BackChannelLogoutDispatcher.BackChannelLogoutMetrics waitForRequests(long requestCount)
+            throws InterruptedException {
+
+        // The response reaches the server handler before the dispatcher records it.
+        for (int i = 0; i < 50; i++) {
+            BackChannelLogoutDispatcher.BackChannelLogoutMetrics metrics = dispatcher.getMetrics().get(host);
+            if (metrics != null && metrics.getRequestCount() >= requestCount) {
+                return metrics;
+            }
+            Thread.sleep(100);
+        }
+        return dispatcher.getMetrics().get(host);
+    }
+
+    private static String readBody(InputStream inputStream) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+}